@@ -0,0 +1,79 @@
+"""
+ wlstModule.py - this is a stand-in for the WLST module that provides
+     the objects the test driver configures, so that the driver can run
+     in plain Jython.  Only the offline domain template commands are
+     simulated, by writing a small domain directory.
+
+ Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+"""
+import os
+
+
+class _CommandExceptionHandler:
+    def setMode(self, mode):
+        pass
+
+    def setSilent(self, silent):
+        pass
+
+
+class _Settings:
+    """
+    Accepts and ignores any setting, like the WLS and WLS_ON objects that the driver silences.
+    """
+    def __init__(self):
+        self._handler = _CommandExceptionHandler()
+
+    def getCommandExceptionHandler(self):
+        return self._handler
+
+    def __getattr__(self, name):
+        if name.startswith('__'):
+            raise AttributeError(name)
+        return _ignore
+
+
+def _ignore(*args):
+    return None
+
+WLS = _Settings()
+WLS_ON = _Settings()
+
+_template = None
+
+
+def readTemplate(template):
+    global _template
+    if not os.path.isfile(template):
+        raise ValueError('The template %s does not exist' % template)
+    _template = template
+
+
+def writeDomain(domain_dir):
+    if _template is None:
+        raise ValueError('No template is open')
+    for name in ('bin', 'config', 'servers'):
+        if not os.path.isdir(os.path.join(domain_dir, name)):
+            os.makedirs(os.path.join(domain_dir, name))
+    config_file = open(os.path.join(domain_dir, 'config', 'config.xml'), 'w')
+    try:
+        config_file.write('<domain><template>%s</template></domain>\n' % _template)
+    finally:
+        config_file.close()
+
+
+def closeTemplate():
+    global _template
+    _template = None
@@ -0,0 +1,40 @@
+#!/bin/sh
+#
+# wlst.sh - This is a stand-in for the WLST shell script that runs plain
+#     Jython with a stub wlstModule so that the WLST Test Maven Plugin can
+#     be run end to end on a machine without an Oracle Home.
+#
+# Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+# JYTHON_JAR must point to a jython-standalone JAR.  Like the real script,
+# WLST_EXT_CLASSPATH is added to the classpath and WLST_PROPERTIES to the
+# JVM arguments.
+#
+if [ -z "${JYTHON_JAR}" ]; then
+    echo "JYTHON_JAR must be set to the location of the jython-standalone JAR" >&2
+    exit 2
+fi
+if [ "$1" = "-skipWLSModuleScanning" ]; then
+    shift
+fi
+
+STUB_DIR=`dirname "$0"`/stub
+CLASSPATH="${JYTHON_JAR}"
+if [ -n "${WLST_EXT_CLASSPATH}" ]; then
+    CLASSPATH="${CLASSPATH}:${WLST_EXT_CLASSPATH}"
+fi
+
+exec "${JAVA_HOME:+${JAVA_HOME}/bin/}java" ${WLST_PROPERTIES} -cp "${CLASSPATH}" \
+    -Dpython.path="${STUB_DIR}" -Dpython.cachedir.skip=true org.python.util.jython "$@"
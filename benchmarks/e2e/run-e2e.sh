@@ -0,0 +1,208 @@
+#!/bin/bash
+#
+# run-e2e.sh - This script times the test goal of the WLST Test Maven
+#     Plugin end to end on a generated project, using the stub wlst.sh
+#     in oracle_home so that no Oracle Home is needed.
+#
+# Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+# Usage: run-e2e.sh [-t <test files>] [-m <modules per test>] [-i <iterations>] [-c] [-s] [-r] [-- <mvn arguments>]
+#
+#     -t  the number of generated test files, 100 by default
+#     -m  the number of generated source modules each test file imports, 5 by default
+#     -i  the number of times the test goal is run, 3 by default
+#     -c  run mvn clean before each iteration so that every run starts cold
+#     -s  skip installing the plugin from this working tree first
+#     -r  cache the test results in a stand-in remote cache server, emptying the
+#         local test result cache before each run so that every run after the
+#         first one restores its results over HTTP
+#
+# The remaining arguments are passed to every mvn test run, for example
+# -DexecutionMode=daemon or -DforkCount=2.  The wall time of each run and
+# the plugin's performance summary are saved under target/e2e/results.
+#
+# Environment variables:
+#     JYTHON_JAR      the jython-standalone JAR, which is downloaded with mvn if not set
+#     JYTHON_VERSION  the jython-standalone version to download, 2.7.3 by default
+#     MVN             the Maven command, mvn by default
+#
+set -e
+
+SCRIPT_DIR=$(cd "$(dirname "$0")" && pwd)
+PLUGIN_DIR=$(cd "${SCRIPT_DIR}/../.." && pwd)
+WORK_DIR="$(cd "${SCRIPT_DIR}/.." && pwd)/target/e2e"
+PROJECT_DIR="${WORK_DIR}/project"
+RESULTS_DIR="${WORK_DIR}/results"
+MVN=${MVN:-mvn}
+JYTHON_VERSION=${JYTHON_VERSION:-2.7.3}
+
+TEST_COUNT=100
+MODULES_PER_TEST=5
+ITERATIONS=3
+CLEAN=false
+INSTALL=true
+REMOTE_CACHE=false
+while getopts "t:m:i:csr" option; do
+    case "${option}" in
+        t) TEST_COUNT=${OPTARG} ;;
+        m) MODULES_PER_TEST=${OPTARG} ;;
+        i) ITERATIONS=${OPTARG} ;;
+        c) CLEAN=true ;;
+        s) INSTALL=false ;;
+        r) REMOTE_CACHE=true ;;
+        *) sed -n 's/^# Usage: //p' "$0" >&2; exit 2 ;;
+    esac
+done
+shift $((OPTIND - 1))
+
+now_millis() {
+    local nanos
+    nanos=$(date +%s%N)
+    case "${nanos}" in
+        *N) echo $(( $(date +%s) * 1000 )) ;;
+        *) echo $(( nanos / 1000000 )) ;;
+    esac
+}
+
+if [ -z "${JYTHON_JAR}" ]; then
+    JYTHON_JAR="${HOME}/.m2/repository/org/python/jython-standalone/${JYTHON_VERSION}/jython-standalone-${JYTHON_VERSION}.jar"
+    if [ ! -f "${JYTHON_JAR}" ]; then
+        ${MVN} -B -q dependency:get -Dartifact="org.python:jython-standalone:${JYTHON_VERSION}"
+    fi
+fi
+export JYTHON_JAR
+
+PLUGIN_VERSION=$(sed -n 's:^    <version>\(.*\)</version>:\1:p' "${PLUGIN_DIR}/pom.xml" | head -1)
+if [ "${INSTALL}" = "true" ]; then
+    echo "Installing wlst-test-maven-plugin ${PLUGIN_VERSION} from ${PLUGIN_DIR}"
+    (cd "${PLUGIN_DIR}" && ${MVN} -B -q install -DskipTests)
+fi
+
+#
+# Start the stand-in remote test result cache server, which is stopped when this script exits
+#
+cache_args=""
+if [ "${REMOTE_CACHE}" = "true" ]; then
+    (cd "${SCRIPT_DIR}/.." && ${MVN} -B -q compile)
+    port_file="${WORK_DIR}/result-cache.port"
+    mkdir -p "${WORK_DIR}"
+    rm -f "${port_file}"
+    java -cp "${SCRIPT_DIR}/../target/classes" io.rhpatrick.mojo.wlstTest.ResultCacheServer \
+        "${WORK_DIR}/result-cache" 0 "${port_file}" > "${WORK_DIR}/result-cache.log" 2>&1 &
+    server_pid=$!
+    trap 'kill ${server_pid}' EXIT
+    while [ ! -f "${port_file}" ]; do
+        if ! kill -0 ${server_pid} 2> /dev/null; then
+            echo "The result cache server failed to start, see ${WORK_DIR}/result-cache.log" >&2
+            exit 1
+        fi
+        sleep 0.1
+    done
+    cache_args="-DresultCache=true -DresultCachePush=true -DresultCacheUrl=http://localhost:$(cat "${port_file}")"
+    echo "Serving the remote test result cache from ${WORK_DIR}/result-cache"
+fi
+
+#
+# Generate the project: each test file has two tests and imports its own set of source modules
+#
+echo "Generating ${TEST_COUNT} test files importing ${MODULES_PER_TEST} modules each in ${PROJECT_DIR}"
+rm -rf "${PROJECT_DIR}"
+mkdir -p "${PROJECT_DIR}/src/main/python" "${PROJECT_DIR}/src/test/python" "${RESULTS_DIR}"
+cat > "${PROJECT_DIR}/pom.xml" <<EOF
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>io.rhpatrick.mojo</groupId>
+    <artifactId>wlst-test-e2e-project</artifactId>
+    <version>1.0-SNAPSHOT</version>
+    <packaging>jar</packaging>
+
+    <build>
+        <plugins>
+            <plugin>
+                <groupId>io.rhpatrick.mojo</groupId>
+                <artifactId>wlst-test-maven-plugin</artifactId>
+                <version>${PLUGIN_VERSION}</version>
+                <executions>
+                    <execution>
+                        <goals>
+                            <goal>test</goal>
+                        </goals>
+                        <configuration>
+                            <wlstScriptDirectory>${SCRIPT_DIR}/oracle_home</wlstScriptDirectory>
+                        </configuration>
+                    </execution>
+                </executions>
+            </plugin>
+        </plugins>
+    </build>
+</project>
+EOF
+
+test_index=0
+while [ ${test_index} -lt ${TEST_COUNT} ]; do
+    package_dir="pkg$(( test_index / 50 ))"
+    mkdir -p "${PROJECT_DIR}/src/main/python/${package_dir}" "${PROJECT_DIR}/src/test/python/${package_dir}"
+    touch "${PROJECT_DIR}/src/main/python/${package_dir}/__init__.py"
+
+    test_file="${PROJECT_DIR}/src/test/python/${package_dir}/generated${test_index}_test.py"
+    echo "import unittest" > "${test_file}"
+    module_index=0
+    while [ ${module_index} -lt ${MODULES_PER_TEST} ]; do
+        module_name="module${test_index}_${module_index}"
+        printf 'def value(x):\n    return x * %d\n' "${module_index}" \
+            > "${PROJECT_DIR}/src/main/python/${package_dir}/${module_name}.py"
+        echo "from ${package_dir} import ${module_name}" >> "${test_file}"
+        module_index=$(( module_index + 1 ))
+    done
+    cat >> "${test_file}" <<EOF
+
+class Generated${test_index}Test(unittest.TestCase):
+    def test_value(self):
+        self.assertEqual(0, module${test_index}_0.value(${test_index}))
+
+    def test_text(self):
+        self.assertEqual('generated', 'GENERATED'.lower())
+EOF
+    test_index=$(( test_index + 1 ))
+done
+
+#
+# Run the test goal and keep the wall time and performance summary of each run
+#
+summary_file="${RESULTS_DIR}/wall-times.txt"
+: > "${summary_file}"
+iteration=1
+while [ ${iteration} -le ${ITERATIONS} ]; do
+    goals="test"
+    if [ "${CLEAN}" = "true" ]; then
+        goals="clean test"
+    fi
+
+    if [ "${REMOTE_CACHE}" = "true" ]; then
+        rm -rf "${HOME}/.m2/repository/.cache/wlst-test-maven-plugin/results"
+    fi
+
+    start_millis=$(now_millis)
+    if ! (cd "${PROJECT_DIR}" && ${MVN} -B ${goals} ${cache_args} "$@" > "${RESULTS_DIR}/run-${iteration}.log" 2>&1); then
+        echo "Run ${iteration} failed, see ${RESULTS_DIR}/run-${iteration}.log" >&2
+        exit 1
+    fi
+    elapsed_millis=$(( $(now_millis) - start_millis ))
+
+    cp "${PROJECT_DIR}/target/wlst-tests/performance-summary.json" "${RESULTS_DIR}/run-${iteration}.json"
+    echo "run ${iteration}: ${elapsed_millis} ms" | tee -a "${summary_file}"
+    iteration=$(( iteration + 1 ))
+done
+echo "The logs and performance summaries of the runs are in ${RESULTS_DIR}"
@@ -0,0 +1,181 @@
+/*
+ * EnvironmentAssemblyBenchmark.java - This class benchmarks how the WLST
+ *     Test Maven Plugin builds the WLST classpath and environment.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of how the test goal assembles the WLST_EXT_CLASSPATH, WLST_PROPERTIES and other environment
+ * variables of the WLST process.  Half of the wlstExtClasspath elements are dependency coordinates resolved
+ * against a project with ARTIFACT_COUNT resolved dependencies and half are file paths.  The uncached
+ * benchmarks remove the classpath that the plugin caches in the project context before each call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EnvironmentAssemblyBenchmark {
+    private static final int ARTIFACT_COUNT = 2000;
+    private static final int GROUP_COUNT = 20;
+    private static final int ENVIRONMENT_VARIABLE_COUNT = 20;
+    private static final int SYSTEM_PROPERTY_COUNT = 200;
+
+    @Param({ "10", "100", "1000" })
+    public int classpathElementCount;
+
+    private File workDirectory;
+    private MavenProject project;
+    private WlstTestModule module;
+    private WlstEnvironment environment;
+    private String classpathContextKey;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDirectory = Files.createTempDirectory("wlst-test-benchmark").toFile();
+        File outputDirectory = new File(workDirectory, "classes");
+        project = new MavenProject();
+        project.getBuild().setOutputDirectory(outputDirectory.getAbsolutePath());
+
+        DefaultArtifactHandler jarHandler = new DefaultArtifactHandler("jar");
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        for (int index = 0; index < ARTIFACT_COUNT; index++) {
+            Artifact artifact = new DefaultArtifact(getGroupId(index), "artifact" + index, "1.0",
+                                                    Artifact.SCOPE_COMPILE, "jar", null, jarHandler);
+            artifact.setFile(new File(workDirectory, "artifact" + index + ".jar"));
+            artifacts.add(artifact);
+        }
+        project.setArtifacts(artifacts);
+
+        List<String> wlstExtClasspath = new ArrayList<>(classpathElementCount);
+        for (int index = 0; index < classpathElementCount; index++) {
+            if (index % 2 == 0) {
+                int artifactIndex = (index * 7) % ARTIFACT_COUNT;
+                wlstExtClasspath.add(getGroupId(artifactIndex) + ":artifact" + artifactIndex + ":jar");
+            } else {
+                wlstExtClasspath.add(new File(workDirectory, "lib/extra" + index + ".jar").getAbsolutePath());
+            }
+        }
+        module = new WlstTestModule(project, workDirectory, workDirectory, wlstExtClasspath,
+                                    new File(workDirectory, "reports"), new File(workDirectory, "history"),
+                                    new File(workDirectory, "coverage.xml"));
+
+        Map<String, String> environmentVariables = new LinkedHashMap<>();
+        for (int index = 0; index < ENVIRONMENT_VARIABLE_COUNT; index++) {
+            environmentVariables.put("BENCHMARK_VARIABLE_" + index, "value" + index);
+        }
+        Map<String, String> systemProperties = new LinkedHashMap<>();
+        for (int index = 0; index < SYSTEM_PROPERTY_COUNT; index++) {
+            systemProperties.put("benchmark.property." + index, "value" + index);
+        }
+        // Use the log Maven gives the mojo at the default level since the fallback log prints debug messages
+        environment = new WlstEnvironment(null, false, false, environmentVariables, systemProperties,
+                                          "-Xmx1024m -Djava.security.egd=file:/dev/./urandom", null, false,
+                                          new DefaultLog(new ConsoleLogger(Logger.LEVEL_INFO, "benchmark")));
+
+        classpathContextKey = WlstEnvironment.WLST_EXT_CLASSPATH_CONTEXT_KEY_PREFIX
+            + outputDirectory.getCanonicalPath() + wlstExtClasspath;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticScriptTree.delete(workDirectory);
+    }
+
+    /**
+     * Resolve the wlstExtClasspath elements against the project's dependencies.
+     *
+     * @return the classpath entries
+     * @throws MojoExecutionException if an element cannot be resolved
+     */
+    @Benchmark
+    public List<String> resolveWlstExtClasspath() throws MojoExecutionException {
+        project.setContextValue(classpathContextKey, null);
+        return environment.getWlstExtClasspathEntries(module);
+    }
+
+    /**
+     * Get the wlstExtClasspath entries cached in the project context by an earlier execution.
+     *
+     * @return the classpath entries
+     * @throws MojoExecutionException if an element cannot be resolved
+     */
+    @Benchmark
+    public List<String> resolveWlstExtClasspathCached() throws MojoExecutionException {
+        return environment.getWlstExtClasspathEntries(module);
+    }
+
+    /**
+     * Build the complete environment of a WLST process.
+     *
+     * @return the environment variables
+     * @throws MojoExecutionException if an environment variable is not allowed or an element cannot be resolved
+     */
+    @Benchmark
+    public Map<String, String> buildEnvironmentVariables() throws MojoExecutionException {
+        project.setContextValue(classpathContextKey, null);
+        return environment.buildEnvironmentVariables(module, true);
+    }
+
+    /**
+     * Build the WLST_PROPERTIES value from the argLine and systemProperties.
+     *
+     * @return the WLST_PROPERTIES value
+     */
+    @Benchmark
+    public String buildWlstProperties() {
+        return environment.getWlstProperties();
+    }
+
+    private static String getGroupId(int artifactIndex) {
+        return "io.rhpatrick.benchmark.group" + (artifactIndex % GROUP_COUNT);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * ResultCacheServer.java - This class is a stand-in for the remote test
+ *     result cache of the WLST Test Maven Plugin, used by the end-to-end
+ *     harness of the benchmarks.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class serves a directory the way the remote test result cache is expected to behave, like a WebDAV
+ * directory or a generic HTTP artifact repository: a PUT request stores its body as the file named by the last
+ * segment of the request path, and a GET request returns that file or a 404 response if there is none.  It
+ * only listens on the loopback address.
+ * <p>
+ * Usage: <code>ResultCacheServer &lt;directory&gt; [&lt;port&gt; [&lt;port file&gt;]]</code>, where a port
+ * of 0, the default, picks a free port that is written to the port file once the server is listening.
+ */
+public final class ResultCacheServer {
+
+    private ResultCacheServer() {
+        // hide the constructor
+    }
+
+    /**
+     * Start the server.
+     *
+     * @param args the directory to serve, and optionally the port and the file to write the port to
+     * @throws IOException if the server cannot be started or the port file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ResultCacheServer <directory> [<port> [<port file>]]");
+            System.exit(2);
+        }
+        File directory = new File(args[0]).getAbsoluteFile();
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the directory " + directory);
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", new DirectoryHandler(directory));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        int boundPort = server.getAddress().getPort();
+        System.out.println("Serving the test result cache in " + directory + " at http://localhost:" + boundPort);
+        if (args.length > 2) {
+            File portFile = new File(args[2]);
+            File tempFile = new File(portFile.getPath() + ".tmp");
+            Files.write(tempFile.toPath(), String.valueOf(boundPort).getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), portFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static final class DirectoryHandler implements HttpHandler {
+        private final File directory;
+
+        private DirectoryHandler(File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String path = exchange.getRequestURI().getPath();
+                String name = path.substring(path.lastIndexOf('/') + 1);
+                File file = new File(directory, name);
+                if (name.isEmpty() || name.startsWith(".")) {
+                    sendStatus(exchange, 400);
+                } else if ("GET".equals(exchange.getRequestMethod())) {
+                    if (file.isFile()) {
+                        exchange.sendResponseHeaders(200, file.length());
+                        try (OutputStream outputStream = exchange.getResponseBody()) {
+                            Files.copy(file.toPath(), outputStream);
+                        }
+                    } else {
+                        sendStatus(exchange, 404);
+                    }
+                } else if ("PUT".equals(exchange.getRequestMethod())) {
+                    File tempFile = new File(directory, '.' + name + '.' + System.nanoTime());
+                    try (InputStream inputStream = exchange.getRequestBody()) {
+                        Files.copy(inputStream, tempFile.toPath());
+                    }
+                    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    sendStatus(exchange, 201);
+                } else {
+                    sendStatus(exchange, 405);
+                }
+                System.out.println(exchange.getRequestMethod() + ' ' + path + ' ' + exchange.getResponseCode());
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private static void sendStatus(HttpExchange exchange, int status) throws IOException {
+            exchange.sendResponseHeaders(status, -1);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * SyntheticScriptTree.java - This class generates directory trees of
+ *     Python scripts for the benchmarks of the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * This class generates a tree of Python packages shaped like a large WLST project.  The scripts are spread
+ * over two levels of packages with at most FILES_PER_PACKAGE scripts each, every TEST_FILE_INTERVAL-th script
+ * is a test module whose name matches the default includes, and every package has an __init__.py file.
+ */
+final class SyntheticScriptTree {
+    static final int TEST_FILE_INTERVAL = 3;
+
+    private static final int FILES_PER_PACKAGE = 50;
+    private static final int PACKAGES_PER_PARENT = 20;
+
+    private SyntheticScriptTree() {
+        // hide the constructor
+    }
+
+    /**
+     * Create the tree in a new temporary directory.
+     *
+     * @param scriptCount the number of scripts to create, not counting the __init__.py files
+     * @return the root directory of the tree
+     * @throws IOException if the tree cannot be written
+     */
+    static File create(int scriptCount) throws IOException {
+        Path rootDirectory = Files.createTempDirectory("wlst-test-benchmark");
+        byte[] moduleContent = "def value():\n    return 1\n".getBytes(StandardCharsets.UTF_8);
+        byte[] testContent = ("import unittest\n\nclass GeneratedTest(unittest.TestCase):\n"
+            + "    def test_value(self):\n        self.assertEqual(1, 1)\n").getBytes(StandardCharsets.UTF_8);
+        byte[] initContent = new byte[0];
+
+        Path packageDirectory = null;
+        for (int index = 0; index < scriptCount; index++) {
+            if (index % FILES_PER_PACKAGE == 0) {
+                int packageNumber = index / FILES_PER_PACKAGE;
+                Path parentDirectory =
+                    rootDirectory.resolve(String.format("pkg%03d", packageNumber / PACKAGES_PER_PARENT));
+                packageDirectory = parentDirectory.resolve(String.format("sub%03d", packageNumber));
+                Files.createDirectories(packageDirectory);
+                Files.write(parentDirectory.resolve("__init__.py"), initContent);
+                Files.write(packageDirectory.resolve("__init__.py"), initContent);
+            }
+
+            if (index % TEST_FILE_INTERVAL == 0) {
+                Files.write(packageDirectory.resolve(String.format("module%06d_test.py", index)), testContent);
+            } else {
+                Files.write(packageDirectory.resolve(String.format("module%06d.py", index)), moduleContent);
+            }
+        }
+        return rootDirectory.toFile();
+    }
+
+    /**
+     * Delete the tree.
+     *
+     * @param rootDirectory the root directory of the tree
+     * @throws IOException if the tree cannot be deleted
+     */
+    static void delete(File rootDirectory) throws IOException {
+        if (rootDirectory == null || !rootDirectory.exists()) {
+            return;
+        }
+
+        Files.walkFileTree(rootDirectory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException exc) throws IOException {
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * TestDiscoveryBenchmark.java - This class benchmarks how the WLST Test
+ *     Maven Plugin finds and filters the test files of a project.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the test discovery done by the test goal before WLST starts: walking the
+ * wlstTestsRootDirectory with the includes and excludes globs, and narrowing the result down with the
+ * test parameter.  The trees are generated once per trial, so the walks measure a warm file system cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TestDiscoveryBenchmark {
+    private static final List<String> EXCLUDES = Collections.singletonList("pkg00[0-4]/**");
+    private static final String TEST_FILTER = "module0000*_test,pkg010/**/module*5_test#test_value";
+
+    @Param({ "10000", "50000" })
+    public int scriptCount;
+
+    private File testsRootDirectory;
+    private TestFileScanner scanner;
+    private TestFileScanner excludingScanner;
+    private List<String> discoveredTests;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        testsRootDirectory = SyntheticScriptTree.create(scriptCount);
+        List<String> includes = Collections.singletonList(AbstractWLSTTestMojo.DEFAULT_TEST_INCLUDE);
+        scanner = new TestFileScanner(includes, Collections.<String>emptyList());
+        excludingScanner = new TestFileScanner(includes, EXCLUDES);
+        discoveredTests = scanner.scan(testsRootDirectory);
+        if (discoveredTests.size() != (scriptCount + SyntheticScriptTree.TEST_FILE_INTERVAL - 1)
+            / SyntheticScriptTree.TEST_FILE_INTERVAL) {
+            throw new IllegalStateException("Unexpected number of tests found: " + discoveredTests.size());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticScriptTree.delete(testsRootDirectory);
+    }
+
+    /**
+     * Find the tests with the default includes, the way the test goal does.
+     *
+     * @return the tests found
+     * @throws IOException if the tree cannot be walked
+     */
+    @Benchmark
+    public List<String> gatherTestsToRun() throws IOException {
+        return scanner.scan(testsRootDirectory);
+    }
+
+    /**
+     * Find the tests with an exclude glob that removes part of the tree.
+     *
+     * @return the tests found
+     * @throws IOException if the tree cannot be walked
+     */
+    @Benchmark
+    public List<String> scanWithExcludes() throws IOException {
+        return excludingScanner.scan(testsRootDirectory);
+    }
+
+    /**
+     * Narrow the tests found down with the test parameter.
+     *
+     * @return the matching tests
+     */
+    @Benchmark
+    public List<String> filterTestsToRun() {
+        return TestFileScanner.filterByTest(discoveredTests, TEST_FILTER);
+    }
+}
@@ -0,0 +1,2063 @@
+/*
+ * AbstractWLSTTestMojo.java - This class implements the parameters and
+ *     the test execution shared by the goals of the WLST Test Maven
+ *     Plugin that run WLST unit tests as part of a normal Maven build.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * This class holds the parameters and the test execution machinery shared by the test and test-aggregate
+ * goals.  The goals describe each Maven module whose tests they run with a WlstTestModule, prepare its
+ * tests with prepareTestRun, run them with runTests or runForkedTests, and report the results with
+ * finishTestRun.  The WLST environment, the runner of the executionMode, the forks, the result reporting and
+ * the test result cache are handled by the WlstEnvironment, TestRunner, ForkedTestRunner, TestResultReporter
+ * and TestRunCache classes.
+ */
+public abstract class AbstractWLSTTestMojo extends AbstractMojo {
+    static final String WLST_TEST_BASE_DIRECTORY = "target/wlst-tests";
+    // The locations of a module's execution directories, results and state, relative to its output directory
+    private static final String WLST_TEST_MAIN_EXEC_DIR = "main";
+    private static final String WLST_TEST_TEST_EXEC_DIR = "test";
+    private static final String WLST_TEST_FORK_EXEC_DIR_PREFIX = "fork-";
+    private static final String WLST_TEST_WORK_DIR = "work";
+    static final String DEFAULT_TEST_INCLUDE = "**/*[Tt][Ee][Ss][Tt].[Pp][Yy]";
+    private static final String PY_FILE_EXTENSION = ".py";
+    private static final String TEST_FILTER_METHOD_SEPARATOR = "#";
+    private static final String INCREMENTAL_INDEX_FILE = "incremental-index.properties";
+    private static final String WLST_TEST_RESULTS_DIR = "results";
+    private static final String WLST_TEST_OUTPUT_DIR = "output";
+    private static final String WLST_TEST_TIMINGS_DIR = "timings";
+    private static final String TIMINGS_FILE_FORMAT = "fork-%d-%d-timings.txt";
+    private static final String PERFORMANCE_SUMMARY_FILE = WLST_TEST_BASE_DIRECTORY + "/performance-summary.json";
+    private static final String WLST_TEST_COVERAGE_RUNS_DIR = "coverage-runs";
+    private static final String COVERAGE_DATA_FILE_FORMAT = "fork-%d-%d-coverage.data";
+    private static final String WLST_TEST_DOMAIN_CACHE_DIR = "domain-cache";
+    private static final String WLST_TEST_DOMAIN_COPIES_DIR = "domains";
+    private static final String DOMAIN_COPIES_DIR_FORMAT = "fork-%d-%d";
+    private static final String TIMESTAMP_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+    private static final String RUN_ORDER_STATE_FILE = "run-order.properties";
+    private static final String COMPILED_MODULE_MANIFEST_FILE = "compiled-modules.manifest";
+    private static final String WLST_TEST_RERUNS_DIR = "reruns";
+    private static final String RERUN_DIR_FORMAT = "rerun-%d";
+    private static final String RERUN_RESULTS_DIR = "results";
+    private static final String RERUN_REPORTS_DIR = "reports";
+
+    private static final int BUF_SIZE = 1024;
+    private static final boolean WINDOWS = File.separatorChar == '\\';
+    private static final String WLST_SCRIPT_NAME = WINDOWS ? "wlst.cmd" : "wlst.sh";
+    private static final String RUN_ALL_TESTS_RESOURCE_NAME = "io/rhpatrick/mojo/wlstTest/_wlst_test_driver.py";
+    private static final String RUN_ALL_TESTS_SCRIPT_NAME = "_wlst_test_driver.py";
+
+    private static final String WLST_DIR_NOT_SET = "NOT-SET";
+    private static final String FORK_COUNT_CPU_SUFFIX = "C";
+    private static final String DONT_WRITE_BYTECODE_SWITCH = "--dont-write-bytecode";
+    private static final String REPORTS_DIR_SWITCH = "--reports-dir=";
+    private static final String RESULTS_FILE_SWITCH = "--results-file=";
+    private static final String STOP_FILE_SWITCH = "--stop-file=";
+    private static final String SKIP_AFTER_FAILURE_COUNT_SWITCH = "--skip-after-failure-count=";
+    private static final String TEST_FILTER_SWITCH = "--test-filter=";
+    private static final String CLASS_CACHE_SWITCH = "--class-cache=";
+    private static final String CLASS_CACHE_MANIFEST_SWITCH = "--class-cache-manifest=";
+    private static final String PRECOMPILE_SWITCH = "--precompile=";
+    private static final String TIMINGS_FILE_SWITCH = "--timings-file=";
+    private static final String COVERAGE_DATA_SWITCH = "--coverage-data=";
+    private static final String COVERAGE_CACHE_SWITCH = "--coverage-cache=";
+    private static final String DOMAIN_COPIES_SWITCH = "--domain-copies=";
+    private static final String DOMAIN_CACHE_SWITCH = "--domain-cache=";
+    private static final String DOMAIN_COPY_MODE_SWITCH = "--domain-copy-mode=";
+    private static final String THREAD_COUNT_SWITCH = "--thread-count=";
+    private static final String MEASURE_RETAINED_HEAP_SWITCH = "--measure-retained-heap";
+
+    private static final String RUN_ORDER_FAILED_FIRST = "failedfirst";
+    private static final String RUN_ORDER_FILESYSTEM = "filesystem";
+
+    private static final String SYNC_MODE_COPY = "copy";
+    private static final String SYNC_MODE_CHECKSUM = "checksum";
+    private static final String SYNC_MODE_LINK = "link";
+    static final String SYNC_MODE_NONE = "none";
+
+    static final String EXECUTION_MODE_PROCESS = "process";
+    static final String EXECUTION_MODE_DAEMON = "daemon";
+    static final String EXECUTION_MODE_IN_PROCESS = "inProcess";
+    private static final String DAEMON_STATE_DIRECTORY = "daemons";
+    private static final String COMPILED_MODULE_CACHE_DIRECTORY = "compiled-modules";
+    private static final String COVERAGE_MODULE_CACHE_DIRECTORY = "coverage-modules";
+    private static final String CLASS_DATA_SHARING_CACHE_DIRECTORY = "cds";
+    private static final String RESULT_CACHE_DIRECTORY = "results";
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject mavenProject;
+
+    @Parameter(defaultValue = "${session}", required = true, readonly = true)
+    private MavenSession mavenSession;
+
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    private MojoExecution mojoExecution;
+
+    /**
+     * The map of environment variable names and values to use when running the WLST shell script.
+     */
+    @Parameter(property = "environmentVariables")
+    private Map<String, String> environmentVariables;
+
+    /**
+     * The version of the maven-dependency-plugin to use.
+     *
+     * @deprecated the plugin now resolves the wlstExtClasspath artifacts from the project's dependencies.
+     */
+    @Deprecated
+    @Parameter(property = "mavenDependencyPluginVersion", defaultValue = "3.4.0")
+    private String mavenDependencyPluginVersion;
+
+    /**
+     * The version of the exec-maven-plugin to use.
+     *
+     * @deprecated the plugin now starts the WLST processes itself instead of using the exec-maven-plugin.
+     */
+    @Deprecated
+    @Parameter(property = "execMavenPluginVersion", defaultValue = "3.1.0")
+    private String execMavenPluginVersion;
+
+    /**
+     * The version of the maven-resources-plugin to use.
+     *
+     * @deprecated the plugin no longer uses the maven-resources-plugin to copy the scripts; see syncMode.
+     */
+    @Deprecated
+    @Parameter(property = "mavenResourcesPluginVersion", defaultValue = "3.3.0")
+    private String mavenResourcesPluginVersion;
+
+    /**
+     * Controls whether WLST skips module scanning at startup.
+     */
+    @Parameter(property = "skipModuleScanning", defaultValue = "true")
+    private boolean skipModuleScanning;
+
+    /**
+     * The flag to use to skip running the tests.
+     */
+    @Parameter(property = "skipTests", defaultValue = "false")
+    private boolean skipTests;
+
+    /**
+     * The map of Java system property names and values to use when running the WLST shell script.
+     */
+    @Parameter(property = "systemProperties")
+    private Map<String, String> systemProperties;
+
+    /**
+     * Additional JVM arguments that will be included as WLST_PROPERTIES to WLST.
+     * For example, the argLine generated by the Jacoco plugin for code coverage.
+     */
+    @Parameter(property = "argLine")
+    private String argLine;
+
+    /**
+     * The additional classpath elements to add to the WLST_EXT_CLASSPATH besides the normal
+     * target/classes directory (which is added automatically).  This list supports both
+     * file paths or the coordinates of one of the project's dependencies in the format:
+     *
+     * <P><code>&lt;group-id&gt;:&lt;artifact-id&gt;:&lt;type&lt;</code></P>
+     *
+     * <P>For example, org.antlr:antlr4-runtime:jar</P>
+     */
+    @Parameter(property = "wlstExtClasspath")
+    private List<String> wlstExtClasspath;
+
+    /**
+     * In versions of WLST 12.1.3 and older, the wlst.sh/wlst.cmd scripts used the CLASSPATH environment
+     * variable to add JAR files to the WLST execution environment. This changed in WLST 12.2.1 where
+     * CLASSPATH is now ignored (due to new classloading strategies). To allow adding JARs to the base
+     * WLST classpath, Oracle introduced a new WLST_EXT_CLASSPATH environment variable.
+     *
+     * By default, the plugin assumes it is using WLST 12.2.1 or newer, so it used the WLST_EXT_CLASSPATH
+     * environment variable to add the wlstExtClasspath parameter elements to the WLST execution environment.
+     * To execute in an older version, set this property to true and the plugin will use the CLASSPATH
+     * environment variable instead.
+     */
+    @Parameter(property = "usingOldWlstVersion", defaultValue = "false")
+    private boolean usingOldWlstVersion;
+
+    /**
+     * The directory where wlst.sh/wlst.cmd is located.  The test goal does not use it when its oracleHomes
+     * parameter is set.
+     */
+    @Parameter(property = "wlstScriptDirectory", required = true, defaultValue = WLST_DIR_NOT_SET)
+    private File wlstScriptDirectory;
+
+    /**
+     * The directory where the plugin looks for WLST source scripts being tested.
+     */
+    @Parameter(property = "wlstSourcesRootDirectory", defaultValue = "${project.basedir}/src/main/python")
+    private File wlstSourcesRootDirectory;
+
+    /**
+     * The directory where the plugin looks for WLST unit tests.
+     */
+    @Parameter(property = "wlstTestsRootDirectory", defaultValue = "${project.basedir}/src/test/python")
+    private File wlstTestsRootDirectory;
+
+    /**
+     * The verbosity level for messages from the unittest suite.  Default is verbose (2).
+     * <ul>
+     *   <li>0 (quiet): Outputs the total number of tests executed and the final result</li>
+     *   <li>1 (default): Outputs the same as 'quiet' plus a dot for every successful test or F for each failure</li>
+     *   <li>2 (verbose): Outputs the help string of every test and the each result</li>
+     * </ul>
+     */
+    @Parameter(property = "verbosity", defaultValue = "2")
+    private Integer verbosity;
+
+    /**
+     * The maximum number of WLST processes to run concurrently.  The value can either be a positive
+     * integer or a positive number followed by C (for example, 1.5C), in which case the value is
+     * multiplied by the number of available CPU cores.  The default of 1 runs all tests in a single
+     * WLST process.
+     */
+    @Parameter(property = "forkCount", defaultValue = "1")
+    private String forkCount;
+
+    /**
+     * Controls whether a forked WLST process runs its entire share of the test files (true) or
+     * whether a new WLST process is started for each test file (false).
+     */
+    @Parameter(property = "reuseForks", defaultValue = "true")
+    private boolean reuseForks;
+
+    /**
+     * Controls whether only the test files affected by changes since the last successful run are executed.
+     * The plugin keeps an index of the content hashes and static imports of the files in the
+     * wlstSourcesRootDirectory and wlstTestsRootDirectory trees under target/wlst-tests and uses it to
+     * select the test files that changed or that import a changed module, directly or indirectly.
+     */
+    @Parameter(property = "incremental", defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * How the scripts in the wlstSourcesRootDirectory and wlstTestsRootDirectory trees are made available
+     * to WLST.  Files deleted from the source trees are removed from the execution directories.
+     * <ul>
+     *   <li>copy (default): copies the files whose size or modification time changed to target/wlst-tests</li>
+     *   <li>checksum: copies the files whose size or content changed to target/wlst-tests</li>
+     *   <li>link: hard links the files into target/wlst-tests, copying them if the file system cannot link them</li>
+     *   <li>none: runs the tests directly from the source trees and disables writing Jython class files</li>
+     * </ul>
+     */
+    @Parameter(property = "syncMode", defaultValue = SYNC_MODE_COPY)
+    private String syncMode;
+
+    /**
+     * How WLST is run to execute the tests.
+     * <ul>
+     *   <li>process (default): starts a new WLST process for each test run</li>
+     *   <li>daemon: runs the tests in a long-lived WLST process that is started on first use and reused
+     *       by later test runs, reactor modules and builds with the same WLST script, environment variables
+     *       and Java system properties.  The wlstExtClasspath elements are added to the Jython path of the
+     *       daemon for each test run instead of to the WLST classpath, and the daemon is restarted when a
+     *       classpath element it already loaded changes or when it stops responding.</li>
+     *   <li>inProcess: runs the tests in a Jython interpreter loaded from the WLST JAR files into the Maven
+     *       JVM, which avoids starting a process at all.  The interpreter is reused by later test runs in
+     *       the same build.  The environmentVariables and argLine parameters cannot be applied in this mode
+     *       and the systemProperties are added to the Jython registry of the interpreter instead of being
+     *       set in the Maven JVM.</li>
+     * </ul>
+     */
+    @Parameter(property = "executionMode", defaultValue = EXECUTION_MODE_PROCESS)
+    private String executionMode;
+
+    /**
+     * The JAR files used to load WLST and Jython when executionMode is inProcess.  By default, the plugin
+     * finds the WLST JAR files in the Oracle Home containing the wlstScriptDirectory.
+     */
+    @Parameter(property = "inProcessClasspath")
+    private List<String> inProcessClasspath;
+
+    /**
+     * The number of minutes a WLST daemon waits for a test run before exiting.
+     */
+    @Parameter(property = "daemonIdleTimeout", defaultValue = "60")
+    private int daemonIdleTimeout;
+
+    /**
+     * The directory where the plugin keeps the state that it shares between builds, such as the WLST daemon
+     * state and log files and the compiled module cache.
+     */
+    @Parameter(property = "pluginCacheDirectory",
+               defaultValue = "${settings.localRepository}/.cache/wlst-test-maven-plugin")
+    private File pluginCacheDirectory;
+
+    /**
+     * The directory where the surefire-format XML test reports are written.
+     */
+    @Parameter(property = "reportsDirectory", defaultValue = "${project.build.directory}/surefire-reports")
+    private File reportsDirectory;
+
+    /**
+     * The file where the plugin keeps the cumulative timing history of each test.  Point this file outside
+     * the build directory to keep the history across clean builds.
+     */
+    @Parameter(property = "timingHistoryFile",
+               defaultValue = "${project.build.directory}/wlst-tests/timing-history.properties")
+    private File timingHistoryFile;
+
+    /**
+     * The number of slowest tests to list after the test run, or 0 to not list them.
+     */
+    @Parameter(property = "slowTestsToReport", defaultValue = "10")
+    private int slowTestsToReport;
+
+    /**
+     * A test is reported as a timing regression when its duration exceeds its average duration in the
+     * timing history by this factor.
+     */
+    @Parameter(property = "timingRegressionFactor", defaultValue = "2.0")
+    private double timingRegressionFactor;
+
+    /**
+     * The number of tests that retained the most heap, and of tests that left the most threads running, to
+     * list after the test run, or 0 to not list them.  The heap and threads are shared by the tests running
+     * in a WLST process, so they are only measured for the tests that run alone, which are the tests marked
+     * not_thread_safe when threadCount is above 1.  The heap is only listed when measureRetainedHeap is true.
+     */
+    @Parameter(property = "leakingTestsToReport", defaultValue = "5")
+    private int leakingTestsToReport;
+
+    /**
+     * Controls whether the test driver collects the garbage before and after each test so that the heap the
+     * test retains can be measured.  This slows the tests down, so it is only done when this parameter is
+     * true or heapLeakThresholdInMegabytes is set.
+     */
+    @Parameter(property = "measureRetainedHeap", defaultValue = "false")
+    private boolean measureRetainedHeap;
+
+    /**
+     * The tests fail when a test retains more than this many megabytes of heap, or 0 to not check the heap.
+     * Setting it also sets measureRetainedHeap.
+     */
+    @Parameter(property = "heapLeakThresholdInMegabytes", defaultValue = "0")
+    private int heapLeakThresholdInMegabytes;
+
+    /**
+     * The tests fail when more than this many threads that were not running before a test are still running
+     * after it, or 0 to not check the threads.
+     */
+    @Parameter(property = "threadLeakThreshold", defaultValue = "0")
+    private int threadLeakThreshold;
+
+    /**
+     * Stop running tests after the first failed test.  This is the same as setting skipAfterFailureCount to 1.
+     */
+    @Parameter(property = "failFast", defaultValue = "false")
+    private boolean failFast;
+
+    /**
+     * Stop running tests once this many tests have failed, across all forked WLST processes.  Each WLST
+     * process finishes the test it is running and skips the rest, and no more test files are scheduled.
+     * The default of 0 runs all tests.
+     */
+    @Parameter(property = "skipAfterFailureCount", defaultValue = "0")
+    private int skipAfterFailureCount;
+
+    /**
+     * The number of times the failing tests are run again before they fail the build.  The reruns only run
+     * the failing tests, in a new run of the test driver in the already synchronized execution directories.
+     * A test that passes on a rerun is reported as flaky instead of failed, and its failures are kept in its
+     * XML report as flakyFailure and flakyError elements, the way the maven-surefire-plugin reports them.
+     * The tests are not run again when a WLST run crashed or timed out, or when failFast or
+     * skipAfterFailureCount skipped tests.  The default of 0 does not run the failing tests again.
+     */
+    @Parameter(property = "rerunFailingTestsCount", defaultValue = "0")
+    private int rerunFailingTestsCount;
+
+    /**
+     * The order in which the test files run.
+     * <ul>
+     *   <li>failedfirst (default): the test files that failed in the previous run come first, followed by
+     *       the test files that changed since the previous run, followed by the rest</li>
+     *   <li>filesystem: the order of the test file paths in the wlstTestsRootDirectory</li>
+     * </ul>
+     */
+    @Parameter(property = "runOrder", defaultValue = RUN_ORDER_FAILED_FIRST)
+    private String runOrder;
+
+    /**
+     * The globs, relative to the wlstTestsRootDirectory, of the test files to run.  The default runs all
+     * files whose name ends in test.py, ignoring case.
+     */
+    @Parameter(property = "includes")
+    private List<String> includes;
+
+    /**
+     * The globs, relative to the wlstTestsRootDirectory, of the test files not to run.
+     */
+    @Parameter(property = "excludes")
+    private List<String> excludes;
+
+    /**
+     * Run only the specified tests.  This is a comma-separated list of test modules, optionally followed by
+     * a dot and the test class name, and then by a # and the test method names separated by +.  Each part
+     * may use * and ? wildcards.  For example, <code>-Dtest=calc_test#test_add+test_sub</code> or
+     * <code>-Dtest=util_*.UtilTest</code>.
+     */
+    @Parameter(property = "test")
+    private String test;
+
+    /**
+     * Controls whether the build fails if the test parameter does not match any test files.
+     */
+    @Parameter(property = "failIfNoSpecifiedTests", defaultValue = "true")
+    private boolean failIfNoSpecifiedTests;
+
+    /**
+     * Controls whether the Jython-compiled classes of the Python modules are kept in a cache in the
+     * pluginCacheDirectory, keyed by the module's content hash and the Jython version, so that modules
+     * that did not change are not compiled again by later builds.  The cache is not used when syncMode
+     * is none.
+     */
+    @Parameter(property = "compiledModuleCache", defaultValue = "true")
+    private boolean compiledModuleCache;
+
+    /**
+     * The number of threads the test driver uses to compile the Python modules that are not in the compiled
+     * module cache before the tests start.  The default of 0 compiles the modules as the tests import them.
+     */
+    @Parameter(property = "precompileThreads", defaultValue = "0")
+    private int precompileThreads;
+
+    /**
+     * The number of seconds after which a WLST process started to run the tests is killed, after writing
+     * a thread dump of the WLST JVM to the process output file.  In daemon mode, a daemon whose test run takes
+     * longer is killed and the next test run starts a new one.  The default of 0 waits forever.  This cannot be
+     * used when executionMode is inProcess.
+     */
+    @Parameter(property = "forkedProcessTimeoutInSeconds", defaultValue = "0")
+    private int forkedProcessTimeoutInSeconds;
+
+    /**
+     * Controls whether the output of the WLST processes is only written to the output files under
+     * target/wlst-tests/output instead of also being shown on the console.  This only applies when
+     * executionMode is process.
+     */
+    @Parameter(property = "redirectTestOutputToFile", defaultValue = "false")
+    private boolean redirectTestOutputToFile;
+
+    /**
+     * Controls whether a table of the time spent in each phase of the goal and in each step of the test
+     * driver is printed at the end of the goal.  The table is printed at debug level when this is false,
+     * and the summary is always written to target/wlst-tests/performance-summary.json.
+     */
+    @Parameter(property = "performanceSummary", defaultValue = "false")
+    private boolean performanceSummary;
+
+    /**
+     * Controls whether the line coverage of the Python modules in wlstSourcesRootDirectory is recorded while
+     * the tests run.  The coverage of all forks is merged into a Cobertura XML report, and it accumulates
+     * across incremental runs and runs limited by the test parameter until a complete run starts it over.
+     * The instrumented modules are cached in the pluginCacheDirectory.  This needs Jython 2.5 or later.
+     */
+    @Parameter(property = "coverage", defaultValue = "false")
+    private boolean coverage;
+
+    /**
+     * The file where the Cobertura XML coverage report is written when coverage is enabled.
+     */
+    @Parameter(property = "coverageReportFile", defaultValue = "${project.build.directory}/wlst-coverage/coverage.xml")
+    private File coverageReportFile;
+
+    /**
+     * Controls whether the domains that tests get from the wlst_test_fixtures module are kept in
+     * target/wlst-tests/domain-cache, so that each domain is only built again when its template,
+     * configuration or input files change.  When false, every test run builds its domains again.
+     */
+    @Parameter(property = "domainFixtureCache", defaultValue = "true")
+    private boolean domainFixtureCache;
+
+    /**
+     * How each test gets its own copy of a cached domain fixture.
+     * <ul>
+     *   <li>copy (default): copies the files of the domain</li>
+     *   <li>link: hard links the files of the domain, copying them if the file system cannot link them.  This
+     *       is only safe for tests that do not change the domain's files in place.</li>
+     * </ul>
+     */
+    @Parameter(property = "domainFixtureCopyMode", defaultValue = SYNC_MODE_COPY)
+    private String domainFixtureCopyMode;
+
+    /**
+     * Controls whether the WLST JVMs start from an AppCDS archive of the classes they load.  The first run
+     * records the loaded classes and the archive is then created with the same JVM and kept in the
+     * pluginCacheDirectory, keyed by the WLST script and the WLST environment, including the
+     * WLST_EXT_CLASSPATH.  The archive is created again when the test driver reports a different JVM or
+     * classpath.  This only applies when executionMode is process and needs a JDK that supports AppCDS.
+     */
+    @Parameter(property = "classDataSharing", defaultValue = "false")
+    private boolean classDataSharing;
+
+    /**
+     * The number of threads each WLST process uses to run the tests.  The tests of a test class, or of a
+     * test module that has module fixtures, always run on the same thread, and the output of each test is
+     * written once the test completes so that the output of concurrent tests does not mix.  Test classes and
+     * modules that use the global state of WLST, such as the current connection or edit session, can be
+     * marked with the not_thread_safe decorator or attribute of the wlst_test_fixtures module so that they
+     * run on their own after the other tests.  The default of 1 runs the tests one at a time.
+     */
+    @Parameter(property = "threadCount", defaultValue = "1")
+    private int threadCount;
+
+    /**
+     * Controls whether the test goal keeps the results and reports of passing test runs in a cache in the
+     * pluginCacheDirectory, keyed by the hash of the WLST source and test scripts, the resolved
+     * wlstExtClasspath, the WLST environment and system properties, the argLine, the test driver and the
+     * Oracle Home version.  When a later run has the same key, the plugin restores the results and reports
+     * instead of starting WLST.  The key does not depend on where the project is, so the cache can be
+     * shared between CI agents with resultCacheUrl as long as the environment variables and system
+     * properties do not hold agent-specific paths.
+     */
+    @Parameter(property = "resultCache", defaultValue = "false")
+    private boolean resultCache;
+
+    /**
+     * The size in megabytes past which the least recently used entries of the local test result cache are
+     * removed.
+     */
+    @Parameter(property = "resultCacheMaxSizeInMegabytes", defaultValue = "256")
+    private int resultCacheMaxSizeInMegabytes;
+
+    /**
+     * The base URL of a remote test result cache, such as a WebDAV directory or a generic HTTP artifact
+     * repository.  Entries missing from the local cache are downloaded from
+     * <code>&lt;resultCacheUrl&gt;/&lt;key&gt;.zip</code> with a GET request.
+     */
+    @Parameter(property = "resultCacheUrl")
+    private String resultCacheUrl;
+
+    /**
+     * Controls whether new test result cache entries are uploaded to the resultCacheUrl with a PUT request.
+     * This is usually only enabled on the CI agents that build the main branches.
+     */
+    @Parameter(property = "resultCachePush", defaultValue = "false")
+    private boolean resultCachePush;
+
+    private File wlstScript;
+    private int forks;
+    private boolean isDebug = false;
+    private final AtomicInteger testRunSequence = new AtomicInteger();
+    private int failureThreshold;
+    private TestResultMonitor testResultMonitor;
+    private PhaseTimer phaseTimer;
+    private WlstEnvironment wlstEnvironment;
+    private TestRunner testRunner;
+    private TestResultReporter testResultReporter;
+
+    /**
+     * The entry point for the plugin goal.
+     *
+     * @throws MojoExecutionException if a configuration or execution environment-related error occurs
+     * @throws MojoFailureException   if an unexpected error occurs related to a plugin or Maven failure
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skipTests) {
+            getLog().info(getMessage("WLSTTEST-018"));
+            return;
+        } else if (getLog().isDebugEnabled()) {
+            isDebug = true;
+        }
+
+        phaseTimer = new PhaseTimer();
+        long phaseStart = phaseTimer.start();
+        verifyArguments();
+        createCollaborators();
+        phaseTimer.stop("verify arguments", phaseStart);
+        try {
+            executeTests();
+        } finally {
+            reportPerformanceSummary();
+        }
+    }
+
+    /**
+     * Run the goal's tests once the arguments have been verified.
+     *
+     * @throws MojoExecutionException if a configuration or execution environment-related error occurs
+     * @throws MojoFailureException   if an unexpected error occurs related to a plugin or Maven failure
+     */
+    protected abstract void executeTests() throws MojoExecutionException, MojoFailureException;
+
+    /**
+     * Create the objects that run the tests and report their results from the verified arguments.
+     */
+    private void createCollaborators() {
+        wlstEnvironment = new WlstEnvironment(wlstScript, usingOldWlstVersion, skipModuleScanning,
+                                              environmentVariables, systemProperties, argLine, inProcessClasspath,
+                                              isDebug, getLog());
+        if (EXECUTION_MODE_DAEMON.equals(getExecutionMode())) {
+            File stateDirectory = getCanonicalFile(new File(pluginCacheDirectory, DAEMON_STATE_DIRECTORY));
+            testRunner = new DaemonTestRunner(wlstEnvironment, stateDirectory, daemonIdleTimeout,
+                                              forkedProcessTimeoutInSeconds, getLog());
+        } else if (EXECUTION_MODE_IN_PROCESS.equals(getExecutionMode())) {
+            testRunner = new InProcessTestRunner(wlstEnvironment, getLog());
+        } else {
+            File cacheDirectory = classDataSharing
+                ? getCanonicalFile(new File(pluginCacheDirectory, CLASS_DATA_SHARING_CACHE_DIRECTORY)) : null;
+            testRunner = new ProcessTestRunner(wlstEnvironment, cacheDirectory, redirectTestOutputToFile,
+                                               forkedProcessTimeoutInSeconds, phaseTimer, getLog());
+        }
+        testResultReporter = new TestResultReporter(slowTestsToReport, timingRegressionFactor, leakingTestsToReport,
+                                                    heapLeakThresholdInMegabytes, threadLeakThreshold, getLog());
+    }
+
+    /**
+     * Get how WLST is run to execute the tests.
+     *
+     * @return the execution mode
+     */
+    protected String getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Get how the scripts are synchronized to the execution directories.
+     *
+     * @return the sync mode
+     */
+    protected String getSyncMode() {
+        return syncMode;
+    }
+
+    protected MavenProject getMavenProject() {
+        return mavenProject;
+    }
+
+    protected MavenSession getMavenSession() {
+        return mavenSession;
+    }
+
+    protected int getForks() {
+        return forks;
+    }
+
+    protected String getTest() {
+        return test;
+    }
+
+    protected boolean isFailIfNoSpecifiedTests() {
+        return failIfNoSpecifiedTests;
+    }
+
+    /**
+     * Get whether only the test files affected by changes since the last successful run are executed.
+     *
+     * @return true if the tests are selected incrementally
+     */
+    protected boolean isIncremental() {
+        return incremental;
+    }
+
+    protected PhaseTimer getPhaseTimer() {
+        return phaseTimer;
+    }
+
+    /**
+     * Create the module described by the plugin parameters of the project the goal runs in.
+     *
+     * @return the module
+     */
+    protected WlstTestModule createProjectModule() {
+        return new WlstTestModule(mavenProject, wlstSourcesRootDirectory, wlstTestsRootDirectory, wlstExtClasspath,
+                                  reportsDirectory, timingHistoryFile, coverageReportFile);
+    }
+
+    /**
+     * Synchronize the module's scripts to its execution directories and choose the test files to run and
+     * their order.
+     *
+     * @param module                  the module
+     * @param testsDriverScript       the driver script
+     * @param testsToRunRelativePaths the test files found in the module, relative to its wlstTestsRootDirectory
+     * @return the test files to run in the module's test execution directory, which is empty if incremental
+     *         test selection found nothing to run
+     * @throws MojoExecutionException if the scripts cannot be synchronized or the test state cannot be read
+     */
+    protected List<File> prepareTestRun(WlstTestModule module, File testsDriverScript,
+                                        List<String> testsToRunRelativePaths) throws MojoExecutionException {
+        synchronizeScripts(module);
+        return prepareSynchronizedTestRun(module, testsDriverScript, testsToRunRelativePaths,
+                                          Collections.<File>emptySet());
+    }
+
+    /**
+     * Synchronize the module's scripts to its execution directories.
+     *
+     * @param module the module
+     * @throws MojoExecutionException if the scripts cannot be synchronized
+     */
+    protected void synchronizeScripts(WlstTestModule module) throws MojoExecutionException {
+        long phaseStart = phaseTimer.start();
+        synchronizeScriptsToTargetDirectory(module, getTestScriptsExecutionDirectory(module));
+        phaseTimer.stop("synchronize scripts", phaseStart);
+    }
+
+    /**
+     * Give the module of an Oracle Home its own execution directories by hard linking them to the execution
+     * directories of the module they were synchronized to, so that the Jython-compiled classes of each
+     * Oracle Home's WLST version are written next to its own copy of the scripts.  The files are copied
+     * where hard links are not supported.  The scripts must have been synchronized, that is, the syncMode
+     * cannot be none.
+     *
+     * @param sharedModule the module whose scripts are synchronized
+     * @param homeModule   the module of the Oracle Home
+     * @throws MojoExecutionException if the execution directories cannot be created
+     */
+    protected void linkOracleHomeScripts(WlstTestModule sharedModule, WlstTestModule homeModule)
+        throws MojoExecutionException {
+        long phaseStart = phaseTimer.start();
+        createDirectoryIfNeeded(getCanonicalFile(homeModule.getOutputDirectory()), "Oracle Home output");
+        File targetSourcesDir = getMainScriptsExecutionDirectory(homeModule);
+        createDirectoryIfNeeded(targetSourcesDir, "Sources Execution");
+        synchronizeScriptTree(ScriptTreeSynchronizer.Mode.LINK, "Sources",
+                              getMainScriptsExecutionDirectory(sharedModule), targetSourcesDir, null);
+
+        File targetTestsDir = getTestScriptsExecutionDirectory(homeModule);
+        createDirectoryIfNeeded(targetTestsDir, "Test Sources Execution");
+        synchronizeScriptTree(ScriptTreeSynchronizer.Mode.LINK, "Test Sources",
+                              getTestScriptsExecutionDirectory(sharedModule), targetTestsDir, null);
+        phaseTimer.stop("link Oracle Home scripts", phaseStart);
+    }
+
+    /**
+     * Choose the test files to run and their order once the module's scripts are synchronized to its execution
+     * directories.
+     *
+     * @param module                  the module
+     * @param testsDriverScript       the driver script
+     * @param testsToRunRelativePaths the test files found in the module, relative to its wlstTestsRootDirectory
+     * @param rerunTestFiles          the test files in the module's test execution directory to run even if
+     *                                incremental test selection does not choose them
+     * @return the test files to run in the module's test execution directory, which is empty if incremental
+     *         test selection found nothing to run
+     * @throws MojoExecutionException if the test state cannot be read
+     */
+    protected List<File> prepareSynchronizedTestRun(WlstTestModule module, File testsDriverScript,
+                                                    List<String> testsToRunRelativePaths,
+                                                    Collection<File> rerunTestFiles)
+        throws MojoExecutionException {
+        File testScriptsExecutionDirectory = getTestScriptsExecutionDirectory(module);
+        long phaseStart = phaseTimer.start();
+        writeCompiledModuleManifest(module, testScriptsExecutionDirectory);
+        phaseTimer.stop("write compiled module manifest", phaseStart);
+
+        List<String> selectedTests = testsToRunRelativePaths;
+        if (isIncremental()) {
+            phaseStart = phaseTimer.start();
+            IncrementalTestSelector testSelector = createIncrementalTestSelector(module, testsDriverScript);
+            module.setIncrementalTestSelector(testSelector);
+            selectedTests = selectIncrementalTests(testSelector, selectedTests, testScriptsExecutionDirectory,
+                                                   rerunTestFiles);
+            phaseTimer.stop("select incremental tests", phaseStart);
+            if (selectedTests.isEmpty()) {
+                getLog().info(getMessage("WLSTTEST-027"));
+                saveIncrementalIndex(module);
+                return new ArrayList<>();
+            }
+        }
+
+        List<File> testsToRunTargetFiles = new ArrayList<>(selectedTests.size());
+        for (String testToRunRelativePath : selectedTests) {
+            testsToRunTargetFiles.add(new File(testScriptsExecutionDirectory, testToRunRelativePath));
+        }
+
+        prepareResultsDirectory(module);
+        module.setRunStart(System.currentTimeMillis());
+        module.setIncompleteRun(false);
+        if (RUN_ORDER_FAILED_FIRST.equals(runOrder)) {
+            File stateFile = getCanonicalFile(new File(module.getOutputDirectory(), RUN_ORDER_STATE_FILE));
+            TestRunOrder testRunOrder = new TestRunOrder(stateFile);
+            module.setTestRunOrder(testRunOrder);
+            testsToRunTargetFiles = orderTests(testRunOrder, testsToRunTargetFiles);
+        }
+        return testsToRunTargetFiles;
+    }
+
+    /**
+     * Run the module's prepared test files, in forked WLST processes if there is more than one fork, and read
+     * their results whether or not they pass.
+     *
+     * @param module            the module
+     * @param testsDriverScript the driver script
+     * @param testsToRun        the test files to run in the module's test execution directory
+     * @return the results of the tests that ran
+     * @throws MojoExecutionException if the tests fail, also when they are run again if rerunFailingTestsCount
+     *                                is set, exceed the resource leak thresholds or cannot be run
+     */
+    protected List<TestResultRecord> runModuleTests(WlstTestModule module, File testsDriverScript,
+                                                    List<File> testsToRun) throws MojoExecutionException {
+        File resultsDirectory = getResultsDirectory(module);
+        startTestResultMonitor(Collections.singletonList(resultsDirectory),
+                               new File(resultsDirectory, TestResultMonitor.STOP_FILE_NAME));
+        if (EXECUTION_MODE_IN_PROCESS.equals(getExecutionMode())) {
+            warnAboutIgnoredInProcessParameters();
+        }
+        List<TestResultRecord> testResults;
+        MojoExecutionException runFailure = null;
+        try {
+            if (getForks() > 1 && testsToRun.size() > 1) {
+                runForkedTests(module, testsDriverScript, testsToRun);
+            } else {
+                runTests(module, 1, getWorkingDirectory(module), testsDriverScript, testsToRun);
+            }
+        } catch (MojoExecutionException mee) {
+            runFailure = mee;
+        } finally {
+            stopTestResultMonitor();
+            testResults = finishTestRun(module);
+        }
+
+        if (runFailure != null) {
+            int failedTestCount = rerunFailingTests(module, testsDriverScript, testsToRun, testResults);
+            if (failedTestCount < 0) {
+                throw runFailure;
+            } else if (failedTestCount > 0) {
+                throw new MojoExecutionException(getMessage("WLSTTEST-103", failedTestCount,
+                                                            rerunFailingTestsCount + 1));
+            }
+        }
+
+        int leakingTestCount = checkResourceLeaks(testResults);
+        if (leakingTestCount > 0) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-099", leakingTestCount));
+        }
+        return testResults;
+    }
+
+    /**
+     * Read the results of the module's tests, report their timings and save the state used to order the
+     * next run.
+     *
+     * @param module the module
+     * @return the results of the tests that ran
+     */
+    protected List<TestResultRecord> finishTestRun(WlstTestModule module) {
+        File timingsDirectory = getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_TIMINGS_DIR));
+        try {
+            phaseTimer.readDriverTimings(timingsDirectory);
+        } catch (IOException ioe) {
+            getLog().warn(getMessage("WLSTTEST-076", timingsDirectory.getAbsolutePath(), ioe.getLocalizedMessage()));
+        }
+
+        long phaseStart = phaseTimer.start();
+        List<TestResultRecord> testResults = readTestResults(getResultsDirectory(module));
+        testResultReporter.reportTestTimings(module, testResults, isEmpty(test));
+        testResultReporter.reportResourceUsage(testResults);
+        if (module.getTestRunOrder() != null) {
+            saveTestRunOrder(module.getTestRunOrder(), module.getRunStart(), testResults);
+        }
+        phaseTimer.stop("read results and update timing history", phaseStart);
+        if (coverage) {
+            phaseStart = phaseTimer.start();
+            testResultReporter.reportCoverage(module, getCoverageRunsDirectory(module),
+                                              isIncremental() || !isEmpty(test));
+            phaseTimer.stop("merge coverage and write report", phaseStart);
+        }
+        return testResults;
+    }
+
+    /**
+     * Log the tests that retained more heap or left more threads running than the leak thresholds allow.
+     *
+     * @param testResults the results of the tests that ran
+     * @return the number of tests that exceeded a leak threshold
+     */
+    protected int checkResourceLeaks(List<TestResultRecord> testResults) {
+        return testResultReporter.checkResourceLeaks(testResults);
+    }
+
+    /**
+     * Run the failing tests of the module's last run again, up to rerunFailingTestsCount times or until they
+     * pass, and report which of them are flaky.  The reruns are added to the module's XML reports.
+     *
+     * @param module            the module
+     * @param testsDriverScript the driver script
+     * @param testsToRun        the test files of the last run in the module's test execution directory
+     * @param testResults       the results of the last run
+     * @return the number of tests that failed in every run, or -1 if the failing tests cannot be run again
+     * @throws MojoExecutionException if the rerun directories cannot be prepared
+     */
+    protected int rerunFailingTests(WlstTestModule module, File testsDriverScript, List<File> testsToRun,
+                                    List<TestResultRecord> testResults) throws MojoExecutionException {
+        Set<String> failingTestIds = TestResultRecord.getFailedTestIds(testResults);
+        if (rerunFailingTestsCount == 0 || failingTestIds.isEmpty() || module.isIncompleteRun()
+            || isStopRequested()) {
+            return -1;
+        }
+
+        RerunReportMerger reportMerger = null;
+        try {
+            reportMerger = new RerunReportMerger(getCanonicalFile(module.getReportsDirectory()));
+        } catch (IOException ioe) {
+            getLog().warn(getMessage("WLSTTEST-104", module.getReportsDirectory(), ioe.getLocalizedMessage()));
+        }
+        Map<String, Integer> flakyTests = new LinkedHashMap<>();
+        int runCount = 1;
+        while (runCount <= rerunFailingTestsCount && !failingTestIds.isEmpty()) {
+            File rerunDirectory = getRerunDirectory(module, runCount);
+            File resultsDirectory = new File(rerunDirectory, RERUN_RESULTS_DIR);
+            File reportsDirectory = new File(rerunDirectory, RERUN_REPORTS_DIR);
+            createDirectoryIfNeeded(resultsDirectory, "Rerun Results");
+            deleteOldFiles(resultsDirectory);
+            createDirectoryIfNeeded(reportsDirectory, "Rerun Reports");
+            deleteOldFiles(reportsDirectory);
+
+            getLog().info(getMessage("WLSTTEST-100", failingTestIds.size(), runCount, rerunFailingTestsCount));
+            module.setRerun(runCount, getRerunTestFilter(failingTestIds));
+            module.setIncompleteRun(false);
+            try {
+                runTests(module, 1, getWorkingDirectory(module), testsDriverScript,
+                         getRerunTestFiles(testsToRun, failingTestIds));
+            } catch (MojoExecutionException mee) {
+                getLog().debug(mee.getMessage());
+            } finally {
+                module.setRerun(0, null);
+            }
+
+            List<TestResultRecord> rerunResults = readTestResults(resultsDirectory);
+            Set<String> rerunFailingTestIds = TestResultRecord.getFailedTestIds(rerunResults);
+            Set<String> passedTestIds = new HashSet<>();
+            for (TestResultRecord rerunResult : rerunResults) {
+                if (TestResultRecord.STATUS_PASS.equals(rerunResult.getStatus())) {
+                    passedTestIds.add(rerunResult.getTestId());
+                }
+            }
+            for (String testId : failingTestIds) {
+                // A class or module fixture that no longer fails has no result of its own
+                boolean passed = TestResultRecord.isFixtureTestId(testId) ? !rerunFailingTestIds.contains(testId)
+                                                                          : passedTestIds.contains(testId);
+                if (passed && !module.isIncompleteRun()) {
+                    flakyTests.put(testId, runCount);
+                } else {
+                    rerunFailingTestIds.add(testId);
+                }
+            }
+            if (reportMerger != null) {
+                try {
+                    reportMerger.merge(reportsDirectory);
+                } catch (IOException ioe) {
+                    getLog().warn(getMessage("WLSTTEST-104", module.getReportsDirectory(),
+                                             ioe.getLocalizedMessage()));
+                    reportMerger = null;
+                }
+            }
+
+            failingTestIds = rerunFailingTestIds;
+            runCount++;
+            if (module.isIncompleteRun()) {
+                break;
+            }
+        }
+
+        if (reportMerger != null) {
+            try {
+                for (String testId : flakyTests.keySet()) {
+                    reportMerger.markFlaky(testId);
+                }
+                reportMerger.save();
+            } catch (IOException ioe) {
+                getLog().warn(getMessage("WLSTTEST-104", module.getReportsDirectory(), ioe.getLocalizedMessage()));
+            }
+        }
+        for (Map.Entry<String, Integer> flakyTest : flakyTests.entrySet()) {
+            getLog().warn(getMessage("WLSTTEST-101", flakyTest.getKey(), flakyTest.getValue()));
+        }
+        for (String testId : failingTestIds) {
+            getLog().error(getMessage("WLSTTEST-102", testId, runCount));
+        }
+        return failingTestIds.size();
+    }
+
+    /**
+     * Start following the results of the test run if failFast or skipAfterFailureCount is set.
+     *
+     * @param resultsDirectories the results directories of the modules being run
+     * @param stopFile           the file that tells the test drivers to skip the remaining tests
+     */
+    protected void startTestResultMonitor(List<File> resultsDirectories, File stopFile) {
+        if (failureThreshold > 0) {
+            testResultMonitor = new TestResultMonitor(resultsDirectories, stopFile, failureThreshold, getLog());
+            testResultMonitor.start();
+        }
+    }
+
+    protected void stopTestResultMonitor() {
+        if (testResultMonitor != null) {
+            testResultMonitor.stop();
+        }
+    }
+
+    /**
+     * Whether the failure threshold was reached and no more tests should be scheduled.
+     *
+     * @return true if no more tests should be run
+     */
+    protected boolean isStopRequested() {
+        return testResultMonitor != null && testResultMonitor.isStopRequested();
+    }
+
+    /**
+     * Verifies the arguments.
+     *
+     * @throws MojoExecutionException if an error related to the plugin parameter verification occurs
+     * @throws MojoFailureException   if Maven injection of a Maven-related parameter or component
+     *                                failed to properly initialize the plugin variable
+     */
+    private void verifyArguments() throws MojoExecutionException, MojoFailureException {
+        if (mavenProject == null) {
+            throw new MojoFailureException(getMessage("WLSTTEST-001"));
+        } else if (mavenSession == null) {
+            throw new MojoFailureException(getMessage("WLSTTEST-002"));
+        }
+
+        if (isWlstScriptDirectoryRequired()) {
+            wlstScript = verifyWlstScriptDirectoryArg("wlstScriptDirectory", wlstScriptDirectory);
+        }
+        verifyVerbosityArg();
+        verifyForkCountArg();
+        verifySyncModeArg();
+        verifyExecutionModeArg();
+        verifyFailureArgs();
+
+        if (!SYNC_MODE_COPY.equals(domainFixtureCopyMode) && !SYNC_MODE_LINK.equals(domainFixtureCopyMode)) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-079", "domainFixtureCopyMode",
+                                                        domainFixtureCopyMode));
+        }
+        if (forkedProcessTimeoutInSeconds < 0) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-056", "forkedProcessTimeoutInSeconds",
+                                                        forkedProcessTimeoutInSeconds));
+        }
+        if (threadCount < 1) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-085", "threadCount", threadCount));
+        }
+        if (heapLeakThresholdInMegabytes < 0) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-056", "heapLeakThresholdInMegabytes",
+                                                        heapLeakThresholdInMegabytes));
+        } else if (heapLeakThresholdInMegabytes > 0) {
+            measureRetainedHeap = true;
+        }
+        if (threadLeakThreshold < 0) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-056", "threadLeakThreshold", threadLeakThreshold));
+        }
+        if (resultCacheMaxSizeInMegabytes < 1) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-085", "resultCacheMaxSizeInMegabytes",
+                                                        resultCacheMaxSizeInMegabytes));
+        }
+    }
+
+    /**
+     * Write the manifest of the Python modules in the execution directories that the test driver uses to
+     * restore the unchanged modules' compiled classes from the compiled module cache and to add the newly
+     * compiled classes to it.  A failure only disables the cache for this run.
+     *
+     * @param module                        the module
+     * @param testScriptsExecutionDirectory the base directory where the tests will execute
+     */
+    private void writeCompiledModuleManifest(WlstTestModule module, File testScriptsExecutionDirectory) {
+        if (!compiledModuleCache || SYNC_MODE_NONE.equals(syncMode)) {
+            return;
+        }
+
+        File manifestFile =
+            getCanonicalFile(new File(module.getOutputDirectory(), COMPILED_MODULE_MANIFEST_FILE));
+        CompiledModuleManifest manifest = new CompiledModuleManifest(manifestFile);
+        try {
+            List<File> rootDirectories = new ArrayList<>();
+            rootDirectories.add(getMainScriptsExecutionDirectory(module));
+            rootDirectories.add(testScriptsExecutionDirectory);
+            manifest.write(rootDirectories);
+            module.setCompiledModuleManifestFile(manifestFile);
+            getLog().debug("Hashed " + manifest.getHashedCount() + " new or changed Python modules for "
+                               + manifestFile);
+        } catch (IOException ioe) {
+            getLog().warn(getMessage("WLSTTEST-060", manifestFile.getAbsolutePath(), ioe.getLocalizedMessage()));
+        }
+    }
+
+    /**
+     * Gather the list of test files to run from the module's wlstTestsRootDirectory.
+     *
+     * @param module the module
+     * @return the list of paths, relative to the wlstTestsRootDirectory, of the test files matching the
+     *         includes and excludes globs
+     * @throws MojoExecutionException if the wlstTestsRootDirectory cannot be read
+     */
+    protected List<String> gatherTestsToRun(WlstTestModule module) throws MojoExecutionException {
+        File testsRootDirectory = module.getTestsRootDirectory();
+        List<String> testIncludes = includes;
+        if (testIncludes == null || testIncludes.isEmpty()) {
+            testIncludes = Collections.singletonList(DEFAULT_TEST_INCLUDE);
+        }
+
+        long phaseStart = phaseTimer.start();
+        try {
+            return new TestFileScanner(testIncludes, excludes).scan(testsRootDirectory);
+        } catch (IOException ioe) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-058", testsRootDirectory.getAbsolutePath(),
+                                                        ioe.getLocalizedMessage()), ioe);
+        } finally {
+            phaseTimer.stop("find test files", phaseStart);
+        }
+    }
+
+    /**
+     * Keep only the test files whose module matches the test parameter.  The test classes and methods in
+     * the test parameter are selected by the test driver.
+     *
+     * @param testsToRun the list of test file paths relative to the wlstTestsRootDirectory
+     * @return the list of matching test file paths
+     */
+    protected List<String> filterTestsToRun(List<String> testsToRun) {
+        return TestFileScanner.filterByTest(testsToRun, test);
+    }
+
+    /**
+     * This method synchronizes the Python scripts in the source directory trees to the target directory.
+     * This prevents the source directory tree from being polluted Jython generating class files
+     * during test execution.  Only new or changed files are copied and files deleted from the source
+     * directory trees are removed from the target directory.
+     *
+     * @param module                        the module
+     * @param testScriptsExecutionDirectory the base directory where the tests will execute
+     * @throws MojoExecutionException if the synchronization fails
+     */
+    private void synchronizeScriptsToTargetDirectory(WlstTestModule module, File testScriptsExecutionDirectory)
+        throws MojoExecutionException {
+        File basedir = getCanonicalFile(module.getOutputDirectory());
+        createDirectoryIfNeeded(basedir, "Plugin output");
+        if (SYNC_MODE_NONE.equals(syncMode)) {
+            return;
+        }
+
+        ScriptTreeSynchronizer.Mode mode = getSynchronizerMode();
+        File targetSourcesDir = getMainScriptsExecutionDirectory(module);
+        createDirectoryIfNeeded(targetSourcesDir, "Sources Execution");
+        synchronizeScriptTree(mode, "Sources", module.getSourcesRootDirectory(), targetSourcesDir, null);
+
+        createDirectoryIfNeeded(testScriptsExecutionDirectory, "Test Sources Execution");
+        synchronizeScriptTree(mode, "Test Sources", module.getTestsRootDirectory(), testScriptsExecutionDirectory,
+                              null);
+    }
+
+    private ScriptTreeSynchronizer.Mode getSynchronizerMode() {
+        if (SYNC_MODE_CHECKSUM.equals(syncMode)) {
+            return ScriptTreeSynchronizer.Mode.CHECKSUM;
+        } else if (SYNC_MODE_LINK.equals(syncMode)) {
+            return ScriptTreeSynchronizer.Mode.LINK;
+        }
+        return ScriptTreeSynchronizer.Mode.COPY;
+    }
+
+    /**
+     * Synchronize only the given files and directories of the module's script trees to its execution
+     * directories, for callers that know which files changed.
+     *
+     * @param module           the module
+     * @param changedMainPaths the changed paths, relative to the wlstSourcesRootDirectory
+     * @param changedTestPaths the changed paths, relative to the wlstTestsRootDirectory
+     * @throws MojoExecutionException if the changed files cannot be synchronized
+     */
+    protected void synchronizeChangedScripts(WlstTestModule module, Collection<Path> changedMainPaths,
+                                             Collection<Path> changedTestPaths) throws MojoExecutionException {
+        if (SYNC_MODE_NONE.equals(syncMode)) {
+            return;
+        }
+
+        long phaseStart = phaseTimer.start();
+        ScriptTreeSynchronizer.Mode mode = getSynchronizerMode();
+        if (!changedMainPaths.isEmpty()) {
+            synchronizeScriptTree(mode, "Sources", module.getSourcesRootDirectory(),
+                                  getMainScriptsExecutionDirectory(module), changedMainPaths);
+        }
+        if (!changedTestPaths.isEmpty()) {
+            synchronizeScriptTree(mode, "Test Sources", module.getTestsRootDirectory(),
+                                  getTestScriptsExecutionDirectory(module), changedTestPaths);
+        }
+        phaseTimer.stop("synchronize changed scripts", phaseStart);
+    }
+
+    /**
+     * This method writes a driver script to the plugin output directory that will be
+     * run by WLST.
+     *
+     * @param outputDirectory the plugin output directory
+     * @return the File object for the driver script
+     * @throws MojoExecutionException  if the plugin fails to write the driver script to the target location
+     * @throws MojoFailureException    if the plugin is unable to find the driver script in its JAR
+     */
+    protected File writeTestsDriverScript(File outputDirectory)
+        throws MojoExecutionException, MojoFailureException {
+
+        long phaseStart = phaseTimer.start();
+        createDirectoryIfNeeded(outputDirectory, "Plugin output");
+        File targetScriptFile = getCanonicalFile(new File(outputDirectory, RUN_ALL_TESTS_SCRIPT_NAME));
+
+        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(RUN_ALL_TESTS_RESOURCE_NAME);
+        if (inputStream == null) {
+            throw new MojoFailureException(getMessage("WLSTTEST-014"));
+        }
+        try (FileOutputStream fileOutputStream = new FileOutputStream(targetScriptFile)) {
+            byte[] buffer = new byte[BUF_SIZE];
+            int bytesRead = inputStream.read(buffer);
+            while (bytesRead != -1) {
+                fileOutputStream.write(buffer, 0, bytesRead);
+                bytesRead = inputStream.read(buffer);
+            }
+            fileOutputStream.flush();
+        } catch (IOException ioe) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-015", targetScriptFile.getAbsolutePath(),
+                                                        ioe.getLocalizedMessage()), ioe);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException ignore) {
+                getLog().debug(getMessage("WLSTTEST-016", ignore.getLocalizedMessage()), ignore);
+            }
+            phaseTimer.stop("extract test driver", phaseStart);
+        }
+        return targetScriptFile;
+    }
+
+    /**
+     * This method creates the incremental test selector and scans the source and test trees for changes
+     * since the last successful run.
+     *
+     * @param module            the module
+     * @param testsDriverScript the driver script, whose content is part of the configuration fingerprint
+     * @return the incremental test selector
+     * @throws MojoExecutionException if an error occurs while reading the index or the source and test trees
+     */
+    private IncrementalTestSelector createIncrementalTestSelector(WlstTestModule module, File testsDriverScript)
+        throws MojoExecutionException {
+        File indexFile = getCanonicalFile(new File(module.getOutputDirectory(), INCREMENTAL_INDEX_FILE));
+        IncrementalTestSelector testSelector;
+        try {
+            StringBuilder fingerprint = new StringBuilder();
+            fingerprint.append(wlstEnvironment.getWlstScript(module).getAbsolutePath()).append('|');
+            fingerprint.append(wlstEnvironment.isUsingOldWlstVersion(module)).append('|');
+            fingerprint.append(skipModuleScanning).append('|').append(module.getWlstExtClasspath()).append('|');
+            fingerprint.append(wlstEnvironment.getEnvironmentVariables(module)).append('|').append(systemProperties);
+            fingerprint.append('|').append(argLine).append('|');
+            fingerprint.append(HashUtils.sha1(testsDriverScript.toPath()));
+
+            testSelector = new IncrementalTestSelector(indexFile, module.getSourcesRootDirectory(),
+                                                       module.getTestsRootDirectory(), fingerprint.toString());
+            testSelector.scan();
+        } catch (IOException ioe) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-028", indexFile.getAbsolutePath(),
+                                                        ioe.getLocalizedMessage()), ioe);
+        }
+
+        if (testSelector.isFullRunRequired()) {
+            getLog().info(getMessage("WLSTTEST-030"));
+        }
+        return testSelector;
+    }
+
+    /**
+     * Filter the list of test files to run down to the ones affected by the changes since the last successful run.
+     *
+     * @param testSelector the incremental test selector
+     * @param testsToRun   the list of test files found in the test scripts execution directory
+     * @return the list of test files to run
+     */
+    private List<String> selectIncrementalTests(IncrementalTestSelector testSelector, List<String> testsToRun,
+                                                File testScriptsExecutionDirectory, Collection<File> rerunTestFiles) {
+        Set<String> selectedPaths = testSelector.selectTests(testsToRun);
+        List<String> result = new ArrayList<>(selectedPaths.size());
+        for (String testToRun : testsToRun) {
+            if (selectedPaths.contains(testToRun)
+                || rerunTestFiles.contains(new File(testScriptsExecutionDirectory, testToRun))) {
+                result.add(testToRun);
+            }
+        }
+        getLog().info(getMessage("WLSTTEST-026", result.size(), testsToRun.size()));
+        return result;
+    }
+
+    /**
+     * Save the module's incremental test selection index, if incremental test selection is used, so that
+     * the next run only selects the tests affected by later changes.
+     *
+     * @param module the module
+     * @throws MojoExecutionException if the index cannot be written
+     */
+    protected void saveIncrementalIndex(WlstTestModule module) throws MojoExecutionException {
+        IncrementalTestSelector testSelector = module.getIncrementalTestSelector();
+        if (testSelector == null) {
+            return;
+        }
+
+        long phaseStart = phaseTimer.start();
+        try {
+            testSelector.save();
+        } catch (IOException ioe) {
+            File indexFile = getCanonicalFile(new File(module.getOutputDirectory(), INCREMENTAL_INDEX_FILE));
+            throw new MojoExecutionException(getMessage("WLSTTEST-029", indexFile.getAbsolutePath(),
+                                                        ioe.getLocalizedMessage()), ioe);
+        } finally {
+            phaseTimer.stop("save incremental index", phaseStart);
+        }
+    }
+
+    /**
+     * Create the directory where the test driver writes the results files and remove the results files
+     * of the previous build.
+     *
+     * @param module the module
+     * @return the results directory
+     * @throws MojoExecutionException if the directory cannot be created
+     */
+    private File prepareResultsDirectory(WlstTestModule module) throws MojoExecutionException {
+        File resultsDirectory = getResultsDirectory(module);
+        createDirectoryIfNeeded(resultsDirectory, "Test Results");
+        deleteOldFiles(resultsDirectory);
+
+        File outputDirectory = getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_OUTPUT_DIR));
+        createDirectoryIfNeeded(outputDirectory, "Test Output");
+        deleteOldFiles(outputDirectory);
+
+        File timingsDirectory = getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_TIMINGS_DIR));
+        createDirectoryIfNeeded(timingsDirectory, "Test Timings");
+        deleteOldFiles(timingsDirectory);
+
+        if (coverage) {
+            File coverageRunsDirectory = getCoverageRunsDirectory(module);
+            createDirectoryIfNeeded(coverageRunsDirectory, "Test Coverage");
+            deleteOldFiles(coverageRunsDirectory);
+        }
+        return resultsDirectory;
+    }
+
+    private void deleteOldFiles(File directory) throws MojoExecutionException {
+        File[] oldFiles = directory.listFiles();
+        if (oldFiles != null) {
+            for (File oldFile : oldFiles) {
+                if (!oldFile.delete()) {
+                    throw new MojoExecutionException(getMessage("WLSTTEST-047", oldFile.getAbsolutePath()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the directory where the test drivers write the results files of the module's tests.
+     *
+     * @param module the module
+     * @return the results directory
+     */
+    protected File getResultsDirectory(WlstTestModule module) {
+        return getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_RESULTS_DIR));
+    }
+
+    private File getRerunDirectory(WlstTestModule module, int rerunNumber) {
+        return getCanonicalFile(new File(new File(module.getOutputDirectory(), WLST_TEST_RERUNS_DIR),
+                                         String.format(RERUN_DIR_FORMAT, rerunNumber)));
+    }
+
+    /**
+     * Build the test filter that selects the failing tests: a module.Class#method+method entry for the failed
+     * test methods of each class, and a module or module.Class entry that selects all of its tests for each
+     * failed module or class fixture.
+     *
+     * @param failingTestIds the ids of the failing tests
+     * @return the test filter
+     */
+    private String getRerunTestFilter(Set<String> failingTestIds) {
+        Map<String, List<String>> scopeMethods = new LinkedHashMap<>();
+        for (String testId : failingTestIds) {
+            String scope = TestResultRecord.getTestIdScope(testId);
+            List<String> methods = scopeMethods.get(scope);
+            if (TestResultRecord.isFixtureTestId(testId)) {
+                scopeMethods.put(scope, null);
+            } else if (methods != null || !scopeMethods.containsKey(scope)) {
+                if (methods == null) {
+                    methods = new ArrayList<>();
+                    scopeMethods.put(scope, methods);
+                }
+                methods.add(testId.substring(testId.lastIndexOf('.') + 1));
+            }
+        }
+
+        List<String> entries = new ArrayList<>(scopeMethods.size());
+        for (Map.Entry<String, List<String>> entry : scopeMethods.entrySet()) {
+            if (entry.getValue() == null) {
+                entries.add(entry.getKey());
+            } else {
+                entries.add(entry.getKey() + TEST_FILTER_METHOD_SEPARATOR
+                                + getDelimitedStringFromList(entry.getValue(), '+'));
+            }
+        }
+        return getDelimitedStringFromList(entries, ',');
+    }
+
+    private static List<File> getRerunTestFiles(List<File> testsToRun, Set<String> failingTestIds) {
+        Set<String> moduleNames = new HashSet<>();
+        for (String testId : failingTestIds) {
+            moduleNames.add(TestResultRecord.getTestModuleName(testId));
+        }
+
+        List<File> result = new ArrayList<>();
+        for (File testToRun : testsToRun) {
+            String fileName = testToRun.getName();
+            if (moduleNames.contains(fileName.substring(0, fileName.length() - PY_FILE_EXTENSION.length()))) {
+                result.add(testToRun);
+            }
+        }
+        return result;
+    }
+
+    private File getCoverageRunsDirectory(WlstTestModule module) {
+        return getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_COVERAGE_RUNS_DIR));
+    }
+
+    /**
+     * Compute the key of the module's test run in the test result cache from the content of everything that
+     * the results depend on.
+     *
+     * @param module            the module
+     * @param testsDriverScript the driver script
+     * @param testsToRun        the test files to run in the module's test execution directory
+     * @return the key, or null if the test result cache is not used or the inputs cannot be read
+     * @throws MojoExecutionException if the wlstExtClasspath cannot be resolved
+     */
+    protected String getResultCacheKey(WlstTestModule module, File testsDriverScript, List<File> testsToRun)
+        throws MojoExecutionException {
+        if (!resultCache) {
+            return null;
+        }
+        return getTestRunCache().getKey(module, testsDriverScript, getTestScriptsExecutionDirectory(module),
+                                        testsToRun);
+    }
+
+    /**
+     * Restore the results, reports and coverage data of the module's test run from the test result cache, and
+     * report them as if the tests had run.
+     *
+     * @param module the module
+     * @param key    the key of the test run in the test result cache
+     * @return true if the results were restored, or false if the tests need to run
+     * @throws MojoExecutionException if the results directories cannot be cleaned up after a failed restore
+     */
+    protected boolean replayCachedTestResults(WlstTestModule module, String key) throws MojoExecutionException {
+        try {
+            if (!getTestRunCache().restore(key, getResultCacheDirectories(module))) {
+                return false;
+            }
+        } catch (IOException ioe) {
+            getLog().warn(getMessage("WLSTTEST-087", ioe.getLocalizedMessage()));
+            prepareResultsDirectory(module);
+            return false;
+        }
+
+        List<TestResultRecord> testResults = finishTestRun(module);
+        getLog().info(getMessage("WLSTTEST-086", testResults.size(), key));
+        return true;
+    }
+
+    /**
+     * Store the results, reports and coverage data of the module's test run in the test result cache if all
+     * of its tests passed.  Problems are only logged since the cache must not fail the build.
+     *
+     * @param module      the module
+     * @param key         the key of the test run in the test result cache
+     * @param testResults the results of the tests that ran
+     */
+    protected void cacheTestResults(WlstTestModule module, String key, List<TestResultRecord> testResults) {
+        getTestRunCache().store(key, getResultCacheDirectories(module), testResults);
+    }
+
+    private TestRunCache getTestRunCache() {
+        File cacheDirectory = getCanonicalFile(new File(pluginCacheDirectory, RESULT_CACHE_DIRECTORY));
+        TestResultCache testResultCache = new TestResultCache(cacheDirectory,
+                                                              resultCacheMaxSizeInMegabytes * BYTES_PER_MEGABYTE,
+                                                              resultCacheUrl, resultCachePush, getLog());
+        return new TestRunCache(testResultCache, wlstEnvironment, executionMode, coverage, test, phaseTimer,
+                                getLog());
+    }
+
+    private Map<String, File> getResultCacheDirectories(WlstTestModule module) {
+        Map<String, File> result = new HashMap<>();
+        result.put(TestRunCache.RESULTS_KIND, getResultsDirectory(module));
+        result.put(TestRunCache.REPORTS_KIND, getCanonicalFile(module.getReportsDirectory()));
+        if (coverage) {
+            result.put(TestRunCache.COVERAGE_KIND, getCoverageRunsDirectory(module));
+        }
+        return result;
+    }
+
+    /**
+     * Read the results files of the test drivers in a results directory.  Problems are only logged.
+     *
+     * @param resultsDirectory the results directory
+     * @return the results of the tests that ran
+     */
+    protected List<TestResultRecord> readTestResults(File resultsDirectory) {
+        try {
+            return TestResultRecord.readAll(resultsDirectory);
+        } catch (IOException ioe) {
+            getLog().warn(getMessage("WLSTTEST-054", resultsDirectory.getAbsolutePath(), ioe.getLocalizedMessage()));
+            return new ArrayList<>();
+        }
+    }
+
+    private List<File> orderTests(TestRunOrder testRunOrder, List<File> testsToRun) {
+        try {
+            testRunOrder.load();
+        } catch (IOException ioe) {
+            getLog().warn(getMessage("WLSTTEST-055", ioe.getLocalizedMessage()));
+            return testsToRun;
+        }
+        return testRunOrder.order(testsToRun);
+    }
+
+    private void saveTestRunOrder(TestRunOrder testRunOrder, long runStart, List<TestResultRecord> testResults) {
+        try {
+            testRunOrder.save(runStart, testResults);
+        } catch (IOException ioe) {
+            getLog().warn(getMessage("WLSTTEST-055", ioe.getLocalizedMessage()));
+        }
+    }
+
+    /**
+     * This method runs the tests in multiple concurrent WLST processes.  Each fork runs in its own working
+     * directory and the results of all executions are merged into a single outcome.  Unless the syncMode is
+     * none, each fork also gets its own execution directories, hard linked to the module's execution
+     * directories, so that the forks do not write the same Jython-compiled classes at the same time.
+     *
+     * @param module            the module
+     * @param testsDriverScript the driver script
+     * @param testsToRun        the list of test files to run
+     * @throws MojoExecutionException if any of the forked WLST executions failed or could not be run
+     */
+    protected void runForkedTests(final WlstTestModule module, final File testsDriverScript, List<File> testsToRun)
+        throws MojoExecutionException {
+        List<TestTimingHistory> timingHistories = new ArrayList<>(1);
+        if (reuseForks) {
+            File historyFile = module.getTimingHistoryFile();
+            TestTimingHistory timingHistory = new TestTimingHistory(historyFile);
+            try {
+                timingHistory.load();
+                timingHistories.add(timingHistory);
+            } catch (IOException ioe) {
+                getLog().warn(getMessage("WLSTTEST-048", historyFile.getAbsolutePath(), ioe.getLocalizedMessage()));
+            }
+        }
+
+        ForkedTestRunner forkedTestRunner = new ForkedTestRunner(forks, reuseForks, timingHistories, getLog());
+        forkedTestRunner.run(testsToRun, new ForkedTestRunner.Forks() {
+            @Override
+            public File prepareFork(int forkId) throws MojoExecutionException {
+                File forkDirectory = getCanonicalFile(new File(module.getOutputDirectory(),
+                                                               WLST_TEST_FORK_EXEC_DIR_PREFIX + forkId));
+                createDirectoryIfNeeded(forkDirectory, "Fork " + forkId + " Execution");
+                if (!SYNC_MODE_NONE.equals(syncMode)) {
+                    linkForkScripts(module, forkDirectory);
+                }
+                return forkDirectory;
+            }
+
+            @Override
+            public void runWorkUnit(int forkId, File forkDirectory, List<File> workUnit)
+                throws MojoExecutionException {
+                if (SYNC_MODE_NONE.equals(syncMode)) {
+                    runTests(module, forkId, forkDirectory, testsDriverScript, workUnit);
+                } else {
+                    runTests(module, forkId, forkDirectory, forkDirectory, testsDriverScript, workUnit);
+                }
+            }
+
+            @Override
+            public boolean isStopRequested() {
+                return AbstractWLSTTestMojo.this.isStopRequested();
+            }
+        });
+    }
+
+    /**
+     * This method starts a WLST process to run the driver script, or runs it in a WLST daemon or in process
+     * depending on the executionMode.  The driver script in turn uses the Python unittest module to execute
+     * the unit tests.
+     *
+     * @param module                        the module whose tests are run
+     * @param forkId                        the number of the fork running the tests, starting at 1
+     * @param testScriptsExecutionDirectory the working directory for the WLST process
+     * @param testsDriverScript             the driver script
+     * @param testsToRun                    the list of test files to run
+     * @throws MojoExecutionException       if a configuration or execution environment-related error occurs
+     */
+    protected void runTests(WlstTestModule module, int forkId, File testScriptsExecutionDirectory,
+                            File testsDriverScript, List<File> testsToRun) throws MojoExecutionException {
+        runTests(module, forkId, testScriptsExecutionDirectory, null, testsDriverScript, testsToRun);
+    }
+
+    /**
+     * Link the module's execution directories and compiled module manifest into a fork's directory.
+     *
+     * @param module        the module whose tests are run
+     * @param forkDirectory the directory of the fork
+     * @throws MojoExecutionException if the execution directories cannot be created
+     */
+    private void linkForkScripts(WlstTestModule module, File forkDirectory) throws MojoExecutionException {
+        long phaseStart = phaseTimer.start();
+        File targetSourcesDir = getCanonicalFile(new File(forkDirectory, WLST_TEST_MAIN_EXEC_DIR));
+        createDirectoryIfNeeded(targetSourcesDir, "Fork Sources Execution");
+        synchronizeScriptTree(ScriptTreeSynchronizer.Mode.LINK, "Sources", getMainScriptsExecutionDirectory(module),
+                              targetSourcesDir, null);
+
+        File targetTestsDir = getCanonicalFile(new File(forkDirectory, WLST_TEST_TEST_EXEC_DIR));
+        createDirectoryIfNeeded(targetTestsDir, "Fork Test Sources Execution");
+        synchronizeScriptTree(ScriptTreeSynchronizer.Mode.LINK, "Test Sources",
+                              getTestScriptsExecutionDirectory(module), targetTestsDir, null);
+
+        File sharedManifestFile = module.getCompiledModuleManifestFile();
+        if (sharedManifestFile != null) {
+            File manifestFile = getCanonicalFile(new File(forkDirectory, COMPILED_MODULE_MANIFEST_FILE));
+            Map<File, File> rootDirectories = new HashMap<>();
+            rootDirectories.put(getMainScriptsExecutionDirectory(module), targetSourcesDir);
+            rootDirectories.put(getTestScriptsExecutionDirectory(module), targetTestsDir);
+            try {
+                new CompiledModuleManifest(manifestFile).writeRelocated(sharedManifestFile, rootDirectories);
+            } catch (IOException ioe) {
+                throw new MojoExecutionException(getMessage("WLSTTEST-060", manifestFile.getAbsolutePath(),
+                                                            ioe.getLocalizedMessage()), ioe);
+            }
+        }
+        phaseTimer.stop("link fork scripts", phaseStart);
+    }
+
+    /**
+     * Run the driver script, in the execution directories of a fork if one is given.
+     *
+     * @param module                 the module whose tests are run
+     * @param forkId                 the number of the fork running the tests, starting at 1
+     * @param workingDirectory       the working directory for the WLST process
+     * @param forkExecutionDirectory the directory of the fork holding its linked execution directories, or
+     *                               null to run the tests in the module's execution directories
+     * @param testsDriverScript      the driver script
+     * @param testsToRun             the list of test files to run in the module's test execution directory
+     * @throws MojoExecutionException if a configuration or execution environment-related error occurs
+     */
+    private void runTests(WlstTestModule module, int forkId, File workingDirectory, File forkExecutionDirectory,
+                          File testsDriverScript, List<File> testsToRun) throws MojoExecutionException {
+        int sequenceNumber = testRunSequence.incrementAndGet();
+        List<String> driverArguments =
+            buildDriverArguments(module, forkId, sequenceNumber, forkExecutionDirectory, testsToRun);
+        long phaseStart = phaseTimer.start();
+        try {
+            testRunner.run(module, forkId, sequenceNumber, workingDirectory, testsDriverScript, driverArguments);
+        } finally {
+            phaseTimer.stop("run WLST tests in " + getExecutionMode() + " mode", phaseStart);
+        }
+    }
+
+    /**
+     * Warn that the parameters that only apply to a separate WLST process are ignored by an in-process test run.
+     */
+    protected void warnAboutIgnoredInProcessParameters() {
+        if ((environmentVariables != null && !environmentVariables.isEmpty()) || !isEmpty(argLine)) {
+            getLog().warn(getMessage("WLSTTEST-042"));
+        }
+    }
+
+    /**
+     * Get the version of WebLogic Server installed in the Oracle Home that runs the module's tests, as recorded
+     * in the Oracle inventory.
+     *
+     * @param module the module whose tests are run
+     * @return the version, or null if the Oracle Home has no inventory or it cannot be read
+     */
+    protected String getWebLogicVersion(WlstTestModule module) {
+        return wlstEnvironment.getWebLogicVersion(module);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                 Mojo-related Utility Functions                        //
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Whether the wlstScriptDirectory parameter must be set, which it need not be when the goal gets the WLST
+     * scripts to run from elsewhere.
+     *
+     * @return true if the wlstScriptDirectory parameter is required
+     */
+    protected boolean isWlstScriptDirectoryRequired() {
+        return true;
+    }
+
+    /**
+     * Verify a directory argument that holds the WLST script.
+     *
+     * @param argName   the name of the argument used in messages
+     * @param directory the directory
+     * @return the WLST script in the directory
+     * @throws MojoExecutionException if the directory or the WLST script in it is missing
+     */
+    protected File verifyWlstScriptDirectoryArg(String argName, File directory) throws MojoExecutionException {
+        File result;
+        if (directory == null || WLST_DIR_NOT_SET.equals(directory.getName())) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-004", argName));
+        } else if (!directory.isDirectory()) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-005", argName,
+                    directory.getAbsolutePath()));
+        } else if (!directory.exists()) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-006", argName,
+                    directory.getAbsolutePath()));
+        } else {
+            result = getCanonicalFile(new File(directory, WLST_SCRIPT_NAME));
+            if (!result.exists()) {
+                throw new MojoExecutionException(getMessage("WLSTTEST-007", result.getAbsolutePath()));
+            } else if (!result.canExecute()) {
+                throw new MojoExecutionException(getMessage("WLSTTEST-008", result.getAbsolutePath()));
+            }
+        }
+        return result;
+    }
+
+    protected void verifyWlstTestRootDirectoryArg() throws MojoExecutionException {
+        String argName = "wlstTestRootDirectory";
+        if (wlstTestsRootDirectory == null) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-004", argName));
+        } else if (!wlstTestsRootDirectory.isDirectory()) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-005", argName,
+                    wlstTestsRootDirectory.getAbsolutePath()));
+        }
+    }
+
+    private void verifyVerbosityArg() throws MojoExecutionException {
+        String argName = "verbosity";
+        // valid values for unittest verbosity are 0, 1, or 2
+        if (!(verbosity >= 0 && verbosity <= 2)) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-019", argName, verbosity));
+        }
+    }
+
+    private void verifySyncModeArg() throws MojoExecutionException {
+        String argName = "syncMode";
+        if (!SYNC_MODE_COPY.equals(syncMode) && !SYNC_MODE_CHECKSUM.equals(syncMode)
+            && !SYNC_MODE_LINK.equals(syncMode) && !SYNC_MODE_NONE.equals(syncMode)) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-031", argName, syncMode));
+        }
+    }
+
+    private void verifyExecutionModeArg() throws MojoExecutionException {
+        String argName = "executionMode";
+        if (!EXECUTION_MODE_PROCESS.equals(executionMode) && !EXECUTION_MODE_DAEMON.equals(executionMode)
+            && !EXECUTION_MODE_IN_PROCESS.equals(executionMode)) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-037", argName, executionMode));
+        } else if (EXECUTION_MODE_DAEMON.equals(executionMode) && daemonIdleTimeout < 1) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-038", "daemonIdleTimeout", daemonIdleTimeout));
+        } else if (EXECUTION_MODE_IN_PROCESS.equals(executionMode) && forkedProcessTimeoutInSeconds > 0) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-134", "forkedProcessTimeoutInSeconds"));
+        }
+    }
+
+    private void verifyFailureArgs() throws MojoExecutionException {
+        if (skipAfterFailureCount < 0) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-056", "skipAfterFailureCount",
+                                                        skipAfterFailureCount));
+        } else if (rerunFailingTestsCount < 0) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-056", "rerunFailingTestsCount",
+                                                        rerunFailingTestsCount));
+        } else if (!RUN_ORDER_FAILED_FIRST.equals(runOrder) && !RUN_ORDER_FILESYSTEM.equals(runOrder)) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-057", "runOrder", runOrder));
+        }
+
+        failureThreshold = skipAfterFailureCount;
+        if (failFast) {
+            failureThreshold = 1;
+        }
+    }
+
+    private void verifyForkCountArg() throws MojoExecutionException {
+        String argName = "forkCount";
+        if (isEmpty(forkCount)) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-004", argName));
+        }
+
+        String value = forkCount.trim();
+        try {
+            if (value.toUpperCase().endsWith(FORK_COUNT_CPU_SUFFIX)) {
+                double multiplier = Double.parseDouble(value.substring(0, value.length() - 1));
+                forks = (int) (multiplier * Runtime.getRuntime().availableProcessors());
+                if (multiplier > 0 && forks < 1) {
+                    forks = 1;
+                }
+            } else {
+                forks = Integer.parseInt(value);
+            }
+        } catch (NumberFormatException nfe) {
+            forks = 0;
+        }
+
+        if (forks < 1) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-020", argName, forkCount));
+        }
+    }
+
+    private void synchronizeScriptTree(ScriptTreeSynchronizer.Mode mode, String name, File sourceDirectory,
+                                       File targetDirectory, Collection<Path> changedPaths)
+        throws MojoExecutionException {
+        ScriptTreeSynchronizer synchronizer = new ScriptTreeSynchronizer(mode);
+        try {
+            if (changedPaths == null) {
+                synchronizer.synchronize(sourceDirectory.toPath(), targetDirectory.toPath());
+            } else {
+                synchronizer.synchronize(sourceDirectory.toPath(), targetDirectory.toPath(), changedPaths);
+            }
+        } catch (IOException ioe) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-032", name, sourceDirectory.getAbsolutePath(),
+                                                        targetDirectory.getAbsolutePath(), ioe.getLocalizedMessage()),
+                                             ioe);
+        }
+        getLog().info(getMessage("WLSTTEST-033", sourceDirectory.getAbsolutePath(), synchronizer.getCopiedCount(),
+                                 synchronizer.getLinkedCount(), synchronizer.getDeletedCount(),
+                                 synchronizer.getUnchangedCount()));
+    }
+
+    private File getMainScriptsExecutionDirectory(WlstTestModule module) {
+        if (SYNC_MODE_NONE.equals(syncMode)) {
+            return getCanonicalFile(module.getSourcesRootDirectory());
+        }
+        return getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_MAIN_EXEC_DIR));
+    }
+
+    private File getTestScriptsExecutionDirectory(WlstTestModule module) {
+        if (SYNC_MODE_NONE.equals(syncMode)) {
+            return getCanonicalFile(module.getTestsRootDirectory());
+        }
+        return getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_TEST_EXEC_DIR));
+    }
+
+    /**
+     * Get the working directory for a test run that is not forked, creating it if needed.  It is outside of
+     * the execution directories so that the files written by the tests and WLST are neither written into the
+     * source tree when syncMode is none nor deleted when the next synchronization prunes the execution
+     * directories.
+     *
+     * @param module the module whose tests are run
+     * @return the working directory
+     * @throws MojoExecutionException if the directory cannot be created
+     */
+    protected File getWorkingDirectory(WlstTestModule module) throws MojoExecutionException {
+        File result = getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_WORK_DIR));
+        createDirectoryIfNeeded(result, "Working");
+        return result;
+    }
+
+    private List<String> buildDriverArguments(WlstTestModule module, int forkId, int sequenceNumber,
+                                              File forkExecutionDirectory, List<File> testsToRun) {
+        File mainScriptsExecutionDirectory = getMainScriptsExecutionDirectory(module);
+        File testScriptsExecutionDirectory = getTestScriptsExecutionDirectory(module);
+        File compiledModuleManifestFile = module.getCompiledModuleManifestFile();
+        if (forkExecutionDirectory != null) {
+            mainScriptsExecutionDirectory = getCanonicalFile(new File(forkExecutionDirectory, WLST_TEST_MAIN_EXEC_DIR));
+            testScriptsExecutionDirectory = getCanonicalFile(new File(forkExecutionDirectory, WLST_TEST_TEST_EXEC_DIR));
+            if (compiledModuleManifestFile != null) {
+                compiledModuleManifestFile =
+                    getCanonicalFile(new File(forkExecutionDirectory, COMPILED_MODULE_MANIFEST_FILE));
+            }
+        }
+
+        List<String> arguments = new ArrayList<>();
+        if (SYNC_MODE_NONE.equals(syncMode)) {
+            arguments.add(DONT_WRITE_BYTECODE_SWITCH);
+        }
+        boolean rerun = module.getRerunTestFilter() != null;
+        if (rerun) {
+            arguments.add(TEST_FILTER_SWITCH + module.getRerunTestFilter());
+        } else if (!isEmpty(test)) {
+            arguments.add(TEST_FILTER_SWITCH + test);
+        }
+        if (compiledModuleManifestFile != null) {
+            File cacheDirectory = new File(pluginCacheDirectory, COMPILED_MODULE_CACHE_DIRECTORY);
+            arguments.add(CLASS_CACHE_SWITCH + getCanonicalFile(cacheDirectory).getAbsolutePath());
+            arguments.add(CLASS_CACHE_MANIFEST_SWITCH + compiledModuleManifestFile.getAbsolutePath());
+            if (precompileThreads > 0) {
+                arguments.add(PRECOMPILE_SWITCH + precompileThreads);
+            }
+        }
+        File reportsDirectory = getCanonicalFile(module.getReportsDirectory());
+        File resultsDirectory = getResultsDirectory(module);
+        if (rerun) {
+            File rerunDirectory = getRerunDirectory(module, module.getRerunNumber());
+            reportsDirectory = new File(rerunDirectory, RERUN_REPORTS_DIR);
+            resultsDirectory = new File(rerunDirectory, RERUN_RESULTS_DIR);
+        }
+        arguments.add(REPORTS_DIR_SWITCH + reportsDirectory.getAbsolutePath());
+
+        String resultsFileName = TestResultRecord.getResultsFileName(forkId, sequenceNumber);
+        File resultsFile = new File(resultsDirectory, resultsFileName);
+        arguments.add(RESULTS_FILE_SWITCH + resultsFile.getAbsolutePath());
+        File timingsFile = new File(getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_TIMINGS_DIR)),
+                                    String.format(TIMINGS_FILE_FORMAT, forkId, sequenceNumber));
+        arguments.add(TIMINGS_FILE_SWITCH + timingsFile.getAbsolutePath());
+        // The coverage report is written before the failing tests are run again
+        if (coverage && !rerun) {
+            File coverageDataFile = new File(getCoverageRunsDirectory(module),
+                                             String.format(COVERAGE_DATA_FILE_FORMAT, forkId, sequenceNumber));
+            File cacheDirectory = new File(pluginCacheDirectory, COVERAGE_MODULE_CACHE_DIRECTORY);
+            arguments.add(COVERAGE_DATA_SWITCH + coverageDataFile.getAbsolutePath());
+            arguments.add(COVERAGE_CACHE_SWITCH + getCanonicalFile(cacheDirectory).getAbsolutePath());
+        }
+        File domainCopiesDirectory = new File(getCanonicalFile(new File(module.getOutputDirectory(),
+                                                                        WLST_TEST_DOMAIN_COPIES_DIR)),
+                                              String.format(DOMAIN_COPIES_DIR_FORMAT, forkId, sequenceNumber));
+        arguments.add(DOMAIN_COPIES_SWITCH + domainCopiesDirectory.getAbsolutePath());
+        if (domainFixtureCache) {
+            File domainCacheDirectory =
+                getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_DOMAIN_CACHE_DIR));
+            arguments.add(DOMAIN_CACHE_SWITCH + domainCacheDirectory.getAbsolutePath());
+        }
+        arguments.add(DOMAIN_COPY_MODE_SWITCH + domainFixtureCopyMode);
+        if (threadCount > 1) {
+            arguments.add(THREAD_COUNT_SWITCH + threadCount);
+        }
+        if (measureRetainedHeap) {
+            arguments.add(MEASURE_RETAINED_HEAP_SWITCH);
+        }
+        if (testResultMonitor != null && !rerun) {
+            arguments.add(SKIP_AFTER_FAILURE_COUNT_SWITCH + failureThreshold);
+            arguments.add(STOP_FILE_SWITCH + testResultMonitor.getStopFile().getAbsolutePath());
+        }
+
+        arguments.add(mainScriptsExecutionDirectory.getAbsolutePath());
+        arguments.add(testScriptsExecutionDirectory.getAbsolutePath());
+        arguments.add(verbosity.toString());
+
+        // The test files of a fork are the ones at the same paths in its own test execution directory
+        Path sharedTestsPath = getTestScriptsExecutionDirectory(module).toPath();
+        for (File testToRun : testsToRun) {
+            if (forkExecutionDirectory == null) {
+                arguments.add(testToRun.getAbsolutePath());
+            } else {
+                Path testPath = sharedTestsPath.relativize(testToRun.toPath());
+                arguments.add(new File(testScriptsExecutionDirectory, testPath.toString()).getAbsolutePath());
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * Print the performance summary table and write it to the JSON file so that the overhead of the plugin
+     * and of WLST can be tracked across builds and WLST versions.  Problems writing the file are only logged
+     * since they must not fail the build.
+     */
+    private void reportPerformanceSummary() {
+        if (performanceSummary) {
+            getLog().info(getMessage("WLSTTEST-074", phaseTimer.getElapsedMillis()));
+            for (String line : phaseTimer.formatSummary()) {
+                getLog().info(line);
+            }
+        } else if (getLog().isDebugEnabled()) {
+            getLog().debug(getMessage("WLSTTEST-074", phaseTimer.getElapsedMillis()));
+            for (String line : phaseTimer.formatSummary()) {
+                getLog().debug(line);
+            }
+        }
+
+        SimpleDateFormat timestampFormat = new SimpleDateFormat(TIMESTAMP_FORMAT);
+        timestampFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Map<String, String> runProperties = new LinkedHashMap<>();
+        runProperties.put("timestamp", timestampFormat.format(new Date()));
+        runProperties.put("goal", mojoExecution == null ? null : mojoExecution.getGoal());
+        runProperties.put("project", mavenProject.getId());
+        runProperties.put("wlstScript", wlstScript == null ? null : wlstScript.getAbsolutePath());
+        runProperties.put("executionMode", getExecutionMode());
+        runProperties.put("forkCount", Integer.toString(forks));
+        runProperties.put("javaVersion", System.getProperty("java.version"));
+
+        File summaryFile = getCanonicalFile(new File(mavenProject.getBasedir(), PERFORMANCE_SUMMARY_FILE));
+        try {
+            phaseTimer.writeJson(summaryFile, runProperties);
+        } catch (IOException ioe) {
+            getLog().warn(getMessage("WLSTTEST-075", summaryFile.getAbsolutePath(), ioe.getLocalizedMessage()));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //               Miscellaneous Utility Functions                         //
+    ///////////////////////////////////////////////////////////////////////////
+
+    protected File getCanonicalFile(File file) {
+        File result;
+        try {
+            result = file.getCanonicalFile();
+        } catch (IOException ignore) {
+            result = file.getAbsoluteFile();
+        }
+        return result;
+    }
+
+    protected void createDirectoryIfNeeded(File dir, String name) throws MojoExecutionException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-013", name, dir.getAbsolutePath()));
+        }
+    }
+
+    protected boolean isEmpty(String text) {
+        return text == null || text.isEmpty();
+    }
+
+    private String getDelimitedStringFromList(List<String> elements, char separatorChar) {
+        StringBuilder stringBuilder = new StringBuilder(elements.get(0));
+        for (int idx = 1; idx < elements.size(); idx++) {
+            stringBuilder.append(separatorChar);
+            stringBuilder.append(elements.get(idx));
+        }
+        return stringBuilder.toString();
+    }
+
+    protected String getMessage(String key, Object... args) {
+        return MessageUtils.getMessage(key, args);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * ClassDataSharingArchive.java - This class trains, creates and applies
+ *     the AppCDS archive used to start the WLST JVMs of the WLST Test
+ *     Maven Plugin faster.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class manages the AppCDS archive of the classes that a WLST JVM loads to run the tests.  Archives are
+ * kept in a directory keyed by the WLST script and the classpath environment of the WLST process.  The first
+ * run without an archive is a training run that records the list of loaded classes, after which the archive
+ * is dumped with the JVM that ran the training run.  Later runs map the archive, and the archive is removed
+ * so that the next run trains again when the test driver reports that the JVM or its classpath changed.
+ * A JVM that cannot dump the archive is remembered so that it is not trained again.
+ */
+final class ClassDataSharingArchive {
+    private static final String CLASS_LIST_FILE_NAME = "classes.lst";
+    private static final String ARCHIVE_FILE_NAME = "wlst.jsa";
+    private static final String JVM_INFO_FILE_NAME = "jvm.properties";
+    private static final String UNSUPPORTED_FILE_NAME = "unsupported.properties";
+    private static final String DUMP_LOG_FILE_NAME = "dump.log";
+    private static final String[] JVM_INFO_PROPERTIES = { "java.home", "java.vm.version", "java.class.path" };
+    private static final String TRAINING_OPTIONS_FORMAT =
+        "-XX:+IgnoreUnrecognizedVMOptions -XX:DumpLoadedClassList=%s";
+    private static final String ARCHIVE_OPTIONS_FORMAT =
+        "-XX:+IgnoreUnrecognizedVMOptions -Xshare:auto -XX:SharedArchiveFile=%s";
+
+    private final File archiveDirectory;
+    private final Log log;
+    private final AtomicBoolean training = new AtomicBoolean();
+
+    /**
+     * The constructor.
+     *
+     * @param cacheDirectory the directory holding the archives
+     * @param archiveKey     the key of the WLST script and classpath environment that the archive is for
+     * @param log            the Maven log
+     */
+    ClassDataSharingArchive(File cacheDirectory, String archiveKey, Log log) {
+        this.archiveDirectory = new File(cacheDirectory, archiveKey);
+        this.log = log;
+    }
+
+    /**
+     * Claim the training run if there is no archive yet.  Only one run at a time trains the archive.
+     *
+     * @return true if the caller's run should use the training options
+     */
+    boolean startTraining() {
+        if (getArchiveFile().isFile() || new File(archiveDirectory, UNSUPPORTED_FILE_NAME).isFile()) {
+            return false;
+        }
+        if (!training.compareAndSet(false, true)) {
+            return false;
+        }
+
+        File classListFile = new File(archiveDirectory, CLASS_LIST_FILE_NAME);
+        if (!archiveDirectory.isDirectory() && !archiveDirectory.mkdirs()) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-081", getArchiveFile().getAbsolutePath(),
+                                             archiveDirectory.getAbsolutePath()));
+            training.set(false);
+            return false;
+        } else if (classListFile.exists() && !classListFile.delete()) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-081", getArchiveFile().getAbsolutePath(),
+                                             classListFile.getAbsolutePath()));
+            training.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the JVM options that record the classes the training run loads.
+     *
+     * @return the JVM options
+     */
+    String getTrainingOptions() {
+        return String.format(TRAINING_OPTIONS_FORMAT, new File(archiveDirectory, CLASS_LIST_FILE_NAME));
+    }
+
+    /**
+     * Get the JVM options that map the archive.
+     *
+     * @return the JVM options, or null if there is no archive
+     */
+    String getArchiveOptions() {
+        File archiveFile = getArchiveFile();
+        if (!archiveFile.isFile()) {
+            return null;
+        }
+        return String.format(ARCHIVE_OPTIONS_FORMAT, archiveFile.getAbsolutePath());
+    }
+
+    /**
+     * Finish the training run by dumping the archive with the JVM that the test driver reported.  Failures are
+     * only logged since the archive only makes the tests start faster.
+     *
+     * @param jvmInfoFile the JVM properties written by the test driver of the training run
+     */
+    void finishTraining(File jvmInfoFile) {
+        try {
+            File classListFile = new File(archiveDirectory, CLASS_LIST_FILE_NAME);
+            Properties jvmInfo = readProperties(jvmInfoFile);
+            if (jvmInfo == null || !classListFile.isFile()) {
+                log.warn(MessageUtils.getMessage("WLSTTEST-081", getArchiveFile().getAbsolutePath(),
+                                                 MessageUtils.getMessage("WLSTTEST-083")));
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            File archiveFile = getArchiveFile();
+            File tempArchiveFile = new File(archiveDirectory, ARCHIVE_FILE_NAME + '.' + System.nanoTime() + ".tmp");
+            if (dumpArchive(jvmInfo, classListFile, tempArchiveFile)) {
+                writeProperties(new File(archiveDirectory, JVM_INFO_FILE_NAME), jvmInfo);
+                Files.move(tempArchiveFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                int classCount = Files.readAllLines(classListFile.toPath(), StandardCharsets.UTF_8).size();
+                log.info(MessageUtils.getMessage("WLSTTEST-080", archiveFile.getAbsolutePath(), classCount,
+                                                 System.currentTimeMillis() - start));
+            } else {
+                Files.deleteIfExists(tempArchiveFile.toPath());
+                writeProperties(new File(archiveDirectory, UNSUPPORTED_FILE_NAME), jvmInfo);
+                log.warn(MessageUtils.getMessage("WLSTTEST-081", archiveFile.getAbsolutePath(),
+                                                 MessageUtils.getMessage("WLSTTEST-084",
+                                                     new File(archiveDirectory, DUMP_LOG_FILE_NAME))));
+            }
+        } catch (IOException ioe) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-081", getArchiveFile().getAbsolutePath(),
+                                             ioe.getLocalizedMessage()));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            training.set(false);
+        }
+    }
+
+    /**
+     * Remove the archive, or the record that the JVM cannot dump one, if the JVM of a run that was not a
+     * training run is not the one that the archive was made for, so that the next run trains again.
+     *
+     * @param jvmInfoFile the JVM properties written by the test driver
+     */
+    void checkJvm(File jvmInfoFile) {
+        File jvmInfoCacheFile = new File(archiveDirectory, JVM_INFO_FILE_NAME);
+        File unsupportedFile = new File(archiveDirectory, UNSUPPORTED_FILE_NAME);
+        try {
+            Properties jvmInfo = readProperties(jvmInfoFile);
+            if (jvmInfo == null) {
+                return;
+            }
+
+            if (getArchiveFile().isFile() && !jvmInfo.equals(readProperties(jvmInfoCacheFile))) {
+                log.info(MessageUtils.getMessage("WLSTTEST-082", getArchiveFile().getAbsolutePath()));
+                Files.deleteIfExists(getArchiveFile().toPath());
+                Files.deleteIfExists(jvmInfoCacheFile.toPath());
+            } else if (unsupportedFile.isFile() && !jvmInfo.equals(readProperties(unsupportedFile))) {
+                Files.deleteIfExists(unsupportedFile.toPath());
+            }
+        } catch (IOException ioe) {
+            log.debug(MessageUtils.getMessage("WLSTTEST-142", getArchiveFile().getAbsolutePath(),
+                                              ioe.getLocalizedMessage()));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private File getArchiveFile() {
+        return new File(archiveDirectory, ARCHIVE_FILE_NAME);
+    }
+
+    private boolean dumpArchive(Properties jvmInfo, File classListFile, File archiveFile)
+        throws IOException, InterruptedException {
+        File javaExecutable = new File(jvmInfo.getProperty("java.home"), "bin/java");
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable.getAbsolutePath());
+        command.add("-Xshare:dump");
+        command.add("-XX:SharedClassListFile=" + classListFile.getAbsolutePath());
+        command.add("-XX:SharedArchiveFile=" + archiveFile.getAbsolutePath());
+        command.add("-cp");
+        command.add(jvmInfo.getProperty("java.class.path"));
+        log.debug(MessageUtils.getMessage("WLSTTEST-143", command));
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(new File(archiveDirectory, DUMP_LOG_FILE_NAME));
+        Process process = processBuilder.start();
+        return process.waitFor() == 0 && archiveFile.isFile();
+    }
+
+    private static Properties readProperties(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            properties.load(inputStream);
+        }
+        Properties result = new Properties();
+        for (String name : JVM_INFO_PROPERTIES) {
+            result.setProperty(name, properties.getProperty(name, ""));
+        }
+        return result;
+    }
+
+    private static void writeProperties(File file, Properties properties) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            properties.store(outputStream, null);
+        }
+    }
+}
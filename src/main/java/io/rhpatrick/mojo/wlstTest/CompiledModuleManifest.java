@@ -0,0 +1,169 @@
+/*
+ * CompiledModuleManifest.java - This class writes the manifest of Python
+ *     modules that the test driver uses to restore and save Jython-compiled
+ *     modules for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class writes the manifest of the Python modules in the execution directories.  Each line holds the
+ * absolute path, size, modification time and SHA-1 hash of a module, separated by tabs.  The test driver
+ * uses the hash and modification time to find the module's Jython-compiled class in the compiled module
+ * cache.  Hashes from the previous manifest are reused for files whose size and modification time did not
+ * change so that only new and changed modules are read.
+ */
+final class CompiledModuleManifest {
+    private static final String PY_FILE_EXTENSION = ".py";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final int FIELD_COUNT = 4;
+
+    private final File manifestFile;
+    private int hashedCount;
+
+    /**
+     * The constructor.
+     *
+     * @param manifestFile the manifest file
+     */
+    CompiledModuleManifest(File manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Write the manifest for the Python modules in the directory trees.
+     *
+     * @param rootDirectories the directory trees holding the Python modules
+     * @throws IOException if a module cannot be hashed or the manifest cannot be written
+     */
+    void write(List<File> rootDirectories) throws IOException {
+        Map<String, String[]> previousEntries = readPreviousEntries();
+        try (BufferedWriter writer = Files.newBufferedWriter(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            for (File rootDirectory : rootDirectories) {
+                if (rootDirectory.isDirectory()) {
+                    writeEntries(rootDirectory.toPath(), writer, previousEntries);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the manifest for directory trees that were linked or copied from the directory trees of another
+     * manifest.  The linked and copied modules keep their size, modification time and content, so the entries
+     * of the other manifest only need their paths moved to the new directory trees.
+     *
+     * @param sourceManifestFile the manifest of the directory trees that the modules were linked or copied from
+     * @param rootDirectories    the new directory trees, keyed by the directory trees they were linked or
+     *                           copied from
+     * @throws IOException if a manifest cannot be read or written
+     */
+    void writeRelocated(File sourceManifestFile, Map<File, File> rootDirectories) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(sourceManifestFile.toPath(), StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                for (Map.Entry<File, File> rootDirectory : rootDirectories.entrySet()) {
+                    String sourcePrefix = rootDirectory.getKey().getAbsolutePath() + File.separator;
+                    if (line.startsWith(sourcePrefix)) {
+                        writer.write(rootDirectory.getValue().getAbsolutePath() + File.separator
+                                         + line.substring(sourcePrefix.length()));
+                        writer.newLine();
+                        break;
+                    }
+                }
+                line = reader.readLine();
+            }
+        }
+    }
+
+    /**
+     * Get the number of modules that had to be hashed because they were new or changed.
+     *
+     * @return the number of hashed modules
+     */
+    int getHashedCount() {
+        return hashedCount;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void writeEntries(Path rootDirectory, final BufferedWriter writer,
+                              final Map<String, String[]> previousEntries) throws IOException {
+        Files.walkFileTree(rootDirectory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && file.getFileName().toString().endsWith(PY_FILE_EXTENSION)) {
+                    String path = file.toAbsolutePath().toString();
+                    String size = Long.toString(attrs.size());
+                    String lastModified = Long.toString(attrs.lastModifiedTime().toMillis());
+
+                    String[] previousEntry = previousEntries.get(path);
+                    String hash;
+                    if (previousEntry != null && previousEntry[1].equals(size)
+                        && previousEntry[2].equals(lastModified)) {
+                        hash = previousEntry[3];
+                    } else {
+                        hash = HashUtils.sha1(file);
+                        hashedCount++;
+                    }
+
+                    writer.write(path + FIELD_SEPARATOR + size + FIELD_SEPARATOR + lastModified
+                                     + FIELD_SEPARATOR + hash);
+                    writer.newLine();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private Map<String, String[]> readPreviousEntries() {
+        Map<String, String[]> result = new HashMap<>();
+        if (!manifestFile.isFile()) {
+            return result;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String[] fields = line.split(FIELD_SEPARATOR);
+                if (fields.length == FIELD_COUNT) {
+                    result.put(fields[0], fields);
+                }
+                line = reader.readLine();
+            }
+        } catch (IOException ignore) {
+            // The previous manifest is only an optimization so hash all modules again
+            result.clear();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * CoverageData.java - This class merges the line coverage recorded by the
+ *     test drivers and writes the Cobertura report for the WLST Test
+ *     Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * This class holds the line coverage of the Python modules under the main execution directory.  The test
+ * drivers write one tab-separated line per module, containing the module path relative to the main execution
+ * directory, the SHA-1 hash of its content, and comma-separated lists of its executable lines and of the lines
+ * that ran.  The data of all forks and runs is merged into a data file of the same format: the lines that ran
+ * are added up as long as the module's hash does not change, and the module starts over when it does.
+ */
+final class CoverageData {
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final String LINE_SEPARATOR = ",";
+    private static final int FIELD_COUNT = 4;
+    private static final String PY_FILE_EXTENSION = ".py";
+    private static final String ROOT_PACKAGE_NAME = ".";
+
+    private final File dataFile;
+    private final Map<String, ModuleCoverage> modules = new TreeMap<>();
+
+    /**
+     * The constructor.
+     *
+     * @param dataFile the file holding the merged coverage data
+     */
+    CoverageData(File dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    /**
+     * Load the merged coverage data of the previous runs, if any.
+     *
+     * @throws IOException if the data file cannot be read
+     */
+    void load() throws IOException {
+        if (dataFile.isFile()) {
+            merge(dataFile);
+        }
+    }
+
+    /**
+     * Merge the coverage data written by a test driver.
+     *
+     * @param runDataFile the data file written by the test driver
+     * @throws IOException if the data file cannot be read
+     */
+    void merge(File runDataFile) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(runDataFile.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String[] fields = line.split(FIELD_SEPARATOR, -1);
+                if (fields.length == FIELD_COUNT) {
+                    merge(fields[0], fields[1], parseLines(fields[2]), parseLines(fields[3]));
+                }
+                line = reader.readLine();
+            }
+        }
+    }
+
+    /**
+     * Remove the modules whose source file no longer exists.
+     *
+     * @param sourcesRootDirectory the directory holding the WLST source scripts
+     */
+    void removeDeletedModules(File sourcesRootDirectory) {
+        Iterator<String> iterator = modules.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!new File(sourcesRootDirectory, iterator.next()).isFile()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Write the merged coverage data.
+     *
+     * @throws IOException if the data file cannot be written
+     */
+    void save() throws IOException {
+        createParentDirectory(dataFile);
+        try (BufferedWriter writer = Files.newBufferedWriter(dataFile.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, ModuleCoverage> entry : modules.entrySet()) {
+                ModuleCoverage module = entry.getValue();
+                writer.write(entry.getKey() + FIELD_SEPARATOR + module.hash + FIELD_SEPARATOR
+                                 + formatLines(module.executableLines) + FIELD_SEPARATOR
+                                 + formatLines(module.coveredLines));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Write the coverage report in the Cobertura XML format, with a package per directory and a class per module.
+     *
+     * @param reportFile           the report file
+     * @param sourcesRootDirectory the directory holding the WLST source scripts, to which the file names are relative
+     * @throws IOException if the report cannot be written
+     */
+    void writeCoberturaReport(File reportFile, File sourcesRootDirectory) throws IOException {
+        Map<String, List<String>> packages = new TreeMap<>();
+        for (String path : modules.keySet()) {
+            int separatorIndex = path.lastIndexOf('/');
+            String packageName = separatorIndex == -1 ? ROOT_PACKAGE_NAME
+                                                      : path.substring(0, separatorIndex).replace('/', '.');
+            List<String> packagePaths = packages.get(packageName);
+            if (packagePaths == null) {
+                packagePaths = new ArrayList<>();
+                packages.put(packageName, packagePaths);
+            }
+            packagePaths.add(path);
+        }
+
+        createParentDirectory(reportFile);
+        try (BufferedWriter writer = Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<!DOCTYPE coverage SYSTEM \"http://cobertura.sourceforge.net/xml/coverage-04.dtd\">\n");
+            writer.write("<coverage line-rate=\"" + getLineRate(modules.keySet()) + "\" branch-rate=\"0\" "
+                             + "lines-covered=\"" + getCoveredLineCount() + "\" lines-valid=\""
+                             + getExecutableLineCount() + "\" branches-covered=\"0\" branches-valid=\"0\" "
+                             + "complexity=\"0\" version=\"wlst-test-maven-plugin\" timestamp=\""
+                             + System.currentTimeMillis() + "\">\n");
+            writer.write("  <sources>\n    <source>" + escape(sourcesRootDirectory.getAbsolutePath())
+                             + "</source>\n  </sources>\n");
+            writer.write("  <packages>\n");
+            for (Map.Entry<String, List<String>> packageEntry : packages.entrySet()) {
+                writer.write("    <package name=\"" + escape(packageEntry.getKey()) + "\" line-rate=\""
+                                 + getLineRate(packageEntry.getValue()) + "\" branch-rate=\"0\" complexity=\"0\">\n");
+                writer.write("      <classes>\n");
+                for (String path : packageEntry.getValue()) {
+                    writeClass(writer, path, modules.get(path));
+                }
+                writer.write("      </classes>\n    </package>\n");
+            }
+            writer.write("  </packages>\n</coverage>\n");
+        }
+    }
+
+    int getModuleCount() {
+        return modules.size();
+    }
+
+    int getExecutableLineCount() {
+        int result = 0;
+        for (ModuleCoverage module : modules.values()) {
+            result += module.executableLines.size();
+        }
+        return result;
+    }
+
+    int getCoveredLineCount() {
+        int result = 0;
+        for (ModuleCoverage module : modules.values()) {
+            result += module.coveredLines.size();
+        }
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void merge(String path, String hash, SortedSet<Integer> executableLines, SortedSet<Integer> coveredLines) {
+        ModuleCoverage module = modules.get(path);
+        if (module == null || !module.hash.equals(hash)) {
+            module = new ModuleCoverage(hash, executableLines);
+            modules.put(path, module);
+        }
+        for (Integer coveredLine : coveredLines) {
+            if (module.executableLines.contains(coveredLine)) {
+                module.coveredLines.add(coveredLine);
+            }
+        }
+    }
+
+    private void writeClass(BufferedWriter writer, String path, ModuleCoverage module) throws IOException {
+        String moduleName = path.substring(path.lastIndexOf('/') + 1);
+        if (moduleName.endsWith(PY_FILE_EXTENSION)) {
+            moduleName = moduleName.substring(0, moduleName.length() - PY_FILE_EXTENSION.length());
+        }
+
+        writer.write("        <class name=\"" + escape(moduleName) + "\" filename=\"" + escape(path)
+                         + "\" line-rate=\"" + getLineRate(module.executableLines.size(), module.coveredLines.size())
+                         + "\" branch-rate=\"0\" complexity=\"0\">\n");
+        writer.write("          <methods/>\n          <lines>\n");
+        for (Integer executableLine : module.executableLines) {
+            int hits = module.coveredLines.contains(executableLine) ? 1 : 0;
+            writer.write("            <line number=\"" + executableLine + "\" hits=\"" + hits
+                             + "\" branch=\"false\"/>\n");
+        }
+        writer.write("          </lines>\n        </class>\n");
+    }
+
+    private String getLineRate(Iterable<String> paths) {
+        int executableLineCount = 0;
+        int coveredLineCount = 0;
+        for (String path : paths) {
+            ModuleCoverage module = modules.get(path);
+            executableLineCount += module.executableLines.size();
+            coveredLineCount += module.coveredLines.size();
+        }
+        return getLineRate(executableLineCount, coveredLineCount);
+    }
+
+    private static String getLineRate(int executableLineCount, int coveredLineCount) {
+        if (executableLineCount == 0) {
+            return getLineRate(1, 1);
+        }
+        return String.format("%.4f", (double) coveredLineCount / executableLineCount).replace(',', '.');
+    }
+
+    private static SortedSet<Integer> parseLines(String lines) {
+        SortedSet<Integer> result = new TreeSet<>();
+        for (String line : lines.split(LINE_SEPARATOR)) {
+            if (!line.isEmpty()) {
+                try {
+                    result.add(Integer.valueOf(line));
+                } catch (NumberFormatException ignore) {
+                    // Skip the malformed entry left behind by a driver that was killed while writing
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String formatLines(SortedSet<Integer> lines) {
+        StringBuilder result = new StringBuilder();
+        for (Integer line : lines) {
+            if (result.length() > 0) {
+                result.append(LINE_SEPARATOR);
+            }
+            result.append(line);
+        }
+        return result.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static void createParentDirectory(File file) throws IOException {
+        File parentDirectory = file.getParentFile();
+        if (parentDirectory != null && !parentDirectory.isDirectory() && !parentDirectory.mkdirs()) {
+            throw new IOException(file.getParent());
+        }
+    }
+
+    private static final class ModuleCoverage {
+        private final String hash;
+        private final SortedSet<Integer> executableLines;
+        private final SortedSet<Integer> coveredLines = new TreeSet<>();
+
+        private ModuleCoverage(String hash, SortedSet<Integer> executableLines) {
+            this.hash = hash;
+            this.executableLines = executableLines;
+        }
+    }
+}
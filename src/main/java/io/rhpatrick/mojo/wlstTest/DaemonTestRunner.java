@@ -0,0 +1,98 @@
+/*
+ * DaemonTestRunner.java - This class runs the WLST test driver in a
+ *     long-lived WLST daemon for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class runs the test driver in a WLST daemon, starting the daemon if needed, which is the daemon
+ * execution mode.  Each fork uses its own daemon so that forks can run concurrently.  A daemon whose test
+ * run takes longer than the forkedProcessTimeoutInSeconds is killed and replaced on the next run.
+ */
+final class DaemonTestRunner extends TestRunner {
+    private final WlstEnvironment wlstEnvironment;
+    private final File stateDirectory;
+    private final int idleTimeoutMinutes;
+    private final int timeoutSeconds;
+    private final Log log;
+
+    /**
+     * The constructor.
+     *
+     * @param wlstEnvironment    the WLST environment of the test runs
+     * @param stateDirectory     the directory holding the state and log files of the daemons
+     * @param idleTimeoutMinutes the number of minutes a daemon waits for a test run before exiting
+     * @param timeoutSeconds     the number of seconds after which a daemon running a test run is killed, or 0
+     * @param log                the Maven log
+     */
+    DaemonTestRunner(WlstEnvironment wlstEnvironment, File stateDirectory, int idleTimeoutMinutes,
+                     int timeoutSeconds, Log log) {
+        this.wlstEnvironment = wlstEnvironment;
+        this.stateDirectory = stateDirectory;
+        this.idleTimeoutMinutes = idleTimeoutMinutes;
+        this.timeoutSeconds = timeoutSeconds;
+        this.log = log;
+    }
+
+    @Override
+    void run(WlstTestModule module, int forkId, int sequenceNumber, File workingDirectory, File testsDriverScript,
+             List<String> driverArguments) throws MojoExecutionException {
+        Map<String, String> launchEnvironment = wlstEnvironment.buildEnvironmentVariables(module, false);
+        List<String> launchCommand = wlstEnvironment.getLaunchCommand(module, testsDriverScript);
+
+        String daemonKey;
+        try {
+            StringBuilder fingerprint = new StringBuilder();
+            fingerprint.append(launchCommand.subList(0, launchCommand.size() - 1)).append('|');
+            fingerprint.append(wlstEnvironment.isUsingOldWlstVersion(module)).append('|');
+            fingerprint.append(launchEnvironment).append('|');
+            fingerprint.append(HashUtils.sha1(testsDriverScript.toPath()));
+            daemonKey = HashUtils.sha1(fingerprint.toString()) + "-" + forkId;
+        } catch (IOException ioe) {
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-039", ioe.getLocalizedMessage()),
+                                             ioe);
+        }
+
+        WlstDaemonClient daemonClient = new WlstDaemonClient(stateDirectory, daemonKey, launchCommand,
+                                                             launchEnvironment, idleTimeoutMinutes, timeoutSeconds,
+                                                             log);
+        int exitCode;
+        try {
+            exitCode = daemonClient.runTests(workingDirectory, wlstEnvironment.getWlstExtClasspathEntries(module),
+                                             driverArguments, System.out);
+        } catch (IOException ioe) {
+            module.setIncompleteRun(true);
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-039", ioe.getLocalizedMessage()),
+                                             ioe);
+        }
+
+        if (daemonClient.isTimedOut()) {
+            module.setIncompleteRun(true);
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-133", daemonKey, timeoutSeconds,
+                                                                     daemonClient.getLogFile().getAbsolutePath()));
+        }
+        checkExitCode(module, exitCode);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * ForkedTestRunner.java - This class runs the WLST tests in concurrent
+ *     forks for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class runs the tests in multiple concurrent forks.  The test files are split into work units (one
+ * per fork when reusing forks, or one per test file otherwise) that are consumed by the fork workers, and
+ * the outcomes of all work units are merged into a single outcome.  When reusing forks, the test files are
+ * balanced across the forks by the durations of their test modules in the timing history, the way the test
+ * shards are, so that the forks finish at about the same time.
+ */
+final class ForkedTestRunner {
+    /**
+     * The goal's side of a forked test run.
+     */
+    interface Forks {
+        /**
+         * Prepare a fork before it runs its first work unit.
+         *
+         * @param forkId the number of the fork, starting at 1
+         * @return the working directory of the fork
+         * @throws MojoExecutionException if the fork cannot be prepared
+         */
+        File prepareFork(int forkId) throws MojoExecutionException;
+
+        /**
+         * Run a work unit in a fork.
+         *
+         * @param forkId        the number of the fork, starting at 1
+         * @param forkDirectory the working directory of the fork
+         * @param workUnit      the test files to run
+         * @throws MojoExecutionException if the tests fail or cannot be run
+         */
+        void runWorkUnit(int forkId, File forkDirectory, List<File> workUnit) throws MojoExecutionException;
+
+        /**
+         * Whether the failure threshold was reached and no more work units should be run.
+         *
+         * @return true if no more tests should be run
+         */
+        boolean isStopRequested();
+    }
+
+    private final int forkCount;
+    private final boolean reuseForks;
+    private final List<TestTimingHistory> timingHistories;
+    private final Log log;
+
+    /**
+     * The constructor.
+     *
+     * @param forkCount       the maximum number of concurrent forks
+     * @param reuseForks      whether a fork runs its entire share of the test files at once
+     * @param timingHistories the loaded timing histories used to balance the forks
+     * @param log             the Maven log
+     */
+    ForkedTestRunner(int forkCount, boolean reuseForks, List<TestTimingHistory> timingHistories, Log log) {
+        this.forkCount = forkCount;
+        this.reuseForks = reuseForks;
+        this.timingHistories = timingHistories;
+        this.log = log;
+    }
+
+    /**
+     * Run the test files in the forks.
+     *
+     * @param testsToRun the test files to run
+     * @param forks      the goal's side of the run
+     * @throws MojoExecutionException if any of the work units failed or could not be run
+     */
+    void run(List<File> testsToRun, final Forks forks) throws MojoExecutionException {
+        final ConcurrentLinkedQueue<List<File>> workUnits = new ConcurrentLinkedQueue<>();
+        if (reuseForks) {
+            workUnits.addAll(partitionTests(testsToRun, forkCount));
+        } else {
+            for (File testToRun : testsToRun) {
+                List<File> workUnit = new ArrayList<>(1);
+                workUnit.add(testToRun);
+                workUnits.add(workUnit);
+            }
+        }
+
+        int workerCount = Math.min(forkCount, workUnits.size());
+        log.info(MessageUtils.getMessage("WLSTTEST-021", testsToRun.size(), workerCount));
+
+        List<Callable<Integer>> workers = new ArrayList<>(workerCount);
+        for (int forkNumber = 1; forkNumber <= workerCount; forkNumber++) {
+            final int forkId = forkNumber;
+            final File forkDirectory = forks.prepareFork(forkId);
+
+            workers.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int failures = 0;
+                    List<File> workUnit = pollWorkUnit(workUnits, forks);
+                    while (workUnit != null) {
+                        try {
+                            forks.runWorkUnit(forkId, forkDirectory, workUnit);
+                        } catch (MojoExecutionException mee) {
+                            log.error(MessageUtils.getMessage("WLSTTEST-022", forkId, workUnit.size(),
+                                                              mee.getLocalizedMessage()));
+                            failures++;
+                        }
+                        workUnit = pollWorkUnit(workUnits, forks);
+                    }
+                    return failures;
+                }
+            });
+        }
+
+        int failedExecutions = 0;
+        ExecutorService executorService = Executors.newFixedThreadPool(workerCount);
+        try {
+            for (Future<Integer> result : executorService.invokeAll(workers)) {
+                failedExecutions += result.get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-024"), ie);
+        } catch (ExecutionException ee) {
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-025",
+                                                                     ee.getCause().getLocalizedMessage()),
+                                             ee.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        if (failedExecutions > 0) {
+            int totalExecutions = reuseForks ? workerCount : testsToRun.size();
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-023", failedExecutions,
+                                                                     totalExecutions));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private List<List<File>> partitionTests(List<File> testsToRun, int partitionCount) {
+        int count = Math.min(partitionCount, testsToRun.size());
+        List<List<File>> partitions = new ArrayList<>(count);
+        for (int idx = 0; idx < count; idx++) {
+            partitions.add(new ArrayList<File>());
+        }
+
+        List<String> testPaths = new ArrayList<>(testsToRun.size());
+        Map<String, File> testFiles = new HashMap<>();
+        for (File testToRun : testsToRun) {
+            String testPath = testToRun.getAbsolutePath().replace('\\', '/');
+            testPaths.add(testPath);
+            testFiles.put(testPath, testToRun);
+        }
+        TestShardPlanner planner = new TestShardPlanner(testPaths, count, timingHistories);
+        if (planner.isBalancedByHistory()) {
+            // Each partition keeps the run order of its test files
+            long longestMillis = 0L;
+            for (int idx = 0; idx < count; idx++) {
+                for (String testPath : planner.getShard(testPaths, idx)) {
+                    partitions.get(idx).add(testFiles.get(testPath));
+                }
+                longestMillis = Math.max(longestMillis, planner.getEstimatedMillis(idx));
+            }
+            log.info(MessageUtils.getMessage("WLSTTEST-130", count, longestMillis));
+        } else {
+            // Round-robin the test files so that every partition gets a similar number of test files
+            for (int idx = 0; idx < testsToRun.size(); idx++) {
+                partitions.get(idx % count).add(testsToRun.get(idx));
+            }
+        }
+        return partitions;
+    }
+
+    private static List<File> pollWorkUnit(ConcurrentLinkedQueue<List<File>> workUnits, Forks forks) {
+        if (forks.isStopRequested()) {
+            return null;
+        }
+        return workUnits.poll();
+    }
+}
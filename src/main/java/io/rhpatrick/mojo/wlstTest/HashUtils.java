@@ -0,0 +1,139 @@
+/*
+ * HashUtils.java - This class provides the content hashing functions
+ *     shared by the WLST Test Maven Plugin classes.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Content hashing utility functions.
+ */
+final class HashUtils {
+    private static final String HASH_ALGORITHM = "SHA-1";
+    private static final int BUF_SIZE = 8192;
+    private static final String COMPILED_CLASS_FILE_SUFFIX = "$py.class";
+
+    private HashUtils() {
+        // hide the constructor for this utility class
+    }
+
+    /**
+     * Compute the hex-encoded SHA-1 hash of the bytes.
+     *
+     * @param content the bytes to hash
+     * @return the hash
+     */
+    static String sha1(byte[] content) {
+        return toHexString(newDigest().digest(content));
+    }
+
+    /**
+     * Compute the hex-encoded SHA-1 hash of the UTF-8 encoding of the string.
+     *
+     * @param text the string to hash
+     * @return the hash
+     */
+    static String sha1(String text) {
+        return sha1(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compute the hex-encoded SHA-1 hash of the file content.
+     *
+     * @param file the file to hash
+     * @return the hash
+     * @throws IOException if an error occurs while reading the file
+     */
+    static String sha1(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUF_SIZE];
+            int bytesRead = inputStream.read(buffer);
+            while (bytesRead != -1) {
+                digest.update(buffer, 0, bytesRead);
+                bytesRead = inputStream.read(buffer);
+            }
+        }
+        return toHexString(digest.digest());
+    }
+
+    /**
+     * Compute the hex-encoded SHA-1 hash of the relative paths and contents of the files in the directory tree,
+     * skipping the classes that Jython compiles next to the python files.  The hash does not depend on where
+     * the directory is, so that it is the same on every machine with the same files.
+     *
+     * @param directory the root of the directory tree
+     * @return the hash, which is the hash of the empty string if the directory does not exist
+     * @throws IOException if an error occurs while reading a file
+     */
+    static String sha1Tree(File directory) throws IOException {
+        StringBuilder content = new StringBuilder();
+        appendTreeContent(content, directory, "");
+        return sha1(content.toString());
+    }
+
+    /**
+     * Convert the bytes to a lowercase hex string.
+     *
+     * @param bytes the bytes
+     * @return the hex string
+     */
+    static String toHexString(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    private static void appendTreeContent(StringBuilder content, File directory, String relativePath)
+        throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files);
+        for (File file : files) {
+            String fileRelativePath = relativePath + file.getName();
+            if (file.isDirectory()) {
+                appendTreeContent(content, file, fileRelativePath + '/');
+            } else if (!file.getName().endsWith(COMPILED_CLASS_FILE_SUFFIX)) {
+                content.append(fileRelativePath).append('=').append(sha1(file.toPath())).append('\n');
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException nsae) {
+            // Every Java platform implementation is required to support SHA-1
+            throw new IllegalStateException(nsae.getLocalizedMessage(), nsae);
+        }
+    }
+}
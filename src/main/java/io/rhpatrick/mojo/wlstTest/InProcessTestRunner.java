@@ -0,0 +1,70 @@
+/*
+ * InProcessTestRunner.java - This class runs the WLST test driver in a
+ *     Jython interpreter in the Maven JVM for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class runs the test driver in a Jython interpreter loaded from the WLST JAR files into the Maven JVM,
+ * which is the inProcess execution mode.  Each fork uses its own interpreter.
+ */
+final class InProcessTestRunner extends TestRunner {
+    private final WlstEnvironment wlstEnvironment;
+    private final Log log;
+
+    /**
+     * The constructor.
+     *
+     * @param wlstEnvironment the WLST environment of the test runs
+     * @param log             the Maven log
+     */
+    InProcessTestRunner(WlstEnvironment wlstEnvironment, Log log) {
+        this.wlstEnvironment = wlstEnvironment;
+        this.log = log;
+    }
+
+    @Override
+    void run(WlstTestModule module, int forkId, int sequenceNumber, File workingDirectory, File testsDriverScript,
+             List<String> driverArguments) throws MojoExecutionException {
+        InProcessWlstRunner.Outcome outcome;
+        try {
+            InProcessWlstRunner runner =
+                InProcessWlstRunner.getRunner(wlstEnvironment.getInProcessClasspath(module),
+                                              wlstEnvironment.getInProcessRegistryProperties(), forkId, log);
+            outcome = runner.run(testsDriverScript, workingDirectory, driverArguments);
+        } catch (IOException ioe) {
+            module.setIncompleteRun(true);
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-045", ioe.getLocalizedMessage()),
+                                             ioe);
+        }
+
+        if (outcome.hasResult() && outcome.getExitCode() != 0) {
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-046", outcome.getTestsRun(),
+                                                                     outcome.getFailures(), outcome.getErrors()));
+        } else if (outcome.getExitCode() != 0) {
+            module.setIncompleteRun(true);
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-040", outcome.getExitCode()));
+        }
+    }
+}
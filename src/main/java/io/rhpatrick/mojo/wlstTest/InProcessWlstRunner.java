@@ -0,0 +1,268 @@
+/*
+ * InProcessWlstRunner.java - This class runs the WLST tests in a Jython
+ *     interpreter loaded into the Maven JVM for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class runs the test driver in a Jython interpreter that is loaded from the WLST JAR files into
+ * an isolated class loader inside the Maven JVM.  The WLST interpreter is used when the WLST classes are
+ * available and a plain Jython interpreter is used otherwise.  Interpreters are cached for the life of
+ * the JVM so that later executions in the same build reuse them, and an interpreter is replaced when
+ * one of its classpath entries changes since classes that are already loaded cannot be reloaded.
+ *
+ * <P>The Java system properties for the tests are passed to the interpreter as Jython registry properties
+ * rather than set in the Maven JVM, which other mojos and parallel builds share.  Since the registry is only
+ * read when the interpreter is created, the interpreters are also cached by their registry properties.</P>
+ *
+ * <P>Jython is only accessed through reflection so that the plugin does not depend on any particular
+ * Jython version.</P>
+ */
+final class InProcessWlstRunner {
+    private static final String WLST_INTERPRETER_CLASS_NAME = "weblogic.management.scripting.utils.WLSTInterpreter";
+    private static final String PYTHON_INTERPRETER_CLASS_NAME = "org.python.util.PythonInterpreter";
+    private static final String DRIVER_MODULE_NAME = "_wlst_test_driver";
+
+    private static final String DRIVER_DIRECTORY_VARIABLE = "_wlst_test_driver_dir";
+    private static final String ARGUMENTS_VARIABLE = "_wlst_test_args";
+    private static final String WORKING_DIRECTORY_VARIABLE = "_wlst_test_cwd";
+    private static final String OUTCOME_VARIABLE = "_wlst_test_outcome";
+
+    private static final Map<String, InProcessWlstRunner> RUNNERS = new HashMap<>();
+
+    private final String fingerprint;
+    private final URLClassLoader classLoader;
+    private final Object interpreter;
+    private final Method execMethod;
+    private final Method setMethod;
+    private final Method evalMethod;
+    private boolean driverLoaded;
+
+    /**
+     * Get the cached runner for the classpath and fork, creating it if needed.
+     *
+     * @param classpath          the WLST, Jython and WLST extension classpath entries
+     * @param registryProperties the properties to add to the Jython registry of the interpreter
+     * @param forkId             the fork that will use the runner, since each fork needs its own interpreter
+     * @param log                the Maven log
+     * @return the runner
+     * @throws IOException if the classpath cannot be read or the interpreter cannot be created
+     */
+    static InProcessWlstRunner getRunner(List<File> classpath, Map<String, String> registryProperties, int forkId,
+                                         Log log) throws IOException {
+        String key = forkId + "|" + classpath + "|" + new TreeMap<>(registryProperties);
+        StringBuilder fingerprint = new StringBuilder();
+        for (File classpathEntry : classpath) {
+            fingerprint.append(WlstDaemonClient.getClasspathEntryFingerprint(classpathEntry)).append('|');
+        }
+
+        synchronized (RUNNERS) {
+            InProcessWlstRunner runner = RUNNERS.get(key);
+            if (runner != null && !runner.fingerprint.equals(fingerprint.toString())) {
+                log.info(MessageUtils.getMessage("WLSTTEST-043", forkId));
+                RUNNERS.remove(key);
+                runner.close();
+                runner = null;
+            }
+            if (runner == null) {
+                runner = new InProcessWlstRunner(fingerprint.toString(), classpath, registryProperties);
+                RUNNERS.put(key, runner);
+            }
+            return runner;
+        }
+    }
+
+    private InProcessWlstRunner(String fingerprint, List<File> classpath, Map<String, String> registryProperties)
+        throws IOException {
+        this.fingerprint = fingerprint;
+
+        URL[] urls = new URL[classpath.size()];
+        for (int idx = 0; idx < urls.length; idx++) {
+            urls[idx] = classpath.get(idx).toURI().toURL();
+        }
+        // Use the parent of the system class loader so that none of the Maven or plugin classes leak into WLST
+        this.classLoader = new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+
+        Thread currentThread = Thread.currentThread();
+        ClassLoader savedClassLoader = currentThread.getContextClassLoader();
+        currentThread.setContextClassLoader(classLoader);
+        try {
+            Properties postProperties = new Properties();
+            postProperties.putAll(registryProperties);
+            Class<?> pythonInterpreterClass = classLoader.loadClass(PYTHON_INTERPRETER_CLASS_NAME);
+            pythonInterpreterClass.getMethod("initialize", Properties.class, Properties.class, String[].class)
+                .invoke(null, System.getProperties(), postProperties, new String[0]);
+
+            Class<?> interpreterClass;
+            try {
+                interpreterClass = classLoader.loadClass(WLST_INTERPRETER_CLASS_NAME);
+            } catch (ClassNotFoundException ignore) {
+                interpreterClass = pythonInterpreterClass;
+            }
+            this.interpreter = interpreterClass.getDeclaredConstructor().newInstance();
+            this.execMethod = pythonInterpreterClass.getMethod("exec", String.class);
+            this.setMethod = pythonInterpreterClass.getMethod("set", String.class, Object.class);
+            this.evalMethod = pythonInterpreterClass.getMethod("eval", String.class);
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            close();
+            throw new IOException(getCauseMessage(ex), ex);
+        } finally {
+            currentThread.setContextClassLoader(savedClassLoader);
+        }
+    }
+
+    /**
+     * Run the tests.
+     *
+     * @param testsDriverScript the test driver script
+     * @param workingDirectory  the working directory for the test run
+     * @param driverArguments   the test driver arguments
+     * @return the outcome of the test run
+     * @throws IOException if the test driver fails to run
+     */
+    synchronized Outcome run(File testsDriverScript, File workingDirectory, List<String> driverArguments)
+        throws IOException {
+        Thread currentThread = Thread.currentThread();
+        ClassLoader savedClassLoader = currentThread.getContextClassLoader();
+        currentThread.setContextClassLoader(classLoader);
+        try {
+            if (!driverLoaded) {
+                set(DRIVER_DIRECTORY_VARIABLE, testsDriverScript.getParentFile().getAbsolutePath());
+                exec("import sys");
+                exec("sys.path.insert(0, " + DRIVER_DIRECTORY_VARIABLE + ")");
+                exec("import " + DRIVER_MODULE_NAME);
+                driverLoaded = true;
+            }
+
+            set(ARGUMENTS_VARIABLE, driverArguments.toArray(new String[driverArguments.size()]));
+            set(WORKING_DIRECTORY_VARIABLE, workingDirectory.getAbsolutePath());
+            exec(OUTCOME_VARIABLE + " = " + DRIVER_MODULE_NAME + ".run_in_process(list(" + ARGUMENTS_VARIABLE
+                     + "), " + WORKING_DIRECTORY_VARIABLE + ")");
+
+            int exitCode = evalInt(OUTCOME_VARIABLE + "[0]");
+            if ("None".equals(eval(OUTCOME_VARIABLE + "[1]"))) {
+                return new Outcome(exitCode);
+            }
+            return new Outcome(exitCode,
+                               evalInt(OUTCOME_VARIABLE + "[1].testsRun"),
+                               evalInt("len(" + OUTCOME_VARIABLE + "[1].failures)"),
+                               evalInt("len(" + OUTCOME_VARIABLE + "[1].errors)"));
+        } catch (ReflectiveOperationException | LinkageError | NumberFormatException ex) {
+            throw new IOException(getCauseMessage(ex), ex);
+        } finally {
+            currentThread.setContextClassLoader(savedClassLoader);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void exec(String code) throws ReflectiveOperationException {
+        execMethod.invoke(interpreter, code);
+    }
+
+    private void set(String name, Object value) throws ReflectiveOperationException {
+        setMethod.invoke(interpreter, name, value);
+    }
+
+    private String eval(String expression) throws ReflectiveOperationException {
+        return String.valueOf(evalMethod.invoke(interpreter, "str(" + expression + ")"));
+    }
+
+    private int evalInt(String expression) throws ReflectiveOperationException {
+        return Integer.parseInt(eval(expression));
+    }
+
+    private void close() {
+        try {
+            classLoader.close();
+        } catch (IOException ignore) {
+            // Nothing else can be done since the class loader is being discarded anyway
+        }
+    }
+
+    private static String getCauseMessage(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof InvocationTargetException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        // Jython exceptions only describe the Python exception in their toString() output
+        return cause.toString();
+    }
+
+    /**
+     * The outcome of a test run, read from the unittest TestResult object.
+     */
+    static final class Outcome {
+        private final int exitCode;
+        private final boolean hasResult;
+        private final int testsRun;
+        private final int failures;
+        private final int errors;
+
+        private Outcome(int exitCode) {
+            this.exitCode = exitCode;
+            this.hasResult = false;
+            this.testsRun = 0;
+            this.failures = 0;
+            this.errors = 0;
+        }
+
+        private Outcome(int exitCode, int testsRun, int failures, int errors) {
+            this.exitCode = exitCode;
+            this.hasResult = true;
+            this.testsRun = testsRun;
+            this.failures = failures;
+            this.errors = errors;
+        }
+
+        int getExitCode() {
+            return exitCode;
+        }
+
+        boolean hasResult() {
+            return hasResult;
+        }
+
+        int getTestsRun() {
+            return testsRun;
+        }
+
+        int getFailures() {
+            return failures;
+        }
+
+        int getErrors() {
+            return errors;
+        }
+    }
+}
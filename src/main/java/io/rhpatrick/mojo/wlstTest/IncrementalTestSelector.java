@@ -0,0 +1,501 @@
+/*
+ * IncrementalTestSelector.java - This class implements the incremental
+ *     test selection used by the WLST Test Maven Plugin to only run the
+ *     test files affected by changes since the last successful run.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class selects the test files affected by changes to the WLST source and test trees.  It keeps a
+ * persisted index of the size, modification time, content hash and imported module names of every file
+ * in both trees.  A test file is affected if it changed or if any module it imports, directly or
+ * transitively, was added, changed or removed since the index was last saved.
+ *
+ * <P>The import graph is computed statically so dynamic imports (for example, <code>__import__</code>
+ * with a computed name) are not detected.  Any change to a non-Python file or to the configuration
+ * fingerprint causes all tests to be selected.</P>
+ */
+final class IncrementalTestSelector {
+    static final String MAIN_TREE = "main";
+    static final String TEST_TREE = "test";
+
+    private static final String CONFIG_KEY = "config";
+    private static final String FILE_KEY_PREFIX = "file.";
+    private static final String KEY_SEPARATOR = ":";
+    private static final String IMPORT_SEPARATOR = ",";
+    private static final int ENTRY_FIELD_COUNT = 4;
+
+    private static final String PY_FILE_EXTENSION = ".py";
+    private static final String PACKAGE_INIT_FILE_NAME = "__init__.py";
+    private static final String JYTHON_CLASS_FILE_SUFFIX = "$py.class";
+    private static final String PYTHON_CLASS_FILE_SUFFIX = ".pyc";
+
+    private static final Pattern IMPORT_PATTERN =
+        Pattern.compile("^\\s*import\\s+(.+)$");
+    private static final Pattern FROM_IMPORT_PATTERN =
+        Pattern.compile("^\\s*from\\s+(\\.*)([\\w.]*)\\s+import\\s+(.+)$");
+    private static final Pattern AS_CLAUSE_PATTERN = Pattern.compile("\\s+as\\s+\\w+");
+
+    private final File indexFile;
+    private final File sourcesRootDirectory;
+    private final File testsRootDirectory;
+    private final String configurationFingerprint;
+
+    private final Map<String, FileEntry> previousEntries = new HashMap<>();
+    private final Map<String, FileEntry> currentEntries = new HashMap<>();
+    private final Map<String, Set<String>> moduleFiles = new HashMap<>();
+    private final Set<String> changedModules = new HashSet<>();
+    private final Set<String> changedFiles = new HashSet<>();
+    private boolean fullRunRequired;
+
+    /**
+     * The constructor.
+     *
+     * @param indexFile                the file where the index is persisted between runs
+     * @param sourcesRootDirectory     the root directory of the WLST sources being tested
+     * @param testsRootDirectory       the root directory of the WLST tests
+     * @param configurationFingerprint a string that changes whenever the test execution configuration changes
+     */
+    IncrementalTestSelector(File indexFile, File sourcesRootDirectory, File testsRootDirectory,
+                            String configurationFingerprint) {
+        this.indexFile = indexFile;
+        this.sourcesRootDirectory = sourcesRootDirectory;
+        this.testsRootDirectory = testsRootDirectory;
+        this.configurationFingerprint = configurationFingerprint;
+    }
+
+    /**
+     * Load the previous index, if any, and compute the current state of the source and test trees.
+     *
+     * @throws IOException if an error occurs while reading the index or the trees
+     */
+    void scan() throws IOException {
+        String previousFingerprint = loadPreviousIndex();
+        fullRunRequired = previousFingerprint == null || !previousFingerprint.equals(getConfigurationHash());
+
+        scanTree(MAIN_TREE, sourcesRootDirectory);
+        scanTree(TEST_TREE, testsRootDirectory);
+
+        Set<String> allKeys = new HashSet<>(previousEntries.keySet());
+        allKeys.addAll(currentEntries.keySet());
+        for (String key : allKeys) {
+            FileEntry previous = previousEntries.get(key);
+            FileEntry current = currentEntries.get(key);
+            if (previous != null && current != null && previous.hash.equals(current.hash)) {
+                continue;
+            }
+
+            changedFiles.add(key);
+            String relativePath = getRelativePath(key);
+            if (relativePath.endsWith(PY_FILE_EXTENSION)) {
+                changedModules.addAll(getModuleNames(getTreeName(key), relativePath));
+            } else {
+                fullRunRequired = true;
+            }
+        }
+    }
+
+    /**
+     * Whether all tests must run because there is no usable index or a change could not be attributed.
+     *
+     * @return true if all tests must run, false otherwise
+     */
+    boolean isFullRunRequired() {
+        return fullRunRequired;
+    }
+
+    /**
+     * Select the test files affected by the changes found by {@link #scan()}.
+     *
+     * @param testRelativePaths the candidate test files, relative to the tests root directory
+     * @return the subset of the candidate test files that must run
+     */
+    Set<String> selectTests(Collection<String> testRelativePaths) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String testRelativePath : testRelativePaths) {
+            String key = getKey(TEST_TREE, testRelativePath);
+            if (!currentEntries.containsKey(key)) {
+                // stale copy of a test file that no longer exists in the tests root directory
+                continue;
+            }
+            if (fullRunRequired || changedFiles.contains(key) || importsChangedModule(key)) {
+                result.add(testRelativePath);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Persist the current state of the trees so that the next run only selects tests affected by later changes.
+     *
+     * @throws IOException if an error occurs while writing the index
+     */
+    void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(CONFIG_KEY, getConfigurationHash());
+        for (Map.Entry<String, FileEntry> entry : currentEntries.entrySet()) {
+            properties.setProperty(FILE_KEY_PREFIX + entry.getKey(), entry.getValue().toString());
+        }
+
+        File parent = indexFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException(MessageUtils.getMessage("WLSTTEST-141", parent.getAbsolutePath()));
+        }
+        try (OutputStream outputStream = new FileOutputStream(indexFile)) {
+            properties.store(outputStream, "WLST Test Maven Plugin incremental test selection index");
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private String loadPreviousIndex() throws IOException {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = new FileInputStream(indexFile)) {
+            properties.load(inputStream);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(FILE_KEY_PREFIX)) {
+                FileEntry entry = FileEntry.parse(properties.getProperty(name));
+                if (entry != null) {
+                    previousEntries.put(name.substring(FILE_KEY_PREFIX.length()), entry);
+                }
+            }
+        }
+        return properties.getProperty(CONFIG_KEY);
+    }
+
+    private void scanTree(final String treeName, File rootDirectory) throws IOException {
+        if (rootDirectory == null || !rootDirectory.isDirectory()) {
+            return;
+        }
+
+        final Path root = rootDirectory.toPath();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String fileName = file.getFileName().toString();
+                if (attrs.isRegularFile() && !fileName.endsWith(JYTHON_CLASS_FILE_SUFFIX)
+                    && !fileName.endsWith(PYTHON_CLASS_FILE_SUFFIX)) {
+                    String relativePath = root.relativize(file).toString().replace(File.separatorChar, '/');
+                    scanFile(treeName, relativePath, file, attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void scanFile(String treeName, String relativePath, Path file, BasicFileAttributes attrs)
+        throws IOException {
+        String key = getKey(treeName, relativePath);
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        boolean isPythonFile = relativePath.endsWith(PY_FILE_EXTENSION);
+
+        FileEntry entry = previousEntries.get(key);
+        if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+            byte[] content = Files.readAllBytes(file);
+            List<String> imports;
+            if (isPythonFile) {
+                imports = parseImports(new String(content, StandardCharsets.UTF_8), getPackageName(relativePath));
+            } else {
+                imports = new ArrayList<>();
+            }
+            entry = new FileEntry(size, lastModified, HashUtils.sha1(content), imports);
+        }
+        currentEntries.put(key, entry);
+
+        if (isPythonFile) {
+            for (String moduleName : getModuleNames(treeName, relativePath)) {
+                Set<String> files = moduleFiles.get(moduleName);
+                if (files == null) {
+                    files = new HashSet<>();
+                    moduleFiles.put(moduleName, files);
+                }
+                files.add(key);
+            }
+        }
+    }
+
+    private boolean importsChangedModule(String testKey) {
+        Set<String> visitedFiles = new HashSet<>();
+        Set<String> visitedModules = new HashSet<>();
+        Deque<String> filesToVisit = new ArrayDeque<>();
+        filesToVisit.add(testKey);
+
+        while (!filesToVisit.isEmpty()) {
+            String fileKey = filesToVisit.poll();
+            if (!visitedFiles.add(fileKey)) {
+                continue;
+            }
+            if (changedFiles.contains(fileKey)) {
+                return true;
+            }
+
+            FileEntry entry = currentEntries.get(fileKey);
+            if (entry == null) {
+                continue;
+            }
+            for (String moduleName : entry.imports) {
+                for (String name : getModuleAndParentNames(moduleName)) {
+                    if (!visitedModules.add(name)) {
+                        continue;
+                    }
+                    if (changedModules.contains(name)) {
+                        return true;
+                    }
+                    Set<String> files = moduleFiles.get(name);
+                    if (files != null) {
+                        filesToVisit.addAll(files);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<String> parseImports(String content, String packageName) throws IOException {
+        Set<String> result = new LinkedHashSet<>();
+        for (String statement : getLogicalLines(content)) {
+            Matcher fromMatcher = FROM_IMPORT_PATTERN.matcher(statement);
+            if (fromMatcher.matches()) {
+                String base = resolveRelativeModule(fromMatcher.group(1).length(), fromMatcher.group(2), packageName);
+                if (!base.isEmpty()) {
+                    addModuleCandidates(result, base, packageName, fromMatcher.group(1).isEmpty());
+                }
+                String names = fromMatcher.group(3).replace("(", "").replace(")", "");
+                for (String name : AS_CLAUSE_PATTERN.matcher(names).replaceAll("").split(IMPORT_SEPARATOR)) {
+                    name = name.trim();
+                    if (!name.isEmpty() && !"*".equals(name)) {
+                        String qualifiedName = base.isEmpty() ? name : base + '.' + name;
+                        addModuleCandidates(result, qualifiedName, packageName, fromMatcher.group(1).isEmpty());
+                    }
+                }
+                continue;
+            }
+
+            Matcher importMatcher = IMPORT_PATTERN.matcher(statement);
+            if (importMatcher.matches()) {
+                String names = AS_CLAUSE_PATTERN.matcher(importMatcher.group(1)).replaceAll("");
+                for (String name : names.split(IMPORT_SEPARATOR)) {
+                    name = name.trim();
+                    if (!name.isEmpty()) {
+                        addModuleCandidates(result, name, packageName, true);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static void addModuleCandidates(Set<String> result, String name, String packageName,
+                                            boolean allowImplicitRelative) {
+        result.add(name);
+        // Python 2 implicit relative imports resolve against the importing module's package first
+        if (allowImplicitRelative && !packageName.isEmpty()) {
+            result.add(packageName + '.' + name);
+        }
+    }
+
+    private static String resolveRelativeModule(int level, String name, String packageName) {
+        if (level == 0) {
+            return name;
+        }
+
+        String base = packageName;
+        for (int idx = 1; idx < level && !base.isEmpty(); idx++) {
+            int lastDot = base.lastIndexOf('.');
+            base = lastDot == -1 ? "" : base.substring(0, lastDot);
+        }
+        if (name.isEmpty()) {
+            return base;
+        }
+        return base.isEmpty() ? name : base + '.' + name;
+    }
+
+    private static List<String> getLogicalLines(String content) throws IOException {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inParentheses = false;
+
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            String line = reader.readLine();
+            while (line != null) {
+                int commentStart = line.indexOf('#');
+                if (commentStart != -1) {
+                    line = line.substring(0, commentStart);
+                }
+
+                boolean continued = line.endsWith("\\");
+                if (continued) {
+                    line = line.substring(0, line.length() - 1);
+                }
+                current.append(line).append(' ');
+
+                if (line.contains("(") && !line.contains(")")) {
+                    inParentheses = true;
+                } else if (line.contains(")")) {
+                    inParentheses = false;
+                }
+
+                if (!continued && !inParentheses) {
+                    result.add(current.toString().trim());
+                    current.setLength(0);
+                }
+                line = reader.readLine();
+            }
+        }
+        if (current.length() > 0) {
+            result.add(current.toString().trim());
+        }
+        return result;
+    }
+
+    private static List<String> getModuleNames(String treeName, String relativePath) {
+        List<String> result = new ArrayList<>(2);
+        String modulePath = relativePath.substring(0, relativePath.length() - PY_FILE_EXTENSION.length());
+        if (relativePath.endsWith('/' + PACKAGE_INIT_FILE_NAME) || relativePath.equals(PACKAGE_INIT_FILE_NAME)) {
+            modulePath = modulePath.substring(0, Math.max(0, modulePath.lastIndexOf('/')));
+        }
+        if (!modulePath.isEmpty()) {
+            result.add(modulePath.replace('/', '.'));
+        }
+
+        // The test driver adds the directory of every test file to the Python path
+        int lastSlash = modulePath.lastIndexOf('/');
+        if (TEST_TREE.equals(treeName) && lastSlash != -1 && !relativePath.endsWith(PACKAGE_INIT_FILE_NAME)) {
+            result.add(modulePath.substring(lastSlash + 1));
+        }
+        return result;
+    }
+
+    private static String getPackageName(String relativePath) {
+        int lastSlash = relativePath.lastIndexOf('/');
+        return lastSlash == -1 ? "" : relativePath.substring(0, lastSlash).replace('/', '.');
+    }
+
+    private static List<String> getModuleAndParentNames(String moduleName) {
+        List<String> result = new ArrayList<>();
+        int dot = moduleName.indexOf('.');
+        while (dot != -1) {
+            result.add(moduleName.substring(0, dot));
+            dot = moduleName.indexOf('.', dot + 1);
+        }
+        result.add(moduleName);
+        return result;
+    }
+
+    private static String getKey(String treeName, String relativePath) {
+        return treeName + KEY_SEPARATOR + relativePath;
+    }
+
+    private static String getTreeName(String key) {
+        return key.substring(0, key.indexOf(KEY_SEPARATOR));
+    }
+
+    private static String getRelativePath(String key) {
+        return key.substring(key.indexOf(KEY_SEPARATOR) + 1);
+    }
+
+    private String getConfigurationHash() {
+        // Only the hash is persisted since the configuration may contain sensitive environment variable values
+        return HashUtils.sha1(configurationFingerprint);
+    }
+
+    /**
+     * The index information kept for each file.
+     */
+    private static final class FileEntry {
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        private final List<String> imports;
+
+        FileEntry(long size, long lastModified, String hash, List<String> imports) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.imports = imports;
+        }
+
+        static FileEntry parse(String value) {
+            String[] fields = value.split(KEY_SEPARATOR, ENTRY_FIELD_COUNT);
+            if (fields.length != ENTRY_FIELD_COUNT) {
+                return null;
+            }
+
+            List<String> imports = new ArrayList<>();
+            for (String name : fields[3].split(IMPORT_SEPARATOR)) {
+                if (!name.isEmpty()) {
+                    imports.add(name);
+                }
+            }
+            try {
+                return new FileEntry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2], imports);
+            } catch (NumberFormatException ignore) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            result.append(size).append(KEY_SEPARATOR).append(lastModified).append(KEY_SEPARATOR);
+            result.append(hash).append(KEY_SEPARATOR);
+            for (int idx = 0; idx < imports.size(); idx++) {
+                if (idx > 0) {
+                    result.append(IMPORT_SEPARATOR);
+                }
+                result.append(imports.get(idx));
+            }
+            return result.toString();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * MessageUtils.java - This class provides access to the resource bundle
+ *     messages shared by the WLST Test Maven Plugin classes.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.text.MessageFormat;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * Resource bundle message utility functions.
+ */
+final class MessageUtils {
+    private static final String BUNDLE_NAME = "io.rhpatrick.mojo.wlstTest.WLSTTestBundle";
+    private static final ResourceBundle WLST_TEST_BUNDLE = ResourceBundle.getBundle(BUNDLE_NAME);
+
+    private MessageUtils() {
+        // hide the constructor for this utility class
+    }
+
+    /**
+     * Get the formatted message for the key from the plugin's resource bundle.
+     *
+     * @param key  the message key
+     * @param args the message arguments
+     * @return the formatted message, or the key if the bundle does not contain the key
+     */
+    static String getMessage(String key, Object... args) {
+        String tokenizedMessage;
+        try {
+            tokenizedMessage = WLST_TEST_BUNDLE.getString(key);
+        } catch (MissingResourceException ignore) {
+            tokenizedMessage = key;
+        }
+
+        return MessageFormat.format(tokenizedMessage, args);
+    }
+}
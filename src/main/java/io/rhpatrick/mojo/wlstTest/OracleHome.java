@@ -0,0 +1,84 @@
+/*
+ * OracleHome.java - This class holds the configuration of one of the
+ *     Oracle Homes that the WLST Test Maven Plugin runs the tests
+ *     against.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * This class holds the configuration of an <code>&lt;oracleHome&gt;</code> element of the oracleHomes
+ * parameter of the test goal.  Maven sets its fields from the plugin configuration, for example:
+ *
+ * <pre>
+ * &lt;oracleHomes&gt;
+ *   &lt;oracleHome&gt;
+ *     &lt;name&gt;wls1221&lt;/name&gt;
+ *     &lt;wlstScriptDirectory&gt;/u01/wls1221/oracle_common/common/bin&lt;/wlstScriptDirectory&gt;
+ *   &lt;/oracleHome&gt;
+ *   &lt;oracleHome&gt;
+ *     &lt;name&gt;wls1213&lt;/name&gt;
+ *     &lt;wlstScriptDirectory&gt;/u01/wls1213/oracle_common/common/bin&lt;/wlstScriptDirectory&gt;
+ *     &lt;usingOldWlstVersion&gt;true&lt;/usingOldWlstVersion&gt;
+ *     &lt;environmentVariables&gt;
+ *       &lt;JAVA_HOME&gt;/usr/lib/jvm/jdk7&lt;/JAVA_HOME&gt;
+ *     &lt;/environmentVariables&gt;
+ *   &lt;/oracleHome&gt;
+ * &lt;/oracleHomes&gt;
+ * </pre>
+ */
+public class OracleHome {
+    /**
+     * The name of the Oracle Home used in messages, reports and directory names.
+     */
+    private String name;
+
+    /**
+     * The directory where the wlst.sh/wlst.cmd of the Oracle Home is located.
+     */
+    private File wlstScriptDirectory;
+
+    /**
+     * Whether the Oracle Home has WLST 12.1.3 or older, which uses CLASSPATH instead of WLST_EXT_CLASSPATH.
+     * The usingOldWlstVersion parameter of the goal is used when it is not set.
+     */
+    private Boolean usingOldWlstVersion;
+
+    /**
+     * The environment variables to set for this Oracle Home in addition to, or instead of, the ones in the
+     * environmentVariables parameter of the goal.
+     */
+    private Map<String, String> environmentVariables;
+
+    String getName() {
+        return name;
+    }
+
+    File getWlstScriptDirectory() {
+        return wlstScriptDirectory;
+    }
+
+    Boolean getUsingOldWlstVersion() {
+        return usingOldWlstVersion;
+    }
+
+    Map<String, String> getEnvironmentVariables() {
+        return environmentVariables;
+    }
+}
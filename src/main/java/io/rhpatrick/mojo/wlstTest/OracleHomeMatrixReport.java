@@ -0,0 +1,217 @@
+/*
+ * OracleHomeMatrixReport.java - This class implements the combined
+ *     report of a test run against several Oracle Homes for the WLST
+ *     Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * This class collects the outcome of the tests of each Oracle Home of a test run against several Oracle Homes,
+ * prints them side by side and writes them to a JSON file.  The tests that fail against some of the Oracle
+ * Homes but pass against the others are listed separately since they point at WebLogic version differences
+ * rather than at broken scripts.
+ */
+final class OracleHomeMatrixReport {
+    private static final String SUMMARY_FORMAT = "%-16s %-14s %7s %8s %7s %7s %10s  %s";
+    private static final String UNKNOWN_VERSION = "unknown";
+
+    private final List<HomeOutcome> homeOutcomes = new ArrayList<>();
+
+    /**
+     * Add the outcome of the tests of an Oracle Home.
+     *
+     * @param name           the name of the Oracle Home
+     * @param version        the WebLogic Server version of the Oracle Home, or null if it is not known
+     * @param wlstScript     the WLST script of the Oracle Home
+     * @param testResults    the results of the tests that ran
+     * @param durationMillis how long the tests took to run
+     * @param passed         whether the tests of the Oracle Home passed, including their reruns and the
+     *                       resource leak thresholds
+     */
+    synchronized void add(String name, String version, File wlstScript, List<TestResultRecord> testResults,
+                          long durationMillis, boolean passed) {
+        homeOutcomes.add(new HomeOutcome(name, version == null ? UNKNOWN_VERSION : version,
+                                         wlstScript.getAbsolutePath(), testResults, durationMillis, passed));
+    }
+
+    /**
+     * Format the outcome of each Oracle Home as a table, followed by the tests that fail against only some of
+     * the Oracle Homes.
+     *
+     * @return the lines of the summary
+     */
+    synchronized List<String> formatSummary() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(SUMMARY_FORMAT, "Oracle Home", "Version", "Tests", "Failures", "Errors",
+                                "Skipped", "Millis", "Result"));
+        for (HomeOutcome homeOutcome : homeOutcomes) {
+            lines.add(String.format(SUMMARY_FORMAT, homeOutcome.name, homeOutcome.version,
+                                    homeOutcome.tests, homeOutcome.failures, homeOutcome.errors,
+                                    homeOutcome.skipped, homeOutcome.durationMillis,
+                                    homeOutcome.passed ? "PASSED" : "FAILED"));
+        }
+        for (Map.Entry<String, Set<String>> entry : getVersionSpecificFailures().entrySet()) {
+            lines.add("Fails only against " + entry.getValue() + ": " + entry.getKey());
+        }
+        return lines;
+    }
+
+    /**
+     * Write the outcome of each Oracle Home and the tests that fail against only some of them to a JSON file.
+     *
+     * @param jsonFile the file to write
+     * @throws IOException if the file cannot be written
+     */
+    synchronized void writeJson(File jsonFile) throws IOException {
+        File parentDirectory = jsonFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.isDirectory() && !parentDirectory.mkdirs()) {
+            throw new IOException(jsonFile.getParent());
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(jsonFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("{\n  \"oracleHomes\": [");
+            String separator = "\n";
+            for (HomeOutcome homeOutcome : homeOutcomes) {
+                writer.write(separator + "    {\"name\": " + quote(homeOutcome.name) + ", \"version\": "
+                                 + quote(homeOutcome.version) + ", \"wlstScript\": " + quote(homeOutcome.wlstScript)
+                                 + ", \"passed\": " + homeOutcome.passed + ", \"tests\": " + homeOutcome.tests
+                                 + ", \"failures\": " + homeOutcome.failures + ", \"errors\": " + homeOutcome.errors
+                                 + ", \"skipped\": " + homeOutcome.skipped + ", \"millis\": "
+                                 + homeOutcome.durationMillis + ", \"failedTests\": "
+                                 + quoteAll(homeOutcome.failedTestIds) + "}");
+                separator = ",\n";
+            }
+            writer.write("\n  ],\n");
+
+            writer.write("  \"versionSpecificFailures\": [");
+            separator = "\n";
+            for (Map.Entry<String, Set<String>> entry : getVersionSpecificFailures().entrySet()) {
+                writer.write(separator + "    {\"test\": " + quote(entry.getKey()) + ", \"failingOracleHomes\": "
+                                 + quoteAll(entry.getValue()) + "}");
+                separator = ",\n";
+            }
+            writer.write("\n  ]\n}\n");
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Get the tests that failed against some of the Oracle Homes and passed against at least one other.
+     *
+     * @return the names of the Oracle Homes the test failed against, keyed by test id
+     */
+    private Map<String, Set<String>> getVersionSpecificFailures() {
+        Map<String, Set<String>> result = new TreeMap<>();
+        for (HomeOutcome homeOutcome : homeOutcomes) {
+            for (String testId : homeOutcome.failedTestIds) {
+                Set<String> homeNames = result.get(testId);
+                if (homeNames == null) {
+                    homeNames = new LinkedHashSet<>();
+                    result.put(testId, homeNames);
+                }
+                homeNames.add(homeOutcome.name);
+            }
+        }
+
+        Set<String> passedTestIds = new LinkedHashSet<>();
+        for (HomeOutcome homeOutcome : homeOutcomes) {
+            passedTestIds.addAll(homeOutcome.passedTestIds);
+        }
+        result.keySet().retainAll(passedTestIds);
+        return result;
+    }
+
+    private static String quoteAll(Set<String> values) {
+        StringBuilder result = new StringBuilder("[");
+        String separator = "";
+        for (String value : values) {
+            result.append(separator).append(quote(value));
+            separator = ", ";
+        }
+        return result.append(']').toString();
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder result = new StringBuilder("\"");
+        for (char character : value.toCharArray()) {
+            if (character == '"' || character == '\\') {
+                result.append('\\').append(character);
+            } else if (character < ' ') {
+                result.append(String.format("\\u%04x", (int) character));
+            } else {
+                result.append(character);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private static final class HomeOutcome {
+        private final String name;
+        private final String version;
+        private final String wlstScript;
+        private final long durationMillis;
+        private final boolean passed;
+        private final Set<String> failedTestIds = new LinkedHashSet<>();
+        private final Set<String> passedTestIds = new LinkedHashSet<>();
+        private int tests;
+        private int failures;
+        private int errors;
+        private int skipped;
+
+        private HomeOutcome(String name, String version, String wlstScript, List<TestResultRecord> testResults,
+                            long durationMillis, boolean passed) {
+            this.name = name;
+            this.version = version;
+            this.wlstScript = wlstScript;
+            this.durationMillis = durationMillis;
+            this.passed = passed;
+            for (TestResultRecord testResult : testResults) {
+                if (TestResultRecord.STATUS_FAILURE.equals(testResult.getStatus())) {
+                    failures++;
+                    failedTestIds.add(testResult.getTestId());
+                } else if (TestResultRecord.STATUS_ERROR.equals(testResult.getStatus())) {
+                    errors++;
+                    failedTestIds.add(testResult.getTestId());
+                } else if (testResult.isSkipped()) {
+                    skipped++;
+                } else {
+                    passedTestIds.add(testResult.getTestId());
+                }
+            }
+            tests = testResults.size() - skipped;
+        }
+    }
+}
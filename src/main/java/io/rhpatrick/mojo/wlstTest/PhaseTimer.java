@@ -0,0 +1,252 @@
+/*
+ * PhaseTimer.java - This class measures the phases of a goal and the
+ *     steps of the test driver for the performance summary of the WLST
+ *     Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class accumulates the time spent in each phase of a goal and in each step of the test driver.  A phase
+ * that runs more than once, for example once per fork or per module, is reported with its total time and the
+ * number of times it ran, so the total of the phases can exceed the elapsed time of a parallel run.  The
+ * driver steps are read from the timings files that the test driver writes, whose lines hold the kind of the
+ * entry (step or import), its name and its duration in milliseconds, separated by tabs.
+ */
+final class PhaseTimer {
+    static final String SOURCE_PLUGIN = "plugin";
+    static final String SOURCE_DRIVER = "driver";
+
+    private static final String TIMINGS_FIELD_SEPARATOR = "\t";
+    private static final String TIMINGS_STEP = "step";
+    private static final String TIMINGS_IMPORT = "import";
+    private static final int SLOWEST_IMPORTS_TO_REPORT = 5;
+    private static final String SUMMARY_ROW_FORMAT = "  %-40s %-8s %6s %10s";
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final Map<String, Long> moduleImportMillis = new LinkedHashMap<>();
+
+    /**
+     * Get the start time of a phase to pass to {@link #stop(String, long)}.
+     *
+     * @return the start time in nanoseconds
+     */
+    long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Add the time since the phase started to the plugin phase.
+     *
+     * @param name       the name of the phase
+     * @param phaseStart the start time returned by {@link #start()}
+     */
+    void stop(String name, long phaseStart) {
+        add(name, SOURCE_PLUGIN, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStart));
+    }
+
+    /**
+     * Add a run of the phase.
+     *
+     * @param name           the name of the phase
+     * @param source         where the phase ran, which is plugin or driver
+     * @param durationMillis the duration of the run in milliseconds
+     */
+    synchronized void add(String name, String source, long durationMillis) {
+        String key = source + ':' + name;
+        Phase phase = phases.get(key);
+        if (phase == null) {
+            phase = new Phase(name, source);
+            phases.put(key, phase);
+        }
+        phase.count++;
+        phase.totalMillis += durationMillis;
+    }
+
+    /**
+     * Add the driver steps and test module imports from the timings files in the directory.
+     *
+     * @param timingsDirectory the directory holding the timings files
+     * @throws IOException if a timings file cannot be read
+     */
+    void readDriverTimings(File timingsDirectory) throws IOException {
+        File[] timingsFiles = timingsDirectory.listFiles();
+        if (timingsFiles == null) {
+            return;
+        }
+
+        for (File timingsFile : timingsFiles) {
+            try (BufferedReader reader = Files.newBufferedReader(timingsFile.toPath(), StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                while (line != null) {
+                    addDriverTiming(line.split(TIMINGS_FIELD_SEPARATOR));
+                    line = reader.readLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the elapsed time since the timer was created.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Format the summary table of the phases, followed by the slowest test module imports.
+     *
+     * @return the lines of the table
+     */
+    synchronized List<String> formatSummary() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(SUMMARY_ROW_FORMAT, "Phase", "Source", "Count", "Time (ms)"));
+        for (Phase phase : phases.values()) {
+            lines.add(String.format(SUMMARY_ROW_FORMAT, phase.name, phase.source, phase.count, phase.totalMillis));
+        }
+
+        List<Map.Entry<String, Long>> slowestImports = getSlowestImports();
+        int reportCount = Math.min(SLOWEST_IMPORTS_TO_REPORT, slowestImports.size());
+        for (Map.Entry<String, Long> entry : slowestImports.subList(0, reportCount)) {
+            lines.add(String.format(SUMMARY_ROW_FORMAT, "  import " + entry.getKey(), SOURCE_DRIVER, "",
+                                    entry.getValue()));
+        }
+        return lines;
+    }
+
+    /**
+     * Write the phases and the test module imports to a JSON file.
+     *
+     * @param jsonFile      the file to write
+     * @param runProperties the properties describing the run, such as the goal and the WLST location
+     * @throws IOException if the file cannot be written
+     */
+    synchronized void writeJson(File jsonFile, Map<String, String> runProperties) throws IOException {
+        File parentDirectory = jsonFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.isDirectory() && !parentDirectory.mkdirs()) {
+            throw new IOException(jsonFile.getParent());
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(jsonFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            for (Map.Entry<String, String> entry : runProperties.entrySet()) {
+                writer.write("  " + quote(entry.getKey()) + ": " + quote(entry.getValue()) + ",\n");
+            }
+            writer.write("  \"elapsedMillis\": " + getElapsedMillis() + ",\n");
+
+            writer.write("  \"phases\": [");
+            String separator = "\n";
+            for (Phase phase : phases.values()) {
+                writer.write(separator + "    {\"name\": " + quote(phase.name) + ", \"source\": "
+                                 + quote(phase.source) + ", \"count\": " + phase.count + ", \"millis\": "
+                                 + phase.totalMillis + "}");
+                separator = ",\n";
+            }
+            writer.write("\n  ],\n");
+
+            writer.write("  \"moduleImports\": [");
+            separator = "\n";
+            for (Map.Entry<String, Long> entry : getSlowestImports()) {
+                writer.write(separator + "    {\"module\": " + quote(entry.getKey()) + ", \"millis\": "
+                                 + entry.getValue() + "}");
+                separator = ",\n";
+            }
+            writer.write("\n  ]\n}\n");
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private synchronized void addDriverTiming(String[] fields) {
+        if (fields.length != 3) {
+            return;
+        }
+
+        long durationMillis;
+        try {
+            durationMillis = Long.parseLong(fields[2]);
+        } catch (NumberFormatException ignore) {
+            return;
+        }
+        if (TIMINGS_STEP.equals(fields[0])) {
+            add(fields[1], SOURCE_DRIVER, durationMillis);
+        } else if (TIMINGS_IMPORT.equals(fields[0])) {
+            Long previousMillis = moduleImportMillis.get(fields[1]);
+            moduleImportMillis.put(fields[1], previousMillis == null ? durationMillis
+                                                                     : previousMillis + durationMillis);
+        }
+    }
+
+    private List<Map.Entry<String, Long>> getSlowestImports() {
+        List<Map.Entry<String, Long>> result = new ArrayList<>(moduleImportMillis.entrySet());
+        Collections.sort(result, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> entry1, Map.Entry<String, Long> entry2) {
+                return Long.compare(entry2.getValue(), entry1.getValue());
+            }
+        });
+        return result;
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder result = new StringBuilder("\"");
+        for (char character : value.toCharArray()) {
+            if (character == '"' || character == '\\') {
+                result.append('\\').append(character);
+            } else if (character < ' ') {
+                result.append(String.format("\\u%04x", (int) character));
+            } else {
+                result.append(character);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private static final class Phase {
+        private final String name;
+        private final String source;
+        private int count;
+        private long totalMillis;
+
+        private Phase(String name, String source) {
+            this.name = name;
+            this.source = source;
+        }
+    }
+}
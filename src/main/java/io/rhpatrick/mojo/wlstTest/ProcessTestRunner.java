@@ -0,0 +1,176 @@
+/*
+ * ProcessTestRunner.java - This class runs the WLST test driver in a new
+ *     WLST process for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class runs the test driver in a new WLST process for each test run, which is the process execution
+ * mode.  The output of the process is written to a file in the module's output directory, the process is
+ * killed if it runs longer than the forkedProcessTimeoutInSeconds, and its JVM can start from a class data
+ * sharing archive that is shared by the forks.
+ */
+final class ProcessTestRunner extends TestRunner {
+    private static final String WLST_TEST_OUTPUT_DIR = "output";
+    private static final String OUTPUT_FILE_FORMAT = "fork-%d-%d-output.txt";
+    private static final String PID_FILE_FORMAT = "fork-%d-%d.pid";
+    private static final String JVM_INFO_FILE_FORMAT = "fork-%d-%d-jvm.properties";
+    private static final String PID_FILE_SWITCH = "--pid-file=";
+    private static final String JVM_INFO_FILE_SWITCH = "--jvm-info-file=";
+
+    private final WlstEnvironment wlstEnvironment;
+    private final File classDataSharingCacheDirectory;
+    private final boolean redirectTestOutputToFile;
+    private final int timeoutSeconds;
+    private final PhaseTimer phaseTimer;
+    private final Log log;
+    private final ConcurrentMap<String, ClassDataSharingArchive> classDataSharingArchives =
+        new ConcurrentHashMap<>();
+
+    /**
+     * The constructor.
+     *
+     * @param wlstEnvironment                the WLST environment of the test runs
+     * @param classDataSharingCacheDirectory the directory of the class data sharing archives, or null if the
+     *                                       WLST JVMs do not use them
+     * @param redirectTestOutputToFile       whether the output of the WLST processes is not shown on the console
+     * @param timeoutSeconds                 the number of seconds after which a WLST process is killed, or 0
+     * @param phaseTimer                     the timer of the goal's phases
+     * @param log                            the Maven log
+     */
+    ProcessTestRunner(WlstEnvironment wlstEnvironment, File classDataSharingCacheDirectory,
+                      boolean redirectTestOutputToFile, int timeoutSeconds, PhaseTimer phaseTimer, Log log) {
+        this.wlstEnvironment = wlstEnvironment;
+        this.classDataSharingCacheDirectory = classDataSharingCacheDirectory;
+        this.redirectTestOutputToFile = redirectTestOutputToFile;
+        this.timeoutSeconds = timeoutSeconds;
+        this.phaseTimer = phaseTimer;
+        this.log = log;
+    }
+
+    @Override
+    void run(WlstTestModule module, int forkId, int sequenceNumber, File workingDirectory, File testsDriverScript,
+             List<String> driverArguments) throws MojoExecutionException {
+        File outputDirectory = getCanonicalFile(new File(module.getOutputDirectory(), WLST_TEST_OUTPUT_DIR));
+        File outputFile = new File(outputDirectory, String.format(OUTPUT_FILE_FORMAT, forkId, sequenceNumber));
+        File pidFile = new File(outputDirectory, String.format(PID_FILE_FORMAT, forkId, sequenceNumber));
+
+        File moduleWlstScript = wlstEnvironment.getWlstScript(module);
+        List<String> command = new ArrayList<>(wlstEnvironment.getLaunchCommand(module, testsDriverScript));
+        command.add(PID_FILE_SWITCH + pidFile.getAbsolutePath());
+        command.addAll(driverArguments);
+
+        Map<String, String> environment = wlstEnvironment.buildEnvironmentVariables(module, true);
+        ClassDataSharingArchive classDataSharingArchive = null;
+        boolean classDataSharingTraining = false;
+        File jvmInfoFile = new File(outputDirectory, String.format(JVM_INFO_FILE_FORMAT, forkId, sequenceNumber));
+        if (classDataSharingCacheDirectory != null) {
+            classDataSharingArchive = getClassDataSharingArchive(moduleWlstScript, environment);
+            classDataSharingTraining = classDataSharingArchive.startTraining();
+            if (classDataSharingTraining) {
+                addJvmOptions(environment, classDataSharingArchive.getTrainingOptions());
+            } else {
+                addJvmOptions(environment, classDataSharingArchive.getArchiveOptions());
+            }
+            command.add(JVM_INFO_FILE_SWITCH + jvmInfoFile.getAbsolutePath());
+        }
+
+        WlstProcessLauncher launcher =
+            new WlstProcessLauncher(outputFile, pidFile, !redirectTestOutputToFile, System.out, log);
+        if (redirectTestOutputToFile) {
+            log.info(MessageUtils.getMessage("WLSTTEST-072", outputFile.getAbsolutePath()));
+        }
+        int exitCode;
+        try {
+            exitCode = launcher.run(command, environment, workingDirectory, timeoutSeconds);
+        } catch (IOException ioe) {
+            module.setIncompleteRun(true);
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-073",
+                                                                     moduleWlstScript.getAbsolutePath(),
+                                                                     ioe.getLocalizedMessage()), ioe);
+        } finally {
+            if (classDataSharingTraining) {
+                long phaseStart = phaseTimer.start();
+                classDataSharingArchive.finishTraining(jvmInfoFile);
+                phaseTimer.stop("create class data sharing archive", phaseStart);
+            } else if (classDataSharingArchive != null) {
+                classDataSharingArchive.checkJvm(jvmInfoFile);
+            }
+        }
+
+        if (launcher.isTimedOut()) {
+            module.setIncompleteRun(true);
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-069", timeoutSeconds,
+                                                                     outputFile.getAbsolutePath()));
+        }
+        checkExitCode(module, exitCode);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Get the class data sharing archive for the WLST script and environment, which is shared by the forks so
+     * that only one of them trains it.
+     *
+     * @param moduleWlstScript the WLST script that starts the process
+     * @param environment      the environment of the WLST process, before the archive's JVM options are added
+     * @return the archive
+     */
+    private ClassDataSharingArchive getClassDataSharingArchive(File moduleWlstScript,
+                                                               Map<String, String> environment) {
+        String archiveKey = HashUtils.sha1(getCanonicalFile(moduleWlstScript).getAbsolutePath() + '|'
+                                               + moduleWlstScript.lastModified() + '|' + environment);
+        ClassDataSharingArchive archive = classDataSharingArchives.get(archiveKey);
+        if (archive == null) {
+            classDataSharingArchives.putIfAbsent(archiveKey, new ClassDataSharingArchive(
+                classDataSharingCacheDirectory, archiveKey, log));
+            archive = classDataSharingArchives.get(archiveKey);
+        }
+        return archive;
+    }
+
+    private static void addJvmOptions(Map<String, String> environment, String jvmOptions) {
+        if (jvmOptions != null) {
+            String variableName = WlstEnvironment.WLST_PROPERTIES_VARIABLE_NAME;
+            String wlstProperties = environment.get(variableName);
+            environment.put(variableName, wlstProperties == null ? jvmOptions : wlstProperties + ' ' + jvmOptions);
+        }
+    }
+
+    private static File getCanonicalFile(File file) {
+        File result;
+        try {
+            result = file.getCanonicalFile();
+        } catch (IOException ignore) {
+            result = file.getAbsoluteFile();
+        }
+        return result;
+    }
+}
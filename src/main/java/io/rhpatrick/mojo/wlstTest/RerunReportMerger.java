@@ -0,0 +1,276 @@
+/*
+ * RerunReportMerger.java - This class adds the reruns of failing tests
+ *     to the surefire-format XML reports written by the test driver of
+ *     the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import org.xml.sax.SAXException;
+
+/**
+ * This class adds the reports of the reruns of failing tests to the reports of the first run, the way the
+ * maven-surefire-plugin reports reruns: a test that passes on a rerun keeps the failures of its earlier runs
+ * as flakyFailure and flakyError elements and counts as passed, while a test that keeps failing gets a
+ * rerunFailure or rerunError element for each rerun.  The counts of the test suites are updated to match.
+ * The test driver names the report of each test class <code>TEST-&lt;module&gt;.&lt;class&gt;.xml</code> and
+ * each test case after its method, so the reports of a rerun are matched to the first run by those names.
+ */
+final class RerunReportMerger {
+    private static final String REPORT_FILE_PREFIX = "TEST-";
+    private static final String REPORT_FILE_EXTENSION = ".xml";
+    private static final String TEST_CASE_ELEMENT = "testcase";
+    private static final String FAILURE_ELEMENT = "failure";
+    private static final String ERROR_ELEMENT = "error";
+    private static final String SKIPPED_ELEMENT = "skipped";
+    private static final String STACK_TRACE_ELEMENT = "stackTrace";
+    private static final String FLAKY_PREFIX = "flaky";
+    private static final String RERUN_PREFIX = "rerun";
+    private static final String[] OUTCOME_ATTRIBUTES = { "message", "type" };
+
+    private final File reportsDirectory;
+    private final DocumentBuilder documentBuilder;
+    private final Map<File, Document> reports = new LinkedHashMap<>();
+
+    /**
+     * The constructor.
+     *
+     * @param reportsDirectory the directory holding the reports of the first run
+     * @throws IOException if no XML parser is available
+     */
+    RerunReportMerger(File reportsDirectory) throws IOException {
+        this.reportsDirectory = reportsDirectory;
+        try {
+            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+            documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            this.documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        } catch (ParserConfigurationException pce) {
+            throw new IOException(pce.getLocalizedMessage(), pce);
+        }
+    }
+
+    /**
+     * Add the reports of a rerun.  The report of a test class that has no report in the first run, such as a
+     * class whose class fixture failed in the first run, is added as it is.
+     *
+     * @param rerunReportsDirectory the directory holding the reports of the rerun
+     * @throws IOException if a report cannot be read or copied
+     */
+    void merge(File rerunReportsDirectory) throws IOException {
+        File[] rerunReportFiles = rerunReportsDirectory.listFiles();
+        if (rerunReportFiles == null) {
+            return;
+        }
+
+        for (File rerunReportFile : rerunReportFiles) {
+            String fileName = rerunReportFile.getName();
+            if (!fileName.startsWith(REPORT_FILE_PREFIX) || !fileName.endsWith(REPORT_FILE_EXTENSION)) {
+                continue;
+            }
+            File reportFile = new File(reportsDirectory, fileName);
+            if (!reportFile.isFile() && !reports.containsKey(reportFile)) {
+                Files.copy(rerunReportFile.toPath(), reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                continue;
+            }
+
+            Document report = getReport(reportFile);
+            for (Element rerunTestCase : getChildElements(parse(rerunReportFile).getDocumentElement(),
+                                                          TEST_CASE_ELEMENT)) {
+                Element testCase = findTestCase(report, rerunTestCase.getAttribute("name"));
+                if (testCase == null) {
+                    report.getDocumentElement().appendChild(report.importNode(rerunTestCase, true));
+                } else if (getOutcome(testCase) != null) {
+                    Element rerunOutcome = getOutcome(rerunTestCase);
+                    if (rerunOutcome != null) {
+                        testCase.appendChild(createOutcome(report, RERUN_PREFIX, rerunOutcome.getTagName(),
+                                                           rerunOutcome));
+                    } else if (getChildElements(rerunTestCase, SKIPPED_ELEMENT).isEmpty()) {
+                        markFlaky(testCase);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the failures of a test that passed on a rerun as flaky, for the tests whose rerun has no test case
+     * in the rerun reports, such as a class or module fixture that failed in the first run.  Nothing is done
+     * if the test is not failing in the report.
+     *
+     * @param testId the id of the test
+     * @throws IOException if the report cannot be read
+     */
+    void markFlaky(String testId) throws IOException {
+        int separatorIndex = testId.lastIndexOf('.');
+        String className = separatorIndex == -1 ? testId : testId.substring(0, separatorIndex);
+        String testName = testId.substring(separatorIndex + 1);
+        File reportFile = new File(reportsDirectory, REPORT_FILE_PREFIX + className + REPORT_FILE_EXTENSION);
+        if (!reportFile.isFile()) {
+            return;
+        }
+
+        Element testCase = findTestCase(getReport(reportFile), testName);
+        if (testCase != null && getOutcome(testCase) != null) {
+            markFlaky(testCase);
+        }
+    }
+
+    /**
+     * Write the reports that changed, with the counts of their test suites updated.
+     *
+     * @throws IOException if a report cannot be written
+     */
+    void save() throws IOException {
+        for (Map.Entry<File, Document> entry : reports.entrySet()) {
+            Element testSuite = entry.getValue().getDocumentElement();
+            int failures = 0;
+            int errors = 0;
+            int skipped = 0;
+            List<Element> testCases = getChildElements(testSuite, TEST_CASE_ELEMENT);
+            for (Element testCase : testCases) {
+                if (!getChildElements(testCase, FAILURE_ELEMENT).isEmpty()) {
+                    failures++;
+                } else if (!getChildElements(testCase, ERROR_ELEMENT).isEmpty()) {
+                    errors++;
+                } else if (!getChildElements(testCase, SKIPPED_ELEMENT).isEmpty()) {
+                    skipped++;
+                }
+            }
+            testSuite.setAttribute("tests", Integer.toString(testCases.size()));
+            testSuite.setAttribute("failures", Integer.toString(failures));
+            testSuite.setAttribute("errors", Integer.toString(errors));
+            testSuite.setAttribute("skipped", Integer.toString(skipped));
+            write(entry.getValue(), entry.getKey());
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private Document getReport(File reportFile) throws IOException {
+        Document result = reports.get(reportFile);
+        if (result == null) {
+            result = parse(reportFile);
+            reports.put(reportFile, result);
+        }
+        return result;
+    }
+
+    private Document parse(File file) throws IOException {
+        try {
+            return documentBuilder.parse(file);
+        } catch (SAXException se) {
+            throw new IOException(file.getAbsolutePath() + ": " + se.getLocalizedMessage(), se);
+        }
+    }
+
+    private static void write(Document document, File file) throws IOException {
+        File tempFile = new File(file.getPath() + '.' + System.nanoTime() + ".tmp");
+        try {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.transform(new DOMSource(document), new StreamResult(tempFile));
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (TransformerException te) {
+            throw new IOException(file.getAbsolutePath() + ": " + te.getLocalizedMessage(), te);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    private static Element findTestCase(Document report, String name) {
+        for (Element testCase : getChildElements(report.getDocumentElement(), TEST_CASE_ELEMENT)) {
+            if (name.equals(testCase.getAttribute("name"))) {
+                return testCase;
+            }
+        }
+        return null;
+    }
+
+    private static Element getOutcome(Element testCase) {
+        for (Element child : getChildElements(testCase, null)) {
+            if (FAILURE_ELEMENT.equals(child.getTagName()) || ERROR_ELEMENT.equals(child.getTagName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static void markFlaky(Element testCase) {
+        Document document = testCase.getOwnerDocument();
+        for (Element child : getChildElements(testCase, null)) {
+            String outcomeName = child.getTagName();
+            if (outcomeName.startsWith(RERUN_PREFIX)) {
+                outcomeName = outcomeName.substring(RERUN_PREFIX.length()).toLowerCase();
+            }
+            if (FAILURE_ELEMENT.equals(outcomeName) || ERROR_ELEMENT.equals(outcomeName)) {
+                testCase.replaceChild(createOutcome(document, FLAKY_PREFIX, outcomeName, child), child);
+            }
+        }
+    }
+
+    private static Element createOutcome(Document document, String prefix, String outcomeName, Element outcome) {
+        Element result = document.createElement(prefix + Character.toUpperCase(outcomeName.charAt(0))
+                                                    + outcomeName.substring(1));
+        for (String attribute : OUTCOME_ATTRIBUTES) {
+            if (outcome.hasAttribute(attribute)) {
+                result.setAttribute(attribute, outcome.getAttribute(attribute));
+            }
+        }
+        Element stackTrace = document.createElement(STACK_TRACE_ELEMENT);
+        stackTrace.setTextContent(outcome.getTextContent());
+        result.appendChild(stackTrace);
+        return result;
+    }
+
+    private static List<Element> getChildElements(Element parent, String name) {
+        List<Element> result = new ArrayList<>();
+        NodeList children = parent.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE && (name == null || name.equals(child.getNodeName()))) {
+                result.add((Element) child);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * ScriptTreeSynchronizer.java - This class implements the incremental
+ *     synchronization of the WLST script trees into the execution
+ *     directories used by the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class synchronizes a source directory tree into a target directory tree.  Only the files that
+ * are missing or differ from the source are copied (or hard linked) and the files that no longer exist
+ * in the source tree are deleted from the target tree.  Jython-compiled <code>$py.class</code> files
+ * in the target tree are kept as long as their Python source file still exists.
+ */
+final class ScriptTreeSynchronizer {
+    /**
+     * How the synchronizer decides whether a target file is up to date and how it updates it.
+     */
+    enum Mode {
+        /** Copy files whose size or modification time differs from the source file. */
+        COPY,
+        /** Copy files whose size or content differs from the source file. */
+        CHECKSUM,
+        /** Hard link the target files to the source files, falling back to copying if linking fails. */
+        LINK
+    }
+
+    private static final String JYTHON_CLASS_FILE_SUFFIX = "$py.class";
+    private static final String PY_FILE_EXTENSION = ".py";
+    private static final int BUF_SIZE = 8192;
+
+    private final Mode mode;
+    private int copiedCount;
+    private int linkedCount;
+    private int deletedCount;
+    private int unchangedCount;
+
+    /**
+     * The constructor.
+     *
+     * @param mode the synchronization mode
+     */
+    ScriptTreeSynchronizer(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Synchronize the target directory tree with the source directory tree.
+     *
+     * @param sourceDirectory the source directory
+     * @param targetDirectory the target directory
+     * @throws IOException if an error occurs while reading the source tree or updating the target tree
+     */
+    void synchronize(final Path sourceDirectory, final Path targetDirectory) throws IOException {
+        final Set<Path> sourceRelativePaths = new HashSet<>();
+        if (Files.isDirectory(sourceDirectory)) {
+            Files.walkFileTree(sourceDirectory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Path relativePath = sourceDirectory.relativize(dir);
+                    sourceRelativePaths.add(relativePath);
+                    Files.createDirectories(targetDirectory.resolve(relativePath));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && !isJythonClassFile(file)) {
+                        Path relativePath = sourceDirectory.relativize(file);
+                        sourceRelativePaths.add(relativePath);
+                        synchronizeFile(file, attrs, targetDirectory.resolve(relativePath));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        if (Files.isDirectory(targetDirectory)) {
+            pruneTargetTree(targetDirectory, sourceRelativePaths);
+        }
+    }
+
+    /**
+     * Synchronize only the given paths of the source directory tree, for callers that know which files changed.
+     * A path that is a directory in the source tree is synchronized along with everything under it, and a path
+     * that no longer exists in the source tree is deleted from the target tree, along with the Jython-compiled
+     * classes of the Python files it held.
+     *
+     * @param sourceDirectory the source directory
+     * @param targetDirectory the target directory
+     * @param relativePaths   the changed paths, relative to the source directory
+     * @throws IOException if an error occurs while reading the source tree or updating the target tree
+     */
+    void synchronize(Path sourceDirectory, Path targetDirectory, Collection<Path> relativePaths) throws IOException {
+        for (Path relativePath : relativePaths) {
+            Path sourcePath = sourceDirectory.resolve(relativePath);
+            Path targetPath = targetDirectory.resolve(relativePath);
+            if (Files.isDirectory(sourcePath)) {
+                synchronize(sourcePath, targetPath);
+            } else if (Files.isRegularFile(sourcePath)) {
+                if (!isJythonClassFile(sourcePath)) {
+                    Files.createDirectories(targetPath.getParent());
+                    synchronizeFile(sourcePath, Files.readAttributes(sourcePath, BasicFileAttributes.class),
+                                    targetPath);
+                }
+            } else if (Files.isDirectory(targetPath)) {
+                deleteTree(targetPath);
+            } else {
+                deleteFile(targetPath);
+                String fileName = targetPath.getFileName().toString();
+                if (fileName.endsWith(PY_FILE_EXTENSION)) {
+                    String moduleName = fileName.substring(0, fileName.length() - PY_FILE_EXTENSION.length());
+                    deleteFile(targetPath.resolveSibling(moduleName + JYTHON_CLASS_FILE_SUFFIX));
+                }
+            }
+        }
+    }
+
+    int getCopiedCount() {
+        return copiedCount;
+    }
+
+    int getLinkedCount() {
+        return linkedCount;
+    }
+
+    int getDeletedCount() {
+        return deletedCount;
+    }
+
+    int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void synchronizeFile(Path sourceFile, BasicFileAttributes sourceAttrs, Path targetFile)
+        throws IOException {
+        if (Files.isRegularFile(targetFile) && isUpToDate(sourceFile, sourceAttrs, targetFile)) {
+            unchangedCount++;
+            return;
+        }
+
+        if (mode == Mode.LINK) {
+            Files.deleteIfExists(targetFile);
+            try {
+                Files.createLink(targetFile, sourceFile);
+                linkedCount++;
+                return;
+            } catch (IOException | UnsupportedOperationException ignore) {
+                // Fall through and copy the file since the file system does not support linking these files
+            }
+        }
+        Files.copy(sourceFile, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        copiedCount++;
+    }
+
+    private boolean isUpToDate(Path sourceFile, BasicFileAttributes sourceAttrs, Path targetFile)
+        throws IOException {
+        if (mode == Mode.LINK && Files.isSameFile(sourceFile, targetFile)) {
+            return true;
+        }
+
+        BasicFileAttributes targetAttrs = Files.readAttributes(targetFile, BasicFileAttributes.class);
+        if (sourceAttrs.size() != targetAttrs.size()) {
+            return false;
+        } else if (mode == Mode.CHECKSUM) {
+            return hasSameContent(sourceFile, targetFile);
+        }
+        // Compare at millisecond precision since not all file systems preserve finer-grained timestamps on copy
+        return sourceAttrs.lastModifiedTime().toMillis() == targetAttrs.lastModifiedTime().toMillis();
+    }
+
+    private void pruneTargetTree(final Path targetDirectory, final Set<Path> sourceRelativePaths) throws IOException {
+        Files.walkFileTree(targetDirectory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relativePath = targetDirectory.relativize(file);
+                if (!sourceRelativePaths.contains(relativePath) && !hasPythonSource(relativePath)) {
+                    Files.delete(file);
+                    deletedCount++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Path relativePath = targetDirectory.relativize(dir);
+                if (!sourceRelativePaths.contains(relativePath) && isEmptyDirectory(dir)) {
+                    Files.delete(dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            private boolean hasPythonSource(Path relativePath) {
+                String fileName = relativePath.getFileName().toString();
+                if (!fileName.endsWith(JYTHON_CLASS_FILE_SUFFIX)) {
+                    return false;
+                }
+                String moduleName = fileName.substring(0, fileName.length() - JYTHON_CLASS_FILE_SUFFIX.length());
+                return sourceRelativePaths.contains(relativePath.resolveSibling(moduleName + PY_FILE_EXTENSION));
+            }
+        });
+    }
+
+    private void deleteFile(Path file) throws IOException {
+        if (Files.deleteIfExists(file)) {
+            deletedCount++;
+        }
+    }
+
+    private void deleteTree(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                deleteFile(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean isJythonClassFile(Path file) {
+        return file.getFileName().toString().endsWith(JYTHON_CLASS_FILE_SUFFIX);
+    }
+
+    private static boolean isEmptyDirectory(Path dir) throws IOException {
+        String[] entries = dir.toFile().list();
+        return entries != null && entries.length == 0;
+    }
+
+    private static boolean hasSameContent(Path file1, Path file2) throws IOException {
+        try (InputStream inputStream1 = Files.newInputStream(file1);
+             InputStream inputStream2 = Files.newInputStream(file2)) {
+            byte[] buffer1 = new byte[BUF_SIZE];
+            byte[] buffer2 = new byte[BUF_SIZE];
+            int bytesRead1 = readFully(inputStream1, buffer1);
+            while (bytesRead1 > 0) {
+                int bytesRead2 = readFully(inputStream2, buffer2);
+                if (bytesRead1 != bytesRead2 || !Arrays.equals(buffer1, buffer2)) {
+                    return false;
+                }
+                bytesRead1 = readFully(inputStream1, buffer1);
+            }
+            return readFully(inputStream2, buffer2) <= 0;
+        }
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int total = 0;
+        int bytesRead = inputStream.read(buffer, 0, buffer.length);
+        while (bytesRead != -1) {
+            total += bytesRead;
+            if (total == buffer.length) {
+                break;
+            }
+            bytesRead = inputStream.read(buffer, total, buffer.length - total);
+        }
+        // Clear any stale bytes from a previous read so that Arrays.equals only compares this read
+        Arrays.fill(buffer, total, buffer.length, (byte) 0);
+        return total;
+    }
+}
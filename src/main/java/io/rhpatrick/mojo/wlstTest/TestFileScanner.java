@@ -0,0 +1,194 @@
+/*
+ * TestFileScanner.java - This class finds the WLST test files to run
+ *     for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * This class finds the test files in a directory tree in a single walk.  A file is a test file if its
+ * path relative to the root directory matches one of the include globs and none of the exclude globs.
+ * In the globs, <code>*</code> and <code>?</code> match within a path segment, <code>[...]</code> matches
+ * one of the listed characters, <code>**</code> matches across path segments, and a leading
+ * <code>**&#47;</code> also matches files directly in the root directory.
+ */
+final class TestFileScanner {
+    private static final String PY_FILE_EXTENSION = ".py";
+    private static final String TEST_FILTER_METHOD_SEPARATOR = "#";
+
+    private final List<Pattern> includePatterns;
+    private final List<Pattern> excludePatterns;
+
+    /**
+     * The constructor.
+     *
+     * @param includes the include globs
+     * @param excludes the exclude globs
+     */
+    TestFileScanner(List<String> includes, List<String> excludes) {
+        this.includePatterns = compileGlobs(includes);
+        this.excludePatterns = compileGlobs(excludes);
+    }
+
+    /**
+     * Find the test files in the directory tree.
+     *
+     * @param rootDirectory the root directory of the tree
+     * @return the sorted list of test file paths relative to the root directory, using / as the separator
+     * @throws IOException if the directory tree cannot be walked
+     */
+    List<String> scan(File rootDirectory) throws IOException {
+        final List<String> result = new ArrayList<>();
+        if (!rootDirectory.isDirectory()) {
+            return result;
+        }
+
+        final Path rootPath = rootDirectory.toPath();
+        Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    String relativePath = rootPath.relativize(file).toString().replace(File.separatorChar, '/');
+                    if (matchesAny(includePatterns, relativePath) && !matchesAny(excludePatterns, relativePath)) {
+                        result.add(relativePath);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Keep only the test files whose module matches the test parameter.  Each comma-separated entry of the
+     * test parameter is a module name or path glob, optionally followed by <code>.</code> and a test class and
+     * by <code>#</code> and test methods, which are selected by the test driver rather than here.
+     *
+     * @param testsToRun the test file paths relative to the root directory, using / as the separator
+     * @param test       the test parameter
+     * @return the matching test file paths, in the order of the testsToRun
+     */
+    static List<String> filterByTest(List<String> testsToRun, String test) {
+        List<Pattern> modulePatterns = new ArrayList<>();
+        for (String testSpec : test.split(",")) {
+            String moduleSpec = testSpec.trim();
+            int methodIndex = moduleSpec.indexOf(TEST_FILTER_METHOD_SEPARATOR);
+            if (methodIndex != -1) {
+                moduleSpec = moduleSpec.substring(0, methodIndex);
+            }
+            moduleSpec = moduleSpec.replace('\\', '/');
+            if (moduleSpec.endsWith(PY_FILE_EXTENSION)) {
+                moduleSpec = moduleSpec.substring(0, moduleSpec.length() - PY_FILE_EXTENSION.length());
+            }
+            int classIndex = moduleSpec.indexOf('.', moduleSpec.lastIndexOf('/') + 1);
+            if (classIndex != -1) {
+                moduleSpec = moduleSpec.substring(0, classIndex);
+            }
+            if (!moduleSpec.isEmpty()) {
+                modulePatterns.add(globToPattern(moduleSpec));
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for (String testToRun : testsToRun) {
+            String modulePath = testToRun.substring(0, testToRun.length() - PY_FILE_EXTENSION.length());
+            String moduleName = modulePath.substring(modulePath.lastIndexOf('/') + 1);
+            for (Pattern modulePattern : modulePatterns) {
+                if (modulePattern.matcher(moduleName).matches() || modulePattern.matcher(modulePath).matches()) {
+                    result.add(testToRun);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convert a glob to a regular expression pattern.
+     *
+     * @param glob the glob
+     * @return the pattern
+     */
+    static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int idx = 0;
+        while (idx < glob.length()) {
+            char c = glob.charAt(idx);
+            if (c == '*' && glob.startsWith("**/", idx)) {
+                regex.append("(?:.*/)?");
+                idx += 3;
+                continue;
+            } else if (c == '*' && glob.startsWith("**", idx)) {
+                regex.append(".*");
+                idx += 2;
+                continue;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if (c == '\\') {
+                regex.append('/');
+            } else if (c == '[' && glob.indexOf(']', idx + 1) > idx + 1) {
+                int endIndex = glob.indexOf(']', idx + 1);
+                String characters = glob.substring(idx + 1, endIndex);
+                if (characters.startsWith("!")) {
+                    characters = "^" + characters.substring(1);
+                }
+                regex.append('[').append(characters.replace("\\", "\\\\")).append(']');
+                idx = endIndex + 1;
+                continue;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+            idx++;
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static List<Pattern> compileGlobs(List<String> globs) {
+        List<Pattern> result = new ArrayList<>();
+        if (globs != null) {
+            for (String glob : globs) {
+                if (glob != null && !glob.trim().isEmpty()) {
+                    result.add(globToPattern(glob.trim()));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String relativePath) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(relativePath).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
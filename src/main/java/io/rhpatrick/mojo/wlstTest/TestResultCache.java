@@ -0,0 +1,273 @@
+/*
+ * TestResultCache.java - This class stores and restores the recorded
+ *     results of passing test runs of the WLST Test Maven Plugin,
+ *     keyed by the hash of everything the results depend on.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class holds the recorded results of passing test runs, each in a ZIP file named by its key.  The
+ * entries of the ZIP file are named <code>&lt;kind&gt;/&lt;file name&gt;</code>, where the kind selects the
+ * directory that the file is restored to.  The entries are kept in a local directory whose least recently
+ * used entries are removed once it grows past its maximum size.  When a remote URL is set, the entries missing
+ * from the local directory are downloaded from <code>&lt;url&gt;/&lt;key&gt;.zip</code> with a GET request,
+ * and new entries are uploaded with a PUT request if pushing is enabled.
+ */
+final class TestResultCache {
+    private static final String ENTRY_FILE_EXTENSION = ".zip";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 60000;
+
+    private final File cacheDirectory;
+    private final long maxSizeBytes;
+    private final String remoteUrl;
+    private final boolean remotePush;
+    private final Log log;
+
+    /**
+     * The constructor.
+     *
+     * @param cacheDirectory the local directory holding the entries
+     * @param maxSizeBytes   the size in bytes past which the least recently used entries are removed
+     * @param remoteUrl      the base URL of the remote cache, or null to only use the local directory
+     * @param remotePush     whether new entries are uploaded to the remote cache
+     * @param log            the Maven log
+     */
+    TestResultCache(File cacheDirectory, long maxSizeBytes, String remoteUrl, boolean remotePush, Log log) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxSizeBytes = maxSizeBytes;
+        this.remoteUrl = trimTrailingSlash(remoteUrl);
+        this.remotePush = remotePush;
+        this.log = log;
+    }
+
+    /**
+     * Restore the files of the entry, downloading it from the remote cache if it is not in the local directory.
+     *
+     * @param key         the key of the entry
+     * @param directories the directories to restore the files to, by the kind of file
+     * @return the number of restored files, or -1 if there is no entry for the key
+     * @throws IOException if the entry cannot be read or downloaded, or a file cannot be restored
+     */
+    int restore(String key, Map<String, File> directories) throws IOException {
+        File entryFile = getEntryFile(key);
+        if (entryFile.isFile()) {
+            // Mark the entry as recently used so that eviction removes the other entries first
+            if (!entryFile.setLastModified(System.currentTimeMillis())) {
+                log.debug(MessageUtils.getMessage("WLSTTEST-137", entryFile.getAbsolutePath()));
+            }
+        } else if (remoteUrl == null || !download(key, entryFile)) {
+            return -1;
+        }
+
+        int result = 0;
+        try (ZipInputStream zipInputStream = new ZipInputStream(Files.newInputStream(entryFile.toPath()))) {
+            ZipEntry zipEntry = zipInputStream.getNextEntry();
+            while (zipEntry != null) {
+                File targetFile = getTargetFile(zipEntry.getName(), directories);
+                if (targetFile != null) {
+                    createDirectory(targetFile.getParentFile());
+                    Files.copy(zipInputStream, targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    result++;
+                }
+                zipEntry = zipInputStream.getNextEntry();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Store the files as the entry of the key, remove the least recently used entries if the local directory
+     * is too large, and upload the entry to the remote cache if pushing is enabled.
+     *
+     * @param key   the key of the entry
+     * @param files the files to store, by their entry names of the form <code>&lt;kind&gt;/&lt;file name&gt;</code>
+     * @throws IOException if the entry cannot be written or uploaded
+     */
+    void store(String key, Map<String, File> files) throws IOException {
+        createDirectory(cacheDirectory);
+        File entryFile = getEntryFile(key);
+        File tempFile = new File(cacheDirectory, key + '.' + System.nanoTime() + TEMP_FILE_EXTENSION);
+        try {
+            try (ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(tempFile.toPath()))) {
+                for (Map.Entry<String, File> file : files.entrySet()) {
+                    zipOutputStream.putNextEntry(new ZipEntry(file.getKey()));
+                    Files.copy(file.getValue().toPath(), zipOutputStream);
+                    zipOutputStream.closeEntry();
+                }
+            }
+            Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+
+        evict();
+        if (remoteUrl != null && remotePush) {
+            upload(key, entryFile);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private File getEntryFile(String key) {
+        return new File(cacheDirectory, key + ENTRY_FILE_EXTENSION);
+    }
+
+    private void evict() {
+        File[] entryFiles = cacheDirectory.listFiles();
+        if (entryFiles == null) {
+            return;
+        }
+
+        List<File> entries = new ArrayList<>();
+        long totalSize = 0L;
+        for (File entryFile : entryFiles) {
+            if (entryFile.getName().endsWith(ENTRY_FILE_EXTENSION)) {
+                entries.add(entryFile);
+                totalSize += entryFile.length();
+            }
+        }
+        if (totalSize <= maxSizeBytes) {
+            return;
+        }
+
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File entry1, File entry2) {
+                return Long.compare(entry1.lastModified(), entry2.lastModified());
+            }
+        });
+        for (File entryFile : entries) {
+            if (totalSize <= maxSizeBytes) {
+                break;
+            }
+            long entrySize = entryFile.length();
+            if (entryFile.delete()) {
+                totalSize -= entrySize;
+                log.debug(MessageUtils.getMessage("WLSTTEST-138", entryFile.getAbsolutePath()));
+            }
+        }
+    }
+
+    private boolean download(String key, File entryFile) throws IOException {
+        createDirectory(cacheDirectory);
+        HttpURLConnection connection = openConnection(key);
+        File tempFile = new File(cacheDirectory, key + '.' + System.nanoTime() + TEMP_FILE_EXTENSION);
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                return false;
+            } else if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException(responseCode + " " + connection.getResponseMessage() + ": "
+                                          + connection.getURL());
+            }
+
+            try (InputStream inputStream = connection.getInputStream()) {
+                Files.copy(inputStream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            log.debug(MessageUtils.getMessage("WLSTTEST-139", connection.getURL()));
+            return true;
+        } catch (FileNotFoundException fnfe) {
+            return false;
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+            connection.disconnect();
+        }
+    }
+
+    private void upload(String key, File entryFile) throws IOException {
+        HttpURLConnection connection = openConnection(key);
+        try {
+            connection.setRequestMethod("PUT");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(entryFile.length());
+            connection.setRequestProperty("Content-Type", "application/zip");
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                Files.copy(entryFile.toPath(), outputStream);
+            }
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode < HttpURLConnection.HTTP_OK || responseCode >= HttpURLConnection.HTTP_MULT_CHOICE) {
+                throw new IOException(responseCode + " " + connection.getResponseMessage() + ": "
+                                          + connection.getURL());
+            }
+            log.debug(MessageUtils.getMessage("WLSTTEST-140", connection.getURL()));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection openConnection(String key) throws IOException {
+        URL url = new URL(remoteUrl + '/' + key + ENTRY_FILE_EXTENSION);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    private static File getTargetFile(String entryName, Map<String, File> directories) {
+        String[] parts = entryName.split("/");
+        if (parts.length != 2 || parts[1].isEmpty() || Arrays.asList(".", "..").contains(parts[1])) {
+            return null;
+        }
+        File directory = directories.get(parts[0]);
+        return directory == null ? null : new File(directory, parts[1]);
+    }
+
+    private static void createDirectory(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(directory.getAbsolutePath());
+        }
+    }
+
+    private static String trimTrailingSlash(String url) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        String result = url;
+        while (result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+}
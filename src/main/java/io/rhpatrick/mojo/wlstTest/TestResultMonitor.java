@@ -0,0 +1,191 @@
+/*
+ * TestResultMonitor.java - This class follows the test results streamed
+ *     by the test drivers to stop the test run once too many tests have
+ *     failed for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class polls the results files that the test drivers append to as each test completes and counts
+ * the failed tests across all of them, in all of the results directories of the modules being run.  Once
+ * the failure threshold is reached, it creates the stop file that each test driver checks after every test
+ * so that all WLST processes stop running tests, and it tells the plugin to stop scheduling more tests.
+ */
+final class TestResultMonitor implements Runnable {
+    static final String STOP_FILE_NAME = "stop-requested";
+
+    private static final long POLL_INTERVAL_MILLIS = 200L;
+    private static final String RESULTS_FILE_EXTENSION = ".txt";
+
+    private final List<File> resultsDirectories;
+    private final File stopFile;
+    private final int failureThreshold;
+    private final Log log;
+    private final Map<String, Long> readOffsets = new HashMap<>();
+    private volatile boolean stopRequested;
+    private volatile boolean running;
+    private int failureCount;
+    private Thread thread;
+
+    /**
+     * The constructor.
+     *
+     * @param resultsDirectories the directories where the test drivers write the results files
+     * @param stopFile           the file to create once the failure threshold is reached
+     * @param failureThreshold   the number of failed tests after which the test run stops
+     * @param log                the Maven log
+     */
+    TestResultMonitor(List<File> resultsDirectories, File stopFile, int failureThreshold, Log log) {
+        this.resultsDirectories = resultsDirectories;
+        this.stopFile = stopFile;
+        this.failureThreshold = failureThreshold;
+        this.log = log;
+    }
+
+    /**
+     * Start polling the results files in a background thread.
+     */
+    void start() {
+        running = true;
+        thread = new Thread(this, "wlst-test-result-monitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop polling the results files.
+     */
+    void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    /**
+     * Get the stop file that the test drivers check after every test.
+     *
+     * @return the stop file
+     */
+    File getStopFile() {
+        return stopFile;
+    }
+
+    /**
+     * Whether the failure threshold was reached and the test run should stop.
+     *
+     * @return true if no more tests should be run
+     */
+    boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    @Override
+    public void run() {
+        while (running && !stopRequested) {
+            poll();
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException ie) {
+                break;
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void poll() {
+        for (File resultsDirectory : resultsDirectories) {
+            File[] resultsFiles = resultsDirectory.listFiles();
+            if (resultsFiles == null) {
+                continue;
+            }
+
+            for (File resultsFile : resultsFiles) {
+                if (resultsFile.getName().endsWith(RESULTS_FILE_EXTENSION)) {
+                    try {
+                        readNewResults(resultsFile);
+                    } catch (IOException ioe) {
+                        // The driver may still be creating the file so try again on the next poll
+                        log.debug(MessageUtils.getMessage("WLSTTEST-146", resultsFile.getAbsolutePath(),
+                                                          ioe.getLocalizedMessage()));
+                    }
+                }
+            }
+        }
+
+        if (failureCount >= failureThreshold && !stopRequested) {
+            stopRequested = true;
+            log.warn(MessageUtils.getMessage("WLSTTEST-052", failureCount));
+            try {
+                if (!stopFile.createNewFile() && !stopFile.exists()) {
+                    log.warn(MessageUtils.getMessage("WLSTTEST-053", stopFile.getAbsolutePath()));
+                }
+            } catch (IOException ioe) {
+                log.warn(MessageUtils.getMessage("WLSTTEST-053", stopFile.getAbsolutePath()));
+            }
+        }
+    }
+
+    private void readNewResults(File resultsFile) throws IOException {
+        Long offset = readOffsets.get(resultsFile.getPath());
+        long position = offset == null ? 0L : offset;
+        if (resultsFile.length() <= position) {
+            return;
+        }
+
+        byte[] bytes;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(resultsFile, "r")) {
+            randomAccessFile.seek(position);
+            bytes = new byte[(int) (randomAccessFile.length() - position)];
+            randomAccessFile.readFully(bytes);
+        }
+
+        // Only consume complete lines since the driver may be in the middle of writing the last one
+        int lineStart = 0;
+        for (int idx = 0; idx < bytes.length; idx++) {
+            if (bytes[idx] == '\n') {
+                String line = new String(bytes, lineStart, idx - lineStart, StandardCharsets.UTF_8);
+                String[] fields = line.split("\t");
+                if (fields.length > 1 && (TestResultRecord.STATUS_FAILURE.equals(fields[1])
+                    || TestResultRecord.STATUS_ERROR.equals(fields[1]))) {
+                    failureCount++;
+                }
+                lineStart = idx + 1;
+            }
+        }
+        readOffsets.put(resultsFile.getPath(), position + lineStart);
+    }
+}
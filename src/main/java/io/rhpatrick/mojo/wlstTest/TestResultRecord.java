@@ -0,0 +1,233 @@
+/*
+ * TestResultRecord.java - This class holds the outcome of a single
+ *     WLST test as reported by the test driver for the WLST Test
+ *     Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class holds the outcome of a single test.  The test driver writes one tab-separated line per test,
+ * containing the test id, status and duration in milliseconds, to the results file named by the plugin.  The
+ * line goes on with the resources the test used: its CPU time in milliseconds, the heap used in bytes before
+ * and after it, and the live thread count before and after it, each of which is -1 if it was not measured.
+ */
+final class TestResultRecord {
+    static final String STATUS_PASS = "pass";
+    static final String STATUS_FAILURE = "failure";
+    static final String STATUS_ERROR = "error";
+    static final String STATUS_SKIPPED = "skipped";
+
+    private static final String RESULTS_FILE_EXTENSION = ".txt";
+    private static final int FIELD_COUNT = 3;
+    private static final int FIELD_COUNT_WITH_USAGE = 8;
+    private static final long NOT_MEASURED = -1L;
+
+    private final String testId;
+    private final String status;
+    private final long durationMillis;
+    private final long cpuMillis;
+    private final long heapBeforeBytes;
+    private final long heapAfterBytes;
+    private final long threadsBefore;
+    private final long threadsAfter;
+
+    TestResultRecord(String testId, String status, long durationMillis) {
+        this(testId, status, durationMillis, NOT_MEASURED, NOT_MEASURED, NOT_MEASURED, NOT_MEASURED, NOT_MEASURED);
+    }
+
+    TestResultRecord(String testId, String status, long durationMillis, long cpuMillis, long heapBeforeBytes,
+                     long heapAfterBytes, long threadsBefore, long threadsAfter) {
+        this.testId = testId;
+        this.status = status;
+        this.durationMillis = durationMillis;
+        this.cpuMillis = cpuMillis;
+        this.heapBeforeBytes = heapBeforeBytes;
+        this.heapAfterBytes = heapAfterBytes;
+        this.threadsBefore = threadsBefore;
+        this.threadsAfter = threadsAfter;
+    }
+
+    /**
+     * Read the records from all results files in the directory.
+     *
+     * @param resultsDirectory the directory holding the results files
+     * @return the list of records, which is empty if the directory does not exist
+     * @throws IOException if a results file cannot be read
+     */
+    static List<TestResultRecord> readAll(File resultsDirectory) throws IOException {
+        List<TestResultRecord> result = new ArrayList<>();
+        File[] resultsFiles = resultsDirectory.listFiles();
+        if (resultsFiles == null) {
+            return result;
+        }
+
+        for (File resultsFile : resultsFiles) {
+            if (!resultsFile.getName().endsWith(RESULTS_FILE_EXTENSION)) {
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(resultsFile.toPath(), StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                while (line != null) {
+                    String[] fields = line.split("\t");
+                    try {
+                        // The results of older drivers, such as those in the test result cache, have no usage
+                        if (fields.length == FIELD_COUNT) {
+                            result.add(new TestResultRecord(fields[0], fields[1], Long.parseLong(fields[2])));
+                        } else if (fields.length == FIELD_COUNT_WITH_USAGE) {
+                            result.add(new TestResultRecord(fields[0], fields[1], Long.parseLong(fields[2]),
+                                                            Long.parseLong(fields[3]), Long.parseLong(fields[4]),
+                                                            Long.parseLong(fields[5]), Long.parseLong(fields[6]),
+                                                            Long.parseLong(fields[7])));
+                        }
+                    } catch (NumberFormatException ignore) {
+                        // Skip the malformed line left behind by a driver that was killed while writing
+                    }
+                    line = reader.readLine();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the name of a new results file for the given fork and sequence number.
+     *
+     * @param forkId         the fork running the tests
+     * @param sequenceNumber the number of the test run in the build
+     * @return the results file name
+     */
+    static String getResultsFileName(int forkId, int sequenceNumber) {
+        return "fork-" + forkId + "-" + sequenceNumber + RESULTS_FILE_EXTENSION;
+    }
+
+    /**
+     * Get the ids of the failed tests.
+     *
+     * @param testResults the results of the tests that ran
+     * @return the ids of the failed tests, in the order of the results
+     */
+    static Set<String> getFailedTestIds(List<TestResultRecord> testResults) {
+        Set<String> result = new LinkedHashSet<>();
+        for (TestResultRecord testResult : testResults) {
+            if (testResult.isFailed()) {
+                result.add(testResult.getTestId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get whether the test id is that of a failed class or module fixture, which unittest reports as, for
+     * example, <code>setUpClass (module.Class)</code>.
+     *
+     * @param testId the test id
+     * @return true if the test id is that of a fixture
+     */
+    static boolean isFixtureTestId(String testId) {
+        return testId.endsWith(")") && testId.indexOf(" (") > 0;
+    }
+
+    /**
+     * Get the module, or module and class, that a test id belongs to, which is the part of a fixture id
+     * between the parentheses and the part of a test method id before the method name.
+     *
+     * @param testId the test id
+     * @return the module or module.Class name
+     */
+    static String getTestIdScope(String testId) {
+        if (isFixtureTestId(testId)) {
+            return testId.substring(testId.indexOf(" (") + 2, testId.length() - 1);
+        }
+        int methodIndex = testId.lastIndexOf('.');
+        return methodIndex == -1 ? testId : testId.substring(0, methodIndex);
+    }
+
+    /**
+     * Get the test module that a test id belongs to, which is the test file's name without the extension.
+     *
+     * @param testId the test id
+     * @return the module name
+     */
+    static String getTestModuleName(String testId) {
+        String scope = getTestIdScope(testId);
+        int classIndex = scope.indexOf('.');
+        return classIndex == -1 ? scope : scope.substring(0, classIndex);
+    }
+
+    String getTestId() {
+        return testId;
+    }
+
+    String getStatus() {
+        return status;
+    }
+
+    long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Get the CPU time of the thread that ran the test.
+     *
+     * @return the CPU time in milliseconds, or -1 if it was not measured
+     */
+    long getCpuMillis() {
+        return cpuMillis;
+    }
+
+    /**
+     * Get how much the heap used after a garbage collection grew while the test ran.
+     *
+     * @return the retained heap in bytes, which is negative if the heap shrank, or null if it was not measured
+     */
+    Long getRetainedHeapBytes() {
+        if (heapBeforeBytes < 0L || heapAfterBytes < 0L) {
+            return null;
+        }
+        return heapAfterBytes - heapBeforeBytes;
+    }
+
+    /**
+     * Get how many more threads were alive after the test than before it.
+     *
+     * @return the number of leaked threads, which is negative if threads ended, or null if it was not measured
+     */
+    Long getLeakedThreadCount() {
+        if (threadsBefore < 0L || threadsAfter < 0L) {
+            return null;
+        }
+        return threadsAfter - threadsBefore;
+    }
+
+    boolean isSkipped() {
+        return STATUS_SKIPPED.equals(status);
+    }
+
+    boolean isFailed() {
+        return STATUS_FAILURE.equals(status) || STATUS_ERROR.equals(status);
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * TestResultReporter.java - This class reports the timings, resource usage
+ *     and coverage of the WLST tests for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class reports what the results of a test run say beyond whether the tests passed: the slowest tests
+ * and the timing regressions, the tests that leaked heap or threads, and the line coverage.  Problems with
+ * the timing history and the coverage files are only logged since they must not fail the build.
+ */
+final class TestResultReporter {
+    private static final String COVERAGE_DATA_FILE = "coverage.data";
+    private static final long MINIMUM_REGRESSION_MILLIS = 100L;
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private static final long BYTES_PER_KILOBYTE = 1024L;
+
+    private final int slowTestsToReport;
+    private final double timingRegressionFactor;
+    private final int leakingTestsToReport;
+    private final int heapLeakThresholdInMegabytes;
+    private final int threadLeakThreshold;
+    private final Log log;
+
+    /**
+     * The constructor.
+     *
+     * @param slowTestsToReport            the number of slowest tests to list, or 0
+     * @param timingRegressionFactor       the factor by which a test must exceed its average duration to be
+     *                                     reported as a timing regression
+     * @param leakingTestsToReport         the number of tests that leaked the most heap and threads to list, or 0
+     * @param heapLeakThresholdInMegabytes the retained heap above which a test fails, or 0
+     * @param threadLeakThreshold          the number of leaked threads above which a test fails, or 0
+     * @param log                          the Maven log
+     */
+    TestResultReporter(int slowTestsToReport, double timingRegressionFactor, int leakingTestsToReport,
+                       int heapLeakThresholdInMegabytes, int threadLeakThreshold, Log log) {
+        this.slowTestsToReport = slowTestsToReport;
+        this.timingRegressionFactor = timingRegressionFactor;
+        this.leakingTestsToReport = leakingTestsToReport;
+        this.heapLeakThresholdInMegabytes = heapLeakThresholdInMegabytes;
+        this.threadLeakThreshold = threadLeakThreshold;
+        this.log = log;
+    }
+
+    /**
+     * Update the timing history with the durations of the tests that ran, and of their test modules when
+     * all of their tests ran, and report the slowest tests and the tests that got significantly slower than
+     * their average.
+     *
+     * @param module           the module
+     * @param records          the results of the tests that ran
+     * @param allTestsSelected whether the test parameter did not limit the tests that ran
+     */
+    void reportTestTimings(WlstTestModule module, List<TestResultRecord> records, boolean allTestsSelected) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        File historyFile = module.getTimingHistoryFile();
+        TestTimingHistory timingHistory = new TestTimingHistory(historyFile);
+        try {
+            timingHistory.load();
+        } catch (IOException ioe) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-048", historyFile.getAbsolutePath(),
+                                             ioe.getLocalizedMessage()));
+            return;
+        }
+
+        Map<String, Long> moduleDurations = new TreeMap<>();
+        for (TestResultRecord record : records) {
+            if (record.isSkipped()) {
+                continue;
+            }
+            long averageMillis = timingHistory.getAverageMillis(record.getTestId());
+            long durationMillis = record.getDurationMillis();
+            if (averageMillis >= 0 && durationMillis > averageMillis * timingRegressionFactor
+                && durationMillis - averageMillis >= MINIMUM_REGRESSION_MILLIS) {
+                log.warn(MessageUtils.getMessage("WLSTTEST-049", record.getTestId(), durationMillis,
+                                                 averageMillis));
+            }
+            timingHistory.recordRun(record.getTestId(), durationMillis);
+
+            String moduleName = TestResultRecord.getTestModuleName(record.getTestId());
+            Long moduleMillis = moduleDurations.get(moduleName);
+            moduleDurations.put(moduleName, moduleMillis == null ? durationMillis : moduleMillis + durationMillis);
+        }
+
+        // The module durations balance the test shards, so they are only recorded when all of the tests ran
+        if (allTestsSelected && !module.isIncompleteRun()) {
+            for (Map.Entry<String, Long> entry : moduleDurations.entrySet()) {
+                timingHistory.recordModuleRun(entry.getKey(), entry.getValue());
+            }
+        }
+
+        try {
+            timingHistory.save();
+        } catch (IOException ioe) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-048", historyFile.getAbsolutePath(),
+                                             ioe.getLocalizedMessage()));
+        }
+
+        if (slowTestsToReport > 0) {
+            List<TestResultRecord> slowestRecords = new ArrayList<>(records);
+            Collections.sort(slowestRecords, new Comparator<TestResultRecord>() {
+                @Override
+                public int compare(TestResultRecord record1, TestResultRecord record2) {
+                    return Long.compare(record2.getDurationMillis(), record1.getDurationMillis());
+                }
+            });
+            int reportCount = Math.min(slowTestsToReport, slowestRecords.size());
+            log.info(MessageUtils.getMessage("WLSTTEST-050", reportCount));
+            for (TestResultRecord record : slowestRecords.subList(0, reportCount)) {
+                if (record.getCpuMillis() < 0L) {
+                    log.info(MessageUtils.getMessage("WLSTTEST-051", record.getDurationMillis(),
+                                                     record.getTestId()));
+                } else {
+                    log.info(MessageUtils.getMessage("WLSTTEST-092", record.getDurationMillis(),
+                                                     record.getCpuMillis(), record.getTestId()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Report the tests that retained the most heap and the tests that left the most threads running.
+     *
+     * @param records the results of the tests that ran
+     */
+    void reportResourceUsage(List<TestResultRecord> records) {
+        if (leakingTestsToReport <= 0) {
+            return;
+        }
+
+        List<TestResultRecord> heapRecords = new ArrayList<>();
+        List<TestResultRecord> threadRecords = new ArrayList<>();
+        for (TestResultRecord record : records) {
+            Long retainedHeapBytes = record.getRetainedHeapBytes();
+            if (retainedHeapBytes != null && retainedHeapBytes >= BYTES_PER_KILOBYTE) {
+                heapRecords.add(record);
+            }
+            Long leakedThreadCount = record.getLeakedThreadCount();
+            if (leakedThreadCount != null && leakedThreadCount > 0L) {
+                threadRecords.add(record);
+            }
+        }
+
+        if (!heapRecords.isEmpty()) {
+            Collections.sort(heapRecords, new Comparator<TestResultRecord>() {
+                @Override
+                public int compare(TestResultRecord record1, TestResultRecord record2) {
+                    return record2.getRetainedHeapBytes().compareTo(record1.getRetainedHeapBytes());
+                }
+            });
+            int reportCount = Math.min(leakingTestsToReport, heapRecords.size());
+            log.info(MessageUtils.getMessage("WLSTTEST-093", reportCount));
+            for (TestResultRecord record : heapRecords.subList(0, reportCount)) {
+                log.info(MessageUtils.getMessage("WLSTTEST-094", record.getRetainedHeapBytes() / BYTES_PER_KILOBYTE,
+                                                 record.getTestId()));
+            }
+        }
+        if (!threadRecords.isEmpty()) {
+            Collections.sort(threadRecords, new Comparator<TestResultRecord>() {
+                @Override
+                public int compare(TestResultRecord record1, TestResultRecord record2) {
+                    return record2.getLeakedThreadCount().compareTo(record1.getLeakedThreadCount());
+                }
+            });
+            int reportCount = Math.min(leakingTestsToReport, threadRecords.size());
+            log.info(MessageUtils.getMessage("WLSTTEST-095", reportCount));
+            for (TestResultRecord record : threadRecords.subList(0, reportCount)) {
+                log.info(MessageUtils.getMessage("WLSTTEST-096", record.getLeakedThreadCount(),
+                                                 record.getTestId()));
+            }
+        }
+    }
+
+    /**
+     * Log the tests that retained more heap or left more threads running than the leak thresholds allow.
+     *
+     * @param testResults the results of the tests that ran
+     * @return the number of tests that exceeded a leak threshold
+     */
+    int checkResourceLeaks(List<TestResultRecord> testResults) {
+        int result = 0;
+        for (TestResultRecord testResult : testResults) {
+            boolean leaking = false;
+            Long retainedHeapBytes = testResult.getRetainedHeapBytes();
+            if (heapLeakThresholdInMegabytes > 0 && retainedHeapBytes != null
+                && retainedHeapBytes > heapLeakThresholdInMegabytes * BYTES_PER_MEGABYTE) {
+                log.error(MessageUtils.getMessage("WLSTTEST-097", testResult.getTestId(),
+                                                  heapLeakThresholdInMegabytes,
+                                                  retainedHeapBytes / BYTES_PER_KILOBYTE));
+                leaking = true;
+            }
+            Long leakedThreadCount = testResult.getLeakedThreadCount();
+            if (threadLeakThreshold > 0 && leakedThreadCount != null && leakedThreadCount > threadLeakThreshold) {
+                log.error(MessageUtils.getMessage("WLSTTEST-098", testResult.getTestId(), threadLeakThreshold,
+                                                  leakedThreadCount));
+                leaking = true;
+            }
+            if (leaking) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merge the coverage data written by the test drivers into the module's coverage data and write the
+     * Cobertura report.
+     *
+     * @param module                the module
+     * @param coverageRunsDirectory the directory holding the coverage data written by the test drivers
+     * @param keepEarlierCoverage   whether the coverage of earlier runs is kept, which it is when only part
+     *                              of the tests ran
+     */
+    void reportCoverage(WlstTestModule module, File coverageRunsDirectory, boolean keepEarlierCoverage) {
+        File dataFile = getCanonicalFile(new File(module.getOutputDirectory(), COVERAGE_DATA_FILE));
+        File reportFile = getCanonicalFile(module.getCoverageReportFile());
+        CoverageData coverageData = new CoverageData(dataFile);
+        try {
+            if (keepEarlierCoverage) {
+                coverageData.load();
+            }
+            File[] runDataFiles = coverageRunsDirectory.listFiles();
+            if (runDataFiles != null) {
+                for (File runDataFile : runDataFiles) {
+                    coverageData.merge(runDataFile);
+                }
+            }
+            coverageData.removeDeletedModules(module.getSourcesRootDirectory());
+            coverageData.save();
+            coverageData.writeCoberturaReport(reportFile, getCanonicalFile(module.getSourcesRootDirectory()));
+        } catch (IOException ioe) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-078", reportFile.getAbsolutePath(),
+                                             ioe.getLocalizedMessage()));
+            return;
+        }
+
+        int executableLineCount = coverageData.getExecutableLineCount();
+        int coveredLineCount = coverageData.getCoveredLineCount();
+        long percentage = executableLineCount == 0 ? 100L : (coveredLineCount * 100L) / executableLineCount;
+        log.info(MessageUtils.getMessage("WLSTTEST-077", coveredLineCount, executableLineCount, percentage,
+                                         coverageData.getModuleCount(), reportFile.getAbsolutePath()));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static File getCanonicalFile(File file) {
+        File result;
+        try {
+            result = file.getCanonicalFile();
+        } catch (IOException ignore) {
+            result = file.getAbsoluteFile();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * TestRunCache.java - This class replays and stores the results of WLST
+ *     test runs in the test result cache for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class computes the key of a module's test run from the content of everything that its results depend
+ * on, and restores or stores the results, reports and coverage data of the run in the test result cache.
+ */
+final class TestRunCache {
+    static final String RESULTS_KIND = "results";
+    static final String REPORTS_KIND = "reports";
+    static final String COVERAGE_KIND = "coverage";
+
+    private static final String REPORT_FILE_FORMAT = "TEST-%s.xml";
+
+    private final TestResultCache testResultCache;
+    private final WlstEnvironment wlstEnvironment;
+    private final String executionMode;
+    private final boolean coverage;
+    private final String test;
+    private final PhaseTimer phaseTimer;
+    private final Log log;
+
+    /**
+     * The constructor.
+     *
+     * @param testResultCache the test result cache
+     * @param wlstEnvironment the WLST environment of the test runs
+     * @param executionMode   the execution mode of the test runs
+     * @param coverage        whether the test runs record the line coverage
+     * @param test            the test parameter, or null
+     * @param phaseTimer      the timer of the goal's phases
+     * @param log             the Maven log
+     */
+    TestRunCache(TestResultCache testResultCache, WlstEnvironment wlstEnvironment, String executionMode,
+                 boolean coverage, String test, PhaseTimer phaseTimer, Log log) {
+        this.testResultCache = testResultCache;
+        this.wlstEnvironment = wlstEnvironment;
+        this.executionMode = executionMode;
+        this.coverage = coverage;
+        this.test = test;
+        this.phaseTimer = phaseTimer;
+        this.log = log;
+    }
+
+    /**
+     * Compute the key of the module's test run.
+     *
+     * @param module                        the module
+     * @param testsDriverScript             the driver script
+     * @param testScriptsExecutionDirectory the module's test execution directory
+     * @param testsToRun                    the test files to run in the module's test execution directory
+     * @return the key, or null if the inputs cannot be read
+     * @throws MojoExecutionException if the wlstExtClasspath cannot be resolved
+     */
+    String getKey(WlstTestModule module, File testsDriverScript, File testScriptsExecutionDirectory,
+                  List<File> testsToRun) throws MojoExecutionException {
+        long phaseStart = phaseTimer.start();
+        try {
+            StringBuilder fingerprint = new StringBuilder();
+            fingerprint.append("main=").append(HashUtils.sha1Tree(module.getSourcesRootDirectory())).append('\n');
+            fingerprint.append("test=").append(HashUtils.sha1Tree(module.getTestsRootDirectory())).append('\n');
+            for (String wlstExtClasspathEntry : wlstEnvironment.getWlstExtClasspathEntries(module)) {
+                File entryFile = new File(wlstExtClasspathEntry);
+                String entryHash = entryFile.isFile() ? HashUtils.sha1(entryFile.toPath())
+                                                      : HashUtils.sha1Tree(entryFile);
+                fingerprint.append("classpath=").append(entryHash).append('\n');
+            }
+            fingerprint.append("oracleHome=").append(wlstEnvironment.getOracleHomeVersion(module)).append('\n');
+            fingerprint.append("driver=").append(HashUtils.sha1(testsDriverScript.toPath())).append('\n');
+            fingerprint.append("options=").append(wlstEnvironment.isUsingOldWlstVersion(module)).append('|');
+            fingerprint.append(wlstEnvironment.isSkipModuleScanning()).append('|').append(executionMode);
+            fingerprint.append('|').append(coverage).append('|');
+            fingerprint.append(wlstEnvironment.getEnvironmentVariables(module)).append('|');
+            fingerprint.append(wlstEnvironment.getSystemProperties()).append('|');
+            fingerprint.append(wlstEnvironment.getArgLine()).append('|').append(test).append('\n');
+
+            // The order of the tests does not change their results
+            List<String> testPaths = new ArrayList<>(testsToRun.size());
+            for (File testToRun : testsToRun) {
+                String testPath = testScriptsExecutionDirectory.toPath().relativize(testToRun.toPath()).toString();
+                testPaths.add(testPath.replace('\\', '/'));
+            }
+            Collections.sort(testPaths);
+            fingerprint.append("tests=").append(testPaths);
+            return HashUtils.sha1(fingerprint.toString());
+        } catch (IOException ioe) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-087", ioe.getLocalizedMessage()));
+            return null;
+        } finally {
+            phaseTimer.stop("compute result cache key", phaseStart);
+        }
+    }
+
+    /**
+     * Restore the results, reports and coverage data of a test run.
+     *
+     * @param key         the key of the test run
+     * @param directories the directories to restore the files to, keyed by the kind of files they hold
+     * @return true if the files were restored, or false if the cache has no entry for the key
+     * @throws IOException if the entry cannot be read, in which case some of the files may have been restored
+     */
+    boolean restore(String key, Map<String, File> directories) throws IOException {
+        long phaseStart = phaseTimer.start();
+        try {
+            if (testResultCache.restore(key, directories) < 0) {
+                log.debug(MessageUtils.getMessage("WLSTTEST-127", key));
+                return false;
+            }
+            return true;
+        } finally {
+            phaseTimer.stop("restore cached test results", phaseStart);
+        }
+    }
+
+    /**
+     * Store the results, reports and coverage data of a test run if all of its tests passed.  Problems are
+     * only logged since the cache must not fail the build.
+     *
+     * @param key         the key of the test run
+     * @param directories the directories holding the files, keyed by the kind of files they hold
+     * @param testResults the results of the tests that ran
+     */
+    void store(String key, Map<String, File> directories, List<TestResultRecord> testResults) {
+        Map<String, File> files = new TreeMap<>();
+        Set<String> reportFileNames = new HashSet<>();
+        for (TestResultRecord testResult : testResults) {
+            if (testResult.isFailed()) {
+                return;
+            }
+            String testId = testResult.getTestId();
+            String className = testId.substring(0, Math.max(0, testId.lastIndexOf('.')));
+            reportFileNames.add(String.format(REPORT_FILE_FORMAT, className));
+        }
+
+        long phaseStart = phaseTimer.start();
+        try {
+            for (Map.Entry<String, File> directory : directories.entrySet()) {
+                File[] directoryFiles = directory.getValue().listFiles();
+                if (directoryFiles == null) {
+                    continue;
+                }
+                for (File directoryFile : directoryFiles) {
+                    boolean isReport = REPORTS_KIND.equals(directory.getKey());
+                    if (directoryFile.isFile() && (!isReport || reportFileNames.contains(directoryFile.getName()))) {
+                        files.put(directory.getKey() + '/' + directoryFile.getName(), directoryFile);
+                    }
+                }
+            }
+            testResultCache.store(key, files);
+            log.debug(MessageUtils.getMessage("WLSTTEST-128", files.size(), key));
+        } catch (IOException ioe) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-087", ioe.getLocalizedMessage()));
+        } finally {
+            phaseTimer.stop("store test results in cache", phaseStart);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * TestRunOrder.java - This class orders the WLST test files so that
+ *     the tests most likely to fail run first for the WLST Test Maven
+ *     Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * This class remembers which test modules failed in the previous run and when that run started so that
+ * the test files that failed or changed since then can be run before all others.
+ */
+final class TestRunOrder {
+    private static final String STATE_COMMENT = "WLST test run order state";
+    private static final String LAST_RUN_START = "lastRunStart";
+    private static final String FAILED_MODULES = "failedModules";
+    private static final String PY_FILE_EXTENSION = ".py";
+
+    private final File stateFile;
+    private long lastRunStart;
+    private final Set<String> failedModules = new HashSet<>();
+
+    /**
+     * The constructor.
+     *
+     * @param stateFile the file holding the state of the previous run
+     */
+    TestRunOrder(File stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Load the state of the previous run, if any.
+     *
+     * @throws IOException if the state file cannot be read
+     */
+    void load() throws IOException {
+        if (!stateFile.isFile()) {
+            return;
+        }
+
+        Properties state = new Properties();
+        try (InputStream inputStream = new FileInputStream(stateFile)) {
+            state.load(inputStream);
+        }
+        try {
+            lastRunStart = Long.parseLong(state.getProperty(LAST_RUN_START, "0"));
+        } catch (NumberFormatException ignore) {
+            lastRunStart = 0;
+        }
+        for (String moduleName : state.getProperty(FAILED_MODULES, "").split(",")) {
+            if (!moduleName.isEmpty()) {
+                failedModules.add(moduleName);
+            }
+        }
+    }
+
+    /**
+     * Order the test files so that the ones that failed in the previous run come first, followed by the
+     * ones that changed since the previous run started, followed by the rest.  The original order is kept
+     * within each group.  Nothing changes if there is no previous run.
+     *
+     * @param testFiles the test files
+     * @return the ordered test files
+     */
+    List<File> order(List<File> testFiles) {
+        if (lastRunStart == 0) {
+            return testFiles;
+        }
+
+        List<File> failedFiles = new ArrayList<>();
+        List<File> changedFiles = new ArrayList<>();
+        List<File> otherFiles = new ArrayList<>();
+        for (File testFile : testFiles) {
+            if (failedModules.contains(getModuleName(testFile))) {
+                failedFiles.add(testFile);
+            } else if (testFile.lastModified() >= lastRunStart) {
+                changedFiles.add(testFile);
+            } else {
+                otherFiles.add(testFile);
+            }
+        }
+
+        List<File> result = new ArrayList<>(testFiles.size());
+        result.addAll(failedFiles);
+        result.addAll(changedFiles);
+        result.addAll(otherFiles);
+        return result;
+    }
+
+    /**
+     * Save the state of the run that just finished.
+     *
+     * @param runStart    the time when the run started
+     * @param testResults the results of the tests that ran
+     * @throws IOException if the state file cannot be written
+     */
+    void save(long runStart, Collection<TestResultRecord> testResults) throws IOException {
+        Set<String> newFailedModules = new HashSet<>();
+        for (TestResultRecord testResult : testResults) {
+            if (testResult.isFailed()) {
+                newFailedModules.add(getModuleName(testResult.getTestId()));
+            }
+        }
+
+        StringBuilder failedModuleList = new StringBuilder();
+        for (String moduleName : newFailedModules) {
+            if (failedModuleList.length() > 0) {
+                failedModuleList.append(',');
+            }
+            failedModuleList.append(moduleName);
+        }
+
+        Properties state = new Properties();
+        state.setProperty(LAST_RUN_START, Long.toString(runStart));
+        state.setProperty(FAILED_MODULES, failedModuleList.toString());
+        try (OutputStream outputStream = new FileOutputStream(stateFile)) {
+            state.store(outputStream, STATE_COMMENT);
+        }
+    }
+
+    private static String getModuleName(File testFile) {
+        String fileName = testFile.getName();
+        return fileName.substring(0, fileName.length() - PY_FILE_EXTENSION.length());
+    }
+
+    private static String getModuleName(String testId) {
+        // Test ids are module.Class.method, where the module is the test file's name without the extension
+        int methodIndex = testId.lastIndexOf('.');
+        int classIndex = methodIndex > 0 ? testId.lastIndexOf('.', methodIndex - 1) : -1;
+        return classIndex > 0 ? testId.substring(0, classIndex) : testId;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * TestRunner.java - This class runs the WLST test driver in one of the
+ *     execution modes of the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * This class runs the test driver script with the arguments built by the goal.  There is one subclass per
+ * executionMode, and the goal creates the one it needs once its arguments are verified.
+ */
+abstract class TestRunner {
+    // The exit code of a driver whose tests ran and some of them failed, as opposed to a driver that crashed
+    static final int TEST_FAILURE_EXIT_CODE = 2;
+
+    /**
+     * Run the driver script.
+     *
+     * @param module            the module whose tests are run
+     * @param forkId            the number of the fork running the tests, starting at 1
+     * @param sequenceNumber    the number of the test run in the build, which names its output files
+     * @param workingDirectory  the working directory of the test run
+     * @param testsDriverScript the driver script
+     * @param driverArguments   the arguments of the driver script
+     * @throws MojoExecutionException if the tests fail or cannot be run
+     */
+    abstract void run(WlstTestModule module, int forkId, int sequenceNumber, File workingDirectory,
+                      File testsDriverScript, List<String> driverArguments) throws MojoExecutionException;
+
+    /**
+     * Fail the test run if the driver did not exit with 0, and mark the module's run incomplete unless the
+     * driver reported that tests failed.
+     *
+     * @param module   the module whose tests were run
+     * @param exitCode the exit code of the driver
+     * @throws MojoExecutionException if the exit code is not 0
+     */
+    static void checkExitCode(WlstTestModule module, int exitCode) throws MojoExecutionException {
+        if (exitCode != 0) {
+            module.setIncompleteRun(exitCode != TEST_FAILURE_EXIT_CODE || module.isIncompleteRun());
+            throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-040", exitCode));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * TestShardPlanner.java - This class splits the WLST test files into
+ *     shards that run on different build agents for the WLST Test Maven
+ *     Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class assigns each test file to one of a number of shards.  The assignment only depends on the test
+ * file paths and the timing history, so every build agent that sees the same test files and history computes
+ * the same shards and each test file runs on exactly one of them.
+ *
+ * When the timing history has the duration of some of the test modules, the test files are assigned from the
+ * slowest to the fastest to the shard with the least total duration so far, and the test modules without
+ * history count as the average of the ones with history.  Otherwise, each test file goes to the shard picked
+ * by the hash of its path, which spreads the test files evenly but ignores how long they take.
+ */
+final class TestShardPlanner {
+    private static final String PY_FILE_EXTENSION = ".py";
+    private static final int HASH_PREFIX_LENGTH = 8;
+    private static final int HEX_RADIX = 16;
+
+    private final int shardCount;
+    private final Map<String, Integer> shardAssignments = new HashMap<>();
+    private final long[] shardMillis;
+    private boolean balancedByHistory;
+
+    /**
+     * The constructor.
+     *
+     * @param testFiles       the paths of the test files, relative to the wlstTestsRootDirectory
+     * @param shardCount      the number of shards
+     * @param timingHistories the loaded timing histories; when there are several, a test module's duration is
+     *                        the longest of its durations in them
+     */
+    TestShardPlanner(List<String> testFiles, int shardCount, List<TestTimingHistory> timingHistories) {
+        this.shardCount = shardCount;
+        this.shardMillis = new long[shardCount];
+
+        // Sort the paths first so that the shards do not depend on the order in which the files were found
+        List<String> sortedTestFiles = new ArrayList<>(testFiles);
+        Collections.sort(sortedTestFiles);
+
+        final Map<String, Long> estimatedMillis = new HashMap<>();
+        long totalRecordedMillis = 0L;
+        for (String testFile : sortedTestFiles) {
+            long recordedMillis = getRecordedMillis(testFile, timingHistories);
+            if (recordedMillis >= 0L) {
+                estimatedMillis.put(testFile, recordedMillis);
+                totalRecordedMillis += recordedMillis;
+            }
+        }
+
+        if (estimatedMillis.isEmpty()) {
+            for (String testFile : sortedTestFiles) {
+                shardAssignments.put(testFile, getHashShard(testFile));
+            }
+            return;
+        }
+
+        balancedByHistory = true;
+        long defaultMillis = totalRecordedMillis / estimatedMillis.size();
+        for (String testFile : sortedTestFiles) {
+            if (!estimatedMillis.containsKey(testFile)) {
+                estimatedMillis.put(testFile, defaultMillis);
+            }
+        }
+        Collections.sort(sortedTestFiles, new Comparator<String>() {
+            @Override
+            public int compare(String testFile1, String testFile2) {
+                int result = estimatedMillis.get(testFile2).compareTo(estimatedMillis.get(testFile1));
+                return result != 0 ? result : testFile1.compareTo(testFile2);
+            }
+        });
+        for (String testFile : sortedTestFiles) {
+            int shard = 0;
+            for (int idx = 1; idx < shardCount; idx++) {
+                if (shardMillis[idx] < shardMillis[shard]) {
+                    shard = idx;
+                }
+            }
+            shardAssignments.put(testFile, shard);
+            shardMillis[shard] += estimatedMillis.get(testFile);
+        }
+    }
+
+    /**
+     * Get the test files of the shard.
+     *
+     * @param testFiles  the paths of the test files passed to the constructor
+     * @param shardIndex the zero-based index of the shard
+     * @return the paths of the shard's test files, in the order of the testFiles
+     */
+    List<String> getShard(List<String> testFiles, int shardIndex) {
+        List<String> result = new ArrayList<>();
+        for (String testFile : testFiles) {
+            Integer shard = shardAssignments.get(testFile);
+            if (shard != null && shard == shardIndex) {
+                result.add(testFile);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether the shards were balanced using the timing history rather than the hash of the test file paths.
+     *
+     * @return true if the timing history was used
+     */
+    boolean isBalancedByHistory() {
+        return balancedByHistory;
+    }
+
+    /**
+     * Get the expected duration of the shard's tests.
+     *
+     * @param shardIndex the zero-based index of the shard
+     * @return the expected duration in milliseconds, or 0 if the shards were not balanced by the timing history
+     */
+    long getEstimatedMillis(int shardIndex) {
+        return shardMillis[shardIndex];
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static long getRecordedMillis(String testFile, List<TestTimingHistory> timingHistories) {
+        String fileName = testFile.substring(testFile.lastIndexOf('/') + 1);
+        String moduleName = fileName.endsWith(PY_FILE_EXTENSION)
+            ? fileName.substring(0, fileName.length() - PY_FILE_EXTENSION.length()) : fileName;
+
+        long result = -1L;
+        for (TestTimingHistory timingHistory : timingHistories) {
+            result = Math.max(result, timingHistory.getModuleAverageMillis(moduleName));
+        }
+        return result;
+    }
+
+    private int getHashShard(String testFile) {
+        // String.hashCode() would do, but a digest spreads similar paths more evenly across the shards
+        String hash = HashUtils.sha1(testFile).substring(0, HASH_PREFIX_LENGTH);
+        return (int) (Long.parseLong(hash, HEX_RADIX) % shardCount);
+    }
+}
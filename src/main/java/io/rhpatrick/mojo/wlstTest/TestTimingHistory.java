@@ -0,0 +1,144 @@
+/*
+ * TestTimingHistory.java - This class keeps the cumulative timing
+ *     history of the WLST tests for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * This class keeps the number of runs, the average duration and the last duration of each test, and of
+ * each test module as a whole, in a properties file.  The average is an exponential moving average so that
+ * it follows lasting changes in a test's duration while smoothing out the noise of individual runs.
+ */
+final class TestTimingHistory {
+    private static final String HISTORY_COMMENT = "WLST test timing history: runs:averageMillis:lastMillis";
+    private static final double SMOOTHING_FACTOR = 0.3;
+    // Test ids never contain a colon, so the module entries cannot clash with the test entries
+    private static final String MODULE_KEY_PREFIX = "module:";
+
+    private final File historyFile;
+    private final Properties entries = new Properties();
+
+    /**
+     * The constructor.
+     *
+     * @param historyFile the history file
+     */
+    TestTimingHistory(File historyFile) {
+        this.historyFile = historyFile;
+    }
+
+    /**
+     * Load the history file, if it exists.
+     *
+     * @throws IOException if the history file cannot be read
+     */
+    void load() throws IOException {
+        if (historyFile.isFile()) {
+            try (InputStream inputStream = new FileInputStream(historyFile)) {
+                entries.load(inputStream);
+            }
+        }
+    }
+
+    /**
+     * Get the average duration of the test.
+     *
+     * @param testId the test id
+     * @return the average duration in milliseconds, or -1 if the test has no usable history
+     */
+    long getAverageMillis(String testId) {
+        long[] entry = getEntry(testId);
+        return entry == null ? -1L : entry[1];
+    }
+
+    /**
+     * Get the average duration of all tests of the test module.
+     *
+     * @param moduleName the test module name, which is the test file's name without the extension
+     * @return the average duration in milliseconds, or -1 if the test module has no usable history
+     */
+    long getModuleAverageMillis(String moduleName) {
+        return getAverageMillis(MODULE_KEY_PREFIX + moduleName);
+    }
+
+    /**
+     * Record a run of the test.
+     *
+     * @param testId         the test id
+     * @param durationMillis the duration of the run in milliseconds
+     */
+    void recordRun(String testId, long durationMillis) {
+        long[] entry = getEntry(testId);
+        long runs = 1;
+        long averageMillis = durationMillis;
+        if (entry != null) {
+            runs = entry[0] + 1;
+            averageMillis = Math.round(SMOOTHING_FACTOR * durationMillis + (1 - SMOOTHING_FACTOR) * entry[1]);
+        }
+        entries.setProperty(testId, runs + ":" + averageMillis + ":" + durationMillis);
+    }
+
+    /**
+     * Record a run of all tests of the test module.
+     *
+     * @param moduleName     the test module name
+     * @param durationMillis the total duration of the module's tests in milliseconds
+     */
+    void recordModuleRun(String moduleName, long durationMillis) {
+        recordRun(MODULE_KEY_PREFIX + moduleName, durationMillis);
+    }
+
+    /**
+     * Write the history file.
+     *
+     * @throws IOException if the history file cannot be written
+     */
+    void save() throws IOException {
+        File parentDirectory = historyFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.isDirectory() && !parentDirectory.mkdirs()) {
+            throw new IOException(historyFile.getParent());
+        }
+        try (OutputStream outputStream = new FileOutputStream(historyFile)) {
+            entries.store(outputStream, HISTORY_COMMENT);
+        }
+    }
+
+    private long[] getEntry(String testId) {
+        String value = entries.getProperty(testId);
+        if (value == null) {
+            return null;
+        }
+
+        String[] fields = value.split(":");
+        if (fields.length != 3) {
+            return null;
+        }
+        try {
+            return new long[] { Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]) };
+        } catch (NumberFormatException ignore) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * WLSTUnitTestAggregateMojo.java - This class implements the test-aggregate
+ *     goal of the WLST Test Maven Plugin that runs the WLST unit tests of
+ *     all modules in the reactor in one launch.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * This mojo runs the WLST unit tests of all modules in the reactor in one launch instead of starting WLST
+ * again in every module.  The tests of each module still run from the module's own execution directories
+ * with its own wlstExtClasspath and are reported in the module's own reports directory, but the modules are
+ * scheduled on a fixed pool of forkCount WLST processes that run one module after another.
+ *
+ * <P>The wlstSourcesRootDirectory, wlstTestsRootDirectory, wlstExtClasspath and reportsDirectory of each
+ * module are read from the module's configuration of this plugin, using the defaults of the test goal when
+ * they are not set.  All other parameters come from the configuration of the project running this goal.</P>
+ */
+@Mojo(name = "test-aggregate", aggregator = true, requiresDependencyResolution = ResolutionScope.TEST)
+public class WLSTUnitTestAggregateMojo extends AbstractWLSTTestMojo {
+    private static final String TEST_GOAL = "test";
+    private static final String SOURCES_ROOT_DIRECTORY_PARAMETER = "wlstSourcesRootDirectory";
+    private static final String TESTS_ROOT_DIRECTORY_PARAMETER = "wlstTestsRootDirectory";
+    private static final String EXT_CLASSPATH_PARAMETER = "wlstExtClasspath";
+    private static final String REPORTS_DIRECTORY_PARAMETER = "reportsDirectory";
+    private static final String COVERAGE_REPORT_FILE_PARAMETER = "coverageReportFile";
+    private static final String DEFAULT_SOURCES_ROOT_DIRECTORY = "src/main/python";
+    private static final String DEFAULT_TESTS_ROOT_DIRECTORY = "src/test/python";
+    private static final String DEFAULT_REPORTS_DIRECTORY = "surefire-reports";
+    private static final String DEFAULT_TIMING_HISTORY_FILE = "wlst-tests/timing-history.properties";
+    private static final String DEFAULT_COVERAGE_REPORT_FILE = "wlst-coverage/coverage.xml";
+
+    @Parameter(defaultValue = "${reactorProjects}", required = true, readonly = true)
+    private List<MavenProject> reactorProjects;
+
+    @Parameter(defaultValue = "${plugin}", required = true, readonly = true)
+    private PluginDescriptor pluginDescriptor;
+
+    /**
+     * Run the tests of all reactor modules that have WLST tests.
+     *
+     * @throws MojoExecutionException if a configuration or execution environment-related error occurs
+     * @throws MojoFailureException   if an unexpected error occurs related to a plugin or Maven failure
+     */
+    @Override
+    protected void executeTests() throws MojoExecutionException, MojoFailureException {
+        Map<WlstTestModule, List<String>> moduleTests = gatherModuleTests();
+        if (moduleTests.isEmpty()) {
+            if (isEmpty(getTest())) {
+                getLog().info(getMessage("WLSTTEST-061", reactorProjects.size()));
+                return;
+            } else if (isFailIfNoSpecifiedTests()) {
+                throw new MojoExecutionException(getMessage("WLSTTEST-059", getTest()));
+            }
+            getLog().info(getMessage("WLSTTEST-059", getTest()));
+            return;
+        }
+
+        File outputDirectory = getCanonicalFile(new File(getMavenProject().getBasedir(), WLST_TEST_BASE_DIRECTORY));
+        File testsDriverScript = writeTestsDriverScript(outputDirectory);
+
+        Map<WlstTestModule, List<File>> moduleTestFiles = new LinkedHashMap<>();
+        List<File> resultsDirectories = new ArrayList<>();
+        for (Map.Entry<WlstTestModule, List<String>> entry : moduleTests.entrySet()) {
+            List<File> testFiles = prepareTestRun(entry.getKey(), testsDriverScript, entry.getValue());
+            if (!testFiles.isEmpty()) {
+                moduleTestFiles.put(entry.getKey(), testFiles);
+                resultsDirectories.add(getResultsDirectory(entry.getKey()));
+            }
+        }
+        if (moduleTestFiles.isEmpty()) {
+            return;
+        }
+
+        File stopFile = new File(outputDirectory, TestResultMonitor.STOP_FILE_NAME);
+        if (stopFile.exists() && !stopFile.delete()) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-047", stopFile.getAbsolutePath()));
+        }
+        startTestResultMonitor(resultsDirectories, stopFile);
+        if (EXECUTION_MODE_IN_PROCESS.equals(getExecutionMode())) {
+            warnAboutIgnoredInProcessParameters();
+        }
+
+        Set<WlstTestModule> failedModules;
+        Map<WlstTestModule, List<TestResultRecord>> moduleResults = new LinkedHashMap<>();
+        try {
+            failedModules = runModules(testsDriverScript, moduleTestFiles);
+        } finally {
+            stopTestResultMonitor();
+            for (WlstTestModule module : moduleTestFiles.keySet()) {
+                List<TestResultRecord> testResults = finishTestRun(module);
+                moduleResults.put(module, testResults);
+                reportModuleResults(module, testResults);
+            }
+        }
+
+        List<String> failedModuleNames = new ArrayList<>();
+        for (WlstTestModule module : moduleTestFiles.keySet()) {
+            if (failedModules.contains(module) && rerunFailingTests(module, testsDriverScript,
+                                                                    moduleTestFiles.get(module),
+                                                                    moduleResults.get(module)) == 0) {
+                failedModules.remove(module);
+            }
+            if (failedModules.contains(module) || checkResourceLeaks(moduleResults.get(module)) > 0) {
+                failedModuleNames.add(module.getName());
+            } else if (isEmpty(getTest())) {
+                saveIncrementalIndex(module);
+            }
+        }
+        if (!failedModuleNames.isEmpty()) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-064", failedModuleNames.size(),
+                                                        moduleTestFiles.size(), failedModuleNames));
+        }
+    }
+
+    /**
+     * Starting a new WLST process for every module is what this goal avoids, so the process execution mode
+     * uses WLST daemons instead, which run the modules one after another in the same WLST process.
+     *
+     * @return the execution mode
+     */
+    @Override
+    protected String getExecutionMode() {
+        String executionMode = super.getExecutionMode();
+        if (EXECUTION_MODE_PROCESS.equals(executionMode)) {
+            return EXECUTION_MODE_DAEMON;
+        }
+        return executionMode;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private Map<WlstTestModule, List<String>> gatherModuleTests() throws MojoExecutionException {
+        Map<WlstTestModule, List<String>> result = new LinkedHashMap<>();
+        for (MavenProject project : reactorProjects) {
+            WlstTestModule module = createReactorModule(project);
+            if (!module.getTestsRootDirectory().isDirectory()) {
+                getLog().debug(getMessage("WLSTTEST-129", module.getName(),
+                                          module.getTestsRootDirectory().getAbsolutePath()));
+                continue;
+            }
+
+            List<String> testsToRun = gatherTestsToRun(module);
+            if (!testsToRun.isEmpty() && !isEmpty(getTest())) {
+                testsToRun = filterTestsToRun(testsToRun);
+            }
+            if (!testsToRun.isEmpty()) {
+                result.put(module, testsToRun);
+            }
+        }
+        return result;
+    }
+
+    private WlstTestModule createReactorModule(MavenProject project) {
+        if (project == getMavenProject()) {
+            return createProjectModule();
+        }
+
+        Xpp3Dom configuration = getPluginConfiguration(project);
+        File basedir = project.getBasedir();
+        File buildDirectory = new File(project.getBuild().getDirectory());
+        File sourcesRootDirectory = getFileParameter(configuration, SOURCES_ROOT_DIRECTORY_PARAMETER, basedir,
+                                                     DEFAULT_SOURCES_ROOT_DIRECTORY);
+        File testsRootDirectory = getFileParameter(configuration, TESTS_ROOT_DIRECTORY_PARAMETER, basedir,
+                                                   DEFAULT_TESTS_ROOT_DIRECTORY);
+        File reportsDirectory = getFileParameter(configuration, REPORTS_DIRECTORY_PARAMETER, buildDirectory,
+                                                 DEFAULT_REPORTS_DIRECTORY);
+        File coverageReportFile = getFileParameter(configuration, COVERAGE_REPORT_FILE_PARAMETER, buildDirectory,
+                                                   DEFAULT_COVERAGE_REPORT_FILE);
+        List<String> wlstExtClasspath = getListParameter(configuration, EXT_CLASSPATH_PARAMETER);
+        return new WlstTestModule(project, getCanonicalFile(sourcesRootDirectory),
+                                  getCanonicalFile(testsRootDirectory), wlstExtClasspath,
+                                  getCanonicalFile(reportsDirectory),
+                                  getCanonicalFile(new File(buildDirectory, DEFAULT_TIMING_HISTORY_FILE)),
+                                  getCanonicalFile(coverageReportFile));
+    }
+
+    /**
+     * Get the module's configuration of this plugin, which is the plugin-level configuration merged with the
+     * configuration of the first execution of the test goal.
+     *
+     * @param project the module's project
+     * @return the configuration, or null if the module does not configure this plugin
+     */
+    private Xpp3Dom getPluginConfiguration(MavenProject project) {
+        Plugin plugin = project.getPlugin(pluginDescriptor.getPluginLookupKey());
+        if (plugin == null) {
+            return null;
+        }
+
+        Xpp3Dom configuration = (Xpp3Dom) plugin.getConfiguration();
+        for (PluginExecution execution : plugin.getExecutions()) {
+            if (execution.getGoals().contains(TEST_GOAL) && execution.getConfiguration() != null) {
+                Xpp3Dom executionConfiguration = new Xpp3Dom((Xpp3Dom) execution.getConfiguration());
+                configuration = Xpp3Dom.mergeXpp3Dom(executionConfiguration, configuration);
+                break;
+            }
+        }
+        return configuration;
+    }
+
+    private static File getFileParameter(Xpp3Dom configuration, String name, File baseDirectory,
+                                         String defaultValue) {
+        String value = defaultValue;
+        Xpp3Dom child = configuration == null ? null : configuration.getChild(name);
+        if (child != null && child.getValue() != null && !child.getValue().trim().isEmpty()) {
+            value = child.getValue().trim();
+        }
+
+        File file = new File(value);
+        if (!file.isAbsolute()) {
+            file = new File(baseDirectory, value);
+        }
+        return file;
+    }
+
+    private static List<String> getListParameter(Xpp3Dom configuration, String name) {
+        List<String> result = new ArrayList<>();
+        Xpp3Dom child = configuration == null ? null : configuration.getChild(name);
+        if (child != null) {
+            for (Xpp3Dom element : child.getChildren()) {
+                if (element.getValue() != null && !element.getValue().trim().isEmpty()) {
+                    result.add(element.getValue().trim());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run the modules on a pool of forkCount workers.  Each worker takes the next module from the queue and
+     * runs all of its test files in a single test run, so with the default daemon execution mode each worker
+     * runs all of its modules in the same WLST process.
+     *
+     * @param testsDriverScript the driver script
+     * @param moduleTestFiles   the test files to run for each module
+     * @return the modules whose test run failed
+     * @throws MojoExecutionException if the workers could not be run
+     */
+    private Set<WlstTestModule> runModules(final File testsDriverScript,
+                                           final Map<WlstTestModule, List<File>> moduleTestFiles)
+        throws MojoExecutionException {
+        final ConcurrentLinkedQueue<WlstTestModule> modules = new ConcurrentLinkedQueue<>(moduleTestFiles.keySet());
+        final Set<WlstTestModule> failedModules = Collections.synchronizedSet(new LinkedHashSet<WlstTestModule>());
+
+        int workerCount = Math.min(getForks(), modules.size());
+        getLog().info(getMessage("WLSTTEST-062", modules.size(), workerCount, getExecutionMode()));
+
+        List<Callable<Void>> workers = new ArrayList<>(workerCount);
+        for (int forkNumber = 1; forkNumber <= workerCount; forkNumber++) {
+            final int forkId = forkNumber;
+            workers.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    WlstTestModule module = pollModule(modules);
+                    while (module != null) {
+                        getLog().info(getMessage("WLSTTEST-063", module.getName(), forkId));
+                        try {
+                            runTests(module, forkId, getWorkingDirectory(module), testsDriverScript,
+                                     moduleTestFiles.get(module));
+                        } catch (MojoExecutionException mee) {
+                            getLog().error(getMessage("WLSTTEST-065", module.getName(), mee.getLocalizedMessage()));
+                            failedModules.add(module);
+                        }
+                        module = pollModule(modules);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(workerCount);
+        try {
+            for (Future<Void> result : executorService.invokeAll(workers)) {
+                result.get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(getMessage("WLSTTEST-024"), ie);
+        } catch (ExecutionException ee) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-025", ee.getCause().getLocalizedMessage()),
+                                             ee.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+        return failedModules;
+    }
+
+    private WlstTestModule pollModule(ConcurrentLinkedQueue<WlstTestModule> modules) {
+        if (isStopRequested()) {
+            return null;
+        }
+        return modules.poll();
+    }
+
+    private void reportModuleResults(WlstTestModule module, List<TestResultRecord> testResults) {
+        int failures = 0;
+        int errors = 0;
+        int skipped = 0;
+        for (TestResultRecord testResult : testResults) {
+            if (TestResultRecord.STATUS_FAILURE.equals(testResult.getStatus())) {
+                failures++;
+            } else if (TestResultRecord.STATUS_ERROR.equals(testResult.getStatus())) {
+                errors++;
+            } else if (testResult.isSkipped()) {
+                skipped++;
+            }
+        }
+        getLog().info(getMessage("WLSTTEST-066", module.getName(), testResults.size() - skipped, failures, errors,
+                                 skipped));
+    }
+}
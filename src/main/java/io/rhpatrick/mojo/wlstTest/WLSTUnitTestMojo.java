@@ -20,43 +20,28 @@
 package io.rhpatrick.mojo.wlstTest;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.MissingResourceException;
-import java.util.ResourceBundle;
-import java.util.regex.Matcher;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.model.Plugin;
-import org.apache.maven.plugin.AbstractMojo;
-import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
-import org.apache.maven.project.MavenProject;
-
-import org.codehaus.plexus.util.xml.Xpp3Dom;
-
-import static org.twdata.maven.mojoexecutor.MojoExecutor.artifactId;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.Element;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.executeMojo;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.executionEnvironment;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.goal;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.groupId;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
 
 /**
  * This mojo allows WLST-based unit tests to be executed as part of a Maven build.  Any WLST source code
@@ -64,622 +49,393 @@ import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
  * tests.
  */
 @Mojo(name = "test", defaultPhase = LifecyclePhase.TEST,
-      requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME
+      requiresDependencyResolution = ResolutionScope.TEST
 )
-public class WLSTUnitTestMojo extends AbstractMojo {
-    private static final String BUNDLE_NAME = "io.rhpatrick.mojo.wlstTest.WLSTTestBundle";
-    private static final ResourceBundle WLST_TEST_BUNDLE = ResourceBundle.getBundle(BUNDLE_NAME);
-
-    private static final String DEPENDENCY_PLUGIN_GROUP_ID = "org.apache.maven.plugins";
-    private static final String DEPENDENCY_PLUGIN_ARTIFACT_ID = "maven-dependency-plugin";
-    private static final String DEPENDENCY_PLUGIN_PROPERTIES_GOAL = "properties";
-
-    private static final String EXEC_PLUGIN_GROUP_ID = "org.codehaus.mojo";
-    private static final String EXEC_PLUGIN_ARTIFACT_ID = "exec-maven-plugin";
-    private static final String EXEC_PLUGIN_EXEC_GOAL = "exec";
-    private static final String EXEC_PLUGIN_ENVIRONMENT_VARIABLES = "environmentVariables";
-    private static final String EXEC_PLUGIN_ARGUMENT = "argument";
-    private static final String EXEC_PLUGIN_ARGUMENTS = "arguments";
-    private static final String EXEC_PLUGIN_WORKING_DIRECTORY = "workingDirectory";
-    private static final String EXEC_PLUGIN_EXECUTABLE = "executable";
-    private static final int EXEC_PLUGIN_ARGS_LENGTH = 4;
-
-    private static final String RESOURCES_PLUGIN_GROUP_ID = "org.apache.maven.plugins";
-    private static final String RESOURCES_PLUGIN_ARTIFACT_ID = "maven-resources-plugin";
-    private static final String RESOURCES_PLUGIN_COPY_RESOURCES_GOAL = "copy-resources";
-    private static final String RESOURCES_PLUGIN_OUTPUT_DIRECTORY = "outputDirectory";
-    private static final String RESOURCES_PLUGIN_RESOURCES = "resources";
-    private static final String RESOURCES_PLUGIN_RESOURCE = "resource";
-    private static final String RESOURCES_PLUGIN_DIRECTORY = "directory";
-    private static final String RESOURCES_PLUGIN_INCLUDES = "includes";
-    private static final String RESOURCES_PLUGIN_INCLUDE = "include";
-    private static final String RESOURCES_PLUGIN_INCLUDE_VALUE = "**/*";
-
-    private static final String WLST_TEST_BASE_DIRECTORY = "target/wlst-tests";
-    private static final String WLST_TEST_MAIN_EXEC_DIR = WLST_TEST_BASE_DIRECTORY + "/main";
-    private static final String WLST_TEST_TEST_EXEC_DIR = WLST_TEST_BASE_DIRECTORY + "/test";
-    private static final String TEST_PY_FILE_ENDING = "test.py";
-
-    private static final String ARTIFACT_PROPERTY_REGEX = "[a-zA-Z0-9_.-]+:[a-zA-Z0-9_.-]+:[a-zA-Z0-9]+";
-    private static final Pattern ARTIFACT_PROPERTY_PATTERN = Pattern.compile(ARTIFACT_PROPERTY_REGEX);
-    private static final String ARTIFACT_PROPERTY_CLASSPATH_FORMAT = "${%s}";
-    private static final int BUF_SIZE = 1024;
-    private static final String SKIP_MODULE_SCANNING_SWITCH = "-skipWLSModuleScanning";
-    private static final String SYSTEM_PROPERTY_FORMAT = "-D%s=%s";
-    private static final boolean WINDOWS = File.separatorChar == '\\';
-    private static final String WLST_SCRIPT_NAME = WINDOWS ? "wlst.cmd" : "wlst.sh";
-    private static final String RUN_ALL_TESTS_RESOURCE_NAME = "io/rhpatrick/mojo/wlstTest/_wlst_test_driver.py";
-    private static final String RUN_ALL_TESTS_SCRIPT_NAME = "_wlst_test_driver.py";
-
-    private static final String CLASSPATH_VARIABLE_NAME = "CLASSPATH";
-    private static final String WLST_EXT_CLASSPATH_VARIABLE_NAME = "WLST_EXT_CLASSPATH";
-    private static final String WLST_PROPERTIES_VARIABLE_NAME = "WLST_PROPERTIES";
-
-    private static final String WLST_TEST_DEBUG_PROPERTY_NAME = "wlst.test.plugin.debug";
-
-    private static final String WLST_DIR_NOT_SET = "NOT-SET";
-
-    @Parameter(defaultValue = "${project}", required = true, readonly = true)
-    private MavenProject mavenProject;
-
-    @Parameter(defaultValue = "${session}", required = true, readonly = true)
-    private MavenSession mavenSession;
-
-    @Component
-    private BuildPluginManager pluginManager;
-
-    /**
-     * The map of environment variable names and values to use when running the WLST shell script.
-     */
-    @Parameter(property = "environmentVariables")
-    private Map<String, String> environmentVariables;
-
-    /**
-     * The version of the maven-dependency-plugin to use.
-     */
-    @Parameter(property = "mavenDependencyPluginVersion", defaultValue = "3.4.0")
-    private String mavenDependencyPluginVersion;
-
-    /**
-     * The version of the exec-maven-plugin to use.
-     */
-    @Parameter(property = "execMavenPluginVersion", defaultValue = "3.1.0")
-    private String execMavenPluginVersion;
+public class WLSTUnitTestMojo extends AbstractWLSTTestMojo {
+    private static final String ORACLE_HOME_MATRIX_REPORT_FILE = WLST_TEST_BASE_DIRECTORY + "/oracle-home-matrix.json";
+    private static final Pattern ORACLE_HOME_NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_.-]+");
 
     /**
-     * The version of the maven-resources-plugin to use.
+     * The Oracle Homes to run the tests against instead of the one of the wlstScriptDirectory, each with a
+     * name, a wlstScriptDirectory and optionally its own usingOldWlstVersion and environmentVariables.  The
+     * scripts are synchronized once and the tests then run against all the Oracle Homes concurrently, each
+     * with forkCount WLST processes in its own execution directories under
+     * <code>target/wlst-tests/oracle-homes/&lt;name&gt;</code>.  The XML reports of each Oracle Home go to a
+     * subdirectory of the reportsDirectory named after it, and the combined results are printed and written
+     * to <code>target/wlst-tests/oracle-home-matrix.json</code>.  The syncMode cannot be none since the
+     * Oracle Homes would then share the scripts in the source directories and write the Jython-compiled
+     * classes of their different WLST versions next to them at the same time.
      */
-    @Parameter(property = "mavenResourcesPluginVersion", defaultValue = "3.3.0")
-    private String mavenResourcesPluginVersion;
+    @Parameter
+    private List<OracleHome> oracleHomes;
 
     /**
-     * Controls whether WLST skips module scanning at startup.
+     * The number of shards to split the test files into so that they can run on several build agents, each
+     * running the shard of its shardIndex.  The test files are assigned to the shards using the hash of their
+     * paths, or using the module durations in the shardTimingHistoryFile when it is set so that the shards
+     * take about the same time.
      */
-    @Parameter(property = "skipModuleScanning", defaultValue = "true")
-    private boolean skipModuleScanning;
+    @Parameter(property = "shardCount", defaultValue = "1")
+    private int shardCount;
 
     /**
-     * The flag to use to skip running the tests.
+     * The zero-based index of the test shard to run when the shardCount is more than 1.
      */
-    @Parameter(property = "skipTests", defaultValue = "false")
-    private boolean skipTests;
+    @Parameter(property = "shardIndex", defaultValue = "0")
+    private int shardIndex;
 
     /**
-     * The map of Java system property names and values to use when running the WLST shell script.
+     * The timing history used to balance the test shards, which every agent must see unchanged, such as the
+     * timingHistoryFile of an earlier unsharded build restored from a CI artifact.  Each agent only records
+     * the durations of its own shard in its timingHistoryFile, so this cannot be a file that the test runs
+     * update.  When it is not set, the test files are split by the hash of their paths.
      */
-    @Parameter(property = "systemProperties")
-    private Map<String, String> systemProperties;
+    @Parameter(property = "shardTimingHistoryFile")
+    private File shardTimingHistoryFile;
 
     /**
-     * Additional JVM arguments that will be included as WLST_PROPERTIES to WLST.
-     * For example, the argLine generated by the Jacoco plugin for code coverage.
-     */
-    @Parameter(property = "argLine")
-    private String argLine;
-
-    /**
-     * The additional classpath elements to add to the WLST_EXT_CLASSPATH besides the normal
-     * target/classes directory (which is added automatically).  This list supports both
-     * file paths or the maven-dependency-plugin's properties goal format:
-     *
-     * <P><code>&lt;group-id&gt;:&lt;artifact-id&gt;:&lt;type&lt;</code></P>
-     *
-     * <P>For example, org.antlr:antlr4-runtime:jar</P>
-     */
-    @Parameter(property = "wlstExtClasspath")
-    private List<String> wlstExtClasspath;
-
-    /**
-     * In versions of WLST 12.1.3 and older, the wlst.sh/wlst.cmd scripts used the CLASSPATH environment
-     * variable to add JAR files to the WLST execution environment. This changed in WLST 12.2.1 where
-     * CLASSPATH is now ignored (due to new classloading strategies). To allow adding JARs to the base
-     * WLST classpath, Oracle introduced a new WLST_EXT_CLASSPATH environment variable.
+     * The wlstScriptDirectory is not used when the tests run against the oracleHomes.
      *
-     * By default, the plugin assumes it is using WLST 12.2.1 or newer, so it used the WLST_EXT_CLASSPATH
-     * environment variable to add the wlstExtClasspath parameter elements to the WLST execution environment.
-     * To execute in an older version, set this property to true and the plugin will use the CLASSPATH
-     * environment variable instead.
-     */
-    @Parameter(property = "usingOldWlstVersion", defaultValue = "false")
-    private boolean usingOldWlstVersion;
-
-    /**
-     * The directory where wlst.sh/wlst.cmd is located.
-     */
-    @Parameter(property = "wlstScriptDirectory", required = true, defaultValue = WLST_DIR_NOT_SET)
-    private File wlstScriptDirectory;
-
-    /**
-     * The directory where the plugin looks for WLST source scripts being tested.
+     * @return true if the oracleHomes parameter is not set
      */
-    @Parameter(property = "wlstSourcesRootDirectory", defaultValue = "${project.basedir}/src/main/python")
-    private File wlstSourcesRootDirectory;
-
-    /**
-     * The directory where the plugin looks for WLST unit tests.
-     */
-    @Parameter(property = "wlstTestsRootDirectory", defaultValue = "${project.basedir}/src/test/python")
-    private File wlstTestsRootDirectory;
-
-    /**
-     * The verbosity level for messages from the unittest suite.  Default is verbose (2).
-     * <ul>
-     *   <li>0 (quiet): Outputs the total number of tests executed and the final result</li>
-     *   <li>1 (default): Outputs the same as 'quiet' plus a dot for every successful test or F for each failure</li>
-     *   <li>2 (verbose): Outputs the help string of every test and the each result</li>
-     * </ul>
-     */
-    @Parameter(property = "verbosity", defaultValue = "2")
-    private Integer verbosity;
-
-    private File wlstScript;
-    private boolean isDebug = false;
+    @Override
+    protected boolean isWlstScriptDirectoryRequired() {
+        return oracleHomes == null || oracleHomes.isEmpty();
+    }
 
     /**
-     * The entry point for the plugin goal.
+     * Run the project's tests.
      *
      * @throws MojoExecutionException if a configuration or execution environment-related error occurs
      * @throws MojoFailureException   if an unexpected error occurs related to a plugin or Maven failure
      */
     @Override
-    public void execute() throws MojoExecutionException, MojoFailureException {
-        if (skipTests) {
-            getLog().info(getMessage("WLSTTEST-018"));
-            return;
-        } else if (getLog().isDebugEnabled()) {
-            isDebug = true;
+    protected void executeTests() throws MojoExecutionException, MojoFailureException {
+        verifyWlstTestRootDirectoryArg();
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-112", shardIndex, shardCount));
         }
 
-        verifyArguments();
-        List<File> testsToRunSourceFiles = gatherTestsToRunSourceFiles();
-        if (testsToRunSourceFiles.isEmpty()) {
-            getLog().info(getMessage("WLSTTEST-012", wlstTestsRootDirectory.getAbsolutePath()));
+        WlstTestModule module = createProjectModule();
+        List<String> testsToRunRelativePaths = gatherTestsToRun(module);
+        if (testsToRunRelativePaths.isEmpty()) {
+            getLog().info(getMessage("WLSTTEST-012", module.getTestsRootDirectory().getAbsolutePath()));
             return;
+        } else if (!isEmpty(getTest())) {
+            testsToRunRelativePaths = filterTestsToRun(testsToRunRelativePaths);
+            if (testsToRunRelativePaths.isEmpty()) {
+                if (isFailIfNoSpecifiedTests()) {
+                    throw new MojoExecutionException(getMessage("WLSTTEST-059", getTest()));
+                }
+                getLog().info(getMessage("WLSTTEST-059", getTest()));
+                return;
+            }
         }
-
-        executeDependencyPluginPropertiesGoal();
-
-        File testScriptsExecutionDirectory =
-            getCanonicalFile(new File(mavenProject.getBasedir(), WLST_TEST_TEST_EXEC_DIR));
-        copyScriptsToTargetDirectory(testScriptsExecutionDirectory);
-
-        List<File> testsToRunTargetFiles = gatherTestsToRunTargetFiles(testScriptsExecutionDirectory);
-        File testsDriverScript = writeTestsDriverScript(testScriptsExecutionDirectory);
-
-        runTests(testScriptsExecutionDirectory, testsDriverScript, testsToRunTargetFiles);
-    }
-
-    /**
-     * Verifies the arguments.
-     *
-     * @throws MojoExecutionException if an error related to the plugin parameter verification occurs
-     * @throws MojoFailureException   if Maven injection of a Maven-related parameter or component
-     *                                failed to properly initialize the plugin variable
-     */
-    private void verifyArguments() throws MojoExecutionException, MojoFailureException {
-        if (mavenProject == null) {
-            throw new MojoFailureException(getMessage("WLSTTEST-001"));
-        } else if (mavenSession == null) {
-            throw new MojoFailureException(getMessage("WLSTTEST-002"));
-        } else if (pluginManager == null) {
-            throw new MojoFailureException(getMessage("WLSTTEST-003"));
+        if (shardCount > 1) {
+            testsToRunRelativePaths = selectTestShard(module, testsToRunRelativePaths);
+            if (testsToRunRelativePaths.isEmpty()) {
+                return;
+            }
         }
 
-        verifyWlstScriptDirectoryArg();
-        verifyWlstTestRootDirectoryArg();
-        verifyVerbosityArg();
-
-        if (isEmpty(mavenDependencyPluginVersion)) {
-            throw new MojoExecutionException("WLSTTEST-009");
-        } else if (isEmpty(mavenResourcesPluginVersion)) {
-            throw new MojoExecutionException("WLSTTEST-010");
-        } else if (isEmpty(execMavenPluginVersion)) {
-            throw new MojoExecutionException("WLSTTEST-011");
+        File testsDriverScript = writeTestsDriverScript(
+            getCanonicalFile(new File(getMavenProject().getBasedir(), WLST_TEST_BASE_DIRECTORY)));
+        if (!isWlstScriptDirectoryRequired()) {
+            runOracleHomeMatrix(module, testsDriverScript, testsToRunRelativePaths);
+            return;
         }
-    }
 
-    /**
-     * Gather the list of test files to run from the wlstTestsRotDirectory.
-     *
-     * @return the list of test py files matching the naming pattern (file name ends in test.py)
-     */
-    private List<File> gatherTestsToRunSourceFiles() {
-        List<File> testsToRun = new ArrayList<>();
-        if (wlstTestsRootDirectory.exists()) {
-            testsToRun.addAll(gatherTestsToRun(wlstTestsRootDirectory));
+        List<File> testsToRunTargetFiles = prepareTestRun(module, testsDriverScript, testsToRunRelativePaths);
+        if (testsToRunTargetFiles.isEmpty()) {
+            return;
         }
-        return testsToRun;
-    }
-
-    /**
-     * This method builds a set of properties for each dependency where the property names match the
-     * format <code>&lt;group-id&gt;:&lt;artifact-id&gt;:&lt;type&lt;</code>; for example,
-     * org.antlr:antlr4-runtime:jar.
-     *
-     * This allows the user to list dependencies in this format in the plugin's wlstExtClasspath
-     * parameter and have the plugin pass them to the WLST execution environment.
-     *
-     * @throws MojoExecutionException if the Maven Properties plugin execution fails.
-     */
-    private void executeDependencyPluginPropertiesGoal() throws MojoExecutionException {
-        Plugin dependencyPlugin = plugin(groupId(DEPENDENCY_PLUGIN_GROUP_ID),
-                                         artifactId(DEPENDENCY_PLUGIN_ARTIFACT_ID),
-                                         version(mavenDependencyPluginVersion));
-
-        String propertiesGoal = goal(DEPENDENCY_PLUGIN_PROPERTIES_GOAL);
-        ExecutionEnvironment executionEnvironment = executionEnvironment(mavenProject, mavenSession, pluginManager);
-        Xpp3Dom configuration = configuration();
-        executeMojo(dependencyPlugin, propertiesGoal, configuration, executionEnvironment);
-    }
 
-    /**
-     * This method copies the Python scripts out of the source directory tree to the target directory.
-     * This prevents the source directory tree from being polluted Jython generating class files
-     * during test execution.
-     *
-     * @param testScriptsExecutionDirectory the base directory where the tests will execute
-     * @throws MojoExecutionException if the Maven Resources plugin execution fails
-     */
-    private void copyScriptsToTargetDirectory(File testScriptsExecutionDirectory) throws MojoExecutionException {
-        File basedir = getCanonicalFile(new File(mavenProject.getBasedir(), WLST_TEST_BASE_DIRECTORY));
-        createDirectoryIfNeeded(basedir, "Plugin output");
-
-        Plugin resourcesPlugin = plugin(groupId(RESOURCES_PLUGIN_GROUP_ID),
-                                        artifactId(RESOURCES_PLUGIN_ARTIFACT_ID), version(mavenResourcesPluginVersion));
-        String copyResourcesGoal = goal(RESOURCES_PLUGIN_COPY_RESOURCES_GOAL);
-        ExecutionEnvironment executionEnvironment = executionEnvironment(mavenProject, mavenSession, pluginManager);
+        String resultCacheKey = getResultCacheKey(module, testsDriverScript, testsToRunTargetFiles);
+        if (resultCacheKey != null && replayCachedTestResults(module, resultCacheKey)) {
+            if (isEmpty(getTest())) {
+                saveIncrementalIndex(module);
+            }
+            return;
+        }
 
-        if (wlstSourcesRootDirectory.isDirectory() && wlstSourcesRootDirectory.exists()) {
-            File targetSourcesDir = getCanonicalFile(new File(mavenProject.getBasedir(), WLST_TEST_MAIN_EXEC_DIR));
-            createDirectoryIfNeeded(targetSourcesDir, "Sources Execution");
+        List<TestResultRecord> testResults = runModuleTests(module, testsDriverScript, testsToRunTargetFiles);
 
-            Xpp3Dom configuration = createResourcesPluginConfiguration(wlstSourcesRootDirectory, targetSourcesDir);
-            executeMojo(resourcesPlugin, copyResourcesGoal, configuration, executionEnvironment);
+        if (resultCacheKey != null) {
+            cacheTestResults(module, resultCacheKey, testResults);
         }
 
-        createDirectoryIfNeeded(testScriptsExecutionDirectory, "Test Sources Execution");
-        Xpp3Dom configuration =
-            createResourcesPluginConfiguration(wlstTestsRootDirectory, testScriptsExecutionDirectory);
-        executeMojo(resourcesPlugin, copyResourcesGoal, configuration, executionEnvironment);
+        // The index is only saved when the tests pass so that failing tests are selected again on the next run,
+        // and not when the test parameter ran only some of the tests
+        if (isEmpty(getTest())) {
+            saveIncrementalIndex(module);
+        }
     }
 
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
     /**
-     * Gather the list of test files to run from the target directory's test execution location.
+     * Keep only the test files of this build's test shard.  The shards are only balanced by the timing history
+     * when the shardTimingHistoryFile is set, since the timingHistoryFile of each agent only has the durations
+     * of the shards that agent ran, and agents computing shards from different histories would run some test
+     * files twice and others not at all.  For the same reason, a shardTimingHistoryFile that is missing or
+     * cannot be read fails the build.
      *
-     * @param testScriptsExecutionDirectory the base directory where the tests will execute
-     * @return the list of test py files matching the naming pattern (file name ends in test.py)
-     *         to run from the test scripts execution directory
+     * @param module                  the project's module
+     * @param testsToRunRelativePaths the test files to run, relative to the wlstTestsRootDirectory
+     * @return the test files of the shard
+     * @throws MojoExecutionException if the shardTimingHistoryFile is invalid or cannot be read
      */
-    private List<File> gatherTestsToRunTargetFiles(File testScriptsExecutionDirectory) {
-        List<File> testsToRun = new ArrayList<>();
-        if (testScriptsExecutionDirectory.exists()) {
-            testsToRun.addAll(gatherTestsToRun(testScriptsExecutionDirectory));
+    private List<String> selectTestShard(WlstTestModule module, List<String> testsToRunRelativePaths)
+        throws MojoExecutionException {
+        long phaseStart = getPhaseTimer().start();
+        List<TestTimingHistory> timingHistories = new ArrayList<>(1);
+        if (shardTimingHistoryFile != null) {
+            verifyShardTimingHistoryFileArg(module);
+            TestTimingHistory timingHistory = new TestTimingHistory(shardTimingHistoryFile);
+            try {
+                timingHistory.load();
+            } catch (IOException ioe) {
+                throw new MojoExecutionException(getMessage("WLSTTEST-113",
+                                                            shardTimingHistoryFile.getAbsolutePath(),
+                                                            ioe.getLocalizedMessage()), ioe);
+            }
+            timingHistories.add(timingHistory);
+        }
+        TestShardPlanner shardPlanner = new TestShardPlanner(testsToRunRelativePaths, shardCount, timingHistories);
+        List<String> result = shardPlanner.getShard(testsToRunRelativePaths, shardIndex);
+        getPhaseTimer().stop("plan test shards", phaseStart);
+
+        if (result.isEmpty()) {
+            getLog().info(getMessage("WLSTTEST-116", shardIndex, testsToRunRelativePaths.size()));
+        } else if (shardPlanner.isBalancedByHistory()) {
+            getLog().info(getMessage("WLSTTEST-114", shardIndex, shardCount - 1, result.size(),
+                                     testsToRunRelativePaths.size(), shardPlanner.getEstimatedMillis(shardIndex)));
+        } else {
+            getLog().info(getMessage("WLSTTEST-115", shardIndex, shardCount - 1, result.size(),
+                                     testsToRunRelativePaths.size()));
         }
-        return testsToRun;
+        return result;
     }
 
-    /**
-     * This method writes a driver script to the test script test execution directory that will be
-     * run by WLST via the Exec Maven plugin.
-     *
-     * @param testScriptsExecutionDirectory the base directory where the tests will execute
-     * @return the File object for the driver script
-     * @throws MojoExecutionException  if the plugin fails to write the driver script to the target location
-     * @throws MojoFailureException    if the plugin is unable to find the driver script in its JAR
-     */
-    private File writeTestsDriverScript(File testScriptsExecutionDirectory)
-        throws MojoExecutionException, MojoFailureException {
-
-        File targetScriptFile = getCanonicalFile(new File(testScriptsExecutionDirectory, RUN_ALL_TESTS_SCRIPT_NAME));
-
-        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(RUN_ALL_TESTS_RESOURCE_NAME);
-        if (inputStream == null) {
-            throw new MojoFailureException(getMessage("WLSTTEST-014"));
+    private void verifyShardTimingHistoryFileArg(WlstTestModule module) throws MojoExecutionException {
+        File historyFile = getCanonicalFile(shardTimingHistoryFile);
+        if (!historyFile.isFile()) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-135", historyFile.getAbsolutePath()));
         }
-        try (FileOutputStream fileOutputStream = new FileOutputStream(targetScriptFile)) {
-            byte[] buffer = new byte[BUF_SIZE];
-            int bytesRead = inputStream.read(buffer);
-            while (bytesRead != -1) {
-                fileOutputStream.write(buffer, 0, bytesRead);
-                bytesRead = inputStream.read(buffer);
+
+        List<File> updatedHistoryFiles = new ArrayList<>();
+        if (isWlstScriptDirectoryRequired()) {
+            updatedHistoryFiles.add(module.getTimingHistoryFile());
+        } else {
+            for (OracleHome oracleHome : oracleHomes) {
+                updatedHistoryFiles.add(module.forOracleHome(oracleHome, null).getTimingHistoryFile());
             }
-            fileOutputStream.flush();
-        } catch (IOException ioe) {
-            throw new MojoExecutionException(getMessage("WLSTTEST-015", targetScriptFile.getAbsolutePath(),
-                                                        ioe.getLocalizedMessage()), ioe);
-        } finally {
-            try {
-                inputStream.close();
-            } catch (IOException ignore) {
-                getLog().debug(getMessage("WLSTTEST-016", ignore.getLocalizedMessage()), ignore);
+        }
+        for (File updatedHistoryFile : updatedHistoryFiles) {
+            if (updatedHistoryFile != null && historyFile.equals(getCanonicalFile(updatedHistoryFile))) {
+                throw new MojoExecutionException(getMessage("WLSTTEST-136", historyFile.getAbsolutePath()));
             }
         }
-        return targetScriptFile;
     }
 
     /**
-     * This method invoked the Exec Maven plugin to run the driver script with WLST.  The driver script in turns
-     * uses the Python unittest module to execute the unit tests.
+     * Run the tests against each of the oracleHomes concurrently, after synchronizing the scripts once, and
+     * report the results of all Oracle Homes together.
      *
-     * @param testScriptsExecutionDirectory the test scripts execution directory
-     * @param testsDriverScript             the driver script
-     * @param testsToRun                    the list of test files to run
-     * @throws MojoExecutionException       if a configuration or execution environment-related error occurs
+     * @param module                  the project's module
+     * @param testsDriverScript       the driver script
+     * @param testsToRunRelativePaths the test files to run, relative to the wlstTestsRootDirectory
+     * @throws MojoExecutionException if the tests fail against any of the Oracle Homes or cannot be run
      */
-    private void runTests(File testScriptsExecutionDirectory, File testsDriverScript, List<File> testsToRun)
-        throws MojoExecutionException {
-        Plugin execPlugin = plugin(groupId(EXEC_PLUGIN_GROUP_ID), artifactId(EXEC_PLUGIN_ARTIFACT_ID),
-                                   version(execMavenPluginVersion));
-        String execGoal = goal(EXEC_PLUGIN_EXEC_GOAL);
-        ExecutionEnvironment executionEnvironment = executionEnvironment(mavenProject, mavenSession, pluginManager);
-
-        Element envVariables = buildEnvironmentVariablesElement();
-        Element arguments = buildExecPluginArgumentsElement(testsDriverScript, testsToRun);
-        Element workingDirectory =
-            new Element(EXEC_PLUGIN_WORKING_DIRECTORY, testScriptsExecutionDirectory.getAbsolutePath());
-        Element executable = new Element(EXEC_PLUGIN_EXECUTABLE, wlstScript.getAbsolutePath());
-
-        Xpp3Dom configuration = configuration(executable, workingDirectory, arguments, envVariables);
-        executeMojo(execPlugin, execGoal, configuration, executionEnvironment);
-    }
-
-    ///////////////////////////////////////////////////////////////////////////
-    //                 Mojo-related Utility Functions                        //
-    ///////////////////////////////////////////////////////////////////////////
-
-    private void verifyWlstScriptDirectoryArg() throws MojoExecutionException {
-        String argName = "wlstScriptDirectory";
-        if (wlstScriptDirectory == null || WLST_DIR_NOT_SET.equals(wlstScriptDirectory.getName())) {
-            throw new MojoExecutionException(getMessage("WLSTTEST-004", argName));
-        } else if (!wlstScriptDirectory.isDirectory()) {
-            throw new MojoExecutionException(getMessage("WLSTTEST-005", argName,
-                    wlstScriptDirectory.getAbsolutePath()));
-        } else if (!wlstScriptDirectory.exists()) {
-            throw new MojoExecutionException(getMessage("WLSTTEST-006", argName,
-                    wlstScriptDirectory.getAbsolutePath()));
-        } else {
-            wlstScript = getCanonicalFile(new File(wlstScriptDirectory, WLST_SCRIPT_NAME));
-            if (!wlstScript.exists()) {
-                throw new MojoExecutionException(getMessage("WLSTTEST-007", wlstScript.getAbsolutePath()));
-            } else if (!wlstScript.canExecute()) {
-                throw new MojoExecutionException(getMessage("WLSTTEST-008", wlstScript.getAbsolutePath()));
+    private void runOracleHomeMatrix(WlstTestModule module, File testsDriverScript,
+                                     List<String> testsToRunRelativePaths) throws MojoExecutionException {
+        Map<String, File> wlstScripts = verifyOracleHomesArg();
+        synchronizeScripts(module);
+
+        OracleHomeMatrixReport matrixReport = new OracleHomeMatrixReport();
+        Map<WlstTestModule, List<File>> homeTestFiles = new LinkedHashMap<>();
+        Map<WlstTestModule, String> resultCacheKeys = new LinkedHashMap<>();
+        List<File> resultsDirectories = new ArrayList<>();
+        for (OracleHome oracleHome : oracleHomes) {
+            WlstTestModule homeModule = module.forOracleHome(oracleHome, wlstScripts.get(oracleHome.getName()));
+            linkOracleHomeScripts(module, homeModule);
+            List<File> testFiles = prepareSynchronizedTestRun(homeModule, testsDriverScript, testsToRunRelativePaths,
+                                                              Collections.<File>emptySet());
+            if (testFiles.isEmpty()) {
+                continue;
             }
-        }
-    }
 
-    private void verifyWlstTestRootDirectoryArg() throws MojoExecutionException {
-        String argName = "wlstTestRootDirectory";
-        if (wlstTestsRootDirectory == null) {
-            throw new MojoExecutionException(getMessage("WLSTTEST-004", argName));
-        } else if (!wlstTestsRootDirectory.isDirectory()) {
-            throw new MojoExecutionException(getMessage("WLSTTEST-005", argName,
-                    wlstTestsRootDirectory.getAbsolutePath()));
-        }
-    }
-
-    private void verifyVerbosityArg() throws MojoExecutionException {
-        String argName = "verbosity";
-        // valid values for unittest verbosity are 0, 1, or 2
-        if (!(verbosity >= 0 && verbosity <= 2)) {
-            throw new MojoExecutionException(getMessage("WLSTTEST-019", argName, verbosity));
-        }
-    }
-    private List<File> gatherTestsToRun(File directory) {
-        List<File> result = new ArrayList<>();
-        File[] directoryEntries = directory.listFiles();
-        if (!isEmpty(directoryEntries)) {
-            for (File directoryEntry : directoryEntries) {
-                if (directoryEntry.isDirectory()) {
-                    result.addAll(gatherTestsToRun(directoryEntry));
-                } else if (directoryEntry.getName().toLowerCase().endsWith(TEST_PY_FILE_ENDING)) {
-                    result.add(directoryEntry);
+            String resultCacheKey = getResultCacheKey(homeModule, testsDriverScript, testFiles);
+            if (resultCacheKey != null && replayCachedTestResults(homeModule, resultCacheKey)) {
+                if (isEmpty(getTest())) {
+                    saveIncrementalIndex(homeModule);
                 }
+                matrixReport.add(oracleHome.getName(), getWebLogicVersion(homeModule), homeModule.getWlstScript(),
+                                 readTestResults(getResultsDirectory(homeModule)), 0L, true);
+                continue;
             }
+            homeTestFiles.put(homeModule, testFiles);
+            resultCacheKeys.put(homeModule, resultCacheKey);
+            resultsDirectories.add(getResultsDirectory(homeModule));
         }
-        return result;
-    }
-
-    private Xpp3Dom createResourcesPluginConfiguration(File sourceDirectory, File targetDirectory) {
-        Element[] includesArray = new Element[1];
-        includesArray[0] = new Element(RESOURCES_PLUGIN_INCLUDE, RESOURCES_PLUGIN_INCLUDE_VALUE);
-
-        Element[] resourceArray = new Element[2];
-        resourceArray[0] = new Element(RESOURCES_PLUGIN_DIRECTORY, sourceDirectory.getAbsolutePath());
-        resourceArray[1] = new Element(RESOURCES_PLUGIN_INCLUDES, includesArray);
-
-        Element[] resourcesArray = new Element[1];
-        resourcesArray[0] = new Element(RESOURCES_PLUGIN_RESOURCE, resourceArray);
-        Element resources = new Element(RESOURCES_PLUGIN_RESOURCES, resourcesArray);
-        Element outputDirectory = new Element(RESOURCES_PLUGIN_OUTPUT_DIRECTORY, targetDirectory.getAbsolutePath());
 
-        return configuration(outputDirectory, resources);
-    }
-
-    private Element buildEnvironmentVariablesElement() throws MojoExecutionException {
-        // Add one for the wlstExtClasspath which must always have the ${project.build.directory}
-        // even if the configuration element is empty
-        int numEnvVars = environmentVariables.size() + 1;
-        // Add one if WLST_PROPERTIES will be added
-        if (isDebug || !isEmpty(systemProperties) || !isEmpty(argLine)) {
-            numEnvVars++;
-        }
-        Element[] envVariablesArray = new Element[numEnvVars];
-
-        int index = 0;
-        for (Map.Entry<String, String> entry : environmentVariables.entrySet()) {
-            String name = entry.getKey();
-            String value = entry.getValue();
-
-            String errorKey = "WLSTTEST-017";
-            if (CLASSPATH_VARIABLE_NAME.equals(name)) {
-                throw new MojoExecutionException(getMessage(errorKey,
-                                                            CLASSPATH_VARIABLE_NAME, "wlstExtClasspath"));
-            } else if (WLST_EXT_CLASSPATH_VARIABLE_NAME.equals(name)) {
-                throw new MojoExecutionException(getMessage(errorKey,
-                                                            WLST_EXT_CLASSPATH_VARIABLE_NAME, "wlstExtClasspath"));
-            } else if (WLST_PROPERTIES_VARIABLE_NAME.equals(name)) {
-                throw new MojoExecutionException(getMessage(errorKey,
-                                                            WLST_PROPERTIES_VARIABLE_NAME, "systemProperties"));
+        List<String> failedHomeNames = new ArrayList<>();
+        if (!homeTestFiles.isEmpty()) {
+            File stopFile = new File(getCanonicalFile(module.getOutputDirectory()), TestResultMonitor.STOP_FILE_NAME);
+            if (stopFile.exists() && !stopFile.delete()) {
+                throw new MojoExecutionException(getMessage("WLSTTEST-047", stopFile.getAbsolutePath()));
             }
-            envVariablesArray[index++] = new Element(name, value);
-        }
 
-        envVariablesArray[index++] = getWlstExtClasspathElement();
+            Map<WlstTestModule, Long> homeDurations = new ConcurrentHashMap<>();
+            Map<WlstTestModule, List<TestResultRecord>> homeResults = new LinkedHashMap<>();
+            Set<WlstTestModule> failedHomes;
+            startTestResultMonitor(resultsDirectories, stopFile);
+            try {
+                failedHomes = runOracleHomes(testsDriverScript, homeTestFiles, homeDurations);
+            } finally {
+                stopTestResultMonitor();
+                for (WlstTestModule homeModule : homeTestFiles.keySet()) {
+                    homeResults.put(homeModule, finishTestRun(homeModule));
+                }
+            }
 
-        Element wlstPropertiesElement = getWlstPropertiesElement();
-        if (wlstPropertiesElement != null) {
-            envVariablesArray[index] = wlstPropertiesElement;
-        }
-        return new Element(EXEC_PLUGIN_ENVIRONMENT_VARIABLES, envVariablesArray);
-    }
+            for (Map.Entry<WlstTestModule, List<File>> entry : homeTestFiles.entrySet()) {
+                WlstTestModule homeModule = entry.getKey();
+                List<TestResultRecord> testResults = homeResults.get(homeModule);
+                boolean failed = failedHomes.contains(homeModule)
+                    && rerunFailingTests(homeModule, testsDriverScript, entry.getValue(), testResults) != 0;
+                if (checkResourceLeaks(testResults) > 0) {
+                    failed = true;
+                }
 
-    private Element getWlstExtClasspathElement() {
-        List<String> result = new ArrayList<>(wlstExtClasspath.size() + 1);
-        for (String wlstExtClasspathElement : wlstExtClasspath) {
-            Matcher matcher = ARTIFACT_PROPERTY_PATTERN.matcher(wlstExtClasspathElement);
-            if (matcher.matches()) {
-                result.add(String.format(ARTIFACT_PROPERTY_CLASSPATH_FORMAT, wlstExtClasspathElement));
-            } else {
-                result.add(getCanonicalFile(new File(wlstExtClasspathElement)).getAbsolutePath());
+                if (failed) {
+                    failedHomeNames.add(homeModule.getOracleHomeName());
+                } else {
+                    if (resultCacheKeys.get(homeModule) != null) {
+                        cacheTestResults(homeModule, resultCacheKeys.get(homeModule), testResults);
+                    }
+                    if (isEmpty(getTest())) {
+                        saveIncrementalIndex(homeModule);
+                    }
+                }
+                Long durationMillis = homeDurations.get(homeModule);
+                matrixReport.add(homeModule.getOracleHomeName(), getWebLogicVersion(homeModule),
+                                 homeModule.getWlstScript(), testResults,
+                                 durationMillis == null ? 0L : durationMillis, !failed);
             }
         }
-        // Add the target/classes directory so that any Java classes used by the python code are in the WLST classpath
-        result.add(getCanonicalFile(new File(mavenProject.getBuild().getOutputDirectory())).getAbsolutePath());
 
-        String environmentVariableName = WLST_EXT_CLASSPATH_VARIABLE_NAME;
-        if (usingOldWlstVersion) {
-            environmentVariableName = CLASSPATH_VARIABLE_NAME;
+        reportOracleHomeMatrix(matrixReport);
+        if (!failedHomeNames.isEmpty()) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-109", failedHomeNames.size(), oracleHomes.size(),
+                                                        failedHomeNames));
         }
-        return new Element(environmentVariableName, getDelimitedStringFromList(result, File.pathSeparatorChar));
     }
 
-    private Element getWlstPropertiesElement() {
-        List<String> strings = new ArrayList<>();
-        if (isDebug) {
-            String debugFlag = String.format(SYSTEM_PROPERTY_FORMAT, WLST_TEST_DEBUG_PROPERTY_NAME, "true");
-            getLog().debug(WLST_PROPERTIES_VARIABLE_NAME + " (debug): " + debugFlag);
-            strings.add(debugFlag);
-        }
-
-        if (argLine != null) {
-            getLog().debug(WLST_PROPERTIES_VARIABLE_NAME + " (argLine): " + argLine);
-            strings.add(argLine);
-        }
-
-        for (Map.Entry<String, String> entry : systemProperties.entrySet()) {
-            String propertyName = entry.getKey();
-            String propertyValue = entry.getValue();
-            String systemProperty = String.format(SYSTEM_PROPERTY_FORMAT, propertyName, propertyValue);
-            getLog().debug(WLST_PROPERTIES_VARIABLE_NAME + " (systemProperties): " + systemProperty);
-            strings.add(systemProperty);
+    /**
+     * Verify the oracleHomes and find their WLST scripts.
+     *
+     * @return the WLST script of each Oracle Home, keyed by its name
+     * @throws MojoExecutionException if an Oracle Home is not configured correctly
+     */
+    private Map<String, File> verifyOracleHomesArg() throws MojoExecutionException {
+        if (EXECUTION_MODE_IN_PROCESS.equals(getExecutionMode())) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-111", getExecutionMode()));
+        } else if (SYNC_MODE_NONE.equals(getSyncMode())) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-125", getSyncMode()));
         }
 
-        if (strings.isEmpty()) {
-            return null;
-        } else {
-            return new Element(WLST_PROPERTIES_VARIABLE_NAME, getDelimitedStringFromList(strings, ' '));
+        Map<String, File> result = new LinkedHashMap<>();
+        for (OracleHome oracleHome : oracleHomes) {
+            String name = oracleHome.getName();
+            if (name == null || !ORACLE_HOME_NAME_PATTERN.matcher(name).matches() || result.containsKey(name)) {
+                throw new MojoExecutionException(getMessage("WLSTTEST-110", name));
+            }
+            result.put(name, verifyWlstScriptDirectoryArg("oracleHomes/" + name + "/wlstScriptDirectory",
+                                                          oracleHome.getWlstScriptDirectory()));
         }
+        return result;
     }
 
-    private Element buildExecPluginArgumentsElement(File testsDriverScript, List<File> testsToRun) {
-        int len = EXEC_PLUGIN_ARGS_LENGTH + testsToRun.size();
-        if (skipModuleScanning) {
-            len++;
-        }
-
-        Element[] argsArray = new Element[len];
-        int idx = 0;
-        if (skipModuleScanning) {
-            argsArray[idx++] = new Element(EXEC_PLUGIN_ARGUMENT, SKIP_MODULE_SCANNING_SWITCH);
-        }
-
-        argsArray[idx++] = new Element(EXEC_PLUGIN_ARGUMENT, testsDriverScript.getName());
-
-        File mainPythonSourcesExecuteDirectory =
-            getCanonicalFile(new File(mavenProject.getBasedir(), WLST_TEST_MAIN_EXEC_DIR));
-        argsArray[idx++] = new Element(EXEC_PLUGIN_ARGUMENT, mainPythonSourcesExecuteDirectory.getAbsolutePath());
-
-        File testPythonSourcesExecuteDirectory =
-            getCanonicalFile(new File(mavenProject.getBasedir(), WLST_TEST_TEST_EXEC_DIR));
-        argsArray[idx++] = new Element(EXEC_PLUGIN_ARGUMENT, testPythonSourcesExecuteDirectory.getAbsolutePath());
-
-        argsArray[idx++] = new Element(EXEC_PLUGIN_ARGUMENT, verbosity.toString());
-
-        for (File testToRun : testsToRun) {
-            argsArray[idx++] = new Element(EXEC_PLUGIN_ARGUMENT, testToRun.getAbsolutePath());
+    /**
+     * Run the tests of each Oracle Home in a thread of its own, in forked WLST processes if there is more than
+     * one fork.
+     *
+     * @param testsDriverScript the driver script
+     * @param homeTestFiles     the test files to run for each Oracle Home's module
+     * @param homeDurations     the map to which the time each Oracle Home's tests took is added
+     * @return the modules of the Oracle Homes whose test run failed
+     * @throws MojoExecutionException if the threads could not be run
+     */
+    private Set<WlstTestModule> runOracleHomes(final File testsDriverScript,
+                                               Map<WlstTestModule, List<File>> homeTestFiles,
+                                               final Map<WlstTestModule, Long> homeDurations)
+        throws MojoExecutionException {
+        final Set<WlstTestModule> failedHomes = Collections.synchronizedSet(new LinkedHashSet<WlstTestModule>());
+        getLog().info(getMessage("WLSTTEST-105", homeTestFiles.size(), getExecutionMode()));
+
+        List<Callable<Void>> workers = new ArrayList<>(homeTestFiles.size());
+        for (final Map.Entry<WlstTestModule, List<File>> entry : homeTestFiles.entrySet()) {
+            workers.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    WlstTestModule homeModule = entry.getKey();
+                    List<File> testFiles = entry.getValue();
+                    long start = System.currentTimeMillis();
+                    try {
+                        if (getForks() > 1 && testFiles.size() > 1) {
+                            runForkedTests(homeModule, testsDriverScript, testFiles);
+                        } else {
+                            runTests(homeModule, 1, getWorkingDirectory(homeModule), testsDriverScript, testFiles);
+                        }
+                    } catch (MojoExecutionException mee) {
+                        getLog().error(getMessage("WLSTTEST-106", homeModule.getOracleHomeName(),
+                                                  mee.getLocalizedMessage()));
+                        failedHomes.add(homeModule);
+                    } finally {
+                        homeDurations.put(homeModule, System.currentTimeMillis() - start);
+                    }
+                    return null;
+                }
+            });
         }
-        return new Element(EXEC_PLUGIN_ARGUMENTS, argsArray);
-    }
 
-    ///////////////////////////////////////////////////////////////////////////
-    //               Miscellaneous Utility Functions                         //
-    ///////////////////////////////////////////////////////////////////////////
-
-    private File getCanonicalFile(File file) {
-        File result;
+        ExecutorService executorService = Executors.newFixedThreadPool(workers.size());
         try {
-            result = file.getCanonicalFile();
-        } catch (IOException ignore) {
-            result = file.getAbsoluteFile();
-        }
-        return result;
-    }
-
-    private void createDirectoryIfNeeded(File dir, String name) throws MojoExecutionException {
-        if (!dir.exists() && !dir.mkdirs()) {
-            throw new MojoExecutionException(getMessage("WLSTTEST-013", name, dir.getAbsolutePath()));
+            for (Future<Void> result : executorService.invokeAll(workers)) {
+                result.get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(getMessage("WLSTTEST-024"), ie);
+        } catch (ExecutionException ee) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-025", ee.getCause().getLocalizedMessage()),
+                                             ee.getCause());
+        } finally {
+            executorService.shutdownNow();
         }
+        return failedHomes;
     }
 
-    private boolean isEmpty(String text) {
-        return text == null || text.isEmpty();
-    }
-
-    private boolean isEmpty(File[] files) {
-        return files == null || files.length == 0;
-    }
-
-    private boolean isEmpty(Map<?,?> map) {
-        return map == null || map.isEmpty();
-    }
-
-    private String getDelimitedStringFromList(List<String> elements, char separatorChar) {
-        StringBuilder stringBuilder = new StringBuilder(elements.get(0));
-        for (int idx = 1; idx < elements.size(); idx++) {
-            stringBuilder.append(separatorChar);
-            stringBuilder.append(elements.get(idx));
+    /**
+     * Print the results of the tests against each Oracle Home and write them to the JSON report file.  Problems
+     * writing the file are only logged since they must not fail the build.
+     *
+     * @param matrixReport the results of the Oracle Homes
+     */
+    private void reportOracleHomeMatrix(OracleHomeMatrixReport matrixReport) {
+        getLog().info(getMessage("WLSTTEST-107"));
+        for (String line : matrixReport.formatSummary()) {
+            getLog().info(line);
         }
-        return stringBuilder.toString();
-    }
 
-    private String getMessage(String key, Object... args) {
-        String tokenizedMessage;
+        File reportFile = getCanonicalFile(new File(getMavenProject().getBasedir(), ORACLE_HOME_MATRIX_REPORT_FILE));
         try {
-            tokenizedMessage = WLST_TEST_BUNDLE.getString(key);
-        } catch (MissingResourceException ignore) {
-            tokenizedMessage = key;
+            matrixReport.writeJson(reportFile);
+        } catch (IOException ioe) {
+            getLog().warn(getMessage("WLSTTEST-108", reportFile.getAbsolutePath(), ioe.getLocalizedMessage()));
         }
-
-        return MessageFormat.format(tokenizedMessage, args);
     }
 }
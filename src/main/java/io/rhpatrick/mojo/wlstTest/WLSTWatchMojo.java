@@ -0,0 +1,282 @@
+/*
+ * WLSTWatchMojo.java - This class implements the watch goal of the
+ *     WLST Test Maven Plugin to rerun the affected unit tests while the
+ *     WLST scripts are being edited.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * This mojo runs the WLST unit tests and then keeps watching the wlstSourcesRootDirectory and
+ * wlstTestsRootDirectory for changes until it is interrupted, for example with Ctrl+C.  Once a burst of
+ * changes settles, only the changed files are synchronized to the execution directories and only the test
+ * files that changed or import a changed module are run again.
+ *
+ * <P>The tests always run in a WLST daemon, as if the executionMode were daemon when it is process, so that
+ * the JVM and the WLST modules it loaded stay warm between runs.  Test failures are reported without
+ * stopping the goal.</P>
+ */
+@Mojo(name = "watch", requiresDependencyResolution = ResolutionScope.TEST)
+public class WLSTWatchMojo extends AbstractWLSTTestMojo {
+    private static final String JYTHON_CLASS_FILE_SUFFIX = "$py.class";
+    private static final String PYC_FILE_EXTENSION = ".pyc";
+
+    /**
+     * The number of milliseconds without further changes to wait for before running the tests, so that
+     * saving several files at once only runs the tests once.
+     */
+    @Parameter(property = "watchDebounceInMillis", defaultValue = "200")
+    private int watchDebounceInMillis;
+
+    private final Set<File> failedTestFiles = new HashSet<>();
+
+    /**
+     * Run the tests, and run the affected tests again whenever the WLST scripts change.
+     *
+     * @throws MojoExecutionException if a configuration or execution environment-related error occurs
+     * @throws MojoFailureException   if an unexpected error occurs related to a plugin or Maven failure
+     */
+    @Override
+    protected void executeTests() throws MojoExecutionException, MojoFailureException {
+        verifyWlstTestRootDirectoryArg();
+        if (watchDebounceInMillis < 0) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-085", "watchDebounceInMillis",
+                                                        watchDebounceInMillis));
+        }
+
+        WlstTestModule module = createProjectModule();
+        File testsDriverScript = writeTestsDriverScript(
+            getCanonicalFile(new File(getMavenProject().getBasedir(), WLST_TEST_BASE_DIRECTORY)));
+        Path sourcesRoot = getCanonicalFile(module.getSourcesRootDirectory()).toPath();
+        Path testsRoot = getCanonicalFile(module.getTestsRootDirectory()).toPath();
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+            registerTree(watchService, watchedDirectories, sourcesRoot);
+            registerTree(watchService, watchedDirectories, testsRoot);
+
+            long changeTime = System.currentTimeMillis();
+            List<String> testsToRun = gatherWatchedTests(module);
+            if (testsToRun != null) {
+                runTests(module, testsDriverScript, prepareTestRun(module, testsDriverScript, testsToRun), changeTime);
+            }
+
+            while (true) {
+                getLog().info(getMessage("WLSTTEST-088", sourcesRoot, testsRoot));
+                Set<Path> changedMainPaths = new LinkedHashSet<>();
+                Set<Path> changedTestPaths = new LinkedHashSet<>();
+                boolean overflow = false;
+                WatchKey watchKey = watchService.take();
+                changeTime = System.currentTimeMillis();
+                while (watchKey != null) {
+                    overflow |= collectChanges(watchService, watchedDirectories, watchKey, sourcesRoot, testsRoot,
+                                               changedMainPaths, changedTestPaths);
+                    watchKey = watchService.poll(watchDebounceInMillis, TimeUnit.MILLISECONDS);
+                }
+                if (!overflow && changedMainPaths.isEmpty() && changedTestPaths.isEmpty()) {
+                    continue;
+                }
+
+                getLog().info(getMessage("WLSTTEST-089", changedMainPaths.size() + changedTestPaths.size()));
+                runChangedTests(module, testsDriverScript, overflow, changedMainPaths, changedTestPaths,
+                                changeTime);
+            }
+        } catch (IOException ioe) {
+            throw new MojoExecutionException(getMessage("WLSTTEST-090", ioe.getLocalizedMessage()), ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get how WLST is run to execute the tests.  The process mode is run as the daemon mode so that the WLST
+     * JVM is reused by the runs that follow each change.
+     *
+     * @return the execution mode
+     */
+    @Override
+    protected String getExecutionMode() {
+        String executionMode = super.getExecutionMode();
+        if (EXECUTION_MODE_PROCESS.equals(executionMode)) {
+            return EXECUTION_MODE_DAEMON;
+        }
+        return executionMode;
+    }
+
+    /**
+     * Get whether only the test files affected by changes since the last successful run are executed, which
+     * is always the case when watching.
+     *
+     * @return true
+     */
+    @Override
+    protected boolean isIncremental() {
+        return true;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void runChangedTests(WlstTestModule module, File testsDriverScript, boolean overflow,
+                                 Set<Path> changedMainPaths, Set<Path> changedTestPaths, long changeTime) {
+        try {
+            List<String> testsToRun = gatherWatchedTests(module);
+            if (testsToRun == null) {
+                return;
+            }
+
+            if (overflow) {
+                // Too many changes to track them one by one, so synchronize the whole trees
+                Set<Path> rootPaths = Collections.singleton(Paths.get(""));
+                synchronizeChangedScripts(module, rootPaths, rootPaths);
+            } else {
+                synchronizeChangedScripts(module, changedMainPaths, changedTestPaths);
+            }
+            runTests(module, testsDriverScript,
+                     prepareSynchronizedTestRun(module, testsDriverScript, testsToRun, failedTestFiles), changeTime);
+        } catch (MojoExecutionException mee) {
+            getLog().error(mee.getMessage());
+        }
+    }
+
+    private void runTests(WlstTestModule module, File testsDriverScript, List<File> testsToRun, long changeTime) {
+        if (testsToRun.isEmpty()) {
+            return;
+        }
+
+        try {
+            runModuleTests(module, testsDriverScript, testsToRun);
+            failedTestFiles.clear();
+            if (isEmpty(getTest())) {
+                saveIncrementalIndex(module);
+            }
+        } catch (MojoExecutionException mee) {
+            // The selection index is not saved after a failed run, but undoing the change that broke the tests
+            // would leave nothing to select, so the test files of the failed run are run after the next change
+            failedTestFiles.addAll(testsToRun);
+            getLog().error(mee.getMessage());
+        }
+        getLog().info(getMessage("WLSTTEST-091", testsToRun.size(), System.currentTimeMillis() - changeTime));
+    }
+
+    private List<String> gatherWatchedTests(WlstTestModule module) throws MojoExecutionException {
+        List<String> result = gatherTestsToRun(module);
+        if (result.isEmpty()) {
+            getLog().info(getMessage("WLSTTEST-012", module.getTestsRootDirectory().getAbsolutePath()));
+            return null;
+        } else if (!isEmpty(getTest())) {
+            result = filterTestsToRun(result);
+            if (result.isEmpty()) {
+                getLog().info(getMessage("WLSTTEST-059", getTest()));
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private boolean collectChanges(WatchService watchService, Map<WatchKey, Path> watchedDirectories,
+                                   WatchKey watchKey, Path sourcesRoot, Path testsRoot, Set<Path> changedMainPaths,
+                                   Set<Path> changedTestPaths) throws IOException {
+        boolean overflow = false;
+        Path directory = watchedDirectories.get(watchKey);
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                overflow = true;
+                continue;
+            }
+
+            Path path = directory.resolve((Path) event.context());
+            String name = path.getFileName().toString();
+            // With the none syncMode, the compiled modules are written next to the scripts being watched
+            if (name.endsWith(JYTHON_CLASS_FILE_SUFFIX) || name.endsWith(PYC_FILE_EXTENSION)) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                registerTree(watchService, watchedDirectories, path);
+            }
+
+            if (isInTree(path, testsRoot, sourcesRoot)) {
+                changedTestPaths.add(testsRoot.relativize(path));
+            } else if (isInTree(path, sourcesRoot, testsRoot)) {
+                changedMainPaths.add(sourcesRoot.relativize(path));
+            }
+        }
+        if (!watchKey.reset()) {
+            watchedDirectories.remove(watchKey);
+        }
+        return overflow;
+    }
+
+    private static boolean isInTree(Path path, Path root, Path otherRoot) {
+        // When one root is nested in the other, the path belongs to the deeper one
+        if (!path.startsWith(root)) {
+            return false;
+        }
+        return !path.startsWith(otherRoot) || root.getNameCount() >= otherRoot.getNameCount();
+    }
+
+    private static void registerTree(final WatchService watchService, final Map<WatchKey, Path> watchedDirectories,
+                                     Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        final List<Path> directories = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                directories.add(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        for (Path directory : directories) {
+            WatchKey watchKey = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                                   StandardWatchEventKinds.ENTRY_DELETE,
+                                                   StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirectories.put(watchKey, directory);
+        }
+    }
+}
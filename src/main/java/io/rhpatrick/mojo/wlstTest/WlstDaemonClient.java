@@ -0,0 +1,471 @@
+/*
+ * WlstDaemonClient.java - This class implements the client side of the
+ *     persistent WLST daemon used by the WLST Test Maven Plugin to avoid
+ *     paying the WLST startup cost on every test run.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class submits test runs to a long-lived WLST process running the test driver in daemon mode.
+ * The daemon is started on first use and its port and authentication token are recorded in a state
+ * file so that later reactor modules and later builds reuse it.  Daemons are keyed by everything that
+ * affects the WLST JVM itself (the WLST script, environment and JVM properties), while the WLST
+ * extension classpath is sent with each request and added to the Jython path.  The daemon asks to be
+ * recycled if a classpath entry it already loaded has changed, and a daemon that cannot be reached is
+ * replaced by a new one.  Idle daemons exit on their own after the configured idle timeout, and a daemon
+ * whose test run takes longer than the run timeout is killed so that the next run starts a new one.
+ *
+ * <P>The protocol is line-oriented UTF-8 text over a loopback socket.  The client sends the token and
+ * a command (PING, SHUTDOWN or RUN).  A RUN command is followed by <code>cwd=</code>, <code>cp=</code>
+ * and <code>arg=</code> lines and an END line.  The daemon answers with <code>O:</code> output lines
+ * followed by either <code>X:</code> and the exit code or <code>R:</code> and the reason it must be
+ * recycled.</P>
+ */
+final class WlstDaemonClient {
+    static final String DAEMON_TOKEN_VARIABLE_NAME = "WLST_TEST_DAEMON_TOKEN";
+
+    private static final String DAEMON_SWITCH = "--daemon=";
+    private static final String DAEMON_IDLE_TIMEOUT_SWITCH = "--daemon-idle-timeout=";
+    private static final String PID_FILE_SWITCH = "--pid-file=";
+
+    private static final String COMMAND_PING = "PING";
+    private static final String COMMAND_SHUTDOWN = "SHUTDOWN";
+    private static final String COMMAND_RUN = "RUN";
+    private static final String RESPONSE_PONG = "PONG";
+    private static final String REQUEST_END = "END";
+    private static final String REQUEST_CWD_PREFIX = "cwd=";
+    private static final String REQUEST_CLASSPATH_PREFIX = "cp=";
+    private static final String REQUEST_ARGUMENT_PREFIX = "arg=";
+    private static final char REQUEST_CLASSPATH_SEPARATOR = '\t';
+    private static final String RESPONSE_OUTPUT_PREFIX = "O:";
+    private static final String RESPONSE_EXIT_PREFIX = "X:";
+    private static final String RESPONSE_RECYCLE_PREFIX = "R:";
+
+    private static final String STATE_FILE_EXTENSION = ".properties";
+    private static final String PORT_FILE_EXTENSION = ".port";
+    private static final String LOCK_FILE_EXTENSION = ".lock";
+    private static final String LOG_FILE_EXTENSION = ".log";
+    private static final String PID_FILE_EXTENSION = ".pid";
+    private static final String STATE_PORT = "port";
+    private static final String STATE_TOKEN = "token";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int PING_TIMEOUT_MILLIS = 10000;
+    private static final long STARTUP_TIMEOUT_MILLIS = 300000L;
+    private static final long STARTUP_POLL_MILLIS = 200L;
+    private static final int TOKEN_BYTES = 16;
+    private static final int MAX_ATTEMPTS = 2;
+
+    private static final ConcurrentMap<String, Object> DAEMON_LOCKS = new ConcurrentHashMap<>();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final File stateDirectory;
+    private final String daemonKey;
+    private final List<String> launchCommand;
+    private final Map<String, String> launchEnvironment;
+    private final int idleTimeoutMinutes;
+    private final int runTimeoutSeconds;
+    private final Log log;
+    private boolean timedOut;
+
+    /**
+     * The constructor.
+     *
+     * @param stateDirectory     the directory where the daemon state, lock and log files are kept
+     * @param daemonKey          the key identifying the WLST JVM configuration of the daemon
+     * @param launchCommand      the WLST command, including the driver script, used to start the daemon
+     * @param launchEnvironment  the environment variables to add when starting the daemon
+     * @param idleTimeoutMinutes the number of idle minutes after which the daemon exits
+     * @param runTimeoutSeconds  the number of seconds after which the daemon is killed if the test run has not
+     *                           finished, or 0 to wait forever
+     * @param log                the Maven log
+     */
+    WlstDaemonClient(File stateDirectory, String daemonKey, List<String> launchCommand,
+                     Map<String, String> launchEnvironment, int idleTimeoutMinutes, int runTimeoutSeconds,
+                     Log log) {
+        this.stateDirectory = stateDirectory;
+        this.daemonKey = daemonKey;
+        this.launchCommand = launchCommand;
+        this.launchEnvironment = launchEnvironment;
+        this.idleTimeoutMinutes = idleTimeoutMinutes;
+        this.runTimeoutSeconds = runTimeoutSeconds;
+        this.log = log;
+    }
+
+    /**
+     * Run the tests in the daemon, starting or recycling the daemon as needed.
+     *
+     * @param workingDirectory the working directory for the test run
+     * @param classpath        the WLST extension classpath entries for the test run
+     * @param driverArguments  the test driver arguments
+     * @param out              the stream where the test output is written
+     * @return the test driver exit code, which is meaningless if the test run timed out
+     * @throws IOException if the daemon cannot be started or terminated during the test run
+     */
+    int runTests(File workingDirectory, List<String> classpath, List<String> driverArguments, PrintStream out)
+        throws IOException {
+        Object lock = DAEMON_LOCKS.putIfAbsent(daemonKey, new Object());
+        if (lock == null) {
+            lock = DAEMON_LOCKS.get(daemonKey);
+        }
+
+        synchronized (lock) {
+            if (!stateDirectory.isDirectory() && !stateDirectory.mkdirs()) {
+                throw new IOException(MessageUtils.getMessage("WLSTTEST-117", stateDirectory.getAbsolutePath()));
+            }
+            // The file lock keeps concurrent builds from starting the same daemon or interleaving test runs
+            try (RandomAccessFile lockFile = new RandomAccessFile(getFile(LOCK_FILE_EXTENSION), "rw")) {
+                FileLock fileLock = lockFile.getChannel().lock();
+                try {
+                    return runTestsWhileLocked(workingDirectory, classpath, driverArguments, out);
+                } finally {
+                    fileLock.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the daemon was killed because the test run took longer than the run timeout.
+     *
+     * @return true if the test run timed out
+     */
+    boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Get the file where the daemon writes its output.
+     *
+     * @return the log file of the daemon
+     */
+    File getLogFile() {
+        return getFile(LOG_FILE_EXTENSION);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private int runTestsWhileLocked(File workingDirectory, List<String> classpath, List<String> driverArguments,
+                                    PrintStream out) throws IOException {
+        List<String> request = new ArrayList<>();
+        request.add(REQUEST_CWD_PREFIX + workingDirectory.getAbsolutePath());
+        for (String classpathEntry : classpath) {
+            request.add(REQUEST_CLASSPATH_PREFIX + classpathEntry + REQUEST_CLASSPATH_SEPARATOR
+                + getClasspathEntryFingerprint(new File(classpathEntry)));
+        }
+        for (String driverArgument : driverArguments) {
+            request.add(REQUEST_ARGUMENT_PREFIX + driverArgument);
+        }
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Properties state = getRunningDaemonState();
+            if (state == null) {
+                state = startDaemon();
+            }
+
+            RunResponse response = sendRunRequest(state, request, out);
+            if (response.recycleReason == null) {
+                return response.exitCode;
+            }
+            log.info(MessageUtils.getMessage("WLSTTEST-035", daemonKey, response.recycleReason));
+            sendCommand(state, COMMAND_SHUTDOWN);
+            deleteStateFile();
+        }
+        throw new IOException(MessageUtils.getMessage("WLSTTEST-118", daemonKey));
+    }
+
+    private RunResponse sendRunRequest(Properties state, List<String> request, PrintStream out) throws IOException {
+        try (Socket socket = connect(state)) {
+            BufferedWriter writer = getWriter(socket);
+            writer.write(state.getProperty(STATE_TOKEN));
+            writer.newLine();
+            writer.write(COMMAND_RUN);
+            writer.newLine();
+            for (String line : request) {
+                writer.write(line);
+                writer.newLine();
+            }
+            writer.write(REQUEST_END);
+            writer.newLine();
+            writer.flush();
+
+            long deadline = System.currentTimeMillis() + runTimeoutSeconds * 1000L;
+            BufferedReader reader = getReader(socket);
+            String line = readLine(socket, reader, deadline);
+            while (line != null) {
+                if (line.startsWith(RESPONSE_OUTPUT_PREFIX)) {
+                    out.println(line.substring(RESPONSE_OUTPUT_PREFIX.length()));
+                } else if (line.startsWith(RESPONSE_EXIT_PREFIX)) {
+                    int exitCode = Integer.parseInt(line.substring(RESPONSE_EXIT_PREFIX.length()).trim());
+                    return new RunResponse(exitCode, null);
+                } else if (line.startsWith(RESPONSE_RECYCLE_PREFIX)) {
+                    return new RunResponse(-1, line.substring(RESPONSE_RECYCLE_PREFIX.length()));
+                }
+                line = readLine(socket, reader, deadline);
+            }
+        } catch (SocketTimeoutException ste) {
+            killDaemon();
+            timedOut = true;
+            return new RunResponse(-1, null);
+        } catch (NumberFormatException nfe) {
+            throw new IOException(MessageUtils.getMessage("WLSTTEST-119", daemonKey, nfe.getLocalizedMessage()),
+                                  nfe);
+        }
+
+        // The daemon died in the middle of the test run so make sure the next run starts a new one
+        deleteStateFile();
+        throw new IOException(MessageUtils.getMessage("WLSTTEST-120", daemonKey,
+                                                      getFile(LOG_FILE_EXTENSION).getAbsolutePath()));
+    }
+
+    /**
+     * Read the next response line, limiting the wait so that the whole test run finishes by the deadline.
+     */
+    private String readLine(Socket socket, BufferedReader reader, long deadline) throws IOException {
+        if (runTimeoutSeconds > 0) {
+            long remainingMillis = deadline - System.currentTimeMillis();
+            if (remainingMillis <= 0L) {
+                throw new SocketTimeoutException();
+            }
+            socket.setSoTimeout((int) Math.min(remainingMillis, Integer.MAX_VALUE));
+        }
+        return reader.readLine();
+    }
+
+    /**
+     * Kill the daemon in the middle of a test run, which it cannot be asked to stop, and forget it so that
+     * the next run starts a new one.
+     */
+    private void killDaemon() throws IOException {
+        File pidFile = getFile(PID_FILE_EXTENSION);
+        log.warn(MessageUtils.getMessage("WLSTTEST-131", daemonKey, runTimeoutSeconds));
+        String pid = WlstProcessLauncher.readPid(pidFile, log);
+        if (pid != null) {
+            WlstProcessLauncher.killProcess(pid, log);
+        } else {
+            log.warn(MessageUtils.getMessage("WLSTTEST-132", daemonKey, pidFile.getAbsolutePath()));
+        }
+        deleteStateFile();
+    }
+
+    private Properties getRunningDaemonState() throws IOException {
+        File stateFile = getFile(STATE_FILE_EXTENSION);
+        if (!stateFile.isFile()) {
+            return null;
+        }
+
+        Properties state = new Properties();
+        try (InputStream inputStream = new FileInputStream(stateFile)) {
+            state.load(inputStream);
+        }
+        if (RESPONSE_PONG.equals(sendCommand(state, COMMAND_PING))) {
+            return state;
+        }
+
+        log.debug(MessageUtils.getMessage("WLSTTEST-036", daemonKey));
+        deleteStateFile();
+        return null;
+    }
+
+    private Properties startDaemon() throws IOException {
+        File portFile = getFile(PORT_FILE_EXTENSION);
+        Files.deleteIfExists(portFile.toPath());
+        File pidFile = getFile(PID_FILE_EXTENSION);
+        Files.deleteIfExists(pidFile.toPath());
+
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(tokenBytes);
+        String token = HashUtils.toHexString(tokenBytes);
+
+        List<String> command = new ArrayList<>(launchCommand);
+        command.add(DAEMON_SWITCH + portFile.getAbsolutePath());
+        command.add(DAEMON_IDLE_TIMEOUT_SWITCH + idleTimeoutMinutes);
+        command.add(PID_FILE_SWITCH + pidFile.getAbsolutePath());
+
+        File logFile = getFile(LOG_FILE_EXTENSION);
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.directory(stateDirectory);
+        processBuilder.environment().putAll(launchEnvironment);
+        processBuilder.environment().put(DAEMON_TOKEN_VARIABLE_NAME, token);
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile));
+
+        log.info(MessageUtils.getMessage("WLSTTEST-034", daemonKey, logFile.getAbsolutePath()));
+        Process process = processBuilder.start();
+        process.getOutputStream().close();
+
+        int port = waitForDaemonPort(process, portFile, logFile);
+        Properties state = new Properties();
+        state.setProperty(STATE_PORT, Integer.toString(port));
+        state.setProperty(STATE_TOKEN, token);
+        try (OutputStream outputStream = new FileOutputStream(getFile(STATE_FILE_EXTENSION))) {
+            state.store(outputStream, "WLST Test Maven Plugin daemon state");
+        }
+        return state;
+    }
+
+    private int waitForDaemonPort(Process process, File portFile, File logFile) throws IOException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (portFile.isFile()) {
+                String port = new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.UTF_8).trim();
+                try {
+                    return Integer.parseInt(port);
+                } catch (NumberFormatException nfe) {
+                    throw new IOException(MessageUtils.getMessage("WLSTTEST-121", daemonKey, port), nfe);
+                }
+            }
+
+            try {
+                int exitCode = process.exitValue();
+                throw new IOException(MessageUtils.getMessage("WLSTTEST-122", daemonKey, exitCode,
+                                                              logFile.getAbsolutePath()));
+            } catch (IllegalThreadStateException ignore) {
+                // the process is still running
+            }
+
+            try {
+                Thread.sleep(STARTUP_POLL_MILLIS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                process.destroy();
+                throw new IOException(MessageUtils.getMessage("WLSTTEST-123", daemonKey), ie);
+            }
+        }
+        process.destroy();
+        throw new IOException(MessageUtils.getMessage("WLSTTEST-124", daemonKey, STARTUP_TIMEOUT_MILLIS / 1000,
+                                                      logFile.getAbsolutePath()));
+    }
+
+    private String sendCommand(Properties state, String command) {
+        try (Socket socket = connect(state)) {
+            socket.setSoTimeout(PING_TIMEOUT_MILLIS);
+            BufferedWriter writer = getWriter(socket);
+            writer.write(state.getProperty(STATE_TOKEN, ""));
+            writer.newLine();
+            writer.write(command);
+            writer.newLine();
+            writer.flush();
+            return getReader(socket).readLine();
+        } catch (IOException | NumberFormatException ignore) {
+            return null;
+        }
+    }
+
+    private Socket connect(Properties state) throws IOException {
+        int port = Integer.parseInt(state.getProperty(STATE_PORT, "-1"));
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+        } catch (IOException | IllegalArgumentException e) {
+            socket.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getLocalizedMessage(), e);
+        }
+        return socket;
+    }
+
+    private void deleteStateFile() throws IOException {
+        Files.deleteIfExists(getFile(STATE_FILE_EXTENSION).toPath());
+    }
+
+    private File getFile(String extension) {
+        return new File(stateDirectory, daemonKey + extension);
+    }
+
+    private static BufferedWriter getWriter(Socket socket) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static BufferedReader getReader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compute a cheap fingerprint of a classpath entry that changes when a JAR file or any file in a
+     * directory is modified, added or removed.
+     *
+     * @param classpathEntry the classpath entry
+     * @return the fingerprint
+     * @throws IOException if the directory cannot be walked
+     */
+    static String getClasspathEntryFingerprint(File classpathEntry) throws IOException {
+        if (classpathEntry.isFile()) {
+            return classpathEntry.length() + ":" + classpathEntry.lastModified();
+        } else if (!classpathEntry.isDirectory()) {
+            return "missing";
+        }
+
+        final long[] countAndLastModified = new long[2];
+        Files.walkFileTree(classpathEntry.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                countAndLastModified[0]++;
+                countAndLastModified[1] = Math.max(countAndLastModified[1], attrs.lastModifiedTime().toMillis());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return countAndLastModified[0] + ":" + countAndLastModified[1];
+    }
+
+    /**
+     * The daemon's answer to a RUN request.
+     */
+    private static final class RunResponse {
+        private final int exitCode;
+        private final String recycleReason;
+
+        RunResponse(int exitCode, String recycleReason) {
+            this.exitCode = exitCode;
+            this.recycleReason = recycleReason;
+        }
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * WlstEnvironment.java - This class resolves how WLST is started for the
+ *     tests of a module for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * This class resolves the WLST script, environment variables, Java system properties and classpath that the
+ * tests of a module run with, from the goal's parameters and the settings of the module's Oracle Home, and
+ * reads the Oracle Home that the WLST script belongs to.
+ */
+final class WlstEnvironment {
+    static final String WLST_TEST_DEBUG_PROPERTY_NAME = "wlst.test.plugin.debug";
+
+    private static final String ARTIFACT_PROPERTY_REGEX = "[a-zA-Z0-9_.-]+:[a-zA-Z0-9_.-]+:[a-zA-Z0-9]+";
+    private static final Pattern ARTIFACT_PROPERTY_PATTERN = Pattern.compile(ARTIFACT_PROPERTY_REGEX);
+    private static final String ARTIFACT_KEY_FORMAT = "%s:%s:%s";
+    static final String WLST_EXT_CLASSPATH_CONTEXT_KEY_PREFIX = "wlst-test.wlstExtClasspath:";
+    private static final String SKIP_MODULE_SCANNING_SWITCH = "-skipWLSModuleScanning";
+    private static final String SYSTEM_PROPERTY_FORMAT = "-D%s=%s";
+
+    private static final String CLASSPATH_VARIABLE_NAME = "CLASSPATH";
+    private static final String WLST_EXT_CLASSPATH_VARIABLE_NAME = "WLST_EXT_CLASSPATH";
+    static final String WLST_PROPERTIES_VARIABLE_NAME = "WLST_PROPERTIES";
+
+    // The Oracle Home-relative location of the inventory of the installed products and patches
+    private static final String ORACLE_HOME_REGISTRY_FILE = "inventory/registry.xml";
+    private static final Pattern REGISTRY_DISTRIBUTION_PATTERN = Pattern.compile("<distribution\\b[^>]*>");
+    private static final Pattern REGISTRY_VERSION_PATTERN = Pattern.compile("\\bversion=\"([^\"]+)\"");
+    private static final String REGISTRY_WEBLOGIC_NAME = "name=\"WebLogic Server\"";
+
+    // The Oracle Home-relative locations of the JAR files needed to run WLST in process, newest layout first
+    private static final String[] WLST_CLASSPATH_JAR_CANDIDATES = {
+        "wlserver/modules/features/wlst.wls.classpath.jar",
+        "wlserver/server/lib/weblogic.jar"
+    };
+    private static final String JYTHON_MODULES_JAR = "wlserver/common/wlst/modules/jython-modules.jar";
+
+    private final File wlstScript;
+    private final boolean usingOldWlstVersion;
+    private final boolean skipModuleScanning;
+    private final Map<String, String> environmentVariables;
+    private final Map<String, String> systemProperties;
+    private final String argLine;
+    private final List<String> inProcessClasspath;
+    private final boolean debug;
+    private final Log log;
+
+    /**
+     * The constructor.
+     *
+     * @param wlstScript           the WLST script of the wlstScriptDirectory, or null if it is not used
+     * @param usingOldWlstVersion  whether the wlstExtClasspath goes in the CLASSPATH instead of the
+     *                             WLST_EXT_CLASSPATH, unless the module's Oracle Home says otherwise
+     * @param skipModuleScanning   whether WLST skips module scanning at startup
+     * @param environmentVariables the environmentVariables parameter, or null
+     * @param systemProperties     the systemProperties parameter, or null
+     * @param argLine              the argLine parameter, or null
+     * @param inProcessClasspath   the inProcessClasspath parameter, or null
+     * @param debug                whether the test driver logs debug messages
+     * @param log                  the Maven log
+     */
+    WlstEnvironment(File wlstScript, boolean usingOldWlstVersion, boolean skipModuleScanning,
+                    Map<String, String> environmentVariables, Map<String, String> systemProperties, String argLine,
+                    List<String> inProcessClasspath, boolean debug, Log log) {
+        this.wlstScript = wlstScript;
+        this.usingOldWlstVersion = usingOldWlstVersion;
+        this.skipModuleScanning = skipModuleScanning;
+        this.environmentVariables = environmentVariables;
+        this.systemProperties = systemProperties;
+        this.argLine = argLine;
+        this.inProcessClasspath = inProcessClasspath;
+        this.debug = debug;
+        this.log = log;
+    }
+
+    /**
+     * Get the WLST script that runs the module's tests, which is the one of the module's Oracle Home if the
+     * tests run against several Oracle Homes.
+     *
+     * @param module the module whose tests are run
+     * @return the WLST script
+     */
+    File getWlstScript(WlstTestModule module) {
+        return module.getWlstScript() == null ? wlstScript : module.getWlstScript();
+    }
+
+    boolean isUsingOldWlstVersion(WlstTestModule module) {
+        return module.getUsingOldWlstVersion() == null ? usingOldWlstVersion : module.getUsingOldWlstVersion();
+    }
+
+    boolean isSkipModuleScanning() {
+        return skipModuleScanning;
+    }
+
+    /**
+     * Get the systemProperties parameter.
+     *
+     * @return the Java system properties, or null if the parameter is not set
+     */
+    Map<String, String> getSystemProperties() {
+        return systemProperties;
+    }
+
+    String getArgLine() {
+        return argLine;
+    }
+
+    /**
+     * Get the command that starts WLST to run the driver script, without the driver arguments.
+     *
+     * @param module            the module whose tests are run
+     * @param testsDriverScript the driver script
+     * @return the command
+     */
+    List<String> getLaunchCommand(WlstTestModule module, File testsDriverScript) {
+        List<String> result = new ArrayList<>();
+        result.add(getWlstScript(module).getAbsolutePath());
+        if (skipModuleScanning) {
+            result.add(SKIP_MODULE_SCANNING_SWITCH);
+        }
+        result.add(testsDriverScript.getAbsolutePath());
+        return result;
+    }
+
+    /**
+     * Get the environment variables of the WLST runs of the module's tests, which are the environmentVariables
+     * overridden by those of the module's Oracle Home.
+     *
+     * @param module the module whose tests are run
+     * @return the environment variables
+     */
+    Map<String, String> getEnvironmentVariables(WlstTestModule module) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (environmentVariables != null) {
+            result.putAll(environmentVariables);
+        }
+        if (module.getEnvironmentVariables() != null) {
+            result.putAll(module.getEnvironmentVariables());
+        }
+        return result;
+    }
+
+    /**
+     * Build the environment of a WLST process that runs the module's tests, which passes the wlstExtClasspath,
+     * the systemProperties and the argLine to WLST in the variables that the WLST script reads.
+     *
+     * @param module                  the module whose tests are run
+     * @param includeWlstExtClasspath whether to add the wlstExtClasspath to the WLST classpath
+     * @return the environment variables
+     * @throws MojoExecutionException if an environment variable is set that the plugin sets itself, or the
+     *                                wlstExtClasspath cannot be resolved
+     */
+    Map<String, String> buildEnvironmentVariables(WlstTestModule module, boolean includeWlstExtClasspath)
+        throws MojoExecutionException {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : getEnvironmentVariables(module).entrySet()) {
+            String name = entry.getKey();
+            String value = entry.getValue();
+
+            String errorKey = "WLSTTEST-017";
+            if (CLASSPATH_VARIABLE_NAME.equals(name)) {
+                throw new MojoExecutionException(MessageUtils.getMessage(errorKey,
+                                                                         CLASSPATH_VARIABLE_NAME, "wlstExtClasspath"));
+            } else if (WLST_EXT_CLASSPATH_VARIABLE_NAME.equals(name)) {
+                throw new MojoExecutionException(MessageUtils.getMessage(errorKey, WLST_EXT_CLASSPATH_VARIABLE_NAME,
+                                                                         "wlstExtClasspath"));
+            } else if (WLST_PROPERTIES_VARIABLE_NAME.equals(name)) {
+                throw new MojoExecutionException(MessageUtils.getMessage(errorKey, WLST_PROPERTIES_VARIABLE_NAME,
+                                                                         "systemProperties"));
+            }
+            result.put(name, value);
+        }
+
+        if (includeWlstExtClasspath) {
+            String environmentVariableName = WLST_EXT_CLASSPATH_VARIABLE_NAME;
+            if (isUsingOldWlstVersion(module)) {
+                environmentVariableName = CLASSPATH_VARIABLE_NAME;
+            }
+            result.put(environmentVariableName,
+                       getDelimitedStringFromList(getWlstExtClasspathEntries(module), File.pathSeparatorChar));
+        }
+
+        String wlstProperties = getWlstProperties();
+        if (wlstProperties != null) {
+            result.put(WLST_PROPERTIES_VARIABLE_NAME, wlstProperties);
+        }
+        return result;
+    }
+
+    /**
+     * Get the module's WLST_EXT_CLASSPATH elements.  Elements in the
+     * <code>&lt;group-id&gt;:&lt;artifact-id&gt;:&lt;type&lt;</code> format are resolved from the module
+     * project's dependencies and the result is cached in the project context so that later executions in
+     * the same session do not need to compute it again.
+     *
+     * @param module the module
+     * @return the list of absolute classpath element paths
+     * @throws MojoExecutionException if an element does not match any of the project's dependencies
+     */
+    List<String> getWlstExtClasspathEntries(WlstTestModule module) throws MojoExecutionException {
+        MavenProject project = module.getProject();
+        List<String> extClasspath = module.getWlstExtClasspath();
+        String outputDirectory =
+            getCanonicalFile(new File(project.getBuild().getOutputDirectory())).getAbsolutePath();
+        String contextKey = WLST_EXT_CLASSPATH_CONTEXT_KEY_PREFIX + outputDirectory + extClasspath;
+        @SuppressWarnings("unchecked")
+        List<String> cachedEntries = (List<String>) project.getContextValue(contextKey);
+        if (cachedEntries != null) {
+            return cachedEntries;
+        }
+
+        Map<String, File> artifactFiles = null;
+        List<String> result = new ArrayList<>(extClasspath.size() + 1);
+        for (String wlstExtClasspathElement : extClasspath) {
+            Matcher matcher = ARTIFACT_PROPERTY_PATTERN.matcher(wlstExtClasspathElement);
+            if (matcher.matches()) {
+                // Only look at the project's dependencies if at least one element refers to one of them
+                if (artifactFiles == null) {
+                    artifactFiles = getArtifactFiles(project);
+                }
+                File artifactFile = artifactFiles.get(wlstExtClasspathElement);
+                if (artifactFile == null) {
+                    throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-041",
+                                                                             wlstExtClasspathElement));
+                }
+                result.add(artifactFile.getAbsolutePath());
+            } else {
+                result.add(getCanonicalFile(new File(wlstExtClasspathElement)).getAbsolutePath());
+            }
+        }
+        // Add the target/classes directory so that any Java classes used by the python code are in the WLST classpath
+        result.add(outputDirectory);
+
+        result = Collections.unmodifiableList(result);
+        project.setContextValue(contextKey, result);
+        return result;
+    }
+
+    /**
+     * Get the classpath for running WLST in process, which is the WLST and Jython JAR files followed
+     * by the module's WLST extension classpath.
+     *
+     * @param module the module whose tests are run
+     * @return the list of classpath entries
+     * @throws MojoExecutionException if the WLST JAR files cannot be found
+     */
+    List<File> getInProcessClasspath(WlstTestModule module) throws MojoExecutionException {
+        List<File> result = new ArrayList<>();
+        if (inProcessClasspath != null && !inProcessClasspath.isEmpty()) {
+            for (String inProcessClasspathElement : inProcessClasspath) {
+                result.add(getCanonicalFile(new File(inProcessClasspathElement)));
+            }
+        } else {
+            File oracleHome = findOracleHome(module);
+            if (oracleHome != null) {
+                for (String candidate : WLST_CLASSPATH_JAR_CANDIDATES) {
+                    File jarFile = new File(oracleHome, candidate);
+                    if (jarFile.isFile()) {
+                        result.add(jarFile);
+                        break;
+                    }
+                }
+                File jythonModulesJar = new File(oracleHome, JYTHON_MODULES_JAR);
+                if (!result.isEmpty() && jythonModulesJar.isFile()) {
+                    result.add(jythonModulesJar);
+                }
+            }
+            if (result.isEmpty()) {
+                throw new MojoExecutionException(MessageUtils.getMessage("WLSTTEST-044",
+                    getWlstScript(module).getParentFile().getAbsolutePath()));
+            }
+        }
+
+        for (String wlstExtClasspathEntry : getWlstExtClasspathEntries(module)) {
+            result.add(new File(wlstExtClasspathEntry));
+        }
+        return result;
+    }
+
+    /**
+     * Get the properties passed to the Jython registry of the in-process interpreter, which are the
+     * systemProperties and the debug flag that a WLST process would get as Java system properties.
+     *
+     * @return the registry properties
+     */
+    Map<String, String> getInProcessRegistryProperties() {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (systemProperties != null) {
+            result.putAll(systemProperties);
+        }
+        if (debug) {
+            result.put(WLST_TEST_DEBUG_PROPERTY_NAME, "true");
+        }
+        return result;
+    }
+
+    /**
+     * Get the version of WebLogic Server installed in the Oracle Home that runs the module's tests, as recorded
+     * in the Oracle inventory.
+     *
+     * @param module the module whose tests are run
+     * @return the version, or null if the Oracle Home has no inventory or it cannot be read
+     */
+    String getWebLogicVersion(WlstTestModule module) {
+        File oracleHome = findOracleHome(module);
+        File registryFile = oracleHome == null ? null : new File(oracleHome, ORACLE_HOME_REGISTRY_FILE);
+        if (registryFile == null || !registryFile.isFile()) {
+            return null;
+        }
+
+        try {
+            String registry = new String(Files.readAllBytes(registryFile.toPath()), StandardCharsets.UTF_8);
+            Matcher distributionMatcher = REGISTRY_DISTRIBUTION_PATTERN.matcher(registry);
+            while (distributionMatcher.find()) {
+                String distribution = distributionMatcher.group();
+                Matcher versionMatcher = REGISTRY_VERSION_PATTERN.matcher(distribution);
+                if (distribution.contains(REGISTRY_WEBLOGIC_NAME) && versionMatcher.find()) {
+                    return versionMatcher.group(1);
+                }
+            }
+        } catch (IOException ioe) {
+            log.debug(MessageUtils.getMessage("WLSTTEST-126", registryFile.getAbsolutePath(),
+                                              ioe.getLocalizedMessage()));
+        }
+        return null;
+    }
+
+    /**
+     * Get a value that changes when the Oracle Home is upgraded or patched.  This is the hash of the Oracle
+     * inventory of installed products and patches or, for installations without one, of the WLST script.
+     *
+     * @param module the module whose tests are run
+     * @return the Oracle Home version
+     * @throws IOException if an error occurs while reading the file
+     */
+    String getOracleHomeVersion(WlstTestModule module) throws IOException {
+        File oracleHome = findOracleHome(module);
+        if (oracleHome != null) {
+            File registryFile = new File(oracleHome, ORACLE_HOME_REGISTRY_FILE);
+            if (registryFile.isFile()) {
+                return HashUtils.sha1(registryFile.toPath());
+            }
+        }
+        return HashUtils.sha1(getWlstScript(module).toPath());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private File findOracleHome(WlstTestModule module) {
+        File directory = getWlstScript(module).getParentFile();
+        while (directory != null) {
+            if (new File(directory, "wlserver").isDirectory()) {
+                return directory;
+            }
+            directory = directory.getParentFile();
+        }
+        return null;
+    }
+
+    /**
+     * Get the files of the project's resolved dependencies, keyed by their
+     * <code>&lt;group-id&gt;:&lt;artifact-id&gt;:&lt;type&lt;</code> coordinates.
+     * Dependencies with a classifier are skipped since their coordinates cannot be expressed in that format.
+     *
+     * @param project the project
+     * @return the map of coordinates to artifact files
+     */
+    private static Map<String, File> getArtifactFiles(MavenProject project) {
+        Map<String, File> result = new HashMap<>();
+        for (Artifact artifact : project.getArtifacts()) {
+            String classifier = artifact.getClassifier();
+            if (artifact.getFile() != null && (classifier == null || classifier.isEmpty())) {
+                String key = String.format(ARTIFACT_KEY_FORMAT, artifact.getGroupId(), artifact.getArtifactId(),
+                                           artifact.getType());
+                result.put(key, artifact.getFile());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the WLST_PROPERTIES value that passes the debug flag, the argLine and the systemProperties to WLST.
+     *
+     * @return the WLST_PROPERTIES value, or null if there is nothing to pass
+     */
+    String getWlstProperties() {
+        List<String> strings = new ArrayList<>();
+        if (debug) {
+            String debugFlag = String.format(SYSTEM_PROPERTY_FORMAT, WLST_TEST_DEBUG_PROPERTY_NAME, "true");
+            log.debug(WLST_PROPERTIES_VARIABLE_NAME + " (debug): " + debugFlag);
+            strings.add(debugFlag);
+        }
+
+        if (argLine != null) {
+            log.debug(WLST_PROPERTIES_VARIABLE_NAME + " (argLine): " + argLine);
+            strings.add(argLine);
+        }
+
+        if (systemProperties != null) {
+            for (Map.Entry<String, String> entry : systemProperties.entrySet()) {
+                String propertyName = entry.getKey();
+                String propertyValue = entry.getValue();
+                String systemProperty = String.format(SYSTEM_PROPERTY_FORMAT, propertyName, propertyValue);
+                log.debug(WLST_PROPERTIES_VARIABLE_NAME + " (systemProperties): " + systemProperty);
+                strings.add(systemProperty);
+            }
+        }
+
+        if (strings.isEmpty()) {
+            return null;
+        } else {
+            return getDelimitedStringFromList(strings, ' ');
+        }
+    }
+
+    private static File getCanonicalFile(File file) {
+        File result;
+        try {
+            result = file.getCanonicalFile();
+        } catch (IOException ignore) {
+            result = file.getAbsoluteFile();
+        }
+        return result;
+    }
+
+    private static String getDelimitedStringFromList(List<String> elements, char separatorChar) {
+        StringBuilder stringBuilder = new StringBuilder(elements.get(0));
+        for (int idx = 1; idx < elements.size(); idx++) {
+            stringBuilder.append(separatorChar);
+            stringBuilder.append(elements.get(idx));
+        }
+        return stringBuilder.toString();
+    }
+}
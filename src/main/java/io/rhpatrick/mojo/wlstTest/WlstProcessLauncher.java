@@ -0,0 +1,393 @@
+/*
+ * WlstProcessLauncher.java - This class starts a WLST process to run
+ *     the tests and streams its output for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * This class runs a WLST process and waits for it to exit.  Separate threads read the process's standard
+ * output and standard error as soon as it is written, so the process never blocks on a full pipe.  Every
+ * line goes to the output file, and lines shown on the console go through a bounded queue; when the console
+ * cannot keep up, the lines that do not fit are only written to the output file.  If the process runs past
+ * the timeout, a thread dump of the WLST JVM is appended to the output file and the process is killed.
+ */
+final class WlstProcessLauncher {
+    private static final int CONSOLE_QUEUE_LINES = 10000;
+    private static final long POLL_MILLIS = 100L;
+    private static final long THREAD_DUMP_WAIT_MILLIS = 2000L;
+    private static final long KILL_WAIT_MILLIS = 10000L;
+    private static final long PUMP_JOIN_MILLIS = 5000L;
+    // A distinct instance so that the console writer can tell it from any line of output by identity
+    private static final String END_OF_OUTPUT = new String("END-OF-OUTPUT");
+    private static final boolean WINDOWS = File.separatorChar == '\\';
+
+    private final File outputFile;
+    private final File pidFile;
+    private final boolean showOutputOnConsole;
+    private final PrintStream console;
+    private final Log log;
+    private final BlockingQueue<String> consoleQueue = new ArrayBlockingQueue<>(CONSOLE_QUEUE_LINES);
+    private final AtomicLong droppedLines = new AtomicLong();
+    private boolean timedOut;
+
+    /**
+     * The constructor.
+     *
+     * @param outputFile          the file where the complete process output is written
+     * @param pidFile             the file where the test driver writes the process id of the WLST JVM
+     * @param showOutputOnConsole whether the process output is also shown on the console
+     * @param console             the console stream
+     * @param log                 the Maven log
+     */
+    WlstProcessLauncher(File outputFile, File pidFile, boolean showOutputOnConsole, PrintStream console, Log log) {
+        this.outputFile = outputFile;
+        this.pidFile = pidFile;
+        this.showOutputOnConsole = showOutputOnConsole;
+        this.console = console;
+        this.log = log;
+    }
+
+    /**
+     * Run the process and wait for it to exit.
+     *
+     * @param command          the command and its arguments
+     * @param environment      the environment variables to add to the Maven process environment
+     * @param workingDirectory the working directory of the process
+     * @param timeoutSeconds   the number of seconds after which the process is killed, or 0 to wait forever
+     * @return the exit code of the process, which is meaningless if the process timed out
+     * @throws IOException if the process cannot be started or its output cannot be written
+     */
+    int run(List<String> command, Map<String, String> environment, File workingDirectory, int timeoutSeconds)
+        throws IOException {
+        if (pidFile.exists() && !pidFile.delete()) {
+            throw new IOException(pidFile.getAbsolutePath());
+        }
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.directory(workingDirectory);
+        processBuilder.environment().putAll(environment);
+        processBuilder.redirectInput(ProcessBuilder.Redirect.INHERIT);
+
+        try (Writer outputWriter = Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8)) {
+            Process process = processBuilder.start();
+            List<Thread> threads = new ArrayList<>();
+            threads.add(startThread(new StreamPump(process.getInputStream(), outputWriter), "stdout"));
+            threads.add(startThread(new StreamPump(process.getErrorStream(), outputWriter), "stderr"));
+            Thread consoleThread = null;
+            if (showOutputOnConsole) {
+                consoleThread = startThread(new ConsoleWriter(), "console");
+            }
+
+            timedOut = timeoutSeconds > 0 && !waitFor(process, timeoutSeconds * 1000L);
+            if (timeoutSeconds <= 0) {
+                waitForExit(process);
+            }
+            if (timedOut) {
+                log.warn(MessageUtils.getMessage("WLSTTEST-067", timeoutSeconds, outputFile.getAbsolutePath()));
+                String pid = readPid(pidFile, log);
+                writeThreadDump(pid, outputWriter);
+                kill(process, pid);
+            }
+
+            for (Thread thread : threads) {
+                join(thread);
+            }
+            if (consoleThread != null) {
+                putQuietly(END_OF_OUTPUT);
+                join(consoleThread);
+            }
+            if (droppedLines.get() > 0) {
+                log.warn(MessageUtils.getMessage("WLSTTEST-068", droppedLines.get(), outputFile.getAbsolutePath()));
+            }
+            return isExited(process) ? process.exitValue() : -1;
+        }
+    }
+
+    /**
+     * Whether the process was killed because it ran past the timeout.
+     *
+     * @return true if the process timed out
+     */
+    boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Read the process ID written by the test driver.
+     *
+     * @param pidFile the file where the test driver writes the process ID of the WLST JVM
+     * @param log     the Maven log
+     * @return the process ID, or null if the file does not exist or cannot be read
+     */
+    static String readPid(File pidFile, Log log) {
+        if (!pidFile.isFile()) {
+            return null;
+        }
+        try {
+            String pid = new String(Files.readAllBytes(pidFile.toPath()), StandardCharsets.UTF_8).trim();
+            return pid.matches("[0-9]+") ? pid : null;
+        } catch (IOException ioe) {
+            log.debug(MessageUtils.getMessage("WLSTTEST-144", pidFile.getAbsolutePath(), ioe.getLocalizedMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Forcibly kill a process and, on Windows, its child processes.
+     *
+     * @param pid the process ID
+     * @param log the Maven log
+     */
+    static void killProcess(String pid, Log log) {
+        List<String> command = new ArrayList<>();
+        if (WINDOWS) {
+            command.add("taskkill");
+            command.add("/F");
+            command.add("/T");
+            command.add("/PID");
+        } else {
+            command.add("kill");
+            command.add("-9");
+        }
+        command.add(pid);
+        try {
+            Process killProcess = new ProcessBuilder(command).redirectErrorStream(true).start();
+            waitFor(killProcess, KILL_WAIT_MILLIS);
+        } catch (IOException ioe) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-071", pid, ioe.getLocalizedMessage()));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static Thread startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, "wlst-test-process-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void waitForExit(Process process) {
+        try {
+            process.waitFor();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean waitFor(Process process, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                process.exitValue();
+                return true;
+            } catch (IllegalThreadStateException stillRunning) {
+                sleep(POLL_MILLIS);
+            }
+        }
+        return isExited(process);
+    }
+
+    private static boolean isExited(Process process) {
+        try {
+            process.exitValue();
+            return true;
+        } catch (IllegalThreadStateException stillRunning) {
+            return false;
+        }
+    }
+
+    /**
+     * Append a thread dump of the WLST JVM to the output file using jcmd, or SIGQUIT when jcmd is not
+     * available, in which case the JVM prints the thread dump to its own standard output.
+     */
+    private void writeThreadDump(String pid, Writer outputWriter) {
+        if (pid == null) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-070", pidFile.getAbsolutePath()));
+            return;
+        }
+
+        File jcmd = findJcmd();
+        List<String> command = new ArrayList<>();
+        if (jcmd != null) {
+            command.add(jcmd.getAbsolutePath());
+            command.add(pid);
+            command.add("Thread.print");
+        } else if (!WINDOWS) {
+            command.add("kill");
+            command.add("-3");
+            command.add(pid);
+        } else {
+            log.warn(MessageUtils.getMessage("WLSTTEST-070", pidFile.getAbsolutePath()));
+            return;
+        }
+
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(true);
+            Process dumpProcess = processBuilder.start();
+            List<String> dumpLines = new ArrayList<>();
+            InputStreamReader dumpReader =
+                new InputStreamReader(dumpProcess.getInputStream(), Charset.defaultCharset());
+            try (BufferedReader reader = new BufferedReader(dumpReader)) {
+                String line = reader.readLine();
+                while (line != null) {
+                    dumpLines.add(line);
+                    line = reader.readLine();
+                }
+            }
+            synchronized (outputWriter) {
+                for (String dumpLine : dumpLines) {
+                    outputWriter.write(dumpLine);
+                    outputWriter.write(System.lineSeparator());
+                }
+                outputWriter.flush();
+            }
+            // Give the JVM time to print the thread dump requested by the signal before it is killed
+            sleep(THREAD_DUMP_WAIT_MILLIS);
+        } catch (IOException ioe) {
+            log.warn(MessageUtils.getMessage("WLSTTEST-071", pid, ioe.getLocalizedMessage()));
+        }
+    }
+
+    private static File findJcmd() {
+        String executableName = WINDOWS ? "jcmd.exe" : "jcmd";
+        File javaHome = new File(System.getProperty("java.home"));
+        File[] candidates = {
+            new File(javaHome, "bin/" + executableName),
+            new File(javaHome.getParentFile(), "bin/" + executableName)
+        };
+        for (File candidate : candidates) {
+            if (candidate.isFile() && candidate.canExecute()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Kill the WLST JVM as well as the process started by the plugin, which is usually the wlst.sh or
+     * wlst.cmd script and does not pass its termination on to the JVM.
+     */
+    private void kill(Process process, String pid) {
+        if (pid != null) {
+            killProcess(pid, log);
+        }
+        process.destroy();
+        waitFor(process, KILL_WAIT_MILLIS);
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join(PUMP_JOIN_MILLIS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void putQuietly(String line) {
+        try {
+            consoleQueue.put(line);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Copies the lines of one of the process's output streams to the output file and the console queue.
+     */
+    private final class StreamPump implements Runnable {
+        private final InputStream inputStream;
+        private final Writer outputWriter;
+
+        StreamPump(InputStream inputStream, Writer outputWriter) {
+            this.inputStream = inputStream;
+            this.outputWriter = outputWriter;
+        }
+
+        @Override
+        public void run() {
+            try (BufferedReader reader =
+                     new BufferedReader(new InputStreamReader(inputStream, Charset.defaultCharset()))) {
+                String line = reader.readLine();
+                while (line != null) {
+                    synchronized (outputWriter) {
+                        outputWriter.write(line);
+                        outputWriter.write(System.lineSeparator());
+                        if (!reader.ready()) {
+                            outputWriter.flush();
+                        }
+                    }
+                    if (showOutputOnConsole && !consoleQueue.offer(line)) {
+                        droppedLines.incrementAndGet();
+                    }
+                    line = reader.readLine();
+                }
+            } catch (IOException ioe) {
+                // The stream is closed when the process is killed
+                log.debug(MessageUtils.getMessage("WLSTTEST-145", ioe.getLocalizedMessage()));
+            }
+        }
+    }
+
+    /**
+     * Prints the queued lines on the console until the end of the output.
+     */
+    private final class ConsoleWriter implements Runnable {
+        @Override
+        public void run() {
+            try {
+                String line = consoleQueue.take();
+                while (line != END_OF_OUTPUT) {
+                    console.println(line);
+                    line = consoleQueue.take();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
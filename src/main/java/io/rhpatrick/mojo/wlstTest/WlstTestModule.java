@@ -0,0 +1,278 @@
+/*
+ * WlstTestModule.java - This class holds the locations and run state
+ *     of one Maven module's WLST tests for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.project.MavenProject;
+
+/**
+ * This class holds the source, test and output locations of a Maven module whose WLST tests are run, along
+ * with the state that a test run keeps for the module between preparing the tests and reporting the results.
+ * The test goal runs a single module while the test-aggregate goal runs one per reactor project.  When the
+ * test goal runs the tests against several Oracle Homes, each Oracle Home gets a module of its own with its
+ * own WLST script, environment and output locations.
+ */
+final class WlstTestModule {
+    private static final String ORACLE_HOMES_DIRECTORY = "oracle-homes";
+
+    private final MavenProject project;
+    private final File sourcesRootDirectory;
+    private final File testsRootDirectory;
+    private final List<String> wlstExtClasspath;
+    private final File reportsDirectory;
+    private final File timingHistoryFile;
+    private final File coverageReportFile;
+    private final File outputDirectory;
+    private final String oracleHomeName;
+    private final File wlstScript;
+    private final Boolean usingOldWlstVersion;
+    private final Map<String, String> environmentVariables;
+
+    private File compiledModuleManifestFile;
+    private IncrementalTestSelector incrementalTestSelector;
+    private TestRunOrder testRunOrder;
+    private long runStart;
+    private volatile boolean incompleteRun;
+    private int rerunNumber;
+    private String rerunTestFilter;
+
+    /**
+     * The constructor.
+     *
+     * @param project              the Maven project of the module
+     * @param sourcesRootDirectory the directory holding the WLST source scripts being tested
+     * @param testsRootDirectory   the directory holding the WLST unit tests
+     * @param wlstExtClasspath     the additional WLST classpath elements, which may be null
+     * @param reportsDirectory     the directory where the surefire-format XML test reports are written
+     * @param timingHistoryFile    the file holding the timing history of the module's tests
+     * @param coverageReportFile   the file where the Cobertura XML coverage report of the module is written
+     */
+    WlstTestModule(MavenProject project, File sourcesRootDirectory, File testsRootDirectory,
+                   List<String> wlstExtClasspath, File reportsDirectory, File timingHistoryFile,
+                   File coverageReportFile) {
+        this(project, sourcesRootDirectory, testsRootDirectory, wlstExtClasspath, reportsDirectory,
+             timingHistoryFile, coverageReportFile,
+             new File(project.getBasedir(), AbstractWLSTTestMojo.WLST_TEST_BASE_DIRECTORY), null, null, null, null);
+    }
+
+    private WlstTestModule(MavenProject project, File sourcesRootDirectory, File testsRootDirectory,
+                           List<String> wlstExtClasspath, File reportsDirectory, File timingHistoryFile,
+                           File coverageReportFile, File outputDirectory, String oracleHomeName, File wlstScript,
+                           Boolean usingOldWlstVersion, Map<String, String> environmentVariables) {
+        this.project = project;
+        this.sourcesRootDirectory = sourcesRootDirectory;
+        this.testsRootDirectory = testsRootDirectory;
+        this.wlstExtClasspath = wlstExtClasspath == null ? new ArrayList<String>() : wlstExtClasspath;
+        this.reportsDirectory = reportsDirectory;
+        this.timingHistoryFile = timingHistoryFile;
+        this.coverageReportFile = coverageReportFile;
+        this.outputDirectory = outputDirectory;
+        this.oracleHomeName = oracleHomeName;
+        this.wlstScript = wlstScript;
+        this.usingOldWlstVersion = usingOldWlstVersion;
+        this.environmentVariables = environmentVariables;
+    }
+
+    /**
+     * Create the module that runs this module's tests against an Oracle Home.  Its plugin output, reports,
+     * timing history and coverage report go to a subdirectory or file named after the Oracle Home so that the
+     * Oracle Homes can run concurrently without sharing any of the files that WLST writes.
+     *
+     * @param oracleHome the Oracle Home
+     * @param wlstScript the WLST script of the Oracle Home
+     * @return the module
+     */
+    WlstTestModule forOracleHome(OracleHome oracleHome, File wlstScript) {
+        String homeName = oracleHome.getName();
+        File homeTimingHistoryFile = timingHistoryFile == null ? null
+            : new File(timingHistoryFile.getParentFile(), homeName + '-' + timingHistoryFile.getName());
+        File homeCoverageReportFile = coverageReportFile == null ? null
+            : new File(new File(coverageReportFile.getParentFile(), homeName), coverageReportFile.getName());
+        Map<String, String> homeEnvironmentVariables = oracleHome.getEnvironmentVariables();
+        if (homeEnvironmentVariables == null) {
+            homeEnvironmentVariables = Collections.emptyMap();
+        }
+        return new WlstTestModule(project, sourcesRootDirectory, testsRootDirectory, wlstExtClasspath,
+                                  new File(reportsDirectory, homeName), homeTimingHistoryFile, homeCoverageReportFile,
+                                  new File(new File(outputDirectory, ORACLE_HOMES_DIRECTORY), homeName), homeName,
+                                  wlstScript, oracleHome.getUsingOldWlstVersion(), homeEnvironmentVariables);
+    }
+
+    /**
+     * Get the name of the module used in messages.
+     *
+     * @return the artifactId of the module's project, followed by the name of the Oracle Home if the module
+     *         runs the tests against one of several Oracle Homes
+     */
+    String getName() {
+        if (oracleHomeName != null) {
+            return project.getArtifactId() + " (" + oracleHomeName + ')';
+        }
+        return project.getArtifactId();
+    }
+
+    MavenProject getProject() {
+        return project;
+    }
+
+    File getSourcesRootDirectory() {
+        return sourcesRootDirectory;
+    }
+
+    File getTestsRootDirectory() {
+        return testsRootDirectory;
+    }
+
+    List<String> getWlstExtClasspath() {
+        return wlstExtClasspath;
+    }
+
+    File getReportsDirectory() {
+        return reportsDirectory;
+    }
+
+    File getTimingHistoryFile() {
+        return timingHistoryFile;
+    }
+
+    File getCoverageReportFile() {
+        return coverageReportFile;
+    }
+
+    /**
+     * Get the directory where the plugin writes the execution directories, results and state of the
+     * module's test runs.
+     *
+     * @return the plugin output directory
+     */
+    File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * Get the name of the Oracle Home the module runs the tests against.
+     *
+     * @return the name, or null if the tests run against the wlstScriptDirectory of the goal
+     */
+    String getOracleHomeName() {
+        return oracleHomeName;
+    }
+
+    /**
+     * Get the WLST script of the Oracle Home the module runs the tests against.
+     *
+     * @return the WLST script, or null to use the one in the wlstScriptDirectory of the goal
+     */
+    File getWlstScript() {
+        return wlstScript;
+    }
+
+    /**
+     * Get whether the Oracle Home the module runs the tests against has WLST 12.1.3 or older.
+     *
+     * @return the value, or null to use the usingOldWlstVersion parameter of the goal
+     */
+    Boolean getUsingOldWlstVersion() {
+        return usingOldWlstVersion;
+    }
+
+    /**
+     * Get the environment variables that override those of the goal for the Oracle Home the module runs
+     * the tests against.
+     *
+     * @return the environment variables, or null if the module does not override them
+     */
+    Map<String, String> getEnvironmentVariables() {
+        return environmentVariables;
+    }
+
+    File getCompiledModuleManifestFile() {
+        return compiledModuleManifestFile;
+    }
+
+    void setCompiledModuleManifestFile(File compiledModuleManifestFile) {
+        this.compiledModuleManifestFile = compiledModuleManifestFile;
+    }
+
+    IncrementalTestSelector getIncrementalTestSelector() {
+        return incrementalTestSelector;
+    }
+
+    void setIncrementalTestSelector(IncrementalTestSelector incrementalTestSelector) {
+        this.incrementalTestSelector = incrementalTestSelector;
+    }
+
+    TestRunOrder getTestRunOrder() {
+        return testRunOrder;
+    }
+
+    void setTestRunOrder(TestRunOrder testRunOrder) {
+        this.testRunOrder = testRunOrder;
+    }
+
+    long getRunStart() {
+        return runStart;
+    }
+
+    void setRunStart(long runStart) {
+        this.runStart = runStart;
+    }
+
+    /**
+     * Get whether a WLST run of the module's tests ended without reporting its test results, for example
+     * because it crashed or timed out, so that the results do not cover all the tests.
+     *
+     * @return true if a WLST run of the tests did not complete
+     */
+    boolean isIncompleteRun() {
+        return incompleteRun;
+    }
+
+    void setIncompleteRun(boolean incompleteRun) {
+        this.incompleteRun = incompleteRun;
+    }
+
+    /**
+     * Get the number of the rerun of the failing tests that is running.
+     *
+     * @return the rerun number, or 0 if the tests are not being rerun
+     */
+    int getRerunNumber() {
+        return rerunNumber;
+    }
+
+    /**
+     * Get the test filter that selects the failing tests being rerun.
+     *
+     * @return the test filter, or null if the tests are not being rerun
+     */
+    String getRerunTestFilter() {
+        return rerunTestFilter;
+    }
+
+    void setRerun(int rerunNumber, String rerunTestFilter) {
+        this.rerunNumber = rerunNumber;
+        this.rerunTestFilter = rerunTestFilter;
+    }
+}
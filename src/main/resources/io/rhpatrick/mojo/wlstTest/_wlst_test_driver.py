@@ -19,37 +19,814 @@
  limitations under the License.
 """
 import unittest
+import fnmatch
+import imp
 import os
 from sets import Set
 import sys
+import threading
+import time
+import traceback
 
-import wlstModule as wlst
+# The time it takes to start the JVM is part of the performance summary
+_driver_start = time.time()
 
+import java.io.BufferedReader as BufferedReader
+import java.io.BufferedWriter as BufferedWriter
+import java.io.File as File
+import java.io.FileInputStream as FileInputStream
+import java.io.FileOutputStream as FileOutputStream
+import java.io.InputStreamReader as InputStreamReader
+import java.io.OutputStreamWriter as OutputStreamWriter
+import java.lang.Runnable as Runnable
+import java.lang.String as JavaString
 import java.lang.System as JavaSystem
+import java.lang.ThreadLocal as ThreadLocal
+import java.lang.management.ManagementFactory as ManagementFactory
+import java.net.InetAddress as InetAddress
+import java.net.ServerSocket as ServerSocket
+import java.net.SocketTimeoutException as SocketTimeoutException
+import java.security.MessageDigest as MessageDigest
+import java.util.Properties as Properties
+import java.util.concurrent.Executors as Executors
+import java.util.concurrent.TimeUnit as TimeUnit
+
+import jarray
+
+try:
+    import java.nio.file.Files as Files
+except ImportError:
+    Files = None
+
+# Coverage needs the ast module, which older Jython versions do not have
+try:
+    import ast
+    import org.python.core.BytecodeLoader as BytecodeLoader
+except ImportError:
+    ast = None
+    BytecodeLoader = None
 
 _WLST_TEST_PLUGIN_DEBUG_PROPERTY_NAME = 'wlst.test.plugin.debug'
+_DAEMON_TOKEN_VARIABLE_NAME = 'WLST_TEST_DAEMON_TOKEN'
 _debug = False
+_startup_steps = []
+_BUILT_MARKER_NAME = '.wlst-test-fixture'
+_thread_outputs = ThreadLocal()
 
+# wlstModule is imported the first time a test needs it, see _bootstrap_wlst
+wlst = None
+_wlst_steps = []
+_wlst_modules = []
 
-def run_tests(verbosity_level, test_files):
+
+def run_tests(verbosity_level, test_files, options=None, step_timer=None):
     """
     Execute the unit tests using the specified list of test files.
     :param verbosity_level: output level for the test runner
     :param test_files: list of test files
+    :param options: the driver options controlling the test selection, the results file, and when to stop
+    :param step_timer: the timer of the driver steps, or None
     :return:
     """
+    if options is None:
+        options = {}
+    if step_timer is None:
+        step_timer = _StepTimer()
+    test_filter = None
+    if options.has_key('test-filter'):
+        test_filter = _parse_test_filter(options['test-filter'])
+
+    imports_start = time.time()
     suite = unittest.TestSuite()
     for test_file in test_files:
         filename = os.path.basename(test_file)
         filename_without_extension = os.path.splitext(filename)[0]
+        import_start = time.time()
         test_module = __import__(filename_without_extension)
+        step_timer.add_import(filename_without_extension, import_start)
         if _debug:
             print 'Adding test module %s defined by file %s to the test suite' % (filename_without_extension, test_file)
-        suite.addTest(unittest.defaultTestLoader.loadTestsFromModule(test_module))
+        if test_filter is None:
+            suite.addTest(unittest.defaultTestLoader.loadTestsFromModule(test_module))
+        else:
+            test_names = _get_filtered_test_names(test_module, filename_without_extension, test_filter)
+            suite.addTest(unittest.defaultTestLoader.loadTestsFromNames(test_names, test_module))
+    step_timer.add_step('import test modules', imports_start)
 
-    result = unittest.TextTestRunner(verbosity=verbosity_level).run(suite)
+    # Bootstrap WLST before the tests start so that its initialization is not part of a test's duration
+    if wlst is None and _requires_wlst(suite):
+        _bootstrap_wlst()
+
+    results_writer = None
+    if options.has_key('results-file'):
+        results_writer = _open_writer(options['results-file'])
+    stop_file = None
+    if options.has_key('stop-file'):
+        stop_file = File(options['stop-file'])
+    max_failures = int(options.get('skip-after-failure-count', '0'))
+    resource_meter = _ResourceMeter(options.has_key('measure-retained-heap'))
+    run_state = _RunState(results_writer, stop_file, max_failures, resource_meter)
+    thread_count = int(options.get('thread-count', '1'))
+
+    run_start = time.time()
+    try:
+        if thread_count > 1:
+            result = _run_concurrently(suite, verbosity_level, run_state, thread_count)
+        else:
+            result = _TimingTestRunner(sys.stderr, verbosity_level, run_state).run(suite)
+    finally:
+        if results_writer is not None:
+            results_writer.close()
+        step_timer.add_step('run tests', run_start)
     return result
 
+def _parse_test_filter(filter_spec):
+    """
+    Parse the test filter, which is a comma-separated list of module[.Class][#method[+method]] entries.
+    :param filter_spec: the test filter
+    :return: the list of (module pattern, class pattern or None, list of method patterns or None) tuples
+    """
+    entries = []
+    for entry in filter_spec.split(','):
+        entry = entry.strip().replace('\\', '/')
+        method_patterns = None
+        index = entry.find('#')
+        if index != -1:
+            method_patterns = entry[index + 1:].split('+')
+            entry = entry[:index]
+        if entry.endswith('.py'):
+            entry = entry[:-3]
+        entry = entry[entry.rfind('/') + 1:]
+
+        class_pattern = None
+        index = entry.find('.')
+        if index != -1:
+            class_pattern = entry[index + 1:]
+            entry = entry[:index]
+        if len(entry) > 0:
+            entries.append((entry, class_pattern, method_patterns))
+    return entries
+
+def _is_test_case_class(value):
+    try:
+        return issubclass(value, unittest.TestCase)
+    except TypeError:
+        return False
+
+def _get_filtered_test_names(test_module, module_name, test_filter):
+    """
+    Get the Class.method names of the tests in the module that match the test filter.
+    :param test_module: the test module
+    :param module_name: the name of the test module
+    :param test_filter: the parsed test filter
+    :return: the list of test names
+    """
+    test_names = []
+    for class_name in dir(test_module):
+        test_class = getattr(test_module, class_name)
+        if not _is_test_case_class(test_class):
+            continue
+        for method_name in unittest.defaultTestLoader.getTestCaseNames(test_class):
+            for module_pattern, class_pattern, method_patterns in test_filter:
+                if _matches_test_filter_entry(module_name, class_name, method_name,
+                                              module_pattern, class_pattern, method_patterns):
+                    test_names.append('%s.%s' % (class_name, method_name))
+                    break
+    return test_names
+
+def _matches_test_filter_entry(module_name, class_name, method_name, module_pattern, class_pattern,
+                               method_patterns):
+    if not fnmatch.fnmatchcase(module_name, module_pattern):
+        return False
+    if class_pattern is not None and not fnmatch.fnmatchcase(class_name, class_pattern):
+        return False
+    if method_patterns is None:
+        return True
+    for method_pattern in method_patterns:
+        if fnmatch.fnmatchcase(method_name, method_pattern):
+            return True
+    return False
+
+class _RunState:
+    """
+    The state that the test results of a run share: the results file, the number of failed tests, the
+    resource meter, and whether the run was stopped.  The test results of the test groups that run
+    concurrently update it under its lock.
+    """
+    def __init__(self, results_writer, stop_file, max_failures, resource_meter):
+        self._results_writer = results_writer
+        self._stop_file = stop_file
+        self._max_failures = max_failures
+        self.resource_meter = resource_meter
+        self._failure_count = 0
+        self._stopped = False
+        self._lock = threading.RLock()
+
+    def add_record(self, record):
+        """
+        Stream the outcome of a test to the results file and decide whether the run stops.
+        :param record: the test record
+        :return: the message to print if this test stopped the run, or None
+        """
+        self._lock.acquire()
+        try:
+            if self._results_writer is not None:
+                cpu_millis, heap_before, heap_after, threads_before, threads_after = record[5]
+                self._results_writer.write('%s\t%s\t%d\t%d\t%d\t%d\t%d\t%d\n'
+                                           % (record[0], record[1], int(record[2] * 1000), cpu_millis,
+                                              heap_before, heap_after, threads_before, threads_after))
+                self._results_writer.flush()
+
+            if record[1] == 'failure' or record[1] == 'error':
+                self._failure_count = self._failure_count + 1
+            if not self._stopped:
+                if self._max_failures > 0 and self._failure_count >= self._max_failures:
+                    self._stopped = True
+                    return 'Skipping the remaining tests after %d failed tests' % self._failure_count
+                elif self._stop_file is not None and self._stop_file.exists():
+                    self._stopped = True
+                    return 'Skipping the remaining tests since tests failed in another WLST process'
+            return None
+        finally:
+            self._lock.release()
+
+    def is_stopped(self):
+        return self._stopped
+
+class _TimingTestResult(unittest._TextTestResult):
+    """
+    A text test result that also records the outcome, duration and resource usage of each test, streams
+    each outcome to the results file as soon as the test completes, and stops the run once too many tests
+    have failed in this process or the plugin has created the stop file.
+    """
+    def __init__(self, stream, descriptions, verbosity, run_state, output=None):
+        unittest._TextTestResult.__init__(self, stream, descriptions, verbosity)
+        # Each record is a tuple of the test id, status, duration in seconds, error type, error details, and
+        # the resource usage tuple of _ResourceMeter.get_usage
+        self.test_records = []
+        self._run_state = run_state
+        self._output = output
+        # The tests of the groups that run concurrently share the heap and threads of the JVM, so only the
+        # tests that run alone measure them
+        self._measure_jvm = output is None
+        self._current_test = None
+        self._start_time = 0
+        self._start_snapshot = None
+        self._outcome = None
+
+    def startTest(self, test):
+        self._current_test = test
+        self._outcome = ('pass', None, None)
+        self._start_snapshot = self._run_state.resource_meter.snapshot(self._measure_jvm)
+        self._start_time = time.time()
+        unittest._TextTestResult.startTest(self, test)
+
+    def stopTest(self, test):
+        unittest._TextTestResult.stopTest(self, test)
+        duration = time.time() - self._start_time
+        usage = self._run_state.resource_meter.get_usage(self._start_snapshot,
+                                                         self._run_state.resource_meter.snapshot(self._measure_jvm))
+        status, error_type, details = self._outcome
+        self._current_test = None
+        self._add_record((test.id(), status, duration, error_type, details, usage))
+        if self._output is not None:
+            self._output.emit()
+
+    def addError(self, test, err):
+        unittest._TextTestResult.addError(self, test, err)
+        self._set_outcome(test, 'error', err)
+
+    def addFailure(self, test, err):
+        unittest._TextTestResult.addFailure(self, test, err)
+        self._set_outcome(test, 'failure', err)
+
+    def addSkip(self, test, reason):
+        unittest._TextTestResult.addSkip(self, test, reason)
+        self._outcome = ('skipped', None, str(reason))
+
+    def _set_outcome(self, test, status, err):
+        error_type = getattr(err[0], '__name__', str(err[0]))
+        details = ''.join(traceback.format_exception(err[0], err[1], err[2]))
+        if test is self._current_test:
+            self._outcome = (status, error_type, details)
+        else:
+            # Class and module fixture errors are reported outside of any test
+            self._add_record((test.id(), status, 0, error_type, details, _ResourceMeter.NO_USAGE))
+
+    def _add_record(self, record):
+        self.test_records.append(record)
+        message = self._run_state.add_record(record)
+        if message is not None:
+            self.stream.writeln(message)
+        if self._run_state.is_stopped() and not self.shouldStop:
+            self.stop()
+
+class _TimingTestRunner(unittest.TextTestRunner):
+    """
+    A text test runner that uses the timing test result.
+    """
+    def __init__(self, stream, verbosity, run_state):
+        unittest.TextTestRunner.__init__(self, stream=stream, verbosity=verbosity)
+        self._run_state = run_state
+
+    def _makeResult(self):
+        return _TimingTestResult(self.stream, self.descriptions, self.verbosity, self._run_state)
+
+class _ResourceMeter:
+    """
+    Measures the resources a test uses with the platform MXBeans: the CPU time of the thread running it, and
+    the heap used and live threads of the JVM before and after it.  The heap is mostly garbage unless it is
+    measured right after a garbage collection, which takes too long to do around every test by default, so
+    it is only measured when the plugin asks for the retained heap.
+    """
+    # The usage of a test that was not measured
+    NO_USAGE = (-1, -1, -1, -1, -1)
+
+    def __init__(self, measure_retained_heap):
+        self._memory_bean = ManagementFactory.getMemoryMXBean()
+        self._thread_bean = ManagementFactory.getThreadMXBean()
+        self._measure_retained_heap = measure_retained_heap
+        self._cpu_time_supported = self._thread_bean.isCurrentThreadCpuTimeSupported()
+        if self._cpu_time_supported and not self._thread_bean.isThreadCpuTimeEnabled():
+            try:
+                self._thread_bean.setThreadCpuTimeEnabled(True)
+            except:
+                self._cpu_time_supported = False
+
+    def snapshot(self, measure_jvm):
+        """
+        Take a snapshot of the resources used so far.
+        :param measure_jvm: whether the heap and threads of the JVM are measured along with the CPU time
+        :return: the tuple of the CPU time of the current thread in nanoseconds, the heap used in bytes and
+                 the live thread count, each of which is -1 if it is not measured
+        """
+        cpu_nanos = -1
+        if self._cpu_time_supported:
+            cpu_nanos = self._thread_bean.getCurrentThreadCpuTime()
+        heap_used = -1
+        thread_count = -1
+        if measure_jvm:
+            if self._measure_retained_heap:
+                self._memory_bean.gc()
+                heap_used = self._memory_bean.getHeapMemoryUsage().getUsed()
+            thread_count = self._thread_bean.getThreadCount()
+        return cpu_nanos, heap_used, thread_count
+
+    def get_usage(self, start_snapshot, end_snapshot):
+        """
+        Get the resource usage of a test from the snapshots taken before and after it.
+        :return: the tuple of the CPU time in milliseconds, the heap used in bytes before and after, and the
+                 live thread count before and after, each of which is -1 if it was not measured
+        """
+        start_cpu, start_heap, start_threads = start_snapshot
+        end_cpu, end_heap, end_threads = end_snapshot
+        cpu_millis = -1
+        if start_cpu >= 0 and end_cpu >= 0:
+            cpu_millis = (end_cpu - start_cpu) / 1000000
+        return cpu_millis, start_heap, end_heap, start_threads, end_threads
+
+def _run_concurrently(suite, verbosity_level, run_state, thread_count):
+    """
+    Run the test groups of the suite on a pool of threads, followed by the tests marked as not thread-safe
+    on this thread.  Each test group gets its own test result and buffered output, and the results are
+    merged into one once all tests have run.
+    :param suite: the test suite
+    :param verbosity_level: output level for the test results
+    :param run_state: the state shared by the test results of the run
+    :param thread_count: the number of threads
+    :return: the merged unittest TestResult
+    """
+    stream = _writeln_stream(sys.stderr)
+    result = _TimingTestResult(stream, True, verbosity_level, run_state)
+    groups, serial_suite = _get_test_groups(suite)
+    if _debug:
+        print 'Running %s test groups on %s threads and %s tests after them' % \
+              (len(groups), thread_count, serial_suite.countTestCases())
+
+    start_time = time.time()
+    saved_stdout = sys.stdout
+    saved_stderr = sys.stderr
+    output_lock = threading.Lock()
+    tasks = []
+    executor = Executors.newFixedThreadPool(thread_count)
+    sys.stdout = _ThreadOutput(saved_stdout)
+    sys.stderr = _ThreadOutput(saved_stderr)
+    try:
+        try:
+            for group in groups:
+                output = _BufferedOutput(saved_stderr, output_lock)
+                group_result = _TimingTestResult(_writeln_stream(output), True, verbosity_level, run_state, output)
+                task = _TestGroupTask(group, group_result, output)
+                tasks.append(task)
+                executor.submit(task)
+        finally:
+            executor.shutdown()
+            executor.awaitTermination(1, TimeUnit.DAYS)
+    finally:
+        sys.stdout = saved_stdout
+        sys.stderr = saved_stderr
+
+    for task in tasks:
+        _merge_result(result, task.result)
+    if not run_state.is_stopped():
+        serial_suite.run(result)
+    _print_summary(stream, result, time.time() - start_time)
+    return result
+
+def _writeln_stream(stream):
+    # The stream wrapper of the text test runner moved between unittest versions
+    return unittest.TextTestRunner(stream=stream).stream
+
+def _get_test_groups(suite):
+    """
+    Split the suite into test groups that can run concurrently.  The tests of a class form a group, unless
+    its module has module fixtures, in which case the tests of the module do.  The tests of the classes and
+    modules marked with a not_thread_safe attribute are kept apart.
+    :param suite: the test suite
+    :return: a tuple of the list of test group suites and the suite of the tests that are not thread-safe
+    """
+    groups = []
+    group_indexes = {}
+    serial_suite = unittest.TestSuite()
+    for test in _get_tests(suite):
+        module_name = test.__class__.__module__
+        test_module = sys.modules.get(module_name)
+        if _has_marker(test, 'not_thread_safe') or _has_marker(test_module, 'not_thread_safe'):
+            serial_suite.addTest(test)
+            continue
+
+        group_key = module_name
+        if not hasattr(test_module, 'setUpModule') and not hasattr(test_module, 'tearDownModule'):
+            group_key = '%s.%s' % (module_name, test.__class__.__name__)
+        if not group_indexes.has_key(group_key):
+            group_indexes[group_key] = len(groups)
+            groups.append(unittest.TestSuite())
+        groups[group_indexes[group_key]].addTest(test)
+    return groups, serial_suite
+
+def _get_tests(test_or_suite):
+    if hasattr(test_or_suite, '_tests'):
+        tests = []
+        for test in test_or_suite._tests:
+            tests.extend(_get_tests(test))
+        return tests
+    return [test_or_suite]
+
+def _merge_result(result, group_result):
+    result.testsRun = result.testsRun + group_result.testsRun
+    result.errors.extend(group_result.errors)
+    result.failures.extend(group_result.failures)
+    result.test_records.extend(group_result.test_records)
+    for name in ('skipped', 'expectedFailures', 'unexpectedSuccesses'):
+        if hasattr(result, name):
+            getattr(result, name).extend(getattr(group_result, name))
+
+def _print_summary(stream, result, time_taken):
+    """
+    Print the errors and the summary of a concurrent run the way the text test runner does.
+    """
+    result.printErrors()
+    stream.writeln(result.separator2)
+    run = result.testsRun
+    stream.writeln('Ran %d test%s in %.3fs' % (run, run != 1 and 's' or '', time_taken))
+    stream.writeln()
+    infos = []
+    if not result.wasSuccessful():
+        stream.write('FAILED')
+        if len(result.failures) > 0:
+            infos.append('failures=%d' % len(result.failures))
+        if len(result.errors) > 0:
+            infos.append('errors=%d' % len(result.errors))
+    else:
+        stream.write('OK')
+    skipped = len(getattr(result, 'skipped', []))
+    if skipped > 0:
+        infos.append('skipped=%d' % skipped)
+    if len(infos) > 0:
+        stream.writeln(' (%s)' % ', '.join(infos))
+    else:
+        stream.writeln()
+
+class _TestGroupTask(Runnable):
+    def __init__(self, group, result, output):
+        self.result = result
+        self._group = group
+        self._output = output
+
+    def run(self):
+        _thread_outputs.set(self._output)
+        try:
+            try:
+                if not self.result._run_state.is_stopped():
+                    self._group.run(self.result)
+            except:
+                traceback.print_exc()
+        finally:
+            _thread_outputs.remove()
+            self._output.emit()
+
+class _BufferedOutput:
+    """
+    The output of a test group running on a pool thread, which is buffered and written to the output of the
+    run after each test so that the output of concurrent tests does not mix.
+    """
+    def __init__(self, target, lock):
+        self._target = target
+        self._lock = lock
+        self._buffer = []
+        self.softspace = 0
+
+    def write(self, text):
+        self._buffer.append(text)
+
+    def writelines(self, lines):
+        for line in lines:
+            self.write(line)
+
+    def flush(self):
+        return
+
+    def emit(self):
+        if len(self._buffer) == 0:
+            return
+        text = ''.join(self._buffer)
+        self._buffer = []
+        self._lock.acquire()
+        try:
+            self._target.write(text)
+            self._target.flush()
+        finally:
+            self._lock.release()
+
+class _ThreadOutput:
+    """
+    The sys.stdout or sys.stderr of a concurrent run, which sends the output of a pool thread to the buffered
+    output of its test group and the output of other threads to the original stream.
+    """
+    def __init__(self, target):
+        self.__dict__['_target'] = target
+
+    def __getattr__(self, name):
+        # The print statement keeps its softspace flag on the stream, which must not be shared between threads
+        return getattr(self._get_output(), name)
+
+    def __setattr__(self, name, value):
+        setattr(self._get_output(), name, value)
+
+    def write(self, text):
+        self._get_output().write(text)
+
+    def writelines(self, lines):
+        for line in lines:
+            self.write(line)
+
+    def flush(self):
+        self._get_output().flush()
+
+    def _get_output(self):
+        output = _thread_outputs.get()
+        if output is None:
+            return self._target
+        return output
+
+def _split_test_id(test_id):
+    index = test_id.rfind('.')
+    if index == -1:
+        return test_id, test_id
+    return test_id[:index], test_id[index + 1:]
+
+def _to_text(value):
+    try:
+        return str(value)
+    except:
+        return repr(value)
+
+def _xml_escape(value):
+    text = _to_text(value)
+    text = text.replace('&', '&amp;').replace('<', '&lt;').replace('>', '&gt;').replace('"', '&quot;')
+    chars = []
+    for char in text:
+        if char < ' ' and char not in '\t\n\r':
+            chars.append('?')
+        else:
+            chars.append(char)
+    return ''.join(chars)
+
+def _open_writer(path):
+    parent = File(path).getParentFile()
+    if parent is not None:
+        parent.mkdirs()
+    return BufferedWriter(OutputStreamWriter(FileOutputStream(path), 'UTF-8'))
+
+class _StepTimer:
+    """
+    The durations of the driver steps and test module imports of a test run, which the plugin adds to
+    its performance summary.
+    """
+    def __init__(self):
+        global _startup_steps
+
+        # The startup steps are only reported by the first test run in this JVM
+        self._steps = _startup_steps
+        self._imports = []
+        _startup_steps = []
+
+    def add_step(self, name, start_time):
+        self._steps.append((name, _elapsed_millis(start_time)))
+
+    def add_duration(self, name, millis):
+        self._steps.append((name, millis))
+
+    def add_import(self, module_name, start_time):
+        self._imports.append((module_name, _elapsed_millis(start_time)))
+
+    def write(self, timings_file):
+        writer = _open_writer(timings_file)
+        try:
+            for name, millis in self._steps:
+                writer.write('step\t%s\t%s' % (name, millis))
+                writer.newLine()
+            for module_name, millis in self._imports:
+                writer.write('import\t%s\t%s' % (module_name, millis))
+                writer.newLine()
+        finally:
+            writer.close()
+
+def _elapsed_millis(start_time):
+    return long((time.time() - start_time) * 1000)
+
+def _record_startup_steps():
+    """
+    Remember how long it took to get the driver running so that the first test run can report it.
+    """
+    jvm_start_millis = ManagementFactory.getRuntimeMXBean().getStartTime()
+    _startup_steps.append(('WLST JVM startup', max(0, long(_driver_start * 1000) - jvm_start_millis)))
+
+class _WlstImportHook:
+    """
+    The import hook that bootstraps WLST when a test module imports wlstModule, so that the test runs whose
+    modules do not use WLST do not pay for initializing it.
+    """
+    def find_module(self, fullname, path=None):
+        if fullname == 'wlstModule' and path is None:
+            return self
+        return None
+
+    def load_module(self, fullname):
+        return _bootstrap_wlst()
+
+_wlst_import_hook = _WlstImportHook()
+
+def _install_wlst_import_hook():
+    """
+    Defer importing wlstModule until a test needs it, or import it now if this Jython has no import hooks.
+    """
+    if wlst is not None:
+        return
+    if hasattr(sys, 'meta_path'):
+        if _wlst_import_hook not in sys.meta_path:
+            sys.meta_path.append(_wlst_import_hook)
+    else:
+        _bootstrap_wlst()
+
+def _bootstrap_wlst():
+    """
+    Import wlstModule and silence it, once per JVM.  The modules loaded with it are kept by the daemon
+    between test runs.
+    :return: the wlstModule module
+    """
+    global wlst
+
+    if wlst is None:
+        if hasattr(sys, 'meta_path') and _wlst_import_hook in sys.meta_path:
+            sys.meta_path.remove(_wlst_import_hook)
+        saved_modules = sys.modules.keys()
+        import_start = time.time()
+        wlst = __import__('wlstModule')
+        _silence_wlst()
+        _wlst_steps.append(('import wlstModule', _elapsed_millis(import_start)))
+        for module_name in sys.modules.keys():
+            if module_name not in saved_modules:
+                _wlst_modules.append(module_name)
+        if _debug:
+            print 'Imported wlstModule in %s ms' % _wlst_steps[-1][1]
+    return wlst
+
+def _requires_wlst(test_or_suite):
+    """
+    Whether a test, or a test in the suite, is marked as needing WLST by a requires_wlst attribute on its test
+    method, class or module.
+    """
+    if hasattr(test_or_suite, '_tests'):
+        for test in test_or_suite._tests:
+            if _requires_wlst(test):
+                return True
+        return False
+
+    method = getattr(test_or_suite, test_or_suite.id().split('.')[-1], None)
+    test_module = sys.modules.get(test_or_suite.__class__.__module__)
+    for value in (method, test_or_suite, test_module):
+        if _has_marker(value, 'requires_wlst'):
+            return True
+    return False
+
+def _has_marker(value, marker_name):
+    """
+    Whether the test method, class or module has the marker attribute set, ignoring the marker decorator
+    itself when a module imports it.
+    """
+    marker = getattr(value, marker_name, False)
+    return not callable(marker) and marker
+
+def requires_wlst(value):
+    """
+    Mark a test method or class as needing WLST, so that WLST is bootstrapped before the tests run.
+    """
+    value.requires_wlst = True
+    return value
+
+def not_thread_safe(value):
+    """
+    Mark a test class as using the global state of WLST, so that its tests do not run concurrently with others.
+    """
+    value.not_thread_safe = True
+    return value
+
+def _write_pid_file(pid_file):
+    """
+    Write the process ID of this JVM so that the plugin can get a thread dump of it and kill it when it hangs.
+    :param pid_file: the file to write
+    """
+    pid = ManagementFactory.getRuntimeMXBean().getName().split('@')[0]
+    writer = _open_writer(pid_file)
+    try:
+        writer.write(pid)
+        writer.newLine()
+    finally:
+        writer.close()
+
+def _write_jvm_info(jvm_info_file):
+    """
+    Write the properties that identify the JVM and its classpath so that the plugin can create its class data
+    sharing archive with the same JVM and notice when the JVM changes.
+    :param jvm_info_file: the file to write
+    """
+    properties = Properties()
+    for name in ('java.home', 'java.vm.version', 'java.class.path'):
+        properties.setProperty(name, JavaSystem.getProperty(name, ''))
+    File(jvm_info_file).getParentFile().mkdirs()
+    output_stream = FileOutputStream(jvm_info_file)
+    try:
+        properties.store(output_stream, None)
+    finally:
+        output_stream.close()
+
+def _write_surefire_reports(reports_dir, result):
+    """
+    Write a surefire-format XML report for each test class in the result.
+    :param reports_dir: the directory to write the reports to
+    :param result: the timing test result
+    """
+    suites = {}
+    suite_names = []
+    for record in result.test_records:
+        class_name = _split_test_id(record[0])[0]
+        if not suites.has_key(class_name):
+            suites[class_name] = []
+            suite_names.append(class_name)
+        suites[class_name].append(record)
+
+    timestamp = time.strftime('%Y-%m-%dT%H:%M:%S')
+    for class_name in suite_names:
+        records = suites[class_name]
+        counts = {'pass': 0, 'failure': 0, 'error': 0, 'skipped': 0}
+        total_time = 0
+        for record in records:
+            counts[record[1]] = counts[record[1]] + 1
+            total_time = total_time + record[2]
+
+        writer = _open_writer(os.path.join(reports_dir, 'TEST-%s.xml' % class_name))
+        try:
+            writer.write('<?xml version="1.0" encoding="UTF-8"?>\n')
+            writer.write('<testsuite name="%s" tests="%d" failures="%d" errors="%d" skipped="%d" time="%.3f" '
+                         'timestamp="%s">\n' % (_xml_escape(class_name), len(records), counts['failure'],
+                                                 counts['error'], counts['skipped'], total_time, timestamp))
+            for test_id, status, duration, error_type, details, usage in records:
+                writer.write('  <testcase name="%s" classname="%s" time="%.3f"'
+                             % (_xml_escape(_split_test_id(test_id)[1]), _xml_escape(class_name), duration))
+                if status == 'pass':
+                    writer.write('/>\n')
+                elif status == 'skipped':
+                    writer.write('>\n    <skipped message="%s"/>\n  </testcase>\n' % _xml_escape(details))
+                else:
+                    message = details.strip().split('\n')[-1]
+                    writer.write('>\n    <%s message="%s" type="%s">%s</%s>\n  </testcase>\n'
+                                 % (status, _xml_escape(message), _xml_escape(error_type), _xml_escape(details),
+                                    status))
+            writer.write('</testsuite>\n')
+        finally:
+            writer.close()
+
 def _compute_python_path(main_execute_dir, test_execute_dir, test_files):
     path_list = [
         main_execute_dir.replace('\\', '/'),
@@ -63,6 +840,25 @@ def _compute_python_path(main_execute_dir, test_execute_dir, test_files):
 
     return path_list
 
+def _parse_arguments(args):
+    """
+    Split the arguments into the driver options, which start with --, and the positional arguments.
+    :param args: the list of arguments
+    :return: a tuple of the options dictionary and the list of positional arguments
+    """
+    options = {}
+    positional_args = []
+    for arg in args:
+        if arg.startswith('--'):
+            separator_index = arg.find('=')
+            if separator_index == -1:
+                options[arg[2:]] = 'true'
+            else:
+                options[arg[2:separator_index]] = arg[separator_index + 1:]
+        else:
+            positional_args.append(arg)
+    return options, positional_args
+
 def _silence_wlst():
     wlst.WLS.setLogToStdOut(False)
     wlst.WLS.setShowLSResult(False)
@@ -72,32 +868,29 @@ def _silence_wlst():
     wlst.WLS.getCommandExceptionHandler().setSilent(True)
     return
 
-def main():
-    global _debug
-
-    _silence_wlst()
-
-    debug_value = JavaSystem.getProperty(_WLST_TEST_PLUGIN_DEBUG_PROPERTY_NAME, 'false')
-    if debug_value == 'true':
-        _debug = True
-        print 'WLST Test Driver arguments:'
-        for index, arg in enumerate(sys.argv):
-            print '    sys.argv[%s] = %s' % (str(index), arg)
-        print '\nWLST Test Driver environment:'
-        for env_name, env_value in os.environ.iteritems():
-            print '    %s = %s' % (str(env_name), str(env_value))
-
-    # The first three arg are:
+def _run(options, args):
+    """
+    Run the tests described by the driver options and positional arguments.
+    :param options: the driver options
+    :param args: the positional arguments
+    :return: the unittest TestResult
+    """
+    # The first three positional args are:
     #     - the location of the python files being tested
     #     - the location of the python test files to be executed
     #     - the verbosity level for the unittest suite
     #
     # All additional args are the test files to execute.
     #
-    main_execute_dir = sys.argv[1]
-    test_execute_dir = sys.argv[2]
-    test_verbosity = int(sys.argv[3])
-    test_files = list(sys.argv[4:])
+    main_execute_dir = args[0]
+    test_execute_dir = args[1]
+    test_verbosity = int(args[2])
+    test_files = list(args[3:])
+
+    step_timer = _StepTimer()
+    if options.has_key('dont-write-bytecode'):
+        sys.dont_write_bytecode = True
+
     paths = _compute_python_path(main_execute_dir, test_execute_dir, test_files)
 
     for path in paths:
@@ -105,9 +898,931 @@ def main():
             print 'Appending %s to python path' % path
         sys.path.append(path)
 
-    result = run_tests(test_verbosity, test_files)
+    class_cache = None
+    if options.has_key('class-cache') and options.has_key('class-cache-manifest'):
+        step_start = time.time()
+        class_cache = _CompiledModuleCache(options['class-cache'], options['class-cache-manifest'])
+        class_cache.restore()
+        step_timer.add_step('restore compiled modules', step_start)
+        precompile_threads = int(options.get('precompile', '0'))
+        if precompile_threads > 0:
+            step_start = time.time()
+            class_cache.precompile(precompile_threads)
+            step_timer.add_step('precompile modules', step_start)
+
+    domain_fixtures = _install_fixtures_module(options)
+    coverage = None
+    if options.has_key('coverage-data'):
+        coverage = _start_coverage(main_execute_dir, options.get('coverage-cache'))
+
+    try:
+        result = run_tests(test_verbosity, test_files, options, step_timer)
+    finally:
+        while len(_wlst_steps) > 0:
+            step_name, step_millis = _wlst_steps.pop(0)
+            step_timer.add_duration(step_name, step_millis)
+        if coverage is not None:
+            _stop_coverage(coverage)
+        if domain_fixtures is not None:
+            domain_fixtures.close(step_timer)
+        if class_cache is not None:
+            step_start = time.time()
+            class_cache.harvest()
+            step_timer.add_step('save compiled modules', step_start)
+    if options.has_key('reports-dir'):
+        step_start = time.time()
+        _write_surefire_reports(options['reports-dir'], result)
+        step_timer.add_step('write XML reports', step_start)
+    if coverage is not None:
+        step_start = time.time()
+        coverage.write(options['coverage-data'])
+        step_timer.add_step('write coverage data', step_start)
+    if options.has_key('timings-file'):
+        step_timer.write(options['timings-file'])
+    return result
+
+class _CompiledModuleCache:
+    """
+    The cache of the Jython-compiled classes of the python modules listed in the manifest written by the
+    plugin.  The cache entries are keyed by the Jython version and the module's content hash and
+    modification time, since Jython recompiles a class whose recorded source modification time does not
+    match the module's.
+    """
+    def __init__(self, cache_dir, manifest_file):
+        self._cache_dir = File(cache_dir, _sha1_hex(sys.version))
+        self._entries = _read_manifest(manifest_file)
+        self._class_times = {}
+
+    def restore(self):
+        """
+        Copy the cached class of each module that does not have one next to it and remember the
+        modification time of each module's class so that the classes compiled by this run can be found.
+        """
+        restored = 0
+        for source_path, cache_key in self._entries:
+            class_file = _get_class_file(source_path)
+            cache_file = File(self._cache_dir, cache_key)
+            if not class_file.exists() and cache_file.isFile():
+                try:
+                    _copy_file(cache_file, class_file)
+                    restored = restored + 1
+                except:
+                    if _debug:
+                        traceback.print_exc()
+            self._class_times[source_path] = class_file.lastModified()
+        if _debug:
+            print 'Restored %s compiled modules from %s' % (restored, self._cache_dir)
+
+    def precompile(self, thread_count):
+        """
+        Compile the modules that still have no class in parallel before the tests import them.
+        :param thread_count: the number of compiler threads
+        """
+        try:
+            import py_compile
+        except ImportError:
+            return
+
+        executor = Executors.newFixedThreadPool(thread_count)
+        try:
+            for source_path, cache_key in self._entries:
+                if not _get_class_file(source_path).exists():
+                    executor.submit(_CompileTask(py_compile, source_path))
+        finally:
+            executor.shutdown()
+            executor.awaitTermination(1, TimeUnit.HOURS)
+
+    def harvest(self):
+        """
+        Copy the classes that were compiled during this run, or that are up to date but not yet cached,
+        into the cache.
+        """
+        harvested = 0
+        for source_path, cache_key in self._entries:
+            class_file = _get_class_file(source_path)
+            if not class_file.isFile():
+                continue
+            cache_file = File(self._cache_dir, cache_key)
+            compiled = class_file.lastModified() != self._class_times.get(source_path, 0)
+            if compiled or (not cache_file.exists() and class_file.lastModified() >= File(source_path).lastModified()):
+                try:
+                    self._cache_dir.mkdirs()
+                    _copy_file(class_file, cache_file)
+                    harvested = harvested + 1
+                except:
+                    if _debug:
+                        traceback.print_exc()
+        if _debug:
+            print 'Saved %s compiled modules to %s' % (harvested, self._cache_dir)
+
+class _CompileTask(Runnable):
+    def __init__(self, py_compile, source_path):
+        self._py_compile = py_compile
+        self._source_path = source_path
+
+    def run(self):
+        try:
+            self._py_compile.compile(self._source_path)
+        except:
+            # The module will be compiled again when it is imported, which reports the error with the test
+            if _debug:
+                traceback.print_exc()
+
+def _read_manifest(manifest_file):
+    """
+    Read the compiled module manifest, whose lines hold the path, size, modification time and hash of a module.
+    :param manifest_file: the manifest file
+    :return: the list of (module path, cache entry name) tuples
+    """
+    entries = []
+    reader = BufferedReader(InputStreamReader(FileInputStream(manifest_file), 'UTF-8'))
+    try:
+        line = reader.readLine()
+        while line is not None:
+            fields = line.split('\t')
+            if len(fields) == 4:
+                entries.append((fields[0], '%s-%s.class' % (fields[3], fields[2])))
+            line = reader.readLine()
+    finally:
+        reader.close()
+    return entries
+
+def _get_class_file(source_path):
+    return File(source_path[:-3] + '$py.class')
+
+def _sha1_hex(text):
+    digest = MessageDigest.getInstance('SHA-1').digest(JavaString(text).getBytes('UTF-8'))
+    hex_digits = []
+    for value in digest:
+        hex_digits.append('%02x' % (value & 0xff))
+    return ''.join(hex_digits)
+
+def _copy_file(source_file, target_file):
+    """
+    Copy the file to a temporary file next to the target and rename it so that concurrent
+    test runs never see a partially written file.
+    """
+    temp_file = File(target_file.getPath() + '.' + str(JavaSystem.nanoTime()) + '.tmp')
+    input_stream = FileInputStream(source_file)
+    try:
+        output_stream = FileOutputStream(temp_file)
+        try:
+            buffer = jarray.zeros(8192, 'b')
+            count = input_stream.read(buffer)
+            while count != -1:
+                output_stream.write(buffer, 0, count)
+                count = input_stream.read(buffer)
+        finally:
+            output_stream.close()
+    finally:
+        input_stream.close()
+    if not temp_file.renameTo(target_file):
+        target_file.delete()
+        if not temp_file.renameTo(target_file):
+            temp_file.delete()
+
+class _CoverageCollector:
+    """
+    The import hook that records the line coverage of the python modules under the main execution directory.
+    Instead of tracing every line, the hook adds a statement that sets an entry of a per-module list before
+    each statement of the module's syntax tree, so the overhead is a list assignment per executed statement.
+    The instrumented classes are cached by the Jython version and the module's path and content hash so that
+    unchanged modules are not instrumented again by later builds.
+    """
+    def __init__(self, main_dir, cache_dir):
+        self._main_dir = _normalize_path(main_dir)
+        self._cache_dir = None
+        if cache_dir is not None:
+            self._cache_dir = File(cache_dir, _sha1_hex(sys.version))
+        self._found = {}
+        self._modules = {}
+        self._instrumented = 0
+        self._cached = 0
+
+    def find_module(self, fullname, path=None):
+        if path is None:
+            path = sys.path
+        name = fullname.split('.')[-1]
+        for entry in path:
+            if not self._is_main_path(entry):
+                continue
+            package_file = os.path.join(entry, name, '__init__.py')
+            if os.path.isfile(package_file):
+                self._found[fullname] = (package_file, True)
+                return self
+            module_file = os.path.join(entry, name + '.py')
+            if os.path.isfile(module_file):
+                self._found[fullname] = (module_file, False)
+                return self
+        return None
+
+    def load_module(self, fullname):
+        source_path, is_package = self._found[fullname]
+        module = sys.modules.get(fullname)
+        is_new = module is None
+        if is_new:
+            module = imp.new_module(fullname)
+            sys.modules[fullname] = module
+        module.__file__ = source_path
+        module.__loader__ = self
+        if is_package:
+            module.__path__ = [os.path.dirname(source_path)]
+        try:
+            code, hits = self._get_code(fullname.split('.')[-1], source_path)
+            module.__dict__['__wlst_coverage__'] = hits
+            exec code in module.__dict__
+        except:
+            if is_new:
+                del sys.modules[fullname]
+            raise
+        return sys.modules[fullname]
+
+    def write(self, data_file):
+        """
+        Write the executable and executed lines of each module under the main execution directory, including
+        the modules that no test imported, to the data file that the plugin merges into its report.
+        :param data_file: the file to write
+        """
+        for source_path in _find_python_files(self._main_dir):
+            if not self._modules.has_key(source_path):
+                try:
+                    source, source_hash, cache_key = _read_source(source_path)
+                    lines = self._read_cached_lines(cache_key)
+                    if lines is None:
+                        lines = _instrument(_parse_source(source, source_path))
+                    self._modules[source_path] = (source_hash, lines, [])
+                except:
+                    if _debug:
+                        traceback.print_exc()
+
+        writer = _open_writer(data_file)
+        try:
+            for source_path, (source_hash, lines, hits) in self._modules.items():
+                hit_lines = []
+                for line in lines:
+                    if line < len(hits) and hits[line]:
+                        hit_lines.append(line)
+                relative_path = source_path[len(self._main_dir) + 1:].replace(os.sep, '/')
+                fields = (relative_path, source_hash, _join_lines(lines), _join_lines(hit_lines))
+                writer.write('%s\t%s\t%s\t%s' % fields)
+                writer.newLine()
+        finally:
+            writer.close()
+        if _debug:
+            print 'Instrumented %s modules and loaded %s from %s' % (self._instrumented, self._cached, self._cache_dir)
+
+    def _is_main_path(self, entry):
+        entry = _normalize_path(entry)
+        return entry == self._main_dir or entry.startswith(self._main_dir + os.sep)
+
+    def _get_code(self, name, source_path):
+        source_path = _normalize_path(source_path)
+        source, source_hash, cache_key = _read_source(source_path)
+        class_name = name + '$py'
+        code = None
+        lines = self._read_cached_lines(cache_key)
+        if lines is not None:
+            class_file = File(self._cache_dir, cache_key + '$py.class')
+            if class_file.isFile():
+                try:
+                    code = BytecodeLoader.makeCode(class_name, Files.readAllBytes(class_file.toPath()), source_path)
+                    self._cached = self._cached + 1
+                except:
+                    if _debug:
+                        traceback.print_exc()
+
+        if code is None:
+            tree = _parse_source(source, source_path)
+            lines = _instrument(tree)
+            class_bytes = _compile_to_class(tree, class_name, source_path)
+            if class_bytes is None:
+                tree = _parse_source(source, source_path)
+                _instrument(tree)
+                code = compile(tree, source_path, 'exec')
+            else:
+                code = BytecodeLoader.makeCode(class_name, class_bytes, source_path)
+                self._write_cache_file(cache_key + '$py.class', class_bytes)
+            self._write_cache_file(cache_key + '.lines', JavaString(_join_lines(lines)).getBytes('UTF-8'))
+            self._instrumented = self._instrumented + 1
+
+        hits = [0] * (_max_line(lines) + 1)
+        self._modules[source_path] = (source_hash, lines, hits)
+        return code, hits
+
+    def _read_cached_lines(self, cache_key):
+        if self._cache_dir is None:
+            return None
+        lines_file = File(self._cache_dir, cache_key + '.lines')
+        if not lines_file.isFile():
+            return None
+        lines = []
+        for line in JavaString(Files.readAllBytes(lines_file.toPath()), 'UTF-8').split(','):
+            if len(line) > 0:
+                lines.append(int(line))
+        return lines
+
+    def _write_cache_file(self, name, data):
+        if self._cache_dir is None:
+            return
+        try:
+            self._cache_dir.mkdirs()
+            target_file = File(self._cache_dir, name)
+            temp_file = File(target_file.getPath() + '.' + str(JavaSystem.nanoTime()) + '.tmp')
+            Files.write(temp_file.toPath(), data)
+            if not temp_file.renameTo(target_file):
+                temp_file.delete()
+        except:
+            if _debug:
+                traceback.print_exc()
+
+def _start_coverage(main_dir, cache_dir):
+    """
+    Install the coverage import hook, which needs the ast module and import hooks that older Jython
+    versions do not have.
+    :param main_dir: the directory holding the modules whose coverage is recorded
+    :param cache_dir: the directory holding the instrumented modules, or None
+    :return: the coverage collector, or None if coverage cannot be recorded with this Jython version
+    """
+    if ast is None:
+        print >>sys.stderr, 'WARNING: coverage is not recorded since Jython %s has no ast module' % sys.version
+        return None
+    if not hasattr(sys, 'meta_path') or Files is None:
+        print >>sys.stderr, 'WARNING: coverage is not recorded since Jython %s has no import hooks or ' \
+                            'java.nio.file' % sys.version
+        return None
+
+    collector = _CoverageCollector(main_dir, cache_dir)
+    sys.meta_path.insert(0, collector)
+    return collector
+
+def _stop_coverage(collector):
+    if collector in sys.meta_path:
+        sys.meta_path.remove(collector)
+
+def _read_source(source_path):
+    """
+    Read a python module.
+    :param source_path: the path of the module
+    :return: a tuple of the source, the content hash, and the name of the module's cache entries
+    """
+    source_file = open(source_path, 'rb')
+    try:
+        source = source_file.read()
+    finally:
+        source_file.close()
+    source_hash = _sha1_hex(source)
+    return source, source_hash, '%s-%s' % (source_hash, _sha1_hex(source_path))
+
+def _parse_source(source, source_path):
+    source = source.replace('\r\n', '\n').replace('\r', '\n')
+    if not source.endswith('\n'):
+        source = source + '\n'
+    return compile(source, source_path, 'exec', ast.PyCF_ONLY_AST)
+
+def _instrument(tree):
+    """
+    Add a coverage probe before each statement of the syntax tree.
+    :param tree: the syntax tree of the module
+    :return: the sorted list of the lines holding statements
+    """
+    lines = {}
+    tree.body = _instrument_body(tree.body, lines, True, True)
+    result = lines.keys()
+    result.sort()
+    return result
+
+def _instrument_body(body, lines, is_module, has_docstring):
+    result = []
+    index = 0
+    if has_docstring and _is_docstring(body):
+        result.append(body[0])
+        index = 1
+    if is_module:
+        # from __future__ imports must stay at the top of the module
+        while index < len(body) and isinstance(body[index], ast.ImportFrom) and body[index].module == '__future__':
+            result.append(body[index])
+            index = index + 1
+
+    for statement in body[index:]:
+        lines[statement.lineno] = True
+        result.append(_make_probe(statement))
+        is_definition = isinstance(statement, ast.FunctionDef) or isinstance(statement, ast.ClassDef)
+        for field in ('body', 'orelse', 'finalbody'):
+            nested_body = getattr(statement, field, None)
+            if nested_body:
+                setattr(statement, field, _instrument_body(nested_body, lines, False, is_definition))
+        for handler in getattr(statement, 'handlers', None) or []:
+            handler.body = _instrument_body(handler.body, lines, False, False)
+        result.append(statement)
+    return result
+
+def _is_docstring(body):
+    return len(body) > 0 and isinstance(body[0], ast.Expr) and isinstance(body[0].value, ast.Str)
+
+def _make_probe(statement):
+    probe = ast.parse('__wlst_coverage__[%d] = 1' % statement.lineno).body[0]
+    for node in ast.walk(probe):
+        if hasattr(node, 'lineno'):
+            node.lineno = statement.lineno
+            node.col_offset = statement.col_offset
+    return probe
+
+def _compile_to_class(tree, class_name, source_path):
+    """
+    Compile the syntax tree to the bytes of a Jython class so that it can be cached.
+    :return: the class bytes, or None if this Jython version cannot compile a syntax tree to a class
+    """
+    try:
+        import org.python.compiler.Module as CompilerModule
+        import org.python.core.CompilerFlags as CompilerFlags
+        import java.io.ByteArrayOutputStream as ByteArrayOutputStream
+    except ImportError:
+        return None
+
+    output = ByteArrayOutputStream()
+    try:
+        try:
+            CompilerModule.compile(tree, output, class_name, source_path, True, False, CompilerFlags(), -1L)
+        except TypeError:
+            CompilerModule.compile(tree, output, class_name, source_path, True, False, CompilerFlags())
+    except:
+        if _debug:
+            traceback.print_exc()
+        return None
+    return output.toByteArray()
+
+def _find_python_files(root_dir):
+    result = []
+    for dir_path, dir_names, file_names in os.walk(root_dir):
+        for file_name in file_names:
+            if file_name.endswith('.py'):
+                result.append(_normalize_path(os.path.join(dir_path, file_name)))
+    return result
+
+def _normalize_path(path):
+    return os.path.normcase(os.path.abspath(path))
+
+def _max_line(lines):
+    if len(lines) == 0:
+        return 0
+    return lines[-1]
+
+def _join_lines(lines):
+    return ','.join(map(str, lines))
+
+class _DomainFixtures:
+    """
+    The domain fixtures that the tests get from the wlst_test_fixtures module.  Each domain is built once per
+    name and hash of its inputs and kept in the domain cache until its inputs change, and each request returns
+    a new copy of it so that the tests cannot change each other's domain.
+    """
+    def __init__(self, cache_dir, copies_dir, link_files):
+        self._copies_dir = File(copies_dir)
+        if cache_dir is None:
+            self._cache_dir = File(self._copies_dir, '_built')
+        else:
+            self._cache_dir = File(cache_dir)
+        self._link_files = link_files
+        self._lock = threading.RLock()
+        self._copy_count = 0
+        self._build_millis = 0L
+        self._copy_millis = 0L
+
+    def domain(self, name, template=None, configure=None, config=None, inputs=None):
+        """
+        Get a new copy of a domain fixture.  The domain is built by reading the template, calling
+        configure(domain_dir, config) and writing the domain, or only by calling configure(domain_dir, config)
+        if there is no template.  It is rebuilt when the template, config, input files, the file defining
+        configure, or the WebLogic installation change.
+        :param name: the name of the fixture, which is part of its directory names
+        :param template: the domain template to read, or None
+        :param configure: the function that configures or creates the domain, or None
+        :param config: the configuration passed to configure, whose repr is part of the fixture's hash
+        :param inputs: the list of additional files whose content is part of the fixture's hash
+        :return: the path of the new copy of the domain
+        """
+        if template is None and configure is None:
+            raise ValueError('The %s domain fixture needs a template or a configure function' % name)
+
+        self._lock.acquire()
+        try:
+            domain_dir = self._get_domain(name, template, configure, config, inputs)
+            if self._copy_count == 0:
+                _delete_tree(self._copies_dir, self._cache_dir)
+            self._copy_count = self._copy_count + 1
+            copy_dir = File(self._copies_dir, '%s-%s' % (name, self._copy_count))
+        finally:
+            self._lock.release()
+
+        # Concurrent tests copy their domains in parallel, so only the total is updated under the lock
+        copy_start = time.time()
+        _copy_tree(domain_dir, copy_dir, self._link_files)
+        copy_millis = _elapsed_millis(copy_start)
+        self._lock.acquire()
+        try:
+            self._copy_millis = self._copy_millis + copy_millis
+        finally:
+            self._lock.release()
+        return copy_dir.getAbsolutePath()
+
+    def close(self, step_timer):
+        """
+        Delete the copies made by this test run and report the time spent building and copying the domains.
+        :param step_timer: the timer of the driver steps
+        """
+        if self._copy_count > 0:
+            _delete_tree(self._copies_dir, None)
+            step_timer.add_duration('build domain fixtures', self._build_millis)
+            step_timer.add_duration('copy domain fixtures', self._copy_millis)
+
+    def _get_domain(self, name, template, configure, config, inputs):
+        fixture_hash = self._get_hash(name, template, configure, config, inputs)
+        domain_dir = File(self._cache_dir, '%s-%s' % (name, fixture_hash))
+        if domain_dir.isDirectory():
+            # A test that changed a hard linked file in place also changed the cached domain
+            built_time = File(domain_dir, _BUILT_MARKER_NAME).lastModified()
+            if not self._link_files or _is_unchanged_tree(domain_dir, built_time):
+                return domain_dir
+            _delete_tree(domain_dir, None)
+
+        build_start = time.time()
+        build_dir = File(self._cache_dir, '%s.%s.tmp' % (domain_dir.getName(), JavaSystem.nanoTime()))
+        build_dir.getParentFile().mkdirs()
+        try:
+            if template is None:
+                configure(build_dir.getAbsolutePath(), config)
+            else:
+                wlst_module = _bootstrap_wlst()
+                wlst_module.readTemplate(template)
+                try:
+                    if configure is not None:
+                        configure(build_dir.getAbsolutePath(), config)
+                    wlst_module.writeDomain(build_dir.getAbsolutePath())
+                finally:
+                    wlst_module.closeTemplate()
+            marker = open(File(build_dir, _BUILT_MARKER_NAME).getAbsolutePath(), 'w')
+            marker.close()
+        except:
+            _delete_tree(build_dir, None)
+            raise
+
+        # Another test run may have built the same domain in the meantime, in which case its copy is kept
+        if not build_dir.renameTo(domain_dir):
+            _delete_tree(build_dir, None)
+        for cached_dir in self._cache_dir.listFiles():
+            cached_name = cached_dir.getName()
+            cached_hash = cached_name[len(name) + 1:]
+            if cached_name.startswith(name + '-') and cached_hash != fixture_hash and len(cached_hash) == 16 \
+                    and cached_hash.find('-') == -1 and cached_hash.find('.') == -1:
+                _delete_tree(cached_dir, None)
+        self._build_millis = self._build_millis + _elapsed_millis(build_start)
+        if _debug:
+            print 'Built the %s domain fixture in %s' % (name, domain_dir)
+        return domain_dir
+
+    def _get_hash(self, name, template, configure, config, inputs):
+        parts = [name, str(os.environ.get('WL_HOME')), str(os.environ.get('ORACLE_HOME'))]
+        if template is not None:
+            template_file = File(template)
+            parts.append('%s:%s:%s' % (template_file.getAbsolutePath(), template_file.length(),
+                                       template_file.lastModified()))
+        if configure is not None:
+            code = configure.func_code
+            parts.append('%s:%s' % (configure.__name__, _file_sha1_hex(code.co_filename)))
+        if isinstance(config, dict):
+            items = config.items()
+            items.sort()
+            parts.append(repr(items))
+        else:
+            parts.append(repr(config))
+        for input_file in inputs or []:
+            parts.append('%s:%s' % (input_file, _file_sha1_hex(input_file)))
+        return _sha1_hex('\n'.join(parts))[:16]
+
+def _install_fixtures_module(options):
+    """
+    Make the requires_wlst marker and the domain fixtures available to the tests as the wlst_test_fixtures
+    module.
+    :param options: the driver options
+    :return: the domain fixtures, or None if the driver options do not enable them
+    """
+    module = imp.new_module('wlst_test_fixtures')
+    module.requires_wlst = requires_wlst
+    module.not_thread_safe = not_thread_safe
+    fixtures = None
+    if options.has_key('domain-copies'):
+        fixtures = _DomainFixtures(options.get('domain-cache'), options['domain-copies'],
+                                   options.get('domain-copy-mode') == 'link')
+        module.domain = fixtures.domain
+    sys.modules['wlst_test_fixtures'] = module
+    return fixtures
+
+def _file_sha1_hex(path):
+    source_file = open(path, 'rb')
+    try:
+        return _sha1_hex(source_file.read())
+    finally:
+        source_file.close()
+
+def _copy_tree(source_dir, target_dir, link_files):
+    """
+    Copy a directory tree, hard linking the files instead if requested and supported by the file system.
+    """
+    target_dir.mkdirs()
+    for source_file in source_dir.listFiles():
+        if source_file.getName() == _BUILT_MARKER_NAME:
+            continue
+        target_file = File(target_dir, source_file.getName())
+        if source_file.isDirectory():
+            _copy_tree(source_file, target_file, link_files)
+            continue
+        if link_files and Files is not None:
+            try:
+                Files.createLink(target_file.toPath(), source_file.toPath())
+                continue
+            except:
+                link_files = False
+        _copy_file(source_file, target_file)
+        target_file.setLastModified(source_file.lastModified())
+
+def _is_unchanged_tree(directory, built_time):
+    for child in directory.listFiles():
+        if child.isDirectory():
+            if not _is_unchanged_tree(child, built_time):
+                return False
+        elif child.lastModified() > built_time:
+            return False
+    return True
+
+def _delete_tree(directory, keep_dir):
+    """
+    Delete a directory tree, except for keep_dir if it is inside it.
+    """
+    if keep_dir is not None and directory.getAbsolutePath() == keep_dir.getAbsolutePath():
+        return
+    children = directory.listFiles()
+    if children is not None:
+        for child in children:
+            if child.isDirectory() and child.getCanonicalPath() == child.getAbsolutePath():
+                _delete_tree(child, keep_dir)
+            else:
+                child.delete()
+    directory.delete()
+
+def _get_exit_code(result):
+    """
+    Get the exit code for a test result.
+    :param result: the unittest TestResult
+    :return: 0 if all tests passed and 2 otherwise
+    """
     if not result.wasSuccessful():
-        sys.exit(2)
+        return 2
+    return 0
+
+class _SocketOutput:
+    """
+    A file-like object that sends each line written to it to the daemon client as an output line.
+    """
+    def __init__(self, writer):
+        self._writer = writer
+        self._buffer = ''
+
+    def write(self, text):
+        self._buffer = self._buffer + str(text)
+        index = self._buffer.find('\n')
+        while index != -1:
+            self._send(self._buffer[:index])
+            self._buffer = self._buffer[index + 1:]
+            index = self._buffer.find('\n')
+
+    def writelines(self, lines):
+        for line in lines:
+            self.write(line)
+
+    def flush(self):
+        self._writer.flush()
+
+    def close(self):
+        if len(self._buffer) > 0:
+            self._send(self._buffer)
+            self._buffer = ''
+        self._writer.flush()
+
+    def _send(self, line):
+        self._writer.write('O:' + line)
+        self._writer.newLine()
+
+def _run_daemon(options):
+    """
+    Serve test run requests from the plugin until the idle timeout expires or the plugin asks the daemon to exit.
+    :param options: the driver options
+    """
+    port_file = options['daemon']
+    idle_timeout_minutes = int(options.get('daemon-idle-timeout', '60'))
+    token = os.environ.get(_DAEMON_TOKEN_VARIABLE_NAME)
+
+    server_socket = ServerSocket(0, 1, InetAddress.getLoopbackAddress())
+    server_socket.setSoTimeout(idle_timeout_minutes * 60 * 1000)
+
+    # Write the port to a temporary file and rename it so that the plugin never reads a partial port number
+    temp_port_file = File(port_file + '.tmp')
+    output_stream = FileOutputStream(temp_port_file)
+    try:
+        output_stream.write(str(server_socket.getLocalPort()))
+    finally:
+        output_stream.close()
+    temp_port_file.renameTo(File(port_file))
+    print 'WLST test daemon listening on port %s' % server_socket.getLocalPort()
+
+    loaded_classpath = {}
+    keep_running = True
+    while keep_running:
+        try:
+            socket = server_socket.accept()
+        except SocketTimeoutException:
+            print 'WLST test daemon exiting after %s idle minutes' % idle_timeout_minutes
+            break
+
+        try:
+            keep_running = _handle_daemon_request(socket, token, loaded_classpath)
+        finally:
+            socket.close()
+    server_socket.close()
+
+def _handle_daemon_request(socket, token, loaded_classpath):
+    """
+    Handle one request from the plugin.
+    :param socket: the client socket
+    :param token: the token the client must send to authenticate
+    :param loaded_classpath: the dictionary of classpath entries already added to the python path and their fingerprints
+    :return: True if the daemon should keep running, False otherwise
+    """
+    reader = BufferedReader(InputStreamReader(socket.getInputStream(), 'UTF-8'))
+    writer = BufferedWriter(OutputStreamWriter(socket.getOutputStream(), 'UTF-8'))
+    if token is None or reader.readLine() != token:
+        return True
+
+    command = reader.readLine()
+    if command == 'PING':
+        writer.write('PONG')
+        writer.newLine()
+    elif command == 'SHUTDOWN':
+        writer.write('BYE')
+        writer.newLine()
+        writer.flush()
+        return False
+    elif command == 'RUN':
+        working_dir = None
+        classpath = []
+        args = []
+        line = reader.readLine()
+        while line is not None and line != 'END':
+            if line.startswith('cwd='):
+                working_dir = line[4:]
+            elif line.startswith('cp='):
+                separator_index = line.find('\t')
+                classpath.append((line[3:separator_index], line[separator_index + 1:]))
+            elif line.startswith('arg='):
+                args.append(line[4:])
+            line = reader.readLine()
+
+        # Classes already loaded from a changed classpath entry cannot be reloaded so ask to be recycled
+        for path, fingerprint in classpath:
+            if loaded_classpath.has_key(path) and loaded_classpath[path] != fingerprint:
+                writer.write('R:classpath element %s changed' % path)
+                writer.newLine()
+                writer.flush()
+                return False
+        for path, fingerprint in classpath:
+            if not loaded_classpath.has_key(path):
+                loaded_classpath[path] = fingerprint
+                sys.path.append(path)
+
+        exit_code, result = _run_isolated(working_dir, args, _SocketOutput(writer))
+        writer.write('X:%s' % exit_code)
+        writer.newLine()
+    writer.flush()
+    return True
+
+def _run_isolated(working_dir, args, output):
+    """
+    Run the tests for one request, optionally with the output redirected, and then remove the
+    request's paths and modules so that the next request starts from a clean state.
+    :param working_dir: the working directory for the test run
+    :param args: the driver arguments for the test run
+    :param output: the file-like object to send the output to, or None to leave the output alone
+    :return: a tuple of the exit code and the unittest TestResult, which is None if the tests did not run
+    """
+    saved_path = list(sys.path)
+    saved_modules = sys.modules.keys()
+    saved_stdout = sys.stdout
+    saved_stderr = sys.stderr
+    saved_cwd = os.getcwd()
+    saved_dont_write_bytecode = getattr(sys, 'dont_write_bytecode', None)
+
+    if output is not None:
+        sys.stdout = output
+        sys.stderr = output
+    result = None
+    try:
+        try:
+            if working_dir is not None:
+                os.chdir(working_dir)
+            options, positional_args = _parse_arguments(args)
+            result = _run(options, positional_args)
+            exit_code = _get_exit_code(result)
+        except SystemExit, e:
+            exit_code = e.code
+        except:
+            traceback.print_exc()
+            exit_code = 1
+    finally:
+        if output is not None:
+            output.close()
+        sys.stdout = saved_stdout
+        sys.stderr = saved_stderr
+        os.chdir(saved_cwd)
+        if saved_dont_write_bytecode is not None:
+            sys.dont_write_bytecode = saved_dont_write_bytecode
+        sys.path[:] = saved_path
+        for module_name in sys.modules.keys():
+            if module_name not in saved_modules and module_name not in _wlst_modules:
+                del sys.modules[module_name]
+
+    if exit_code is None:
+        exit_code = 0
+    return exit_code, result
+
+def _configure_debug():
+    global _debug
+
+    # An in-process interpreter gets the plugin's properties in its registry rather than as system properties
+    debug_value = JavaSystem.getProperty(_WLST_TEST_PLUGIN_DEBUG_PROPERTY_NAME, 'false')
+    registry = getattr(sys, 'registry', None)
+    if registry is not None:
+        debug_value = registry.getProperty(_WLST_TEST_PLUGIN_DEBUG_PROPERTY_NAME, debug_value)
+    _debug = debug_value == 'true'
+    return _debug
+
+def run_in_process(args, working_dir):
+    """
+    Run the tests in an interpreter embedded in the plugin's JVM.  The plugin calls this function directly
+    and reads the returned TestResult instead of the process exit code.
+    :param args: the driver arguments for the test run
+    :param working_dir: the working directory for the test run
+    :return: a tuple of the exit code and the unittest TestResult, which is None if the tests did not run
+    """
+    _install_wlst_import_hook()
+    _configure_debug()
+    return _run_isolated(working_dir, args, None)
+
+def main():
+    _record_startup_steps()
+    _install_wlst_import_hook()
+
+    if _configure_debug():
+        print 'WLST Test Driver arguments:'
+        for index, arg in enumerate(sys.argv):
+            print '    sys.argv[%s] = %s' % (str(index), arg)
+        print '\nWLST Test Driver environment:'
+        for env_name, env_value in os.environ.iteritems():
+            print '    %s = %s' % (str(env_name), str(env_value))
+
+    # Any args starting with -- are driver options:
+    #     --dont-write-bytecode          - do not write Jython class files next to the python files
+    #     --reports-dir=<dir>            - write surefire-format XML reports to the directory
+    #     --results-file=<file>          - write the status and duration of each test to the file as it completes
+    #     --skip-after-failure-count=<n> - skip the remaining tests once n tests have failed
+    #     --stop-file=<file>             - skip the remaining tests once the plugin creates the file
+    #     --test-filter=<filter>         - only run the tests matching module[.Class][#method[+method]] entries
+    #     --class-cache=<dir>            - restore and save the compiled modules in the cache directory
+    #     --class-cache-manifest=<file>  - the manifest of the modules whose compiled classes are cached
+    #     --precompile=<n>               - compile the modules missing from the cache with n threads first
+    #     --daemon=<port-file>           - run as a daemon serving test runs and write its port to the file
+    #     --daemon-idle-timeout=<n>      - the number of idle minutes after which the daemon exits
+    #     --pid-file=<file>              - write the process ID of the WLST JVM to the file
+    #     --timings-file=<file>          - write the durations of the driver steps and test module imports
+    #     --jvm-info-file=<file>         - write the Java home, VM version and classpath of the WLST JVM to the file
+    #     --coverage-data=<file>         - record the line coverage of the main modules and write it to the file
+    #     --coverage-cache=<dir>         - keep the instrumented main modules in the cache directory
+    #     --domain-copies=<dir>          - make the domain fixtures of the wlst_test_fixtures module in the directory
+    #     --domain-cache=<dir>           - keep the built domain fixtures in the cache directory
+    #     --domain-copy-mode=<mode>      - copy or link the files of the cached domain fixtures
+    #     --thread-count=<n>             - run the test classes, or modules with module fixtures, on n threads
+    #     --measure-retained-heap        - collect the garbage around each test to measure the heap it retains
+    #
+    options, args = _parse_arguments(sys.argv[1:])
+    if options.has_key('pid-file'):
+        _write_pid_file(options['pid-file'])
+    if options.has_key('jvm-info-file'):
+        _write_jvm_info(options['jvm-info-file'])
+    if options.has_key('daemon'):
+        _run_daemon(options)
+        return
+
+    exit_code = _get_exit_code(_run(options, args))
+    if exit_code != 0:
+        sys.exit(exit_code)
 
 if __name__ == "main" or __name__ == "__main__":
     main()
@@ -0,0 +1,153 @@
+/*
+ * IncrementalTestSelectorTest.java - This class tests the selection of the
+ *     WLST test files affected by changes for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the IncrementalTestSelector class.
+ */
+public class IncrementalTestSelectorTest {
+    private static final String CONFIGURATION = "configuration";
+    private static final List<String> TEST_FILES =
+        Arrays.asList("test_deployer.py", "test_helper.py", "test_other.py", "test_relative.py");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File indexFile;
+    private File sourcesRootDirectory;
+    private File testsRootDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        indexFile = new File(temporaryFolder.getRoot(), "incremental.properties");
+        sourcesRootDirectory = temporaryFolder.newFolder("main");
+        testsRootDirectory = temporaryFolder.newFolder("test");
+
+        // deployer imports helper, which imports base, so a change to base affects test_deployer transitively
+        writeFile(sourcesRootDirectory, "util/__init__.py", "");
+        writeFile(sourcesRootDirectory, "util/base.py", "def value():\n    return 1\n");
+        writeFile(sourcesRootDirectory, "util/helper.py", "from util import base\n");
+        writeFile(sourcesRootDirectory, "deploy/__init__.py", "");
+        writeFile(sourcesRootDirectory, "deploy/deployer.py", "import util.helper as helper\n");
+        writeFile(sourcesRootDirectory, "deploy/targets.py", "from .deployer import *\n");
+        writeFile(sourcesRootDirectory, "other.py", "VALUE = 1\n");
+        writeFile(testsRootDirectory, "test_deployer.py", "from deploy import deployer\n");
+        writeFile(testsRootDirectory, "test_helper.py", "import util.helper\n");
+        writeFile(testsRootDirectory, "test_other.py", "import other\n");
+        writeFile(testsRootDirectory, "test_relative.py", "from deploy import targets\n");
+        saveIndex();
+    }
+
+    @Test
+    public void testNoIndexRunsAllTests() throws IOException {
+        Files.delete(indexFile.toPath());
+        IncrementalTestSelector selector = scan(CONFIGURATION);
+        assertTrue(selector.isFullRunRequired());
+        assertEquals(new HashSet<>(TEST_FILES), selector.selectTests(TEST_FILES));
+    }
+
+    @Test
+    public void testNoChangesRunNoTests() throws IOException {
+        IncrementalTestSelector selector = scan(CONFIGURATION);
+        assertFalse(selector.isFullRunRequired());
+        assertTrue(selector.selectTests(TEST_FILES).isEmpty());
+    }
+
+    @Test
+    public void testChangedModuleRunsTestsThatImportItTransitively() throws IOException {
+        writeFile(sourcesRootDirectory, "util/base.py", "def value():\n    return 2\n");
+        IncrementalTestSelector selector = scan(CONFIGURATION);
+        assertFalse(selector.isFullRunRequired());
+        assertEquals(new HashSet<>(Arrays.asList("test_deployer.py", "test_helper.py", "test_relative.py")),
+                     selector.selectTests(TEST_FILES));
+    }
+
+    @Test
+    public void testRemovedModuleRunsTestsThatImportIt() throws IOException {
+        Files.delete(new File(sourcesRootDirectory, "other.py").toPath());
+        IncrementalTestSelector selector = scan(CONFIGURATION);
+        assertEquals(Collections.singleton("test_other.py"), selector.selectTests(TEST_FILES));
+    }
+
+    @Test
+    public void testChangedTestFileRunsOnlyThatTest() throws IOException {
+        writeFile(testsRootDirectory, "test_other.py", "import other\nimport os\n");
+        IncrementalTestSelector selector = scan(CONFIGURATION);
+        assertEquals(Collections.singleton("test_other.py"), selector.selectTests(TEST_FILES));
+    }
+
+    @Test
+    public void testChangedConfigurationRunsAllTests() throws IOException {
+        IncrementalTestSelector selector = scan("other configuration");
+        assertTrue(selector.isFullRunRequired());
+        assertEquals(new HashSet<>(TEST_FILES), selector.selectTests(TEST_FILES));
+    }
+
+    @Test
+    public void testChangedNonPythonFileRunsAllTests() throws IOException {
+        writeFile(sourcesRootDirectory, "util/settings.json", "{}\n");
+        IncrementalTestSelector selector = scan(CONFIGURATION);
+        assertTrue(selector.isFullRunRequired());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void saveIndex() throws IOException {
+        IncrementalTestSelector selector = scan(CONFIGURATION);
+        selector.save();
+    }
+
+    private IncrementalTestSelector scan(String configuration) throws IOException {
+        IncrementalTestSelector selector =
+            new IncrementalTestSelector(indexFile, sourcesRootDirectory, testsRootDirectory, configuration);
+        selector.scan();
+        return selector;
+    }
+
+    private static void writeFile(File rootDirectory, String relativePath, String content) throws IOException {
+        File file = new File(rootDirectory, relativePath);
+        Files.createDirectories(file.getParentFile().toPath());
+        boolean existed = file.isFile();
+        long lastModified = existed ? file.lastModified() : 0L;
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        if (existed && !file.setLastModified(lastModified + 2000L)) {
+            throw new IOException("Unable to change the modification time of " + file);
+        }
+    }
+}
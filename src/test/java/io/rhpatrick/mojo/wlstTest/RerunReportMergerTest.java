@@ -0,0 +1,166 @@
+/*
+ * RerunReportMergerTest.java - This class tests the merging of the reports
+ *     of rerun WLST tests for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import org.xml.sax.SAXException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the RerunReportMerger class.
+ */
+public class RerunReportMergerTest {
+    private static final String REPORT_FILE_NAME = "TEST-test_module.ModuleTest.xml";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File reportsDirectory;
+    private File rerunReportsDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        reportsDirectory = temporaryFolder.newFolder("reports");
+        rerunReportsDirectory = temporaryFolder.newFolder("rerun-1");
+        writeReport(reportsDirectory, REPORT_FILE_NAME,
+                    "<testcase name=\"test_flaky\"><failure message=\"first\" type=\"AssertionError\">"
+                        + "trace 1</failure></testcase>"
+                        + "<testcase name=\"test_broken\"><error message=\"broken\">trace 2</error></testcase>"
+                        + "<testcase name=\"test_passed\"/>");
+    }
+
+    @Test
+    public void testPassingRerunMarksFailureFlaky() throws IOException {
+        writeReport(rerunReportsDirectory, REPORT_FILE_NAME,
+                    "<testcase name=\"test_flaky\"/>"
+                        + "<testcase name=\"test_broken\"><error message=\"still broken\">trace 3</error></testcase>");
+
+        RerunReportMerger merger = new RerunReportMerger(reportsDirectory);
+        merger.merge(rerunReportsDirectory);
+        merger.save();
+
+        Element testSuite = readReport(new File(reportsDirectory, REPORT_FILE_NAME));
+        assertEquals("3", testSuite.getAttribute("tests"));
+        assertEquals("0", testSuite.getAttribute("failures"));
+        assertEquals("1", testSuite.getAttribute("errors"));
+
+        Element flakyTestCase = getTestCase(testSuite, "test_flaky");
+        assertNull(getChild(flakyTestCase, "failure"));
+        Element flakyFailure = getChild(flakyTestCase, "flakyFailure");
+        assertNotNull(flakyFailure);
+        assertEquals("first", flakyFailure.getAttribute("message"));
+        assertEquals("AssertionError", flakyFailure.getAttribute("type"));
+        assertEquals("trace 1", getChild(flakyFailure, "stackTrace").getTextContent());
+
+        Element brokenTestCase = getTestCase(testSuite, "test_broken");
+        assertNotNull(getChild(brokenTestCase, "error"));
+        Element rerunError = getChild(brokenTestCase, "rerunError");
+        assertNotNull(rerunError);
+        assertEquals("still broken", rerunError.getAttribute("message"));
+    }
+
+    @Test
+    public void testFixtureTestMarkedFlaky() throws IOException {
+        RerunReportMerger merger = new RerunReportMerger(reportsDirectory);
+        merger.markFlaky("test_module.ModuleTest.test_broken");
+        merger.markFlaky("test_module.ModuleTest.test_passed");
+        merger.markFlaky("test_module.MissingTest.test_broken");
+        merger.save();
+
+        Element testSuite = readReport(new File(reportsDirectory, REPORT_FILE_NAME));
+        assertEquals("1", testSuite.getAttribute("failures"));
+        assertEquals("0", testSuite.getAttribute("errors"));
+        assertNotNull(getChild(getTestCase(testSuite, "test_broken"), "flakyError"));
+        assertNull(getChild(getTestCase(testSuite, "test_passed"), "flakyError"));
+    }
+
+    @Test
+    public void testRerunReportWithoutFirstRunReportIsCopied() throws IOException {
+        String reportFileName = "TEST-test_module.FixtureTest.xml";
+        writeReport(rerunReportsDirectory, reportFileName, "<testcase name=\"test_fixture\"/>");
+
+        RerunReportMerger merger = new RerunReportMerger(reportsDirectory);
+        merger.merge(rerunReportsDirectory);
+        merger.save();
+
+        File reportFile = new File(reportsDirectory, reportFileName);
+        assertTrue(reportFile.isFile());
+        assertNotNull(getTestCase(readReport(reportFile), "test_fixture"));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static void writeReport(File directory, String fileName, String testCases) throws IOException {
+        String report = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<testsuite name=\"test_module.ModuleTest\" tests=\"0\" failures=\"0\" errors=\"0\" skipped=\"0\">"
+            + testCases + "</testsuite>";
+        Files.write(new File(directory, fileName).toPath(), report.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Element readReport(File reportFile) throws IOException {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(reportFile).getDocumentElement();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException(e.getLocalizedMessage(), e);
+        }
+    }
+
+    private static Element getTestCase(Element testSuite, String name) {
+        NodeList testCases = testSuite.getElementsByTagName("testcase");
+        for (int idx = 0; idx < testCases.getLength(); idx++) {
+            Element testCase = (Element) testCases.item(idx);
+            if (name.equals(testCase.getAttribute("name"))) {
+                return testCase;
+            }
+        }
+        return null;
+    }
+
+    private static Element getChild(Element parent, String name) {
+        NodeList children = parent.getChildNodes();
+        for (int idx = 0; idx < children.getLength(); idx++) {
+            Node child = children.item(idx);
+            if (child.getNodeType() == Node.ELEMENT_NODE && name.equals(child.getNodeName())) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * ScriptTreeSynchronizerTest.java - This class tests the synchronization
+ *     of the WLST script trees for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the ScriptTreeSynchronizer class.
+ */
+public class ScriptTreeSynchronizerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCopyOnlyUpdatesChangedFiles() throws IOException {
+        Path sourceDirectory = temporaryFolder.newFolder("source").toPath();
+        Path targetDirectory = temporaryFolder.newFolder("target").toPath();
+        writeFile(sourceDirectory.resolve("pkg/module.py"), "VALUE = 1\n");
+        writeFile(sourceDirectory.resolve("other.py"), "VALUE = 1\n");
+
+        ScriptTreeSynchronizer synchronizer = new ScriptTreeSynchronizer(ScriptTreeSynchronizer.Mode.COPY);
+        synchronizer.synchronize(sourceDirectory, targetDirectory);
+        assertEquals(2, synchronizer.getCopiedCount());
+
+        writeFile(sourceDirectory.resolve("other.py"), "VALUE = 22\n");
+        synchronizer = new ScriptTreeSynchronizer(ScriptTreeSynchronizer.Mode.COPY);
+        synchronizer.synchronize(sourceDirectory, targetDirectory);
+        assertEquals(1, synchronizer.getCopiedCount());
+        assertEquals(1, synchronizer.getUnchangedCount());
+        assertEquals("VALUE = 22\n", readFile(targetDirectory.resolve("other.py")));
+    }
+
+    @Test
+    public void testPruneKeepsCompiledClassesWithSource() throws IOException {
+        Path sourceDirectory = temporaryFolder.newFolder("source").toPath();
+        Path targetDirectory = temporaryFolder.newFolder("target").toPath();
+        writeFile(sourceDirectory.resolve("pkg/kept.py"), "VALUE = 1\n");
+        writeFile(sourceDirectory.resolve("pkg/removed.py"), "VALUE = 1\n");
+        writeFile(sourceDirectory.resolve("gone/module.py"), "VALUE = 1\n");
+
+        ScriptTreeSynchronizer synchronizer = new ScriptTreeSynchronizer(ScriptTreeSynchronizer.Mode.COPY);
+        synchronizer.synchronize(sourceDirectory, targetDirectory);
+
+        // Jython compiles the modules next to the synchronized copies when the tests import them
+        writeFile(targetDirectory.resolve("pkg/kept$py.class"), "compiled");
+        writeFile(targetDirectory.resolve("pkg/removed$py.class"), "compiled");
+        writeFile(targetDirectory.resolve("gone/module$py.class"), "compiled");
+        writeFile(targetDirectory.resolve("pkg/orphan$py.class"), "compiled");
+        Files.delete(sourceDirectory.resolve("pkg/removed.py"));
+        Files.delete(sourceDirectory.resolve("gone/module.py"));
+        Files.delete(sourceDirectory.resolve("gone"));
+
+        synchronizer = new ScriptTreeSynchronizer(ScriptTreeSynchronizer.Mode.COPY);
+        synchronizer.synchronize(sourceDirectory, targetDirectory);
+        assertTrue(Files.isRegularFile(targetDirectory.resolve("pkg/kept.py")));
+        assertTrue(Files.isRegularFile(targetDirectory.resolve("pkg/kept$py.class")));
+        assertFalse(Files.exists(targetDirectory.resolve("pkg/removed.py")));
+        assertFalse(Files.exists(targetDirectory.resolve("pkg/removed$py.class")));
+        assertFalse(Files.exists(targetDirectory.resolve("pkg/orphan$py.class")));
+        assertFalse(Files.exists(targetDirectory.resolve("gone")));
+        assertEquals(5, synchronizer.getDeletedCount());
+    }
+
+    @Test
+    public void testChangedPathsDeleteCompiledClassesOfRemovedModules() throws IOException {
+        Path sourceDirectory = temporaryFolder.newFolder("source").toPath();
+        Path targetDirectory = temporaryFolder.newFolder("target").toPath();
+        writeFile(sourceDirectory.resolve("pkg/removed.py"), "VALUE = 1\n");
+
+        new ScriptTreeSynchronizer(ScriptTreeSynchronizer.Mode.COPY).synchronize(sourceDirectory, targetDirectory);
+        writeFile(targetDirectory.resolve("pkg/removed$py.class"), "compiled");
+        Files.delete(sourceDirectory.resolve("pkg/removed.py"));
+
+        ScriptTreeSynchronizer synchronizer = new ScriptTreeSynchronizer(ScriptTreeSynchronizer.Mode.COPY);
+        Path removedModule = sourceDirectory.getFileSystem().getPath("pkg", "removed.py");
+        synchronizer.synchronize(sourceDirectory, targetDirectory, Collections.singletonList(removedModule));
+        assertFalse(Files.exists(targetDirectory.resolve("pkg/removed.py")));
+        assertFalse(Files.exists(targetDirectory.resolve("pkg/removed$py.class")));
+        assertEquals(2, synchronizer.getDeletedCount());
+    }
+
+    @Test
+    public void testLinkSharesTheSourceFiles() throws IOException {
+        Path sourceDirectory = temporaryFolder.newFolder("source").toPath();
+        Path targetDirectory = temporaryFolder.newFolder("target").toPath();
+        writeFile(sourceDirectory.resolve("pkg/module.py"), "VALUE = 1\n");
+
+        ScriptTreeSynchronizer synchronizer = new ScriptTreeSynchronizer(ScriptTreeSynchronizer.Mode.LINK);
+        synchronizer.synchronize(sourceDirectory, targetDirectory);
+        assertEquals(1, synchronizer.getLinkedCount() + synchronizer.getCopiedCount());
+        if (synchronizer.getLinkedCount() == 1) {
+            assertTrue(Files.isSameFile(sourceDirectory.resolve("pkg/module.py"),
+                                        targetDirectory.resolve("pkg/module.py")));
+        }
+
+        synchronizer = new ScriptTreeSynchronizer(ScriptTreeSynchronizer.Mode.LINK);
+        synchronizer.synchronize(sourceDirectory, targetDirectory);
+        assertEquals(1, synchronizer.getUnchangedCount());
+    }
+
+    @Test
+    public void testLinkFallsBackToCopy() throws IOException {
+        // The ZIP file system does not support hard links, like some of the file systems that the scripts live on
+        File zipFile = new File(temporaryFolder.getRoot(), "scripts.zip");
+        URI zipUri = URI.create("jar:" + zipFile.toURI());
+        try (FileSystem zipFileSystem =
+                 FileSystems.newFileSystem(zipUri, Collections.singletonMap("create", "true"))) {
+            Path sourceDirectory = zipFileSystem.getPath("/source");
+            Path targetDirectory = zipFileSystem.getPath("/target");
+            writeFile(sourceDirectory.resolve("pkg/module.py"), "VALUE = 1\n");
+            writeFile(sourceDirectory.resolve("other.py"), "VALUE = 2\n");
+
+            ScriptTreeSynchronizer synchronizer = new ScriptTreeSynchronizer(ScriptTreeSynchronizer.Mode.LINK);
+            synchronizer.synchronize(sourceDirectory, targetDirectory);
+            assertEquals(0, synchronizer.getLinkedCount());
+            assertEquals(2, synchronizer.getCopiedCount());
+            assertEquals("VALUE = 1\n", readFile(targetDirectory.resolve("pkg/module.py")));
+            assertEquals("VALUE = 2\n", readFile(targetDirectory.resolve("other.py")));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static void writeFile(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        boolean existed = Files.isRegularFile(file);
+        long lastModified = existed ? Files.getLastModifiedTime(file).toMillis() : 0L;
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        if (existed) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified + 2000L));
+        }
+    }
+
+    private static String readFile(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * TestFileScannerTest.java - This class tests the discovery and filtering
+ *     of the WLST test files for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the TestFileScanner class.
+ */
+public class TestFileScannerTest {
+    private static final List<String> TEST_FILES =
+        Arrays.asList("test_root.py", "deploy/test_deployer.py", "deploy/test_targets.py",
+                      "util/test_helper.py", "util/slow/test_slow.py");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testIncludesMatchAcrossDirectories() throws IOException {
+        File rootDirectory = createTestTree();
+        TestFileScanner scanner =
+            new TestFileScanner(Collections.singletonList("**/test_*.py"), Collections.<String>emptyList());
+        assertEquals(Arrays.asList("deploy/test_deployer.py", "deploy/test_targets.py", "test_root.py",
+                                   "util/slow/test_slow.py", "util/test_helper.py"),
+                     scanner.scan(rootDirectory));
+    }
+
+    @Test
+    public void testExcludesWinOverIncludes() throws IOException {
+        File rootDirectory = createTestTree();
+        TestFileScanner scanner = new TestFileScanner(Arrays.asList("**/test_*.py", " "),
+                                                      Arrays.asList("**/slow/**", "deploy/test_t?rgets.py"));
+        assertEquals(Arrays.asList("deploy/test_deployer.py", "test_root.py", "util/test_helper.py"),
+                     scanner.scan(rootDirectory));
+    }
+
+    @Test
+    public void testDefaultIncludeIgnoresCase() throws IOException {
+        File rootDirectory = createTestTree();
+        Files.write(new File(rootDirectory, "util/helper_TEST.py").toPath(), new byte[0]);
+        Files.write(new File(rootDirectory, "util/HelperTest.PY").toPath(), new byte[0]);
+        TestFileScanner scanner = new TestFileScanner(
+            Collections.singletonList(AbstractWLSTTestMojo.DEFAULT_TEST_INCLUDE), Collections.<String>emptyList());
+        assertEquals(Arrays.asList("util/HelperTest.PY", "util/helper_TEST.py"), scanner.scan(rootDirectory));
+    }
+
+    @Test
+    public void testSingleStarStaysInOneDirectory() throws IOException {
+        File rootDirectory = createTestTree();
+        TestFileScanner scanner =
+            new TestFileScanner(Collections.singletonList("util/*.py"), Collections.<String>emptyList());
+        assertEquals(Arrays.asList("util/helper.py", "util/test_helper.py"), scanner.scan(rootDirectory));
+    }
+
+    @Test
+    public void testMissingRootDirectoryHasNoTests() throws IOException {
+        TestFileScanner scanner =
+            new TestFileScanner(Collections.singletonList("**/*.py"), Collections.<String>emptyList());
+        assertTrue(scanner.scan(new File(temporaryFolder.getRoot(), "missing")).isEmpty());
+    }
+
+    @Test
+    public void testGlobCharacterClasses() {
+        assertTrue(TestFileScanner.globToPattern("test_[ab]*.py").matcher("test_a1.py").matches());
+        assertFalse(TestFileScanner.globToPattern("test_[!ab]*.py").matcher("test_a1.py").matches());
+        assertTrue(TestFileScanner.globToPattern("dir\\test_?.py").matcher("dir/test_1.py").matches());
+        assertFalse(TestFileScanner.globToPattern("test.py").matcher("testXpy").matches());
+    }
+
+    @Test
+    public void testFilterByModuleName() {
+        assertEquals(Arrays.asList("deploy/test_deployer.py", "util/test_helper.py"),
+                     TestFileScanner.filterByTest(TEST_FILES, "test_deployer, test_helper"));
+    }
+
+    @Test
+    public void testFilterIgnoresClassesAndMethods() {
+        assertEquals(Collections.singletonList("deploy/test_targets.py"),
+                     TestFileScanner.filterByTest(TEST_FILES, "test_targets.TargetsTest#test_one+test_two"));
+        assertEquals(Collections.singletonList("deploy/test_targets.py"),
+                     TestFileScanner.filterByTest(TEST_FILES, "test_targets.py#test_one"));
+    }
+
+    @Test
+    public void testFilterByPathAndGlob() {
+        assertEquals(Arrays.asList("deploy/test_deployer.py", "deploy/test_targets.py"),
+                     TestFileScanner.filterByTest(TEST_FILES, "deploy/*"));
+        assertEquals(Collections.singletonList("util/slow/test_slow.py"),
+                     TestFileScanner.filterByTest(TEST_FILES, "util\\slow\\test_slow.py"));
+        assertEquals(Arrays.asList("util/test_helper.py", "util/slow/test_slow.py"),
+                     TestFileScanner.filterByTest(TEST_FILES, "util/**"));
+        assertTrue(TestFileScanner.filterByTest(TEST_FILES, "test_missing").isEmpty());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private File createTestTree() throws IOException {
+        File rootDirectory = temporaryFolder.newFolder("tests");
+        for (String testFile : TEST_FILES) {
+            File file = new File(rootDirectory, testFile);
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), new byte[0]);
+        }
+        Files.write(new File(rootDirectory, "util/helper.py").toPath(), new byte[0]);
+        Files.write(new File(rootDirectory, "util/test_helper$py.class").toPath(), new byte[0]);
+        return rootDirectory;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * TestResultCacheTest.java - This class tests the local test result cache
+ *     of the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the TestResultCache class.
+ */
+public class TestResultCacheTest {
+    private static final int ENTRY_CONTENT_BYTES = 10000;
+    private static final String REMOTE_CACHE_PATH = "/cache";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File cacheDirectory;
+    private File resultsDirectory;
+    private File entryContentFile;
+
+    // The remote cache is an HTTP server on the loopback address that keeps the uploaded entries by request path
+    private HttpServer remoteServer;
+    private String remoteUrl;
+    private final Map<String, byte[]> remoteEntries = new ConcurrentHashMap<>();
+    private volatile int uploadResponseCode = HttpURLConnection.HTTP_CREATED;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDirectory = new File(temporaryFolder.getRoot(), "cache");
+        resultsDirectory = temporaryFolder.newFolder("results");
+
+        // Random content does not compress, so that each entry takes about the same space as its content
+        byte[] content = new byte[ENTRY_CONTENT_BYTES];
+        new Random(42L).nextBytes(content);
+        entryContentFile = new File(resultsDirectory, "results.json");
+        Files.write(entryContentFile.toPath(), content);
+
+        remoteServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        remoteServer.createContext(REMOTE_CACHE_PATH, new RemoteCacheHandler());
+        remoteServer.start();
+        remoteUrl = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ':'
+            + remoteServer.getAddress().getPort() + REMOTE_CACHE_PATH + '/';
+    }
+
+    @After
+    public void tearDown() {
+        remoteServer.stop(0);
+    }
+
+    @Test
+    public void testStoredEntryIsRestored() throws IOException {
+        File reportFile = new File(resultsDirectory, "TEST-test_module.ModuleTest.xml");
+        Files.write(reportFile.toPath(), "<testsuite/>".getBytes(StandardCharsets.UTF_8));
+        Map<String, File> files = new TreeMap<>();
+        files.put(TestRunCache.RESULTS_KIND + "/results.json", entryContentFile);
+        files.put(TestRunCache.REPORTS_KIND + "/" + reportFile.getName(), reportFile);
+        files.put("unknown/ignored.txt", reportFile);
+
+        TestResultCache cache = createCache(Long.MAX_VALUE);
+        cache.store("key", files);
+
+        Map<String, File> directories = new HashMap<>();
+        directories.put(TestRunCache.RESULTS_KIND, new File(temporaryFolder.getRoot(), "restored-results"));
+        directories.put(TestRunCache.REPORTS_KIND, new File(temporaryFolder.getRoot(), "restored-reports"));
+        assertEquals(2, cache.restore("key", directories));
+        File restoredFile = new File(directories.get(TestRunCache.RESULTS_KIND), "results.json");
+        assertEquals(ENTRY_CONTENT_BYTES, restoredFile.length());
+        assertTrue(new File(directories.get(TestRunCache.REPORTS_KIND), reportFile.getName()).isFile());
+    }
+
+    @Test
+    public void testMissingEntryIsNotRestored() throws IOException {
+        Map<String, File> directories = new HashMap<>();
+        directories.put(TestRunCache.RESULTS_KIND, new File(temporaryFolder.getRoot(), "restored-results"));
+        assertEquals(-1, createCache(Long.MAX_VALUE).restore("missing", directories));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        // Room for two entries but not three
+        TestResultCache cache = createCache(ENTRY_CONTENT_BYTES * 5L / 2L);
+        storeEntry(cache, "first", 3000000L);
+        storeEntry(cache, "second", 2000000L);
+
+        // Restoring the first entry makes the second one the least recently used
+        Map<String, File> directories = new HashMap<>();
+        directories.put(TestRunCache.RESULTS_KIND, new File(temporaryFolder.getRoot(), "restored-results"));
+        assertEquals(1, cache.restore("first", directories));
+        storeEntry(cache, "third", 0L);
+
+        assertTrue(getEntryFile("first").isFile());
+        assertFalse(getEntryFile("second").isFile());
+        assertTrue(getEntryFile("third").isFile());
+    }
+
+    @Test
+    public void testRemoteEntryIsDownloaded() throws IOException {
+        // Build the remote entry with a local cache so that it has the layout the remote cache would have
+        TestResultCache sourceCache = new TestResultCache(temporaryFolder.newFolder("source"), Long.MAX_VALUE,
+                                                          null, false, new SystemStreamLog());
+        Map<String, File> files = new TreeMap<>();
+        files.put(TestRunCache.RESULTS_KIND + "/results.json", entryContentFile);
+        sourceCache.store("key", files);
+        byte[] entryContent = Files.readAllBytes(new File(temporaryFolder.getRoot(), "source/key.zip").toPath());
+        remoteEntries.put(REMOTE_CACHE_PATH + "/key.zip", entryContent);
+
+        Map<String, File> directories = new HashMap<>();
+        directories.put(TestRunCache.RESULTS_KIND, new File(temporaryFolder.getRoot(), "restored-results"));
+        assertEquals(1, createRemoteCache(false).restore("key", directories));
+        assertEquals(ENTRY_CONTENT_BYTES,
+                     new File(directories.get(TestRunCache.RESULTS_KIND), "results.json").length());
+        assertArrayEquals(entryContent, Files.readAllBytes(getEntryFile("key").toPath()));
+    }
+
+    @Test
+    public void testMissingRemoteEntryIsNotRestored() throws IOException {
+        Map<String, File> directories = new HashMap<>();
+        directories.put(TestRunCache.RESULTS_KIND, new File(temporaryFolder.getRoot(), "restored-results"));
+        assertEquals(-1, createRemoteCache(false).restore("missing", directories));
+        assertFalse(getEntryFile("missing").exists());
+    }
+
+    @Test
+    public void testStoredEntryIsUploaded() throws IOException {
+        storeEntry(createRemoteCache(true), "pushed", 0L);
+        storeEntry(createRemoteCache(false), "unpushed", 0L);
+
+        byte[] uploadedContent = remoteEntries.get(REMOTE_CACHE_PATH + "/pushed.zip");
+        assertNotNull(uploadedContent);
+        assertArrayEquals(Files.readAllBytes(getEntryFile("pushed").toPath()), uploadedContent);
+        assertFalse(remoteEntries.containsKey(REMOTE_CACHE_PATH + "/unpushed.zip"));
+    }
+
+    @Test
+    public void testFailedUploadKeepsLocalEntry() throws IOException {
+        uploadResponseCode = HttpURLConnection.HTTP_INTERNAL_ERROR;
+        Map<String, File> files = new TreeMap<>();
+        files.put(TestRunCache.RESULTS_KIND + "/results.json", entryContentFile);
+        try {
+            createRemoteCache(true).store("key", files);
+            fail("The failed upload did not throw an IOException");
+        } catch (IOException ioe) {
+            assertTrue(ioe.getMessage().startsWith(String.valueOf(HttpURLConnection.HTTP_INTERNAL_ERROR)));
+        }
+        assertTrue(getEntryFile("key").isFile());
+        assertTrue(remoteEntries.isEmpty());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private TestResultCache createCache(long maxSizeBytes) {
+        return new TestResultCache(cacheDirectory, maxSizeBytes, null, false, new SystemStreamLog());
+    }
+
+    private TestResultCache createRemoteCache(boolean remotePush) {
+        return new TestResultCache(cacheDirectory, Long.MAX_VALUE, remoteUrl, remotePush, new SystemStreamLog());
+    }
+
+    private void storeEntry(TestResultCache cache, String key, long ageMillis) throws IOException {
+        Map<String, File> files = new TreeMap<>();
+        files.put(TestRunCache.RESULTS_KIND + "/results.json", entryContentFile);
+        cache.store(key, files);
+        // The modification time of an entry is when it was last used, which the test sets to keep them apart
+        File entryFile = getEntryFile(key);
+        if (!entryFile.setLastModified(System.currentTimeMillis() - ageMillis)) {
+            throw new IOException("Unable to change the modification time of " + entryFile);
+        }
+    }
+
+    private File getEntryFile(String key) {
+        return new File(cacheDirectory, key + ".zip");
+    }
+
+    private final class RemoteCacheHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            try {
+                if ("PUT".equals(exchange.getRequestMethod())) {
+                    byte[] content = readFully(exchange.getRequestBody());
+                    if (uploadResponseCode == HttpURLConnection.HTTP_CREATED) {
+                        remoteEntries.put(path, content);
+                    }
+                    exchange.sendResponseHeaders(uploadResponseCode, -1);
+                } else if (remoteEntries.containsKey(path)) {
+                    byte[] content = remoteEntries.get(path);
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, content.length);
+                    try (OutputStream outputStream = exchange.getResponseBody()) {
+                        outputStream.write(content);
+                    }
+                } else {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private byte[] readFully(InputStream inputStream) throws IOException {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count = inputStream.read(buffer);
+            while (count != -1) {
+                outputStream.write(buffer, 0, count);
+                count = inputStream.read(buffer);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * TestShardPlannerTest.java - This class tests the splitting of the WLST
+ *     test files into shards for the WLST Test Maven Plugin.
+ *
+ * Copyright 2018 Robert Patrick <rhpatrick@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rhpatrick.mojo.wlstTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the TestShardPlanner class.
+ */
+public class TestShardPlannerTest {
+    private static final int TEST_FILE_COUNT = 40;
+    private static final int SHARD_COUNT = 4;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testShardsDoNotDependOnTestFileOrder() {
+        List<String> testFiles = getTestFiles();
+        List<String> shuffledTestFiles = new ArrayList<>(testFiles);
+        Collections.shuffle(shuffledTestFiles, new Random(42L));
+
+        TestShardPlanner planner =
+            new TestShardPlanner(testFiles, SHARD_COUNT, Collections.<TestTimingHistory>emptyList());
+        TestShardPlanner shuffledPlanner =
+            new TestShardPlanner(shuffledTestFiles, SHARD_COUNT, Collections.<TestTimingHistory>emptyList());
+        assertFalse(planner.isBalancedByHistory());
+        for (int shardIndex = 0; shardIndex < SHARD_COUNT; shardIndex++) {
+            assertEquals(planner.getShard(testFiles, shardIndex), shuffledPlanner.getShard(testFiles, shardIndex));
+        }
+    }
+
+    @Test
+    public void testHashShardsCoverEveryTestFileOnce() {
+        List<String> testFiles = getTestFiles();
+        TestShardPlanner planner =
+            new TestShardPlanner(testFiles, SHARD_COUNT, Collections.<TestTimingHistory>emptyList());
+
+        List<List<String>> shards = new ArrayList<>(SHARD_COUNT);
+        for (int shardIndex = 0; shardIndex < SHARD_COUNT; shardIndex++) {
+            List<String> shard = planner.getShard(testFiles, shardIndex);
+            assertFalse(shard.isEmpty());
+            shards.add(shard);
+        }
+        assertEveryTestFileOnce(testFiles, shards);
+    }
+
+    @Test
+    public void testHistoryShardsAreBalanced() {
+        List<String> testFiles = getTestFiles();
+        TestTimingHistory timingHistory = new TestTimingHistory(new File(temporaryFolder.getRoot(), "history"));
+        long totalMillis = 0L;
+        long longestMillis = 0L;
+        for (String testFile : testFiles) {
+            long durationMillis = getDurationMillis(testFile, 0);
+            timingHistory.recordModuleRun(getModuleName(testFile), durationMillis);
+            totalMillis += durationMillis;
+            longestMillis = Math.max(longestMillis, durationMillis);
+        }
+
+        TestShardPlanner planner = new TestShardPlanner(testFiles, SHARD_COUNT,
+                                                        Collections.singletonList(timingHistory));
+        assertTrue(planner.isBalancedByHistory());
+        List<List<String>> shards = new ArrayList<>(SHARD_COUNT);
+        long estimatedMillis = 0L;
+        for (int shardIndex = 0; shardIndex < SHARD_COUNT; shardIndex++) {
+            shards.add(planner.getShard(testFiles, shardIndex));
+            estimatedMillis += planner.getEstimatedMillis(shardIndex);
+            // Assigning the slowest test files first keeps every shard within one test file of the average
+            assertTrue(planner.getEstimatedMillis(shardIndex) <= totalMillis / SHARD_COUNT + longestMillis);
+        }
+        assertEquals(totalMillis, estimatedMillis);
+        assertEveryTestFileOnce(testFiles, shards);
+    }
+
+    /**
+     * Each agent's timingHistoryFile only has the durations of the shard that agent ran, so the test goal
+     * only balances the shards by the shardTimingHistoryFile that all agents share.  Whether or not it is
+     * set, the agents' shards must cover every test file exactly once.
+     *
+     * @throws IOException if a timing history cannot be written or read
+     */
+    @Test
+    public void testAgentsWithDisjointHistoriesRunEveryTestFileOnce() throws IOException {
+        List<String> testFiles = getTestFiles();
+        TestShardPlanner previousPlanner =
+            new TestShardPlanner(testFiles, SHARD_COUNT, Collections.<TestTimingHistory>emptyList());
+
+        // The previous sharded run left each agent with the durations of its own shard only, while an earlier
+        // unsharded run recorded the durations of all test modules in the shared history
+        TestTimingHistory sharedHistory = new TestTimingHistory(new File(temporaryFolder.getRoot(), "shared"));
+        List<File> agentHistoryFiles = new ArrayList<>(SHARD_COUNT);
+        for (int shardIndex = 0; shardIndex < SHARD_COUNT; shardIndex++) {
+            File agentHistoryFile = new File(temporaryFolder.newFolder("agent-" + shardIndex), "timing.properties");
+            TestTimingHistory agentHistory = new TestTimingHistory(agentHistoryFile);
+            for (String testFile : previousPlanner.getShard(testFiles, shardIndex)) {
+                agentHistory.recordModuleRun(getModuleName(testFile), getDurationMillis(testFile, shardIndex));
+                sharedHistory.recordModuleRun(getModuleName(testFile), getDurationMillis(testFile, 0));
+            }
+            agentHistory.save();
+            agentHistoryFiles.add(agentHistoryFile);
+        }
+        sharedHistory.save();
+
+        List<List<String>> unsharedShards = new ArrayList<>(SHARD_COUNT);
+        List<List<String>> sharedShards = new ArrayList<>(SHARD_COUNT);
+        for (int shardIndex = 0; shardIndex < SHARD_COUNT; shardIndex++) {
+            // Every agent loads its own copy of the shared history, and runs the test files in its own order
+            File sharedHistoryCopy = new File(agentHistoryFiles.get(shardIndex).getParentFile(), "shared");
+            Files.copy(new File(temporaryFolder.getRoot(), "shared").toPath(), sharedHistoryCopy.toPath());
+            TestTimingHistory agentSharedHistory = new TestTimingHistory(sharedHistoryCopy);
+            agentSharedHistory.load();
+            List<String> agentTestFiles = new ArrayList<>(testFiles);
+            Collections.rotate(agentTestFiles, shardIndex * 3);
+
+            TestShardPlanner unsharedPlanner =
+                new TestShardPlanner(agentTestFiles, SHARD_COUNT, Collections.<TestTimingHistory>emptyList());
+            unsharedShards.add(unsharedPlanner.getShard(agentTestFiles, shardIndex));
+            TestShardPlanner sharedPlanner =
+                new TestShardPlanner(agentTestFiles, SHARD_COUNT, Collections.singletonList(agentSharedHistory));
+            assertTrue(sharedPlanner.isBalancedByHistory());
+            sharedShards.add(sharedPlanner.getShard(agentTestFiles, shardIndex));
+        }
+
+        assertEveryTestFileOnce(testFiles, unsharedShards);
+        assertEveryTestFileOnce(testFiles, sharedShards);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //                      Private Helper Methods                           //
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static List<String> getTestFiles() {
+        List<String> result = new ArrayList<>(TEST_FILE_COUNT);
+        for (int idx = 0; idx < TEST_FILE_COUNT; idx++) {
+            result.add(String.format("pkg%d/test_module_%02d.py", idx % 3, idx));
+        }
+        return result;
+    }
+
+    private static String getModuleName(String testFile) {
+        String fileName = testFile.substring(testFile.lastIndexOf('/') + 1);
+        return fileName.substring(0, fileName.length() - ".py".length());
+    }
+
+    private static long getDurationMillis(String testFile, int variant) {
+        return 100L + (testFile.hashCode() & 0xFFFF) % 5000L + variant * 700L;
+    }
+
+    private static void assertEveryTestFileOnce(List<String> testFiles, List<List<String>> shards) {
+        Map<String, Integer> runCounts = new HashMap<>();
+        for (List<String> shard : shards) {
+            for (String testFile : shard) {
+                Integer runCount = runCounts.get(testFile);
+                runCounts.put(testFile, runCount == null ? 1 : runCount + 1);
+            }
+        }
+        for (String testFile : testFiles) {
+            assertEquals(testFile, Integer.valueOf(1), runCounts.get(testFile));
+        }
+        assertEquals(testFiles.size(), runCounts.size());
+    }
+}